@@ -18,6 +18,7 @@ package org.fixb.quickfix;
 
 import org.fixb.FixException;
 import org.fixb.FixFieldExtractor;
+import org.fixb.impl.AsciiString;
 import org.fixb.impl.CollectionFactory;
 import org.fixb.meta.*;
 import org.joda.time.*;
@@ -28,6 +29,7 @@ import java.math.BigDecimal;
 import java.util.Collection;
 import java.util.Date;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -89,8 +91,9 @@ public class QuickFixFieldExtractor implements FixFieldExtractor<Message> {
                                                             int tag,
                                                             FixBlockMeta<T> componentMeta) {
         try {
-            final C result = CollectionFactory.createCollection(type);
-            for (Group group : fieldMap.getGroups(tag)) {
+            final List<Group> groups = fieldMap.getGroups(tag);
+            final C result = CollectionFactory.createCollection(type, groups.size());
+            for (Group group : groups) {
                 final Map<FixFieldMeta, Object> values = new LinkedHashMap<>();
                 for (FixFieldMeta f : componentMeta.getFields()) {
                     if (!(f instanceof FixConstantFieldMeta)) {
@@ -98,16 +101,16 @@ public class QuickFixFieldExtractor implements FixFieldExtractor<Message> {
                         if (f.isGroup()) {
                             FixGroupMeta groupMeta = (FixGroupMeta) f;
                             if (groupMeta.isSimple()) {
-                                fieldValue = getGroupsFromMap(group,
-                                        (Class<Collection<Object>>) groupMeta.getType(),
+                                fieldValue = groupMeta.toFieldValue(getGroupsFromMap(group,
+                                        (Class<Collection<Object>>) groupMeta.getCollectionType(),
                                         groupMeta.getTag(),
                                         (Class<Object>) groupMeta.getComponentType(),
-                                        groupMeta.getComponentTag());
+                                        groupMeta.getComponentTag()));
                             } else {
-                                fieldValue = getGroupsFromMap(group,
-                                        (Class<Collection<Object>>) groupMeta.getType(),
+                                fieldValue = groupMeta.toFieldValue(getGroupsFromMap(group,
+                                        (Class<Collection<Object>>) groupMeta.getCollectionType(),
                                         groupMeta.getTag(),
-                                        (FixMessageMeta<Object>) groupMeta.getComponentMeta());
+                                        (FixBlockMeta<Object>) groupMeta.getComponentMeta()));
                             }
                         } else {
                             fieldValue = getFieldValueFromMap(group, f.getType(), f.getTag());
@@ -129,8 +132,9 @@ public class QuickFixFieldExtractor implements FixFieldExtractor<Message> {
                                                             Class<T> elementType,
                                                             int elementTag) {
         try {
-            final C result = CollectionFactory.createCollection(type);
-            for (Group group : fieldMap.getGroups(tag)) {
+            final List<Group> groups = fieldMap.getGroups(tag);
+            final C result = CollectionFactory.createCollection(type, groups.size());
+            for (Group group : groups) {
                 result.add(getFieldValueFromMap(group, elementType, elementTag));
             }
             return result;
@@ -142,14 +146,18 @@ public class QuickFixFieldExtractor implements FixFieldExtractor<Message> {
     @SuppressWarnings("unchecked")
     private <T> T getFieldValueFromMap(FieldMap message, Class<T> type, int tag) {
         try {
-            if (type == String.class) {
+            if (type == String.class || type == CharSequence.class) {
                 return (T) message.getString(tag);
+            } else if (type == AsciiString.class) {
+                return (T) AsciiString.of(message.getString(tag));
             } else if (type == Boolean.class || type == boolean.class) {
                 return (T) Boolean.valueOf(message.getBoolean(tag));
             } else if (type == Character.class || type == char.class) {
                 return (T) Character.valueOf(message.getChar(tag));
             } else if (type == Integer.class || type == int.class) {
                 return (T) Integer.valueOf(message.getInt(tag));
+            } else if (type == Long.class || type == long.class) {
+                return (T) Long.valueOf(message.getString(tag));
             } else if (type == Double.class || type == double.class) {
                 return (T) Double.valueOf(message.getDouble(tag));
             } else if (type == BigDecimal.class) {
@@ -197,6 +197,9 @@ public abstract class QuickFixFieldMapBuilder<M extends FieldMap> extends FixMes
                                                    int groupTag,
                                                    int componentTag,
                                                    Collection<?> collection) {
+        if (collection == null) {
+            return this;
+        }
         for (Object value : collection) {
             Group group = fixGroup(groupTag, componentTag).setField(componentTag, value).build();
             message.addGroup(group);
@@ -208,6 +211,9 @@ public abstract class QuickFixFieldMapBuilder<M extends FieldMap> extends FixMes
                                                    int groupTag,
                                                    List<FixFieldMeta> fields,
                                                    Collection<?> collection) {
+        if (collection == null) {
+            return this;
+        }
         int delimiterTag = fields.get(0).getTag();
         for (Object item : collection) {
             QuickFixFieldMapBuilder<Group> groupBuilder = fixGroup(groupTag, delimiterTag);
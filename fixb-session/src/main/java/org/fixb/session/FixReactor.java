@@ -0,0 +1,310 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.session;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Drives FixSessions over non-blocking TCP connections with a single selector thread, which runs all the callbacks of
+ * the sessions and of their listeners (hence a listener must not block). Sessions are either connected to a
+ * counterparty (initiator) or accept a connection on a local address (acceptor).
+ *
+ * The connections read into and write from heap buffers of a fixed size (at least the maximum length of a message):
+ * messages are written to the socket directly and only the part that the socket doesn't accept is buffered; a
+ * connection that can't buffer a message is closed.
+ *
+ * connect() and listen() must be called before the reactor is started or on its thread; other threads may hand tasks
+ * (e.g. sending messages) to the reactor thread with execute().
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class FixReactor implements Runnable, Closeable {
+    private static final long SELECT_TIMEOUT = 100;
+
+    private final Selector selector;
+    private final int bufferSize;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final List<Connection> connections = new ArrayList<>();
+    private volatile boolean running;
+    private volatile boolean started;
+
+    /**
+     * @param bufferSize the size of the receive and send buffers of each connection, which must exceed the maximum
+     *                   length of a message of the sessions (a connection is closed when its receive buffer is full)
+     */
+    public FixReactor(int bufferSize) throws IOException {
+        this.bufferSize = bufferSize;
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Connects the given session to the given address. The session sends its Logon once the connection is
+     * established.
+     */
+    public void connect(InetSocketAddress address, FixSession<?> session) throws IOException {
+        final SocketChannel channel = SocketChannel.open();
+        configure(channel);
+        final Connection connection = new Connection(channel, session);
+        if (channel.connect(address)) {
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connection.connected(true);
+        } else {
+            connection.key = channel.register(selector, SelectionKey.OP_CONNECT, connection);
+        }
+    }
+
+    /**
+     * Accepts the connections of the counterparty of the given session on the given address. A connection is rejected
+     * while the session is connected.
+     *
+     * @return the local address (useful when listening on an ephemeral port).
+     */
+    public InetSocketAddress listen(InetSocketAddress address, FixSession<?> session) throws IOException {
+        final ServerSocketChannel channel = ServerSocketChannel.open();
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        channel.bind(address);
+        channel.register(selector, SelectionKey.OP_ACCEPT, session);
+        return (InetSocketAddress) channel.getLocalAddress();
+    }
+
+    /**
+     * Runs the given task on the reactor thread.
+     */
+    public void execute(Runnable task) {
+        tasks.offer(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Runs the reactor on the calling thread until it is closed.
+     */
+    @Override
+    public void run() {
+        started = true;
+        running = true;
+        try {
+            while (running) {
+                selector.select(SELECT_TIMEOUT);
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                final long now = System.currentTimeMillis();
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid()) {
+                        handle(key, now);
+                    }
+                }
+                for (int i = connections.size() - 1; i >= 0; i--) {
+                    connections.get(i).session.onTimer(now);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Selector failed", e);
+        } finally {
+            closeAll();
+        }
+    }
+
+    /**
+     * Stops the reactor and closes all its connections.
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (started) {
+            selector.wakeup();
+        } else {
+            closeAll();
+        }
+    }
+
+    private void handle(SelectionKey key, long now) throws IOException {
+        if (key.isAcceptable()) {
+            final SocketChannel channel = ((ServerSocketChannel) key.channel()).accept();
+            if (channel == null) {
+                return;
+            }
+            final FixSession<?> session = (FixSession<?>) key.attachment();
+            if (session.getState() != FixSession.State.DISCONNECTED) {
+                channel.close();
+                return;
+            }
+            configure(channel);
+            final Connection connection = new Connection(channel, session);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connection.connected(false);
+            return;
+        }
+        final Connection connection = (Connection) key.attachment();
+        if (key.isConnectable()) {
+            try {
+                ((SocketChannel) key.channel()).finishConnect();
+            } catch (IOException e) {
+                connection.close();
+                return;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            connection.connected(true);
+            return;
+        }
+        if (key.isWritable()) {
+            connection.flush();
+        }
+        if (key.isValid() && key.isReadable()) {
+            connection.read(now);
+        }
+    }
+
+    private void closeAll() {
+        for (int i = connections.size() - 1; i >= 0; i--) {
+            connections.get(i).disconnect();
+        }
+        for (SelectionKey key : selector.keys()) {
+            closeQuietly(key.channel());
+        }
+        closeQuietly(selector);
+    }
+
+    private static void configure(SocketChannel channel) throws IOException {
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * A connection of a session.
+     */
+    private final class Connection implements FixTransport {
+        final SocketChannel channel;
+        final FixSession<?> session;
+        final ByteBuffer in = ByteBuffer.allocate(bufferSize);
+        final ByteBuffer out = ByteBuffer.allocate(bufferSize);
+        SelectionKey key;
+        boolean open = true;
+
+        Connection(SocketChannel channel, FixSession<?> session) {
+            this.channel = channel;
+            this.session = session;
+        }
+
+        void connected(boolean initiator) {
+            connections.add(this);
+            session.onConnected(this, initiator, System.currentTimeMillis());
+        }
+
+        void read(long now) {
+            final int n;
+            try {
+                n = channel.read(in);
+            } catch (IOException e) {
+                disconnect();
+                return;
+            }
+            if (n < 0) {
+                disconnect();
+                return;
+            }
+            in.flip();
+            session.onData(in, now);
+            in.compact();
+            if (!in.hasRemaining()) {
+                disconnect();
+            }
+        }
+
+        void flush() {
+            out.flip();
+            try {
+                channel.write(out);
+            } catch (IOException e) {
+                out.clear();
+                disconnect();
+                return;
+            }
+            if (out.hasRemaining()) {
+                out.compact();
+            } else {
+                out.clear();
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        @Override
+        public void write(ByteBuffer message) {
+            if (!open) {
+                return;
+            }
+            try {
+                if (out.position() == 0) {
+                    channel.write(message);
+                }
+            } catch (IOException e) {
+                disconnect();
+                return;
+            }
+            if (message.hasRemaining()) {
+                if (message.remaining() > out.remaining()) {
+                    disconnect();
+                    return;
+                }
+                out.put(message);
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (open) {
+                open = false;
+                connections.remove(this);
+                if (key != null) {
+                    key.cancel();
+                }
+                closeQuietly(channel);
+            }
+        }
+
+        private void disconnect() {
+            close();
+            session.onDisconnected();
+        }
+    }
+}
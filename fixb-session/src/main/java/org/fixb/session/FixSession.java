@@ -0,0 +1,799 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.session;
+
+import org.fixb.FixException;
+import org.fixb.impl.AsciiEncoding;
+import org.fixb.impl.AsciiString;
+import org.fixb.impl.NativeFixSerializer;
+import org.fixb.journal.FixJournal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.fixb.FixConstants.BEGIN_STRING_TAG;
+import static org.fixb.FixConstants.BODY_LENGTH_TAG;
+import static org.fixb.FixConstants.MSG_SEQ_NUM_TAG;
+import static org.fixb.FixConstants.MSG_TYPE_TAG;
+import static org.fixb.FixConstants.SENDING_TIME_TAG;
+import static org.fixb.impl.AsciiEncoding.TIMESTAMP_LENGTH;
+import static org.fixb.impl.FormatConstants.SOH;
+import static org.fixb.session.SessionConstants.*;
+
+/**
+ * The session layer of a FIX connection: Logon and Logout, heartbeats and TestRequests, sequence numbers, gap detection
+ * with ResendRequests and the handling of ResendRequests of the counterparty with resent messages and gap fills.
+ *
+ * A session works on raw bytes and is driven by its transport (e.g. a FixReactor): onConnected(), onData() with the
+ * received bytes, onTimer() and onDisconnected(). The header of each sent message is written around the body encoded
+ * by NativeFixSerializer.serializeBody() and received messages are framed and checked in the receive buffer, so that
+ * sending and receiving messages of the session and of the application doesn't create any objects (with the
+ * exception of resending messages, and of the application's own decoding). Hence the FIX classes must not bind
+ * SenderCompID(49), TargetCompID(56), MsgSeqNum(34) or SendingTime(52), which send() checks once per class.
+ *
+ * Received messages are processed in sequence: a message with a MsgSeqNum greater than expected triggers a
+ * ResendRequest for the gap and is dropped (the counterparty resends it), except for a ResendRequest of the
+ * counterparty, which is honoured first. A message with a lower MsgSeqNum is ignored if it is a possible duplicate,
+ * otherwise the session is logged out. All sent messages are stored in the given FixJournal, if any: the application
+ * messages of a requested range are resent, the session level ones are replaced by gap fills. As the journal keeps
+ * every sent MsgSeqNum, the session continues after the last journaled one; the expected MsgSeqNum of the
+ * counterparty has to be set by the application when a session is resumed. Resetting the sequence numbers
+ * (ResetSeqNumFlag(141)) is not supported: a new session should be started with a new journal instead.
+ *
+ * A session is not thread-safe: all its methods must be called by the thread driving its transport.
+ *
+ * @param <T> the type of the FIX objects of the application
+ * @author vladyslav.yatsenko
+ */
+public final class FixSession<T> {
+    // the maximum length of the fields that are written around the body of a message
+    private static final int ENVELOPE_LENGTH = 256;
+    private static final byte[] YES = {'Y'};
+
+    /**
+     * The states of a session.
+     */
+    public enum State {
+        DISCONNECTED, AWAITING_LOGON, LOGON_SENT, ACTIVE, LOGOUT_SENT
+    }
+
+    private final NativeFixSerializer<T> serializer;
+    private final FixSessionListener listener;
+    private final FixJournal journal;
+    private final byte[] beginString;
+    private final byte[] senderCompId;
+    private final byte[] targetCompId;
+    private final int maxMessageLength;
+    private final ByteBuffer encoded;
+    private final ByteBuffer body;
+    private final ByteBuffer frame;
+    private final byte[] type = new byte[1];
+    private final AsciiString msgTypeView = new AsciiString();
+    private final AsciiString messageView = new AsciiString();
+    private final Set<Class<?>> checkedTypes = new HashSet<>();
+
+    private FixTransport transport;
+    private State state = State.DISCONNECTED;
+    private boolean loggedOn;
+    private int heartBtInt;
+    private int nextSenderSeqNum;
+    private int nextTargetSeqNum = 1;
+    private int resendTarget;
+    private long lastSent;
+    private long lastReceived;
+    private long stateSince;
+    private boolean testRequestPending;
+
+    // the fields of the message being processed (positions in the receive buffer)
+    private int msgTypeStart;
+    private int msgTypeEnd;
+    private int senderStart;
+    private int senderEnd;
+    private int targetStart;
+    private int targetEnd;
+    private int testReqIdStart;
+    private int testReqIdEnd;
+    private int seqNum;
+    private int beginSeqNo;
+    private int endSeqNo;
+    private int newSeqNo;
+    private int heartBtIntValue;
+    private boolean possDup;
+    private boolean gapFill;
+
+    /**
+     * @param serializer       a serializer of the application messages, which also defines the BeginString(8)
+     * @param senderCompId     the SenderCompID(49) of this side
+     * @param targetCompId     the TargetCompID(56) of this side, i.e. the SenderCompID of the counterparty
+     * @param heartBtInt       the heartbeat interval in seconds proposed by the initiator (acceptors use the interval
+     *                         of the Logon received from the counterparty)
+     * @param maxMessageLength the maximum length of a message, both sent and received
+     * @param journal          a journal of the sent messages, or null if messages are never resent
+     * @param listener         a listener of the session events
+     */
+    public FixSession(NativeFixSerializer<T> serializer,
+                      String senderCompId,
+                      String targetCompId,
+                      int heartBtInt,
+                      int maxMessageLength,
+                      FixJournal journal,
+                      FixSessionListener listener) {
+        if (heartBtInt <= 0) {
+            throw new IllegalArgumentException("heartBtInt must be positive");
+        }
+        this.serializer = serializer;
+        this.listener = listener;
+        this.journal = journal;
+        this.beginString = serializer.getProtocolVersion().getBytes(StandardCharsets.US_ASCII);
+        this.senderCompId = senderCompId.getBytes(StandardCharsets.US_ASCII);
+        this.targetCompId = targetCompId.getBytes(StandardCharsets.US_ASCII);
+        this.heartBtInt = heartBtInt;
+        this.maxMessageLength = maxMessageLength;
+        this.encoded = ByteBuffer.allocate(maxMessageLength);
+        this.body = ByteBuffer.allocate(maxMessageLength + ENVELOPE_LENGTH);
+        this.frame = ByteBuffer.allocate(maxMessageLength + 2 * ENVELOPE_LENGTH);
+        this.nextSenderSeqNum = (journal == null) ? 1 : journal.getLastSeqNum() + 1;
+    }
+
+    /**
+     * @return the state of this session.
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return the heartbeat interval in seconds.
+     */
+    public int getHeartBtInt() {
+        return heartBtInt;
+    }
+
+    /**
+     * @return the MsgSeqNum of the next sent message.
+     */
+    public int getNextSenderSeqNum() {
+        return nextSenderSeqNum;
+    }
+
+    /**
+     * @return the expected MsgSeqNum of the next received message.
+     */
+    public int getNextTargetSeqNum() {
+        return nextTargetSeqNum;
+    }
+
+    /**
+     * Sets the expected MsgSeqNum of the next received message, e.g. when a session is resumed.
+     */
+    public void setNextTargetSeqNum(int nextTargetSeqNum) {
+        this.nextTargetSeqNum = nextTargetSeqNum;
+    }
+
+    /**
+     * @return the maximum length of a message.
+     */
+    public int getMaxMessageLength() {
+        return maxMessageLength;
+    }
+
+    /**
+     * The same as {@link #send(Object, long)}, but uses the current time as SendingTime(52).
+     */
+    public int send(T message) {
+        return send(message, System.currentTimeMillis());
+    }
+
+    /**
+     * Sends the given application message.
+     *
+     * @param now the current time in milliseconds, sent as SendingTime(52)
+     * @return the MsgSeqNum of the message.
+     * @throws FixException if the session is not logged on, the class of the message binds a tag written by the
+     *         session or the message can't be journaled.
+     * @throws java.nio.BufferOverflowException if the message is longer than the maximum length.
+     */
+    public int send(T message, long now) {
+        if (state != State.ACTIVE) {
+            throw new FixException("Session is not logged on: " + state);
+        }
+        if (!checkedTypes.contains(message.getClass())) {
+            serializer.checkNotBound(message.getClass(),
+                    MSG_SEQ_NUM_TAG, SENDER_COMP_ID_TAG, SENDING_TIME_TAG, TARGET_COMP_ID_TAG);
+            checkedTypes.add(message.getClass());
+        }
+        encoded.clear();
+        final int length = serializer.serializeBody(message, encoded);
+        final byte[] bytes = encoded.array();
+        int msgTypeEnd = 3;
+        while (bytes[msgTypeEnd] != SOH) {
+            msgTypeEnd++;
+        }
+        final int seqNum = nextSenderSeqNum;
+        header(bytes, 3, msgTypeEnd, seqNum, false, now);
+        body.put(bytes, msgTypeEnd + 1, length - msgTypeEnd - 1);
+        finish();
+        journal(seqNum);
+        nextSenderSeqNum++;
+        write(now);
+        return seqNum;
+    }
+
+    /**
+     * Sends a Logout(5) with the given text (if not null) and waits for the Logout of the counterparty, which
+     * disconnects the session (as does a timeout of one heartbeat interval).
+     */
+    public void logout(String text, long now) {
+        if (state == State.ACTIVE) {
+            sendLogout(text, now);
+            state = State.LOGOUT_SENT;
+            stateSince = now;
+        }
+    }
+
+    /**
+     * Called by the transport when the connection is established. An initiator sends a Logon(A), an acceptor waits
+     * for the Logon of the counterparty.
+     */
+    public void onConnected(FixTransport transport, boolean initiator, long now) {
+        this.transport = transport;
+        this.loggedOn = false;
+        this.resendTarget = 0;
+        this.testRequestPending = false;
+        this.lastSent = now;
+        this.lastReceived = now;
+        this.stateSince = now;
+        if (initiator) {
+            state = State.LOGON_SENT;
+            sendLogon(now);
+        } else {
+            state = State.AWAITING_LOGON;
+        }
+    }
+
+    /**
+     * Called by the transport with the received bytes, i.e. the bytes from the position to the limit of the given
+     * buffer, which must be backed by an array. The complete messages are processed and the position of the buffer is
+     * advanced past them; an incomplete message at the end is left in the buffer.
+     */
+    public void onData(ByteBuffer buffer, long now) {
+        final byte[] bytes = buffer.array();
+        while (state != State.DISCONNECTED) {
+            final int start = buffer.arrayOffset() + buffer.position();
+            final int length = frameLength(bytes, start, buffer.remaining());
+            if (length == 0) {
+                break;
+            }
+            if (length < 0) {
+                disconnect();
+                break;
+            }
+            buffer.position(buffer.position() + length);
+            process(bytes, start, length, now);
+        }
+    }
+
+    /**
+     * Called by the transport at least every second (more often for finer timeouts): sends heartbeats and
+     * TestRequests, and disconnects the session when the counterparty doesn't respond in time.
+     */
+    public void onTimer(long now) {
+        final long interval = heartBtInt * 1000L;
+        switch (state) {
+            case AWAITING_LOGON:
+            case LOGON_SENT:
+            case LOGOUT_SENT:
+                if (now - stateSince >= interval) {
+                    disconnect();
+                }
+                break;
+            case ACTIVE:
+                final long silence = now - lastReceived;
+                if (testRequestPending && silence >= 2 * interval + interval / 5) {
+                    disconnect();
+                    break;
+                }
+                if (!testRequestPending && silence >= interval + interval / 5) {
+                    sendTestRequest(now);
+                    testRequestPending = true;
+                }
+                if (now - lastSent >= interval) {
+                    sendAdmin(HEARTBEAT, now);
+                }
+                break;
+            default:
+        }
+    }
+
+    /**
+     * Called by the transport when the connection is closed.
+     */
+    public void onDisconnected() {
+        disconnect();
+    }
+
+    /**
+     * @return the length of the message at the given position, 0 if it is incomplete or -1 if it is garbled.
+     */
+    private int frameLength(byte[] bytes, int offset, int available) {
+        final int end = offset + available;
+        if (available < 2) {
+            return 0;
+        }
+        if (bytes[offset] != '8' || bytes[offset + 1] != '=') {
+            return -1;
+        }
+        int p = offset + 2;
+        while (p < end && bytes[p] != SOH) {
+            p++;
+        }
+        if (end - p < 3) {
+            return (p - offset > ENVELOPE_LENGTH) ? -1 : 0;
+        }
+        if (bytes[++p] != '9' || bytes[++p] != '=') {
+            return -1;
+        }
+        int bodyLength = 0;
+        while (++p < end && bytes[p] != SOH) {
+            final int digit = bytes[p] - '0';
+            if (digit < 0 || digit > 9 || (bodyLength = bodyLength * 10 + digit) > maxMessageLength) {
+                return -1;
+            }
+        }
+        if (p >= end) {
+            return 0;
+        }
+        final int length = p + 1 - offset + bodyLength + 7;
+        if (length > available) {
+            return 0;
+        }
+        final int trailer = offset + length - 7;
+        if (bytes[trailer] != '1' || bytes[trailer + 1] != '0' || bytes[trailer + 2] != '=' || bytes[offset + length - 1] != SOH) {
+            return -1;
+        }
+        return length;
+    }
+
+    private void process(byte[] bytes, int offset, int length, long now) {
+        final int trailer = offset + length - 7;
+        int sum = 0;
+        for (int i = offset; i < trailer; i++) {
+            sum += bytes[i];
+        }
+        if ((sum & 0xFF) != (bytes[trailer + 3] - '0') * 100 + (bytes[trailer + 4] - '0') * 10 + (bytes[trailer + 5] - '0')) {
+            return; // garbled messages are ignored
+        }
+        parse(bytes, offset, trailer);
+        lastReceived = now;
+        testRequestPending = false;
+
+        if (msgTypeStart < 0 || seqNum <= 0 || !matches(bytes, senderStart, senderEnd, targetCompId)
+                || !matches(bytes, targetStart, targetEnd, senderCompId)) {
+            sendLogout("Invalid header", now);
+            disconnect();
+            return;
+        }
+        final byte msgType = (msgTypeEnd - msgTypeStart == 1) ? bytes[msgTypeStart] : 0;
+        if ((state == State.AWAITING_LOGON || state == State.LOGON_SENT) && msgType != LOGON) {
+            disconnect();
+            return;
+        }
+        if (msgType == SEQUENCE_RESET && !gapFill) {
+            if (newSeqNo > nextTargetSeqNum) {
+                nextTargetSeqNum = newSeqNo;
+            }
+            return;
+        }
+        if (seqNum > nextTargetSeqNum) {
+            if (msgType == LOGOUT) {
+                onLogout(now);
+                return;
+            }
+            if (msgType == LOGON) {
+                onLogon(now);
+            } else if (msgType == RESEND_REQUEST && state == State.ACTIVE) {
+                // both sides may have detected a gap: each one has to resend before the other's gap is filled
+                resend(beginSeqNo, endSeqNo, now);
+            }
+            if (state != State.DISCONNECTED && resendTarget < nextTargetSeqNum) {
+                sendResendRequest(nextTargetSeqNum, now);
+            }
+            resendTarget = Math.max(resendTarget, seqNum);
+            return;
+        }
+        if (seqNum < nextTargetSeqNum) {
+            if (!possDup) {
+                sendLogout("MsgSeqNum too low, expecting " + nextTargetSeqNum + " but received " + seqNum, now);
+                disconnect();
+            }
+            return;
+        }
+        nextTargetSeqNum++;
+
+        switch (msgType) {
+            case LOGON:
+                onLogon(now);
+                break;
+            case HEARTBEAT:
+                break;
+            case TEST_REQUEST:
+                sendHeartbeat(bytes, testReqIdStart, testReqIdEnd, now);
+                break;
+            case RESEND_REQUEST:
+                resend(beginSeqNo, endSeqNo, now);
+                break;
+            case SEQUENCE_RESET:
+                if (newSeqNo > nextTargetSeqNum) {
+                    nextTargetSeqNum = newSeqNo;
+                }
+                break;
+            case LOGOUT:
+                onLogout(now);
+                break;
+            default:
+                if (state == State.ACTIVE || state == State.LOGOUT_SENT) {
+                    listener.onMessage(this, msgTypeView.wrap(bytes, msgTypeStart, msgTypeEnd - msgTypeStart),
+                            messageView.wrap(bytes, offset, length));
+                }
+        }
+    }
+
+    /**
+     * Reads the session fields of the message in the given region.
+     */
+    private void parse(byte[] bytes, int offset, int end) {
+        msgTypeStart = msgTypeEnd = -1;
+        senderStart = senderEnd = targetStart = targetEnd = testReqIdStart = testReqIdEnd = 0;
+        seqNum = beginSeqNo = endSeqNo = newSeqNo = heartBtIntValue = 0;
+        possDup = gapFill = false;
+        int p = offset;
+        while (p < end) {
+            int tag = 0;
+            while (p < end && bytes[p] != '=') {
+                tag = tag * 10 + bytes[p++] - '0';
+            }
+            final int valueStart = ++p;
+            while (p < end && bytes[p] != SOH) {
+                p++;
+            }
+            final int valueEnd = p++;
+            switch (tag) {
+                case MSG_TYPE_TAG:
+                    msgTypeStart = valueStart;
+                    msgTypeEnd = valueEnd;
+                    break;
+                case MSG_SEQ_NUM_TAG:
+                    seqNum = parseInt(bytes, valueStart, valueEnd);
+                    break;
+                case SENDER_COMP_ID_TAG:
+                    senderStart = valueStart;
+                    senderEnd = valueEnd;
+                    break;
+                case TARGET_COMP_ID_TAG:
+                    targetStart = valueStart;
+                    targetEnd = valueEnd;
+                    break;
+                case POSS_DUP_FLAG_TAG:
+                    possDup = bytes[valueStart] == 'Y';
+                    break;
+                case GAP_FILL_FLAG_TAG:
+                    gapFill = bytes[valueStart] == 'Y';
+                    break;
+                case NEW_SEQ_NO_TAG:
+                    newSeqNo = parseInt(bytes, valueStart, valueEnd);
+                    break;
+                case BEGIN_SEQ_NO_TAG:
+                    beginSeqNo = parseInt(bytes, valueStart, valueEnd);
+                    break;
+                case END_SEQ_NO_TAG:
+                    endSeqNo = parseInt(bytes, valueStart, valueEnd);
+                    break;
+                case HEART_BT_INT_TAG:
+                    heartBtIntValue = parseInt(bytes, valueStart, valueEnd);
+                    break;
+                case TEST_REQ_ID_TAG:
+                    testReqIdStart = valueStart;
+                    testReqIdEnd = valueEnd;
+                    break;
+                default:
+            }
+        }
+    }
+
+    private void onLogon(long now) {
+        if (state == State.AWAITING_LOGON) {
+            if (heartBtIntValue > 0) {
+                heartBtInt = heartBtIntValue;
+            }
+            sendLogon(now);
+        } else if (state != State.LOGON_SENT) {
+            return;
+        }
+        state = State.ACTIVE;
+        stateSince = now;
+        loggedOn = true;
+        listener.onLogon(this);
+    }
+
+    private void onLogout(long now) {
+        if (state != State.LOGOUT_SENT) {
+            sendLogout(null, now);
+        }
+        disconnect();
+    }
+
+    private void disconnect() {
+        if (state == State.DISCONNECTED) {
+            return;
+        }
+        state = State.DISCONNECTED;
+        transport.close();
+        if (loggedOn) {
+            loggedOn = false;
+            listener.onLogout(this);
+        }
+    }
+
+    /**
+     * Resends the journaled application messages of the given range and replaces the other messages with gap fills.
+     */
+    private void resend(int from, int to, long now) {
+        final int last = (to == 0 || to >= nextSenderSeqNum) ? nextSenderSeqNum - 1 : to;
+        int gapStart = 0;
+        for (int seqNum = Math.max(from, 1); seqNum <= last; seqNum++) {
+            final byte[] message = journaled(seqNum);
+            if (message == null || isSessionMessage(message)) {
+                if (gapStart == 0) {
+                    gapStart = seqNum;
+                }
+                continue;
+            }
+            if (gapStart != 0) {
+                sendGapFill(gapStart, seqNum, now);
+                gapStart = 0;
+            }
+            resend(message, seqNum, now);
+        }
+        if (gapStart != 0) {
+            sendGapFill(gapStart, last + 1, now);
+        }
+    }
+
+    /**
+     * @return the journaled message with the given MsgSeqNum or null.
+     */
+    private byte[] journaled(int seqNum) {
+        if (journal == null) {
+            return null;
+        }
+        final String message;
+        try {
+            message = journal.read(seqNum);
+        } catch (IOException e) {
+            throw new FixException("Unable to read journaled message " + seqNum, e);
+        }
+        return (message == null) ? null : message.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Resends the given message, which was sent by this session, with PossDupFlag(43) and OrigSendingTime(122).
+     */
+    private void resend(byte[] message, int seqNum, long now) {
+        int msgTypeStart = 0;
+        int msgTypeEnd = 0;
+        int sendingTimeStart = 0;
+        int sendingTimeEnd = 0;
+        int p = 0;
+        while (sendingTimeEnd == 0 && p < message.length) {
+            int tag = 0;
+            while (message[p] != '=') {
+                tag = tag * 10 + message[p++] - '0';
+            }
+            final int valueStart = ++p;
+            while (message[p] != SOH) {
+                p++;
+            }
+            if (tag == MSG_TYPE_TAG) {
+                msgTypeStart = valueStart;
+                msgTypeEnd = p;
+            } else if (tag == SENDING_TIME_TAG) {
+                sendingTimeStart = valueStart;
+                sendingTimeEnd = p;
+            }
+            p++;
+        }
+        header(message, msgTypeStart, msgTypeEnd, seqNum, true, now);
+        putField(ORIG_SENDING_TIME_TAG, message, sendingTimeStart, sendingTimeEnd);
+        body.put(message, p, message.length - 7 - p);
+        finish();
+        write(now);
+    }
+
+    /**
+     * @return true if the given message sent by this session is a session level message, which is never resent.
+     */
+    private static boolean isSessionMessage(byte[] message) {
+        // the messages of this session start with "8=...|9=...|35="
+        int p = 0;
+        for (int fields = 0; fields < 2; p++) {
+            if (message[p] == SOH) {
+                fields++;
+            }
+        }
+        if (message[p + 4] != SOH) {
+            return false;
+        }
+        final byte msgType = message[p + 3];
+        return (msgType >= HEARTBEAT && msgType <= LOGOUT) || msgType == LOGON;
+    }
+
+    private void sendLogon(long now) {
+        startAdmin(LOGON, now);
+        putField(ENCRYPT_METHOD_TAG, 0);
+        putField(HEART_BT_INT_TAG, heartBtInt);
+        sendAdmin(now);
+    }
+
+    private void sendLogout(String text, long now) {
+        startAdmin(LOGOUT, now);
+        if (text != null) {
+            final byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+            putField(TEXT_TAG, bytes, 0, bytes.length);
+        }
+        sendAdmin(now);
+    }
+
+    private void sendTestRequest(long now) {
+        startAdmin(TEST_REQUEST, now);
+        putTag(TEST_REQ_ID_TAG);
+        AsciiEncoding.putLong(body, now);
+        body.put((byte) SOH);
+        sendAdmin(now);
+    }
+
+    private void sendHeartbeat(byte[] bytes, int testReqIdStart, int testReqIdEnd, long now) {
+        startAdmin(HEARTBEAT, now);
+        if (testReqIdEnd > testReqIdStart) {
+            putField(TEST_REQ_ID_TAG, bytes, testReqIdStart, testReqIdEnd);
+        }
+        sendAdmin(now);
+    }
+
+    private void sendResendRequest(int from, long now) {
+        startAdmin(RESEND_REQUEST, now);
+        putField(BEGIN_SEQ_NO_TAG, from);
+        putField(END_SEQ_NO_TAG, 0);
+        sendAdmin(now);
+    }
+
+    private void sendGapFill(int seqNum, int newSeqNum, long now) {
+        type[0] = SEQUENCE_RESET;
+        header(type, 0, 1, seqNum, true, now);
+        putField(GAP_FILL_FLAG_TAG, YES, 0, 1);
+        putField(NEW_SEQ_NO_TAG, newSeqNum);
+        finish();
+        write(now);
+    }
+
+    private void sendAdmin(byte msgType, long now) {
+        startAdmin(msgType, now);
+        sendAdmin(now);
+    }
+
+    private void startAdmin(byte msgType, long now) {
+        type[0] = msgType;
+        header(type, 0, 1, nextSenderSeqNum, false, now);
+    }
+
+    private void sendAdmin(long now) {
+        finish();
+        journal(nextSenderSeqNum);
+        nextSenderSeqNum++;
+        write(now);
+    }
+
+    /**
+     * Stores the message in the frame buffer, so that the journal keeps the last MsgSeqNum used by this session
+     * (session level messages are journaled as well, but replaced by gap fills when they are requested).
+     */
+    private void journal(int seqNum) {
+        if (journal != null) {
+            try {
+                journal.append(seqNum, frame.array(), 0, frame.limit());
+            } catch (IOException e) {
+                throw new FixException("Unable to journal message " + seqNum, e);
+            }
+        }
+    }
+
+    /**
+     * Starts the body of a message with MsgType(35) and the other session fields of the header.
+     */
+    private void header(byte[] msgType, int msgTypeStart, int msgTypeEnd, int seqNum, boolean possDup, long now) {
+        body.clear();
+        putField(MSG_TYPE_TAG, msgType, msgTypeStart, msgTypeEnd);
+        putField(SENDER_COMP_ID_TAG, senderCompId, 0, senderCompId.length);
+        putField(TARGET_COMP_ID_TAG, targetCompId, 0, targetCompId.length);
+        putField(MSG_SEQ_NUM_TAG, seqNum);
+        if (possDup) {
+            putField(POSS_DUP_FLAG_TAG, YES, 0, 1);
+        }
+        putTag(SENDING_TIME_TAG);
+        AsciiEncoding.setTimestamp(body.array(), body.position(), now);
+        body.position(body.position() + TIMESTAMP_LENGTH);
+        body.put((byte) SOH);
+    }
+
+    /**
+     * Completes the message in the frame buffer with BeginString(8), BodyLength(9) and CheckSum(10).
+     */
+    private void finish() {
+        frame.clear();
+        AsciiEncoding.putInt(frame, BEGIN_STRING_TAG);
+        frame.put((byte) '=').put(beginString).put((byte) SOH);
+        AsciiEncoding.putInt(frame, BODY_LENGTH_TAG);
+        frame.put((byte) '=');
+        AsciiEncoding.putInt(frame, body.position());
+        frame.put((byte) SOH).put(body.array(), 0, body.position());
+        AsciiEncoding.putCheckSum(frame, AsciiEncoding.sum(frame.array(), 0, frame.position()));
+        frame.put((byte) SOH);
+        frame.flip();
+    }
+
+    private void write(long now) {
+        lastSent = now;
+        transport.write(frame);
+    }
+
+    private void putField(int tag, byte[] value, int start, int end) {
+        putTag(tag);
+        body.put(value, start, end - start).put((byte) SOH);
+    }
+
+    private void putField(int tag, int value) {
+        putTag(tag);
+        AsciiEncoding.putInt(body, value);
+        body.put((byte) SOH);
+    }
+
+    private void putTag(int tag) {
+        AsciiEncoding.putInt(body, tag);
+        body.put((byte) '=');
+    }
+
+    private static int parseInt(byte[] bytes, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + bytes[i] - '0';
+        }
+        return value;
+    }
+
+    private static boolean matches(byte[] bytes, int start, int end, byte[] expected) {
+        if (end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (bytes[start + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
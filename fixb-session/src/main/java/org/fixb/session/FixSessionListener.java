@@ -0,0 +1,44 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.session;
+
+/**
+ * Receives the events of a FixSession. The listener is called by the thread driving the session (e.g. a FixReactor),
+ * which is the thread that may send messages from the callbacks.
+ *
+ * @author vladyslav.yatsenko
+ */
+public interface FixSessionListener {
+    /**
+     * Called when the Logon exchange has completed.
+     */
+    void onLogon(FixSession<?> session);
+
+    /**
+     * Called for each application message (and each session-level Reject) received in sequence. Both arguments are
+     * views of the receive buffer, which are only valid until the method returns (NativeFixSerializer.deserializeInto()
+     * decodes them without allocations).
+     *
+     * @param msgType the MsgType(35) of the message
+     * @param message the whole FIX message
+     */
+    void onMessage(FixSession<?> session, CharSequence msgType, CharSequence message);
+
+    /**
+     * Called when a logged on session is disconnected, after a Logout exchange or otherwise.
+     */
+    void onLogout(FixSession<?> session);
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.session;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A connection of a FixSession to its counterparty.
+ *
+ * @author vladyslav.yatsenko
+ */
+public interface FixTransport {
+    /**
+     * Writes the remaining bytes of the given buffer, which holds one complete FIX message. The bytes must be written
+     * or copied before the method returns, as the buffer is re-used for the next message. A transport that fails to
+     * write closes itself and notifies the session with FixSession.onDisconnected().
+     */
+    void write(ByteBuffer message);
+
+    /**
+     * Closes the connection. Closing a closed transport has no effect.
+     */
+    void close();
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.session;
+
+/**
+ * The tags and message types of the FIX session layer.
+ *
+ * @author vladyslav.yatsenko
+ */
+final class SessionConstants {
+    static final int BEGIN_SEQ_NO_TAG = 7;
+    static final int END_SEQ_NO_TAG = 16;
+    static final int NEW_SEQ_NO_TAG = 36;
+    static final int POSS_DUP_FLAG_TAG = 43;
+    static final int SENDER_COMP_ID_TAG = 49;
+    static final int TARGET_COMP_ID_TAG = 56;
+    static final int TEXT_TAG = 58;
+    static final int ENCRYPT_METHOD_TAG = 98;
+    static final int HEART_BT_INT_TAG = 108;
+    static final int TEST_REQ_ID_TAG = 112;
+    static final int ORIG_SENDING_TIME_TAG = 122;
+    static final int GAP_FILL_FLAG_TAG = 123;
+
+    static final byte HEARTBEAT = '0';
+    static final byte TEST_REQUEST = '1';
+    static final byte RESEND_REQUEST = '2';
+    static final byte REJECT = '3';
+    static final byte SEQUENCE_RESET = '4';
+    static final byte LOGOUT = '5';
+    static final byte LOGON = 'A';
+
+    private SessionConstants() {
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fixb.session;
+
+import org.fixb.impl.NativeFixSerializer;
+import org.fixb.meta.FixMetaScanner;
+import org.fixb.session.test.data.TestModels.NewOrder;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FixReactorTest {
+    private final NativeFixSerializer<NewOrder> serializer =
+            new NativeFixSerializer<>("FIX.4.4", FixMetaScanner.scanClassesIn("org.fixb.session.test.data"));
+
+    @Test
+    public void testSessionAgainstCounterpartySimulator() throws Exception {
+        // Given
+        final LatchListener acceptorListener = new LatchListener() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public void onMessage(FixSession<?> session, CharSequence msgType, CharSequence message) {
+                // the simulator echoes the orders back
+                final NewOrder order = serializer.deserialize(message.toString());
+                ((FixSession<NewOrder>) session).send(new NewOrder(order.clOrdId + "-ECHO", order.symbol));
+            }
+        };
+        final LatchListener initiatorListener = new LatchListener();
+        final FixSession<NewOrder> acceptor =
+                new FixSession<>(serializer, "BROKER", "CLIENT", 30, 1024, null, acceptorListener);
+        final FixSession<NewOrder> initiator =
+                new FixSession<>(serializer, "CLIENT", "BROKER", 30, 1024, null, initiatorListener);
+        final FixReactor reactor = new FixReactor(4096);
+        final InetSocketAddress address = reactor.listen(new InetSocketAddress("127.0.0.1", 0), acceptor);
+        reactor.connect(address, initiator);
+        final Thread thread = new Thread(reactor, "fix-reactor");
+        thread.start();
+
+        try {
+            // When
+            assertTrue(initiatorListener.logon.await(5, TimeUnit.SECONDS));
+            reactor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    initiator.send(new NewOrder("ORD-1", "EUR/USD"));
+                }
+            });
+
+            // Then
+            assertTrue(initiatorListener.message.await(5, TimeUnit.SECONDS));
+            assertEquals("ORD-1-ECHO", serializer.deserialize(initiatorListener.lastMessage).clOrdId);
+            assertEquals(FixSession.State.ACTIVE, acceptor.getState());
+
+            // When
+            reactor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    initiator.logout(null, System.currentTimeMillis());
+                }
+            });
+
+            // Then
+            assertTrue(initiatorListener.logout.await(5, TimeUnit.SECONDS));
+            assertTrue(acceptorListener.logout.await(5, TimeUnit.SECONDS));
+            assertEquals(4, initiator.getNextSenderSeqNum());
+            assertEquals(4, initiator.getNextTargetSeqNum());
+        } finally {
+            reactor.close();
+            thread.join(5000);
+        }
+    }
+
+    private static class LatchListener implements FixSessionListener {
+        final CountDownLatch logon = new CountDownLatch(1);
+        final CountDownLatch message = new CountDownLatch(1);
+        final CountDownLatch logout = new CountDownLatch(1);
+        volatile String lastMessage;
+
+        @Override
+        public void onLogon(FixSession<?> session) {
+            logon.countDown();
+        }
+
+        @Override
+        public void onMessage(FixSession<?> session, CharSequence msgType, CharSequence message) {
+            lastMessage = message.toString();
+            this.message.countDown();
+        }
+
+        @Override
+        public void onLogout(FixSession<?> session) {
+            logout.countDown();
+        }
+    }
+}
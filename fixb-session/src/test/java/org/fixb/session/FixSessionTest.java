@@ -0,0 +1,380 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fixb.session;
+
+import org.fixb.FixException;
+import org.fixb.impl.NativeFixSerializer;
+import org.fixb.journal.FixJournal;
+import org.fixb.meta.FixMetaScanner;
+import org.fixb.session.test.data.TestModels.NewOrder;
+import org.fixb.session.test.data.TestModels.RoutedOrder;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.fixb.impl.FormatConstants.SOH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FixSessionTest {
+    private static final String T0 = "52=19700101-00:00:00.000";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final NativeFixSerializer<NewOrder> serializer =
+            new NativeFixSerializer<>("FIX.4.4", FixMetaScanner.scanClassesIn("org.fixb.session.test.data"));
+    private final RecordingTransport transport = new RecordingTransport();
+    private final RecordingListener listener = new RecordingListener();
+
+    @Test
+    public void testInitiatorLogonAndMessages() {
+        // Given
+        final FixSession<NewOrder> session = newSession(null);
+        final long now = new DateTime(2013, 5, 14, 12, 34, 56, 789, DateTimeZone.UTC).getMillis();
+
+        // When
+        session.onConnected(transport, true, now);
+        receive(session, now, "35=A", "49=BROKER", "56=CLIENT", "34=1", T0, "98=0", "108=30");
+        final int seqNum = session.send(new NewOrder("ORD-1", "EUR/USD"), now);
+        receive(session, now, "35=D", "49=BROKER", "56=CLIENT", "34=2", T0, "11=ORD-2", "55=GBP/USD");
+
+        // Then
+        assertEquals(FixSession.State.ACTIVE, session.getState());
+        assertEquals(1, listener.logons);
+        assertEquals(2, seqNum);
+        assertEquals(3, session.getNextSenderSeqNum());
+        assertEquals(3, session.getNextTargetSeqNum());
+        assertEquals(2, transport.sent.size());
+        assertEquals(frame("35=A", "49=CLIENT", "56=BROKER", "34=1", "52=20130514-12:34:56.789", "98=0", "108=30"),
+                transport.sent.get(0));
+        assertEquals(frame("35=D", "49=CLIENT", "56=BROKER", "34=2", "52=20130514-12:34:56.789", "11=ORD-1", "55=EUR/USD"),
+                transport.sent.get(1));
+        assertEquals(1, listener.messages.size());
+        assertEquals(frame("35=D", "49=BROKER", "56=CLIENT", "34=2", T0, "11=ORD-2", "55=GBP/USD"), listener.messages.get(0));
+    }
+
+    @Test
+    public void testAcceptorLogonAdoptsHeartBtInt() {
+        // Given
+        final FixSession<NewOrder> session = newSession(null);
+
+        // When
+        session.onConnected(transport, false, 0);
+        receive(session, 0, "35=A", "49=BROKER", "56=CLIENT", "34=1", T0, "98=0", "108=10");
+
+        // Then
+        assertEquals(FixSession.State.ACTIVE, session.getState());
+        assertEquals(10, session.getHeartBtInt());
+        assertEquals(frame("35=A", "49=CLIENT", "56=BROKER", "34=1", T0, "98=0", "108=10"), transport.sent.get(0));
+    }
+
+    @Test
+    public void testGapTriggersResendRequest() {
+        // Given
+        final FixSession<NewOrder> session = loggedOn(null);
+
+        // When
+        receive(session, 0, "35=D", "49=BROKER", "56=CLIENT", "34=4", T0, "11=ORD-4", "55=EUR/USD");
+        receive(session, 0, "35=D", "49=BROKER", "56=CLIENT", "34=5", T0, "11=ORD-5", "55=EUR/USD");
+
+        // Then
+        assertEquals(2, transport.sent.size());
+        assertEquals(frame("35=2", "49=CLIENT", "56=BROKER", "34=2", T0, "7=2", "16=0"), transport.sent.get(1));
+        assertTrue(listener.messages.isEmpty());
+        assertEquals(2, session.getNextTargetSeqNum());
+
+        // When
+        receive(session, 0, "35=4", "49=BROKER", "56=CLIENT", "34=2", "43=Y", T0, "123=Y", "36=4");
+        receive(session, 0, "35=D", "49=BROKER", "56=CLIENT", "34=4", "43=Y", T0, "11=ORD-4", "55=EUR/USD");
+
+        // Then
+        assertEquals(5, session.getNextTargetSeqNum());
+        assertEquals(1, listener.messages.size());
+    }
+
+    @Test
+    public void testResendFromJournal() throws Exception {
+        // Given
+        try (FixJournal journal = FixJournal.open(folder.getRoot().toPath())) {
+            final FixSession<NewOrder> session = loggedOn(journal);
+            session.send(new NewOrder("ORD-1", "EUR/USD"), 1000);
+            session.send(new NewOrder("ORD-2", "GBP/USD"), 2000);
+            transport.sent.clear();
+
+            // When
+            receive(session, 3000, "35=2", "49=BROKER", "56=CLIENT", "34=2", T0, "7=1", "16=0");
+
+            // Then
+            assertEquals(3, transport.sent.size());
+            assertEquals(frame("35=4", "49=CLIENT", "56=BROKER", "34=1", "43=Y", "52=19700101-00:00:03.000", "123=Y", "36=2"),
+                    transport.sent.get(0));
+            assertEquals(frame("35=D", "49=CLIENT", "56=BROKER", "34=2", "43=Y", "52=19700101-00:00:03.000",
+                    "122=19700101-00:00:01.000", "11=ORD-1", "55=EUR/USD"), transport.sent.get(1));
+            assertEquals(frame("35=D", "49=CLIENT", "56=BROKER", "34=3", "43=Y", "52=19700101-00:00:03.000",
+                    "122=19700101-00:00:02.000", "11=ORD-2", "55=GBP/USD"), transport.sent.get(2));
+            assertEquals(4, session.getNextSenderSeqNum());
+        }
+    }
+
+    @Test
+    public void testSenderSeqNumSurvivesRestart() throws Exception {
+        // Given
+        try (FixJournal journal = FixJournal.open(folder.getRoot().toPath())) {
+            final FixSession<NewOrder> session = loggedOn(journal);
+            session.onTimer(30000);
+            assertEquals(3, session.getNextSenderSeqNum());
+        }
+        transport.sent.clear();
+
+        // When
+        try (FixJournal journal = FixJournal.open(folder.getRoot().toPath())) {
+            final FixSession<NewOrder> session = newSession(journal);
+            session.onConnected(transport, true, 0);
+            receive(session, 0, "35=A", "49=BROKER", "56=CLIENT", "34=1", T0, "98=0", "108=30");
+            receive(session, 0, "35=2", "49=BROKER", "56=CLIENT", "34=2", T0, "7=1", "16=0");
+
+            // Then
+            assertEquals(frame("35=A", "49=CLIENT", "56=BROKER", "34=3", T0, "98=0", "108=30"), transport.sent.get(0));
+            assertEquals(frame("35=4", "49=CLIENT", "56=BROKER", "34=1", "43=Y", T0, "123=Y", "36=4"),
+                    transport.sent.get(1));
+            assertEquals(2, transport.sent.size());
+            assertEquals(4, session.getNextSenderSeqNum());
+        }
+    }
+
+    @Test
+    public void testResendRequestIsHonouredWhileGapIsOpen() throws Exception {
+        // Given
+        try (FixJournal journal = FixJournal.open(folder.getRoot().toPath())) {
+            final FixSession<NewOrder> session = loggedOn(journal);
+            session.send(new NewOrder("ORD-1", "EUR/USD"), 1000);
+            transport.sent.clear();
+
+            // When
+            receive(session, 2000, "35=2", "49=BROKER", "56=CLIENT", "34=4", T0, "7=2", "16=0");
+
+            // Then
+            assertEquals(2, transport.sent.size());
+            assertEquals(frame("35=D", "49=CLIENT", "56=BROKER", "34=2", "43=Y", "52=19700101-00:00:02.000",
+                    "122=19700101-00:00:01.000", "11=ORD-1", "55=EUR/USD"), transport.sent.get(0));
+            assertEquals(frame("35=2", "49=CLIENT", "56=BROKER", "34=3", "52=19700101-00:00:02.000", "7=2", "16=0"),
+                    transport.sent.get(1));
+            assertEquals(2, session.getNextTargetSeqNum());
+        }
+    }
+
+    @Test
+    public void testHeartbeatsAndTestRequests() {
+        // Given
+        final FixSession<NewOrder> session = loggedOn(null);
+
+        // When
+        receive(session, 0, "35=1", "49=BROKER", "56=CLIENT", "34=2", T0, "112=TEST-1");
+        session.onTimer(30000);
+        session.onTimer(36000);
+        session.onTimer(60000);
+
+        // Then
+        assertEquals(4, transport.sent.size());
+        assertEquals(frame("35=0", "49=CLIENT", "56=BROKER", "34=2", T0, "112=TEST-1"), transport.sent.get(1));
+        assertEquals(frame("35=0", "49=CLIENT", "56=BROKER", "34=3", "52=19700101-00:00:30.000"), transport.sent.get(2));
+        assertEquals(frame("35=1", "49=CLIENT", "56=BROKER", "34=4", "52=19700101-00:00:36.000", "112=36000"),
+                transport.sent.get(3));
+        assertFalse(transport.closed);
+
+        // When
+        session.onTimer(66000);
+
+        // Then
+        assertEquals(FixSession.State.DISCONNECTED, session.getState());
+        assertTrue(transport.closed);
+        assertEquals(1, listener.logouts);
+    }
+
+    @Test
+    public void testMsgSeqNumTooLow() {
+        // Given
+        final FixSession<NewOrder> session = loggedOn(null);
+
+        // When
+        receive(session, 0, "35=D", "49=BROKER", "56=CLIENT", "34=1", "43=Y", T0, "11=ORD-1", "55=EUR/USD");
+
+        // Then
+        assertEquals(FixSession.State.ACTIVE, session.getState());
+        assertTrue(listener.messages.isEmpty());
+
+        // When
+        receive(session, 0, "35=D", "49=BROKER", "56=CLIENT", "34=1", T0, "11=ORD-1", "55=EUR/USD");
+
+        // Then
+        assertEquals(FixSession.State.DISCONNECTED, session.getState());
+        assertEquals(frame("35=5", "49=CLIENT", "56=BROKER", "34=2", T0, "58=MsgSeqNum too low, expecting 2 but received 1"),
+                transport.sent.get(1));
+        assertTrue(transport.closed);
+        assertEquals(1, listener.logouts);
+    }
+
+    @Test
+    public void testLogout() {
+        // Given
+        final FixSession<NewOrder> session = loggedOn(null);
+
+        // When
+        session.logout("Bye", 0);
+        receive(session, 0, "35=5", "49=BROKER", "56=CLIENT", "34=2", T0);
+
+        // Then
+        assertEquals(frame("35=5", "49=CLIENT", "56=BROKER", "34=2", T0, "58=Bye"), transport.sent.get(1));
+        assertEquals(2, transport.sent.size());
+        assertEquals(FixSession.State.DISCONNECTED, session.getState());
+        assertEquals(1, listener.logouts);
+    }
+
+    @Test
+    public void testPartialAndGarbledMessages() {
+        // Given
+        final FixSession<NewOrder> session = loggedOn(null);
+        final byte[] message = frame("35=D", "49=BROKER", "56=CLIENT", "34=2", T0, "11=ORD-2", "55=EUR/USD")
+                .getBytes(StandardCharsets.US_ASCII);
+        final ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+        // When
+        buffer.put(message, 0, 20).flip();
+        session.onData(buffer, 0);
+
+        // Then
+        assertEquals(0, buffer.position());
+
+        // When
+        buffer.compact().put(message, 20, message.length - 20);
+        message[message.length - 2]++;
+        buffer.put(message).flip();
+        session.onData(buffer, 0);
+
+        // Then
+        assertEquals(2 * message.length, buffer.position());
+        assertEquals(1, listener.messages.size());
+        assertEquals(3, session.getNextTargetSeqNum());
+
+        // When
+        buffer.clear();
+        buffer.put("garbage".getBytes(StandardCharsets.US_ASCII)).flip();
+        session.onData(buffer, 0);
+
+        // Then
+        assertEquals(FixSession.State.DISCONNECTED, session.getState());
+    }
+
+    @Test
+    public void testRejectMessagesBindingSessionTags() {
+        // Given
+        final FixSession<Object> session = new FixSession<>(
+                new NativeFixSerializer<>("FIX.4.4", FixMetaScanner.scanClassesIn("org.fixb.session.test.data")),
+                "CLIENT", "BROKER", 30, 1024, null, listener);
+        session.onConnected(transport, true, 0);
+        receive(session, 0, "35=A", "49=BROKER", "56=CLIENT", "34=1", T0, "98=0", "108=30");
+
+        // When
+        try {
+            session.send(new RoutedOrder("ORD-1", "CLIENT"), 0);
+            fail("FixException expected");
+        } catch (FixException e) {
+            // Then
+            assertTrue(e.getMessage().contains("Tag 49 is bound by " + RoutedOrder.class.getName()));
+        }
+        assertEquals(2, session.getNextSenderSeqNum());
+        assertEquals(1, transport.sent.size());
+    }
+
+    private FixSession<NewOrder> newSession(FixJournal journal) {
+        return new FixSession<>(serializer, "CLIENT", "BROKER", 30, 1024, journal, listener);
+    }
+
+    private FixSession<NewOrder> loggedOn(FixJournal journal) {
+        final FixSession<NewOrder> session = newSession(journal);
+        session.onConnected(transport, true, 0);
+        receive(session, 0, "35=A", "49=BROKER", "56=CLIENT", "34=1", T0, "98=0", "108=30");
+        return session;
+    }
+
+    private static void receive(FixSession<?> session, long now, String... fields) {
+        final ByteBuffer buffer = ByteBuffer.wrap(frame(fields).getBytes(StandardCharsets.US_ASCII));
+        session.onData(buffer, now);
+        assertFalse(buffer.hasRemaining());
+    }
+
+    private static String frame(String... fields) {
+        final StringBuilder body = new StringBuilder();
+        for (String field : fields) {
+            body.append(field).append(SOH);
+        }
+        final String message = "8=FIX.4.4" + SOH + "9=" + body.length() + SOH + body;
+        int sum = 0;
+        for (int i = 0; i < message.length(); i++) {
+            sum += message.charAt(i);
+        }
+        return message + String.format("10=%03d", sum % 256) + SOH;
+    }
+
+    private static class RecordingTransport implements FixTransport {
+        final List<String> sent = new ArrayList<>();
+        boolean closed;
+
+        @Override
+        public void write(ByteBuffer message) {
+            final byte[] bytes = new byte[message.remaining()];
+            message.get(bytes);
+            sent.add(new String(bytes, StandardCharsets.US_ASCII));
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static class RecordingListener implements FixSessionListener {
+        final List<String> messages = new ArrayList<>();
+        int logons;
+        int logouts;
+
+        @Override
+        public void onLogon(FixSession<?> session) {
+            logons++;
+        }
+
+        @Override
+        public void onMessage(FixSession<?> session, CharSequence msgType, CharSequence message) {
+            messages.add(message.toString());
+        }
+
+        @Override
+        public void onLogout(FixSession<?> session) {
+            logouts++;
+        }
+    }
+}
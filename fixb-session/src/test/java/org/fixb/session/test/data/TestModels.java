@@ -0,0 +1,49 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fixb.session.test.data;
+
+import org.fixb.annotations.FixField;
+import org.fixb.annotations.FixMessage;
+
+public final class TestModels {
+    @FixMessage(type = "D")
+    public static class NewOrder {
+        @FixField(tag = 11)
+        public final String clOrdId;
+        @FixField(tag = 55)
+        public final String symbol;
+
+        public NewOrder(@FixField(tag = 11) final String clOrdId, @FixField(tag = 55) final String symbol) {
+            this.clOrdId = clOrdId;
+            this.symbol = symbol;
+        }
+    }
+
+    @FixMessage(type = "G")
+    public static class RoutedOrder {
+        @FixField(tag = 11)
+        public final String clOrdId;
+        @FixField(tag = 49, header = true)
+        public final String senderCompId;
+
+        public RoutedOrder(@FixField(tag = 11) final String clOrdId,
+                           @FixField(tag = 49, header = true) final String senderCompId) {
+            this.clOrdId = clOrdId;
+            this.senderCompId = senderCompId;
+        }
+    }
+}
@@ -16,6 +16,8 @@
 
 package org.fixb;
 
+import java.util.Arrays;
+
 /**
  * A namespace for FIX protocol related constants used in the implementations of FixAdapter.
  *
@@ -25,8 +27,21 @@ public final class FixConstants {
     public static final int BEGIN_STRING_TAG = 8;
     public static final int BODY_LENGTH_TAG = 9;
     public static final int MSG_TYPE_TAG = 35;
+    public static final int MSG_SEQ_NUM_TAG = 34;
+    public static final int SENDING_TIME_TAG = 52;
     public static final int CHECKSUM_TAG = 10;
 
+    // the tags of the standard header of FIX 4.x and FIXT.1.1, sorted
+    private static final int[] HEADER_TAGS = {8, 9, 34, 35, 43, 49, 50, 52, 56, 57, 90, 91, 97, 115, 116, 122, 128, 129,
+            142, 143, 144, 145, 212, 213, 347, 369, 627, 628, 629, 630, 1128, 1129, 1156};
+
     private FixConstants() {
     }
+
+    /**
+     * @return true if the given tag belongs to the standard header (e.g. SenderCompID(49) or SendingTime(52)).
+     */
+    public static boolean isHeaderTag(int tag) {
+        return Arrays.binarySearch(HEADER_TAGS, tag) >= 0;
+    }
 }
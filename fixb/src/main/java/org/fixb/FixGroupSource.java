@@ -0,0 +1,34 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb;
+
+/**
+ * A source of the entries of a FIX repeating group with a known number of entries, which can be used as the type of a
+ * group field instead of a collection. The entries are obtained from a new iterator on every traversal, so a source
+ * may generate or read them on the fly (e.g. from a cursor over reference data) instead of holding them in memory.
+ *
+ * Encoders may traverse a source more than once per message, hence every iterator must return the same
+ * {@link #size()} entries. Groups bound to fields of this type are decoded lazily, just like groups bound to Iterable.
+ *
+ * @param <E> the type of the group entries
+ * @author vladyslav.yatsenko
+ */
+public interface FixGroupSource<E> extends Iterable<E> {
+    /**
+     * @return the number of entries returned by each iterator of this source.
+     */
+    int size();
+}
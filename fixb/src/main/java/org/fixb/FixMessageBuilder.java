@@ -16,6 +16,7 @@
 
 package org.fixb;
 
+import org.fixb.meta.FixBlockMeta;
 import org.fixb.meta.FixFieldMeta;
 import org.joda.time.*;
 
@@ -70,6 +71,17 @@ public abstract class FixMessageBuilder<M> {
      */
     public abstract FixMessageBuilder<M> setField(int tag, int value, boolean header);
 
+    /**
+     * Sets the field identified by the given tag to the given <tt>long</tt> tag. By default the value is converted to
+     * a String, implementations that can write numbers directly should override this method.
+     *
+     * @param header identifies whether the field is a header field
+     * @return the current builder instance.
+     */
+    public FixMessageBuilder<M> setField(int tag, long value, boolean header) {
+        return setField(tag, String.valueOf(value), header);
+    }
+
     /**
      * Sets the field identified by the given tag to the given <tt>double</tt> tag.
      *
@@ -147,6 +159,17 @@ public abstract class FixMessageBuilder<M> {
      */
     public abstract FixMessageBuilder<M> setField(int tag, String value, boolean header);
 
+    /**
+     * Sets the field identified by the given tag to the given <tt>CharSequence</tt> tag. By default the value is
+     * converted to a String, implementations that can write character sequences directly should override this method.
+     *
+     * @param header identifies whether the field is a header field
+     * @return the current builder instance.
+     */
+    public FixMessageBuilder<M> setField(int tag, CharSequence value, boolean header) {
+        return setField(tag, value.toString(), header);
+    }
+
     /**
      * Sets the field identified by the given tag to the given <tt>enum</tt> tag.
      *
@@ -178,6 +201,32 @@ public abstract class FixMessageBuilder<M> {
                                                    Collection<?> collection,
                                                    boolean header);
 
+    /**
+     * Sets the repeating groups identified by the given tag, whose entries are FIX blocks described by the given
+     * metadata. By default it is the same as {@link #setGroups(int, java.util.List, java.util.Collection, boolean)}
+     * with the fields of the block, i.e. the unknown fields held by the entries (see
+     * org.fixb.annotations.FixUnknownFields) are dropped; implementations that can copy raw fields should override
+     * this method to write them at the end of each entry.
+     *
+     * @return the current builder instance.
+     */
+    public FixMessageBuilder<M> setGroups(int tag, FixBlockMeta<?> componentMeta, Collection<?> collection, boolean header) {
+        return setGroups(tag, componentMeta.getFields(), collection, header);
+    }
+
+    /**
+     * Adds the given unknown fields (see org.fixb.annotations.FixUnknownFields) to the message body. By default each
+     * field is set as a CharSequence, implementations that can copy raw fields directly should override this method.
+     *
+     * @return the current builder instance.
+     */
+    public FixMessageBuilder<M> setUnknownFields(UnknownFields fields) {
+        for (int i = 0; i < fields.size(); i++) {
+            setField(fields.getTag(i), fields.getValue(i), false);
+        }
+        return this;
+    }
+
     /**
      * This is a convenience method that sets the given field in the message body.
      */
@@ -194,10 +243,14 @@ public abstract class FixMessageBuilder<M> {
     public FixMessageBuilder<M> setField(int tag, Object value, boolean header) {
         if (value instanceof String) {
             setField(tag, (String) value, header);
+        } else if (value instanceof CharSequence) {
+            setField(tag, (CharSequence) value, header);
         } else if (value instanceof Character) {
             setField(tag, ((Character) value).charValue(), header);
         } else if (value instanceof Integer) {
             setField(tag, ((Integer) value).intValue(), header);
+        } else if (value instanceof Long) {
+            setField(tag, ((Long) value).longValue(), header);
         } else if (value instanceof Double) {
             setField(tag, ((Double) value).doubleValue(), header);
         } else if (value instanceof BigDecimal) {
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb;
+
+import java.util.Arrays;
+
+import static org.fixb.impl.FormatConstants.SOH;
+
+/**
+ * Holds the FIX fields of a message that are not mapped by its class (see org.fixb.annotations.FixUnknownFields) as
+ * raw slices of the original message: only the bounds and the tags of the fields are stored, the values are neither
+ * copied nor converted. Consequently the original message must not be modified while the fields are in use.
+ *
+ * Fields with the tags of the standard header (e.g. SenderCompID(49) or SendingTime(52)) are marked as header fields,
+ * so that they are written back to the header of a message rather than after its body.
+ *
+ * An instance held by an object that is re-used for many messages (see NativeFixSerializer.deserializeInto()) is
+ * cleared and re-filled, which does not allocate as long as the number of unknown fields doesn't grow.
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class UnknownFields {
+    private CharSequence source;
+    private int size;
+    private int[] tags = new int[4];
+    private int[] starts = new int[4];
+    private int[] ends = new int[4];
+    private boolean[] headers = new boolean[4];
+
+    /**
+     * Removes all the fields.
+     */
+    public void clear() {
+        source = null;
+        size = 0;
+    }
+
+    /**
+     * Adds a field of the given message.
+     *
+     * @param fixMessage the message containing the field (all the fields of an instance must be of the same message)
+     * @param tag        the tag of the field
+     * @param start      the index of the first character of the field (i.e. of its tag) in the message
+     * @param end        the index after the field delimiter in the message
+     */
+    public void add(CharSequence fixMessage, int tag, int start, int end) {
+        if (source != null && source != fixMessage) {
+            throw new IllegalArgumentException("All unknown fields must be of the same message");
+        }
+        if (size == tags.length) {
+            tags = Arrays.copyOf(tags, size * 2);
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+            headers = Arrays.copyOf(headers, size * 2);
+        }
+        source = fixMessage;
+        tags[size] = tag;
+        starts[size] = start;
+        ends[size] = end;
+        headers[size] = FixConstants.isHeaderTag(tag);
+        size++;
+    }
+
+    /**
+     * @return the number of fields.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the tag of the field at the given index.
+     */
+    public int getTag(int index) {
+        checkIndex(index);
+        return tags[index];
+    }
+
+    /**
+     * @return true if the field at the given index is a standard header field.
+     */
+    public boolean isHeader(int index) {
+        checkIndex(index);
+        return headers[index];
+    }
+
+    /**
+     * @return the value of the field at the given index as a view of the original message.
+     */
+    public CharSequence getValue(int index) {
+        checkIndex(index);
+        int valueStart = starts[index];
+        while (source.charAt(valueStart) != '=') {
+            valueStart++;
+        }
+        valueStart++;
+        int valueEnd = ends[index];
+        if (valueEnd > valueStart && source.charAt(valueEnd - 1) == SOH) {
+            valueEnd--;
+        }
+        return source.subSequence(valueStart, valueEnd);
+    }
+
+    /**
+     * @return the value of the first field with the given tag or null if there is no such field.
+     */
+    public CharSequence get(int tag) {
+        for (int i = 0; i < size; i++) {
+            if (tags[i] == tag) {
+                return getValue(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Appends the raw fields, including their delimiters, to the given buffer.
+     */
+    public StringBuilder appendTo(StringBuilder buffer) {
+        for (int i = 0; i < size; i++) {
+            append(buffer, i);
+        }
+        return buffer;
+    }
+
+    /**
+     * Appends either the raw header fields or the raw body fields, including their delimiters, to the given buffer.
+     */
+    public StringBuilder appendTo(StringBuilder buffer, boolean header) {
+        for (int i = 0; i < size; i++) {
+            if (headers[i] == header) {
+                append(buffer, i);
+            }
+        }
+        return buffer;
+    }
+
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder()).toString();
+    }
+
+    private void append(StringBuilder buffer, int i) {
+        if (ends[i] > starts[i] && source.charAt(ends[i] - 1) != SOH) {
+            buffer.append(source, starts[i], ends[i]).append(SOH);
+        } else {
+            buffer.append(source, starts[i], ends[i]);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+}
@@ -81,18 +81,18 @@ public abstract class AbstractMetaFixAdapter<T, M> implements FixAdapter<T, M> {
                 if (fieldMeta.isGroup()) {
                     FixGroupMeta groupMeta = (FixGroupMeta) fieldMeta;
                     if (groupMeta.isSimple()) {
-                        fieldValue = fixFieldExtractor.getGroups(fixMessage,
-                                (Class<Collection<Object>>) groupMeta.getType(),
+                        fieldValue = groupMeta.toFieldValue(fixFieldExtractor.getGroups(fixMessage,
+                                (Class<Collection<Object>>) groupMeta.getCollectionType(),
                                 groupMeta.getTag(),
                                 (Class<Object>) groupMeta.getComponentType(),
                                 groupMeta.getComponentTag(),
-                                groupMeta.isOptional());
+                                groupMeta.isOptional()));
                     } else {
-                        fieldValue = fixFieldExtractor.getGroups(fixMessage,
-                                (Class<Collection<Object>>) groupMeta.getType(),
+                        fieldValue = groupMeta.toFieldValue(fixFieldExtractor.getGroups(fixMessage,
+                                (Class<Collection<Object>>) groupMeta.getCollectionType(),
                                 groupMeta.getTag(),
                                 (FixBlockMeta<Object>) groupMeta.getComponentMeta(),
-                                groupMeta.isOptional());
+                                groupMeta.isOptional()));
                     }
                 } else {
                     fieldValue = fixFieldExtractor.getFieldValue(fixMessage,
@@ -114,9 +114,16 @@ public abstract class AbstractMetaFixAdapter<T, M> implements FixAdapter<T, M> {
         final FixMessageBuilder<M> builder = fixMessageBuilder.create()
                 .setField(FixConstants.BEGIN_STRING_TAG, protocolVersion, true);
 
+        // the unknown fields precede the groups of components, otherwise they would be taken for fields of the last
+        // group entry when the message is decoded
+        UnknownFields unknownFields = fixMeta.getUnknownFields(data);
         for (FixFieldMeta fieldMeta : fixMeta.getFields()) {
             if (fieldMeta.isGroup()) {
                 FixGroupMeta groupMeta = (FixGroupMeta) fieldMeta;
+                if (!groupMeta.isSimple() && unknownFields != null) {
+                    setUnknownFields(builder, unknownFields);
+                    unknownFields = null;
+                }
                 Collection<?> value = groupMeta.getValue(data);
                 if (!groupMeta.isOptional() && (value == null || value.isEmpty())) {
                     throw new FixException("Non-empty tag is required for FIX group " + groupMeta.getTag());
@@ -125,7 +132,7 @@ public abstract class AbstractMetaFixAdapter<T, M> implements FixAdapter<T, M> {
                     builder.setGroups(groupMeta.getTag(), groupMeta.getComponentTag(), value, groupMeta.isHeader());
                 } else {
                     builder.setGroups(groupMeta.getTag(),
-                            groupMeta.getComponentMeta().getFields(),
+                            groupMeta.getComponentMeta(),
                             value,
                             groupMeta.isHeader());
                 }
@@ -138,6 +145,16 @@ public abstract class AbstractMetaFixAdapter<T, M> implements FixAdapter<T, M> {
             }
         }
 
+        if (unknownFields != null) {
+            setUnknownFields(builder, unknownFields);
+        }
+
         return builder.build();
     }
+
+    private static void setUnknownFields(FixMessageBuilder<?> builder, UnknownFields unknownFields) {
+        if (!unknownFields.isEmpty()) {
+            builder.setUnknownFields(unknownFields);
+        }
+    }
 }
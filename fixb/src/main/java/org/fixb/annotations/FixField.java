@@ -48,4 +48,11 @@ public @interface FixField {
      * True if the field is optional, false otherwise.
      */
     boolean optional() default false;
+
+    /**
+     * True if decoded values should be canonical instances taken from a bounded intern table. This is meant for
+     * String (or CharSequence) fields with a small set of values, e.g. Symbol(55) or Currency(15), which are then
+     * decoded without allocation.
+     */
+    boolean intern() default false;
 }
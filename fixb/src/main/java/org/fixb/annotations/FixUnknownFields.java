@@ -0,0 +1,42 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * When used in front of a field of type org.fixb.UnknownFields of a class annotated with @FixMessage, the fields of
+ * the decoded messages that are not mapped by the class (e.g. custom counterparty tags) are captured in that field
+ * without any conversion, and are written back verbatim when the object is encoded: the standard header fields at
+ * the end of the header, the others at the end of the message body or, if the message has groups of components, ahead
+ * of the first such group. This makes a decode/encode round-trip lossless without keeping the original message.
+ *
+ * The component class of a repeating group can declare such a field as well, in which case it captures the unmapped
+ * fields inside each group entry (an unmapped field that follows a group entry is taken for a field of that entry),
+ * and they are written back at the end of the entry.
+ *
+ * The annotated field is set by field injection even if the class is bound by a constructor, so it should not be
+ * final.
+ *
+ * @author vladyslav.yatsenko
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface FixUnknownFields {
+}
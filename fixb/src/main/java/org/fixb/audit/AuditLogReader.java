@@ -0,0 +1,212 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.audit;
+
+import org.fixb.FixException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static org.fixb.audit.AuditLogWriter.*;
+
+/**
+ * Reads the messages of an audit log written by AuditLogWriter. The index of the blocks is loaded when the log is
+ * opened, and a lookup decompresses only the blocks whose range of timestamps or MsgSeqNums overlaps with the requested
+ * one. A log that is still being written can be read up to the last block indexed when it was opened.
+ *
+ * Instances are not thread-safe.
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class AuditLogReader implements Closeable {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final FileChannel log;
+    private final Inflater inflater = new Inflater();
+    private final int blockCount;
+    private final long[] offsets;
+    private final int[] compressedLengths;
+    private final int[] rawLengths;
+    private final int[] messageCounts;
+    private final int[] minSeqNums;
+    private final int[] maxSeqNums;
+    private final long[] minTimestamps;
+    private final long[] maxTimestamps;
+    private int inflatedBlocks;
+
+    /**
+     * Opens the given audit log.
+     *
+     * @throws IOException  if the log or its index can't be read.
+     * @throws FixException if the files are not an audit log.
+     */
+    public static AuditLogReader open(Path file) throws IOException {
+        final ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(indexFile(file)));
+        if (index.remaining() < HEADER_SIZE || index.getInt() != MAGIC || index.getInt() != VERSION) {
+            throw new FixException("Not an audit log index: " + indexFile(file));
+        }
+        return new AuditLogReader(FileChannel.open(file, READ), index);
+    }
+
+    private AuditLogReader(FileChannel log, ByteBuffer index) {
+        this.log = log;
+        // a partial entry at the end (of a block being indexed) is ignored
+        this.blockCount = index.remaining() / INDEX_ENTRY_SIZE;
+        this.offsets = new long[blockCount];
+        this.compressedLengths = new int[blockCount];
+        this.rawLengths = new int[blockCount];
+        this.messageCounts = new int[blockCount];
+        this.minSeqNums = new int[blockCount];
+        this.maxSeqNums = new int[blockCount];
+        this.minTimestamps = new long[blockCount];
+        this.maxTimestamps = new long[blockCount];
+        for (int i = 0; i < blockCount; i++) {
+            offsets[i] = index.getLong();
+            compressedLengths[i] = index.getInt();
+            rawLengths[i] = index.getInt();
+            messageCounts[i] = index.getInt();
+            minSeqNums[i] = index.getInt();
+            maxSeqNums[i] = index.getInt();
+            minTimestamps[i] = index.getLong();
+            maxTimestamps[i] = index.getLong();
+        }
+    }
+
+    /**
+     * @return the number of blocks of the log.
+     */
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * @return the number of messages of the log.
+     */
+    public long getMessageCount() {
+        long count = 0;
+        for (int i = 0; i < blockCount; i++) {
+            count += messageCounts[i];
+        }
+        return count;
+    }
+
+    /**
+     * Finds the messages recorded within the given inclusive range of timestamps.
+     *
+     * @return the messages in the order they were recorded.
+     */
+    public List<AuditRecord> readBetween(long fromTimestamp, long toTimestamp) throws IOException {
+        final List<AuditRecord> result = new ArrayList<>();
+        for (int i = 0; i < blockCount; i++) {
+            if (minTimestamps[i] <= toTimestamp && maxTimestamps[i] >= fromTimestamp) {
+                final ByteBuffer block = inflate(i);
+                while (block.hasRemaining()) {
+                    final AuditRecord record = next(block);
+                    if (record.getTimestamp() >= fromTimestamp && record.getTimestamp() <= toTimestamp) {
+                        result.add(record);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the messages of the given direction within the given inclusive range of MsgSeqNums.
+     *
+     * @return the messages in the order they were recorded (including any resent duplicates).
+     */
+    public List<AuditRecord> readSeqNums(Direction direction, int fromSeqNum, int toSeqNum) throws IOException {
+        final List<AuditRecord> result = new ArrayList<>();
+        for (int i = 0; i < blockCount; i++) {
+            if (minSeqNums[i] <= toSeqNum && maxSeqNums[i] >= fromSeqNum) {
+                final ByteBuffer block = inflate(i);
+                while (block.hasRemaining()) {
+                    final AuditRecord record = next(block);
+                    if (record.getDirection() == direction && record.getSeqNum() >= fromSeqNum
+                            && record.getSeqNum() <= toSeqNum) {
+                        result.add(record);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return all the messages of the log in the order they were recorded.
+     */
+    public List<AuditRecord> readAll() throws IOException {
+        return readBetween(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        log.close();
+    }
+
+    /**
+     * @return the number of blocks decompressed so far.
+     */
+    int getInflatedBlocks() {
+        return inflatedBlocks;
+    }
+
+    private ByteBuffer inflate(int block) throws IOException {
+        final ByteBuffer compressed = ByteBuffer.allocate(compressedLengths[block]);
+        long position = offsets[block];
+        while (compressed.hasRemaining()) {
+            final int n = log.read(compressed, position);
+            if (n < 0) {
+                throw new FixException("Audit log is truncated at block " + block);
+            }
+            position += n;
+        }
+        final byte[] raw = new byte[rawLengths[block]];
+        inflater.reset();
+        inflater.setInput(compressed.array());
+        try {
+            if (inflater.inflate(raw) != raw.length || !inflater.finished()) {
+                throw new FixException("Corrupted audit log block " + block);
+            }
+        } catch (DataFormatException e) {
+            throw new FixException("Corrupted audit log block " + block, e);
+        }
+        inflatedBlocks++;
+        return ByteBuffer.wrap(raw);
+    }
+
+    private static AuditRecord next(ByteBuffer block) {
+        final Direction direction = DIRECTIONS[block.get()];
+        final int seqNum = block.getInt();
+        final long timestamp = block.getLong();
+        final int length = block.getInt();
+        final String message = new String(block.array(), block.position(), length, StandardCharsets.US_ASCII);
+        block.position(block.position() + length);
+        return new AuditRecord(direction, seqNum, timestamp, message);
+    }
+}
@@ -0,0 +1,428 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.audit;
+
+import org.fixb.FixException;
+import org.fixb.impl.AsciiString;
+import org.fixb.impl.FieldCursor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.Deflater;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.fixb.FixConstants.MSG_SEQ_NUM_TAG;
+
+/**
+ * Writes every raw inbound and outbound message of a FIX connection to a compressed audit log without slowing down the
+ * threads that send and receive the messages. The log is read by AuditLogReader.
+ *
+ * record() only copies the given bytes into a preallocated slot of a ring buffer and publishes the slot; it neither
+ * locks nor allocates, and several threads may record concurrently. A single writer thread takes the messages in the
+ * order their slots were claimed, extracts their MsgSeqNum(34) and collects them into blocks, which are compressed
+ * with a Deflater and appended to the log file once they reach the block size (or after the flush interval elapses).
+ * A block is described by an entry of the index file (the log file name followed by ".idx"), which holds its position,
+ * message count and the ranges of the timestamps and MsgSeqNums of its messages, so that a range of the log is read
+ * back by decompressing only the blocks that overlap with it.
+ *
+ * The layout of the files is:
+ * <pre>
+ *     log:   magic, version, blocks (each a Deflater stream of records: direction, seqnum, timestamp, length, bytes)
+ *     index: magic, version, an entry per block: offset, compressed length, raw length, message count,
+ *            min/max MsgSeqNum, min/max timestamp
+ * </pre>
+ * An entry is appended to the index only after its block has been written, so a log cut short by a crash remains
+ * readable up to its last complete block.
+ *
+ * When the ring buffer is full, record() waits for the writer thread to catch up (which is when a slow disk shows up
+ * on the recording threads), hence it should be sized for the longest expected burst. If the files fail, the writer
+ * thread discards the remaining messages so that record() never blocks for good; the failure is thrown by subsequent
+ * record() calls and by close().
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class AuditLogWriter implements Closeable {
+    /**
+     * The default uncompressed size of a block.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 64 << 10;
+
+    /**
+     * The default interval after which a partial block is written (in milliseconds).
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
+    static final int MAGIC = 0x46415544;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_HEADER_SIZE = 17;
+    static final int INDEX_ENTRY_SIZE = 44;
+
+    // the bit of the claim counter set once the writer is closed, so that no slot can be claimed after that
+    private static final long CLOSED = Long.MIN_VALUE;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final FileChannel log;
+    private final FileChannel index;
+    private final int mask;
+    private final int maxMessageLength;
+    private final long flushInterval;
+    private final byte[][] slots;
+    private final int[] lengths;
+    private final long[] timestamps;
+    private final byte[] directions;
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final Thread writer;
+    private volatile Exception failure;
+
+    // the state of the writer thread
+    private final ByteBuffer block;
+    private final ByteBuffer compressed;
+    private final ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final AsciiString view = new AsciiString();
+    private long position = HEADER_SIZE;
+    private int blockMessages;
+    private int minSeqNum;
+    private int maxSeqNum;
+    private long minTimestamp;
+    private long maxTimestamp;
+    private long blockStart;
+
+    /**
+     * The same as the alternative constructor, but uses DEFAULT_BLOCK_SIZE and DEFAULT_FLUSH_INTERVAL.
+     */
+    public AuditLogWriter(Path file, int capacity, int maxMessageLength, ThreadFactory threadFactory) throws IOException {
+        this(file, capacity, maxMessageLength, DEFAULT_BLOCK_SIZE, DEFAULT_FLUSH_INTERVAL, threadFactory);
+    }
+
+    /**
+     * @param file             the log file (it is overwritten if it exists, as is its index)
+     * @param capacity         the number of messages the ring buffer holds, a power of two
+     * @param maxMessageLength the maximum length of a recorded message in bytes
+     * @param blockSize        the uncompressed size a block is written at
+     * @param flushInterval    the time in milliseconds after which a partial block is written
+     * @param threadFactory    a factory of the writer thread
+     */
+    public AuditLogWriter(Path file,
+                          int capacity,
+                          int maxMessageLength,
+                          int blockSize,
+                          long flushInterval,
+                          ThreadFactory threadFactory) throws IOException {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        if (maxMessageLength <= 0 || blockSize <= 0) {
+            throw new IllegalArgumentException("maxMessageLength and blockSize must be positive");
+        }
+        this.mask = capacity - 1;
+        this.maxMessageLength = maxMessageLength;
+        this.flushInterval = flushInterval;
+        this.slots = new byte[capacity][maxMessageLength];
+        this.lengths = new int[capacity];
+        this.timestamps = new long[capacity];
+        this.directions = new byte[capacity];
+        this.published = new AtomicLongArray(capacity);
+        this.block = ByteBuffer.allocate(blockSize + RECORD_HEADER_SIZE + maxMessageLength);
+        this.compressed = ByteBuffer.allocate(block.capacity() + block.capacity() / 100 + 64);
+
+        this.log = FileChannel.open(file, CREATE, WRITE, TRUNCATE_EXISTING);
+        this.index = FileChannel.open(indexFile(file), CREATE, WRITE, TRUNCATE_EXISTING);
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        writeFully(log, header);
+        header.rewind();
+        writeFully(index, header);
+
+        this.writer = threadFactory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                writeAll();
+            }
+        });
+    }
+
+    /**
+     * @return the index file of the given log file.
+     */
+    public static Path indexFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".idx");
+    }
+
+    /**
+     * Starts the writer thread.
+     */
+    public void start() {
+        writer.start();
+    }
+
+    /**
+     * Records the given message, which is copied before this method returns.
+     *
+     * @param direction the direction of the message
+     * @param message   an array holding the raw message
+     * @param offset    the position of the message in the array
+     * @param length    the length of the message
+     * @param timestamp the time of the message in milliseconds since the epoch
+     * @throws IndexOutOfBoundsException if the offset or the length are out of the bounds of the array.
+     * @throws IllegalArgumentException if the message is longer than the maximum length.
+     * @throws FixException if the writer has failed or is closed.
+     */
+    public void record(Direction direction, byte[] message, int offset, int length, long timestamp) {
+        if (offset < 0 || length < 0 || offset > message.length - length) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length + ", size: " + message.length);
+        }
+        final long sequence = claim(length);
+        boolean copied = false;
+        try {
+            System.arraycopy(message, offset, slots[(int) sequence & mask], 0, length);
+            copied = true;
+        } finally {
+            publish(sequence, direction, copied ? length : -1, timestamp);
+        }
+    }
+
+    /**
+     * The same as {@link #record(Direction, byte[], int, int, long)}, but records the bytes from the position to the
+     * limit of the given buffer, which is left unchanged.
+     */
+    public void record(Direction direction, ByteBuffer message, long timestamp) {
+        final int length = message.remaining();
+        final long sequence = claim(length);
+        boolean copied = false;
+        try {
+            message.duplicate().get(slots[(int) sequence & mask], 0, length);
+            copied = true;
+        } finally {
+            publish(sequence, direction, copied ? length : -1, timestamp);
+        }
+    }
+
+    /**
+     * The same as {@link #record(Direction, byte[], int, int, long)}, but records the given ASCII message.
+     */
+    public void record(Direction direction, CharSequence message, long timestamp) {
+        final int length = message.length();
+        final long sequence = claim(length);
+        boolean copied = false;
+        try {
+            final byte[] bytes = slots[(int) sequence & mask];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = (byte) message.charAt(i);
+            }
+            copied = true;
+        } finally {
+            publish(sequence, direction, copied ? length : -1, timestamp);
+        }
+    }
+
+    /**
+     * @return the number of messages recorded but not yet taken by the writer thread.
+     */
+    public int pending() {
+        return (int) ((claimed.get() & ~CLOSED) - consumed.get());
+    }
+
+    /**
+     * Writes the messages recorded so far and the last partial block, stops the writer thread and closes the files.
+     *
+     * @throws IOException if the files have failed.
+     */
+    @Override
+    public void close() throws IOException {
+        long claims;
+        while ((claims = claimed.get()) >= 0 && !claimed.compareAndSet(claims, claims | CLOSED)) {
+            // retry
+        }
+        try {
+            if (writer.getState() == Thread.State.NEW) {
+                writeAll();
+            } else {
+                writer.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing the audit log", e);
+        }
+        final Exception e = failure;
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        } else if (e != null) {
+            throw (RuntimeException) e;
+        }
+    }
+
+    /**
+     * Claims the next slot of the ring buffer, waiting for the writer thread to free it if necessary. A claimed slot
+     * must be published, even if the message can't be copied into it, since the writer thread takes the slots in order.
+     *
+     * @return the sequence of the claimed slot.
+     */
+    private long claim(int length) {
+        if (length > maxMessageLength) {
+            throw new IllegalArgumentException("Message length " + length + " exceeds " + maxMessageLength);
+        }
+        if (failure != null) {
+            throw new FixException("Audit log is failed", failure);
+        }
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence < 0) {
+                throw new FixException("Audit log is closed");
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        while (sequence - consumed.get() > mask) {
+            Thread.yield();
+        }
+        return sequence;
+    }
+
+    private void publish(long sequence, Direction direction, int length, long timestamp) {
+        final int slot = (int) sequence & mask;
+        lengths[slot] = length;
+        timestamps[slot] = timestamp;
+        directions[slot] = (byte) direction.ordinal();
+        // the ordered write makes the contents of the slot visible to the writer thread before its sequence
+        published.lazySet(slot, sequence + 1);
+    }
+
+    private void writeAll() {
+        long next = consumed.get();
+        while (true) {
+            final int slot = (int) next & mask;
+            if (published.get(slot) == next + 1) {
+                if (failure == null && lengths[slot] >= 0) {
+                    try {
+                        append(slot);
+                    } catch (IOException | RuntimeException e) {
+                        failure = e;
+                    }
+                }
+                consumed.lazySet(++next);
+                continue;
+            }
+            final long claims = claimed.get();
+            if (claims < 0 && next == (claims & ~CLOSED)) {
+                break;
+            }
+            if (failure == null && block.position() > 0 && System.currentTimeMillis() - blockStart >= flushInterval) {
+                tryWriteBlock();
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        if (failure == null && block.position() > 0) {
+            tryWriteBlock();
+        }
+        deflater.end();
+        try {
+            log.close();
+            index.close();
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+    }
+
+    private void append(int slot) throws IOException {
+        final int length = lengths[slot];
+        final byte[] bytes = slots[slot];
+        final int seqNum = seqNum(bytes, length);
+        final long timestamp = timestamps[slot];
+        if (block.position() == 0) {
+            blockStart = System.currentTimeMillis();
+            minSeqNum = maxSeqNum = seqNum;
+            minTimestamp = maxTimestamp = timestamp;
+        } else {
+            minSeqNum = Math.min(minSeqNum, seqNum);
+            maxSeqNum = Math.max(maxSeqNum, seqNum);
+            minTimestamp = Math.min(minTimestamp, timestamp);
+            maxTimestamp = Math.max(maxTimestamp, timestamp);
+        }
+        block.put(directions[slot]).putInt(seqNum).putLong(timestamp).putInt(length).put(bytes, 0, length);
+        blockMessages++;
+        if (block.position() >= block.capacity() - RECORD_HEADER_SIZE - maxMessageLength) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * @return the MsgSeqNum(34) of the given message or 0 if it has none or if it is malformed (the message is audited
+     *         nevertheless).
+     */
+    private int seqNum(byte[] bytes, int length) {
+        final FieldCursor cursor = FieldCursor.create(view.wrap(bytes, 0, length));
+        try {
+            return cursor.nextField(MSG_SEQ_NUM_TAG) ? cursor.lastValueAsInt() : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void tryWriteBlock() {
+        try {
+            writeBlock();
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        final int rawLength = block.position();
+        deflater.reset();
+        deflater.setInput(block.array(), 0, rawLength);
+        deflater.finish();
+        compressed.clear();
+        while (!deflater.finished()) {
+            final int n = deflater.deflate(compressed.array(), compressed.position(), compressed.remaining());
+            compressed.position(compressed.position() + n);
+            if (!deflater.finished() && !compressed.hasRemaining()) {
+                throw new IllegalStateException("Block of " + rawLength + " bytes doesn't compress into " + compressed.capacity());
+            }
+        }
+        compressed.flip();
+        final int compressedLength = compressed.remaining();
+        writeFully(log, compressed);
+
+        entry.clear();
+        entry.putLong(position).putInt(compressedLength).putInt(rawLength).putInt(blockMessages)
+                .putInt(minSeqNum).putInt(maxSeqNum).putLong(minTimestamp).putLong(maxTimestamp).flip();
+        writeFully(index, entry);
+        position += compressedLength;
+        blockMessages = 0;
+        block.clear();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
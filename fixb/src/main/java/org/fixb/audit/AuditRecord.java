@@ -0,0 +1,68 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.audit;
+
+/**
+ * A message read from an audit log.
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class AuditRecord {
+    private final Direction direction;
+    private final int seqNum;
+    private final long timestamp;
+    private final String message;
+
+    AuditRecord(Direction direction, int seqNum, long timestamp, String message) {
+        this.direction = direction;
+        this.seqNum = seqNum;
+        this.timestamp = timestamp;
+        this.message = message;
+    }
+
+    /**
+     * @return the direction of the message.
+     */
+    public Direction getDirection() {
+        return direction;
+    }
+
+    /**
+     * @return the MsgSeqNum(34) of the message or 0 if it has none or it is malformed.
+     */
+    public int getSeqNum() {
+        return seqNum;
+    }
+
+    /**
+     * @return the time the message was recorded at, in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the raw message.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return direction + " " + seqNum + " @" + timestamp + ": " + message;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.columnar;
+
+import org.fixb.impl.FieldCursor;
+
+import java.util.Arrays;
+
+/**
+ * A column of a ColumnarBatch: the values of one field of all the rows of the batch stored in a primitive array (or
+ * an array of codes), together with a bitmap of the rows in which the field is present.
+ *
+ * The arrays returned by the accessors of the subclasses may be longer than the number of rows of the batch and are
+ * re-used when the batch is cleared, hence they are only valid until the batch is modified.
+ *
+ * @author vladyslav.yatsenko
+ */
+public abstract class Column {
+    static final int INITIAL_CAPACITY = 64;
+
+    private final int tag;
+    private final String name;
+    private final Class<?> type;
+    private long[] present = new long[1];
+
+    Column(int tag, String name, Class<?> type) {
+        this.tag = tag;
+        this.name = name;
+        this.type = type;
+    }
+
+    /**
+     * @return the FIX tag of the column.
+     */
+    public int getTag() {
+        return tag;
+    }
+
+    /**
+     * @return the name of the class field the column is mapped to.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the type of the class field the column is mapped to.
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return true if the field is absent in the given row.
+     */
+    public boolean isNull(int row) {
+        return (present[row >>> 6] & (1L << row)) == 0;
+    }
+
+    /**
+     * Reads the last value read by the given cursor into the given row.
+     *
+     * @param fixMessage the message the cursor reads from
+     */
+    abstract void read(CharSequence fixMessage, FieldCursor cursor, int row);
+
+    /**
+     * @return the value of the given row converted to the type of the class field (or a type formatted the same way
+     *         by FixMessageBuilder) or null if the field is absent in the row.
+     */
+    abstract Object getObject(int row);
+
+    /**
+     * Grows the value arrays so that they hold at least the given number of rows.
+     */
+    abstract void ensureCapacity(int rows);
+
+    /**
+     * Marks the given row as null (the value arrays hold their default value in this row).
+     */
+    abstract void setNull(int row);
+
+    final void setPresent(int row, boolean isPresent) {
+        final int word = row >>> 6;
+        if (word >= present.length) {
+            present = Arrays.copyOf(present, Math.max(word + 1, present.length * 2));
+        }
+        if (isPresent) {
+            present[word] |= 1L << row;
+        } else {
+            present[word] &= ~(1L << row);
+        }
+    }
+
+    static int grow(int capacity, int rows) {
+        int newCapacity = Math.max(capacity, INITIAL_CAPACITY);
+        while (newCapacity < rows) {
+            newCapacity *= 2;
+        }
+        return newCapacity;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + tag + " " + name + "]";
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.columnar;
+
+import org.fixb.FixException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The encodings of column values used by the columnar archive. Each sequence of values is prefixed by the id of its
+ * encoding, which is chosen per block as the one that takes the least space:
+ * <ul>
+ *     <li>integers are written as zig-zag varints, either plain, as deltas of the previous value (e.g. sequence
+ *     numbers or timestamps) or as runs of equal values (e.g. flags or sides);</li>
+ *     <li>doubles are written either as raw IEEE 754 bits or, if all of them are decimals with at most 9 fractional
+ *     digits (e.g. prices), as integer mantissas with a common scale, which are encoded as integers;</li>
+ *     <li>strings are written as a dictionary of the distinct values of the block followed by integer codes.</li>
+ * </ul>
+ * The presence bitmap of a column is written as alternating runs of present and absent rows.
+ *
+ * @author vladyslav.yatsenko
+ */
+final class ColumnCodec {
+    private static final byte PLAIN = 0;
+    private static final byte DELTA = 1;
+    private static final byte RUN_LENGTH = 2;
+    private static final byte RAW_DOUBLE = 3;
+    private static final byte DECIMAL = 4;
+    private static final int MAX_SCALE = 9;
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9};
+
+    private ColumnCodec() {
+    }
+
+    static void writeLongs(ByteArrayOutputStream out, long[] values, int n) {
+        long plain = 0;
+        long delta = 0;
+        long runs = 0;
+        for (int i = 0; i < n; i++) {
+            plain += varLongSize(zigZag(values[i]));
+            delta += varLongSize(zigZag(i == 0 ? values[i] : values[i] - values[i - 1]));
+            if (i == 0 || values[i] != values[i - 1]) {
+                runs += varLongSize(zigZag(values[i])) + 1;
+            }
+        }
+
+        if (runs < plain && runs < delta) {
+            out.write(RUN_LENGTH);
+            for (int i = 0; i < n; ) {
+                int run = 1;
+                while (i + run < n && values[i + run] == values[i]) {
+                    run++;
+                }
+                writeVarLong(out, zigZag(values[i]));
+                writeVarLong(out, run);
+                i += run;
+            }
+        } else if (delta < plain) {
+            out.write(DELTA);
+            for (int i = 0; i < n; i++) {
+                writeVarLong(out, zigZag(i == 0 ? values[i] : values[i] - values[i - 1]));
+            }
+        } else {
+            out.write(PLAIN);
+            for (int i = 0; i < n; i++) {
+                writeVarLong(out, zigZag(values[i]));
+            }
+        }
+    }
+
+    static void readLongs(ByteBuffer in, long[] values, int n) {
+        final byte encoding = in.get();
+        switch (encoding) {
+            case PLAIN:
+                for (int i = 0; i < n; i++) {
+                    values[i] = unZigZag(readVarLong(in));
+                }
+                break;
+            case DELTA:
+                for (int i = 0; i < n; i++) {
+                    values[i] = unZigZag(readVarLong(in)) + (i == 0 ? 0 : values[i - 1]);
+                }
+                break;
+            case RUN_LENGTH:
+                for (int i = 0; i < n; ) {
+                    final long value = unZigZag(readVarLong(in));
+                    final long run = readVarLong(in);
+                    if (run <= 0 || run > n - i) {
+                        throw new FixException("Corrupt run length: " + run);
+                    }
+                    for (long j = 0; j < run; j++) {
+                        values[i++] = value;
+                    }
+                }
+                break;
+            default:
+                throw new FixException("Unknown integer encoding: " + encoding);
+        }
+    }
+
+    static void writeDoubles(ByteArrayOutputStream out, double[] values, int n) {
+        final int scale = commonScale(values, n);
+        if (scale < 0) {
+            out.write(RAW_DOUBLE);
+            for (int i = 0; i < n; i++) {
+                writeFixedLong(out, Double.doubleToRawLongBits(values[i]));
+            }
+        } else {
+            out.write(DECIMAL);
+            out.write(scale);
+            final long[] mantissas = new long[n];
+            for (int i = 0; i < n; i++) {
+                mantissas[i] = Math.round(values[i] * POWERS_OF_TEN[scale]);
+            }
+            writeLongs(out, mantissas, n);
+        }
+    }
+
+    static void readDoubles(ByteBuffer in, double[] values, int n) {
+        final byte encoding = in.get();
+        if (encoding == RAW_DOUBLE) {
+            for (int i = 0; i < n; i++) {
+                values[i] = in.getDouble();
+            }
+        } else if (encoding == DECIMAL) {
+            final int scale = in.get();
+            if (scale < 0 || scale > MAX_SCALE) {
+                throw new FixException("Corrupt decimal scale: " + scale);
+            }
+            final long[] mantissas = new long[n];
+            readLongs(in, mantissas, n);
+            for (int i = 0; i < n; i++) {
+                values[i] = mantissas[i] / POWERS_OF_TEN[scale];
+            }
+        } else {
+            throw new FixException("Unknown floating point encoding: " + encoding);
+        }
+    }
+
+    /**
+     * Writes a dictionary of the distinct values followed by the code of each value.
+     */
+    static void writeStrings(ByteArrayOutputStream out, String[] values, int n) {
+        final Map<String, Integer> dictionary = new LinkedHashMap<>();
+        final long[] codes = new long[n];
+        for (int i = 0; i < n; i++) {
+            Integer code = dictionary.get(values[i]);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.put(values[i], code);
+            }
+            codes[i] = code;
+        }
+        writeVarLong(out, dictionary.size());
+        for (String value : dictionary.keySet()) {
+            writeString(out, value);
+        }
+        writeLongs(out, codes, n);
+    }
+
+    static void readStrings(ByteBuffer in, String[] values, int n) {
+        final String[] dictionary = new String[readLength(in)];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = readString(in);
+        }
+        final long[] codes = new long[n];
+        readLongs(in, codes, n);
+        for (int i = 0; i < n; i++) {
+            if (codes[i] < 0 || codes[i] >= dictionary.length) {
+                throw new FixException("Corrupt dictionary code: " + codes[i]);
+            }
+            values[i] = dictionary[(int) codes[i]];
+        }
+    }
+
+    /**
+     * Writes the presence bitmap of the given column as alternating runs of present and absent rows, starting with a
+     * (possibly empty) run of present rows. Nothing is written if there are no rows.
+     *
+     * @return the number of present rows.
+     */
+    static int writePresence(ByteArrayOutputStream out, Column column, int rows) {
+        int present = 0;
+        boolean expected = true;
+        int run = 0;
+        for (int row = 0; row < rows; row++) {
+            final boolean isPresent = !column.isNull(row);
+            if (isPresent != expected) {
+                writeVarLong(out, run);
+                expected = isPresent;
+                run = 0;
+            }
+            run++;
+            if (isPresent) {
+                present++;
+            }
+        }
+        if (rows > 0) {
+            writeVarLong(out, run);
+        }
+        return present;
+    }
+
+    /**
+     * Reads a presence bitmap written by writePresence().
+     *
+     * @return the number of present rows.
+     */
+    static int readPresence(ByteBuffer in, boolean[] present, int rows) {
+        int count = 0;
+        boolean isPresent = true;
+        for (int row = 0; row < rows; ) {
+            final int run = readLength(in);
+            if (run > rows - row) {
+                throw new FixException("Corrupt presence run: " + run);
+            }
+            for (int i = 0; i < run; i++) {
+                present[row++] = isPresent;
+            }
+            if (isPresent) {
+                count += run;
+            }
+            isPresent = !isPresent;
+        }
+        return count;
+    }
+
+    static void writeString(ByteArrayOutputStream out, String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    static String readString(ByteBuffer in) {
+        final byte[] bytes = new byte[readLength(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeFixedInt(ByteArrayOutputStream out, int value) {
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            out.write(value >>> shift);
+        }
+    }
+
+    static void writeFixedLong(ByteArrayOutputStream out, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new FixException("Malformed varint");
+    }
+
+    /**
+     * Reads a varint that is a length or a count and hence must be a non-negative int.
+     */
+    static int readLength(ByteBuffer in) {
+        final long value = readVarLong(in);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new FixException("Corrupt length: " + value);
+        }
+        return (int) value;
+    }
+
+    private static int varLongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * @return the least scale that represents all the given values exactly as integer mantissas divided by a power of
+     *         ten (which is how DoubleColumn parses decimals), or -1 if there is none up to MAX_SCALE.
+     */
+    private static int commonScale(double[] values, int n) {
+        int scale = 0;
+        for (int i = 0; i < n; i++) {
+            final double value = values[i];
+            if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) > 1e9
+                    || Double.doubleToRawLongBits(value) == Long.MIN_VALUE) {
+                return -1;
+            }
+            while (Math.round(value * POWERS_OF_TEN[scale]) / POWERS_OF_TEN[scale] != value) {
+                if (++scale > MAX_SCALE) {
+                    return -1;
+                }
+            }
+        }
+        return scale;
+    }
+}
@@ -0,0 +1,544 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.columnar;
+
+import org.fixb.FixException;
+import org.fixb.impl.FieldCursor;
+import org.fixb.impl.NativeFixSerializer;
+import org.fixb.meta.FixMessageMeta;
+import org.fixb.meta.FixMetaDictionary;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.*;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static org.fixb.columnar.ColumnCodec.*;
+import static org.fixb.columnar.ColumnarArchiveWriter.*;
+import static org.fixb.impl.FormatConstants.SOH;
+
+/**
+ * Reads a columnar archive written by ColumnarArchiveWriter. The messages of a type are read block by block into a
+ * ColumnarBatch through a {@link Scan}, which can be limited to some of the columns (the other columns are skipped
+ * without being decoded) and to the blocks, the statistics of which don't rule out the given conditions. The rows can
+ * be turned back into objects or FIX messages. The messages of the types that were not mapped when the archive was
+ * written are read verbatim by {@link #readUnmappedMessages(String)}.
+ *
+ * A reader is not thread-safe.
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class ColumnarArchiveReader implements Closeable {
+    private final FileChannel channel;
+    private final FixMetaDictionary fixMetaDictionary;
+    private final String protocolVersion;
+    private final List<BlockInfo> blocks = new ArrayList<>();
+    private final NativeFixSerializer<Object> serializer;
+
+    /**
+     * Opens the given archive.
+     *
+     * @param fixMetaDictionary the dictionary of the archived message types
+     * @throws IOException  if the file can't be read.
+     * @throws FixException if the file is not a valid archive.
+     */
+    public static ColumnarArchiveReader open(Path file, FixMetaDictionary fixMetaDictionary) throws IOException {
+        final FileChannel channel = FileChannel.open(file, READ);
+        try {
+            return new ColumnarArchiveReader(channel, fixMetaDictionary);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the FIX protocol version of the archived messages.
+     */
+    public String getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    /**
+     * @return the number of archived messages of the given type.
+     */
+    public long getMessageCount(Class<?> type) {
+        final String messageType = fixMetaDictionary.getMetaForClass(type).getMessageType();
+        long count = 0;
+        for (BlockInfo block : blocks) {
+            if (!block.raw && block.messageType.equals(messageType)) {
+                count += block.rows;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the types of the archived messages that were not mapped by the dictionary of the writer.
+     */
+    public Set<String> getUnmappedMessageTypes() {
+        final Set<String> result = new TreeSet<>();
+        for (BlockInfo block : blocks) {
+            if (block.raw) {
+                result.add(block.messageType);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the archived messages of the given type that was not mapped by the dictionary of the writer, in the
+     *         order they were written.
+     * @throws FixException if a block can't be read.
+     */
+    public List<String> readUnmappedMessages(String messageType) {
+        final List<String> result = new ArrayList<>();
+        for (BlockInfo block : blocks) {
+            if (block.raw && block.messageType.equals(messageType)) {
+                final ByteBuffer in = readBlock(block);
+                final String[] messages = new String[readLength(in)];
+                readStrings(in, messages, messages.length);
+                result.addAll(Arrays.asList(messages));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return a new scan of all archived messages of the given type.
+     */
+    public <T> Scan<T> scan(Class<T> type) {
+        return new Scan<>(fixMetaDictionary.getMetaForClass(type));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * A query over the archived messages of one type. The conditions are only used to skip whole blocks, hence the
+     * batches may still contain rows that don't satisfy them.
+     *
+     * @param <T> the type the messages are mapped to
+     */
+    public final class Scan<T> implements Iterable<ColumnarBatch> {
+        private final String messageType;
+        private final ColumnarBatchDecoder<T> decoder;
+        private final List<Condition> conditions = new ArrayList<>();
+        private Set<Integer> projection;
+
+        private Scan(FixMessageMeta<T> meta) {
+            this.messageType = meta.getMessageType();
+            this.decoder = new ColumnarBatchDecoder<>(meta, fixMetaDictionary);
+        }
+
+        /**
+         * Limits the scan to the top level columns and groups with the given tags. The other columns are null and the
+         * other groups are empty in the batches, and the unknown fields of the messages are not read either.
+         *
+         * @return this scan.
+         */
+        public Scan<T> project(int... tags) {
+            projection = new HashSet<>();
+            for (int tag : tags) {
+                projection.add(tag);
+            }
+            return this;
+        }
+
+        /**
+         * Skips the blocks in which the numeric field with the given tag has no value between min and max inclusive.
+         *
+         * @return this scan.
+         */
+        public Scan<T> whereBetween(int tag, long min, long max) {
+            conditions.add(new Condition(tag, LONG_COLUMN, min, max, min, max, null));
+            return this;
+        }
+
+        /**
+         * Skips the blocks in which the numeric field with the given tag has no value between min and max inclusive.
+         *
+         * @return this scan.
+         */
+        public Scan<T> whereBetween(int tag, double min, double max) {
+            conditions.add(new Condition(tag, DOUBLE_COLUMN, (long) Math.floor(min), (long) Math.ceil(max), min, max, null));
+            return this;
+        }
+
+        /**
+         * Skips the blocks in which the string field with the given tag can't have the given value.
+         *
+         * @return this scan.
+         */
+        public Scan<T> whereEquals(int tag, String value) {
+            conditions.add(new Condition(tag, STRING_COLUMN, 0, 0, 0, 0, value));
+            return this;
+        }
+
+        /**
+         * @return the number of blocks that the scan reads.
+         */
+        public int countBlocks() {
+            return matchingBlocks().size();
+        }
+
+        /**
+         * @return an iterator over the blocks of the scan. The same batch is returned by each call to next(), so it is
+         *         only valid until the next call.
+         * @throws FixException if a block can't be read.
+         */
+        @Override
+        public Iterator<ColumnarBatch> iterator() {
+            final Iterator<BlockInfo> matching = matchingBlocks().iterator();
+            final ColumnarBatch batch = decoder.newBatch();
+            return new Iterator<ColumnarBatch>() {
+                @Override
+                public boolean hasNext() {
+                    return matching.hasNext();
+                }
+
+                @Override
+                public ColumnarBatch next() {
+                    readBlock(matching.next(), batch, projection);
+                    return batch;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        /**
+         * @return the FIX messages re-created from the rows of the scan (see ColumnarBatchDecoder.toFixMessage()).
+         */
+        public List<String> toMessages() {
+            final List<String> result = new ArrayList<>();
+            for (ColumnarBatch batch : this) {
+                for (int row = 0; row < batch.size(); row++) {
+                    result.add(decoder.toFixMessage(batch, row, protocolVersion));
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @return the objects re-created from the rows of the scan.
+         * @throws FixException if the scan does not project the required fields of the type.
+         */
+        @SuppressWarnings("unchecked")
+        public List<T> toObjects() {
+            final List<T> result = new ArrayList<>();
+            for (ColumnarBatch batch : this) {
+                for (int row = 0; row < batch.size(); row++) {
+                    result.add((T) serializer.deserialize(decoder.toFixMessage(batch, row, protocolVersion)));
+                }
+            }
+            return result;
+        }
+
+        private List<BlockInfo> matchingBlocks() {
+            final List<BlockInfo> result = new ArrayList<>();
+            next:
+            for (BlockInfo block : blocks) {
+                if (block.raw || !block.messageType.equals(messageType)) {
+                    continue;
+                }
+                for (Condition condition : conditions) {
+                    if (!condition.mayMatch(block.statistics.get(condition.tag))) {
+                        continue next;
+                    }
+                }
+                result.add(block);
+            }
+            return result;
+        }
+    }
+
+    private ColumnarArchiveReader(FileChannel channel, FixMetaDictionary fixMetaDictionary) throws IOException {
+        this.channel = channel;
+        this.fixMetaDictionary = fixMetaDictionary;
+
+        final long size = channel.size();
+        final ByteBuffer header = read(0, (int) Math.min(size, 1024));
+        if (header.remaining() < 8 || header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new FixException("Not a columnar FIX archive");
+        }
+        this.protocolVersion = readString(header);
+        this.serializer = new NativeFixSerializer<>(protocolVersion, fixMetaDictionary);
+
+        final ByteBuffer trailer = read(size - TRAILER_SIZE, TRAILER_SIZE);
+        final long footerOffset = trailer.getLong();
+        if (trailer.getInt() != MAGIC || footerOffset < 0 || footerOffset > size - TRAILER_SIZE) {
+            throw new FixException("The columnar FIX archive is incomplete");
+        }
+        final ByteBuffer footer = read(footerOffset, (int) (size - TRAILER_SIZE - footerOffset));
+        for (int i = readLength(footer); i > 0; i--) {
+            blocks.add(new BlockInfo(footer));
+        }
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new FixException("Unexpected end of the columnar FIX archive");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private void readBlock(BlockInfo block, ColumnarBatch batch, Set<Integer> projection) {
+        final ByteBuffer in = readBlock(block);
+        readColumns(in, batch, readLength(in), null, projection);
+    }
+
+    private ByteBuffer readBlock(BlockInfo block) {
+        try {
+            return read(block.offset, block.length);
+        } catch (IOException e) {
+            throw new FixException("Failed to read a block of the columnar FIX archive", e);
+        }
+    }
+
+    private void readColumns(ByteBuffer in, ColumnarBatch batch, int rows, int[] entryCounts, Set<Integer> projection) {
+        batch.load(rows, entryCounts);
+        final boolean[] loaded = new boolean[batch.tags.length];
+        boolean unknownFieldsLoaded = false;
+        for (int i = readLength(in); i > 0; i--) {
+            final int tag = readLength(in);
+            final byte kind = in.get();
+            final int end = readLength(in) + in.position();
+            if (kind == UNKNOWN_FIELDS) {
+                if (projection != null || unknownFieldsLoaded) {
+                    in.position(end);
+                    continue;
+                }
+                readColumn(in, batch.unknownFields, STRING_COLUMN, rows);
+                if (in.position() != end) {
+                    throw new FixException("Corrupt unknown fields in the columnar FIX archive");
+                }
+                unknownFieldsLoaded = true;
+                continue;
+            }
+            final int slot = batch.slotOf(tag);
+            if (slot < 0 || loaded[slot] || (projection != null && !projection.contains(tag))) {
+                in.position(end);
+                continue;
+            }
+            if (kind == GROUP && batch.groups[slot] != null) {
+                final int groupRows = readLength(in);
+                final long[] counts = new long[rows];
+                readLongs(in, counts, rows);
+                final int[] groupCounts = new int[rows];
+                for (int row = 0; row < rows; row++) {
+                    groupCounts[row] = (int) counts[row];
+                }
+                readColumns(in, batch.groups[slot], groupRows, groupCounts, null);
+            } else if (kind != GROUP && batch.columns[slot] != null) {
+                readColumn(in, batch.columns[slot], kind, rows);
+            } else {
+                throw new FixException("Field " + tag + " is archived with a different mapping");
+            }
+            if (in.position() != end) {
+                throw new FixException("Corrupt column " + tag + " in the columnar FIX archive");
+            }
+            loaded[slot] = true;
+        }
+
+        if (!unknownFieldsLoaded) {
+            for (int row = 0; row < rows; row++) {
+                batch.unknownFields.setNull(row);
+            }
+        }
+        for (int slot = 0; slot < loaded.length; slot++) {
+            if (loaded[slot]) {
+                continue;
+            }
+            if (batch.groups[slot] != null) {
+                loadEmpty(batch.groups[slot], rows);
+            } else {
+                for (int row = 0; row < rows; row++) {
+                    batch.columns[slot].setNull(row);
+                }
+            }
+        }
+    }
+
+    private static void loadEmpty(ColumnarBatch group, int parentRows) {
+        group.load(0, new int[parentRows]);
+        for (ColumnarBatch nested : group.groups) {
+            if (nested != null) {
+                loadEmpty(nested, 0);
+            }
+        }
+    }
+
+    private static void readColumn(ByteBuffer in, Column column, byte kind, int rows) {
+        final boolean[] present = new boolean[rows];
+        final int n = readPresence(in, present, rows);
+        int i = 0;
+        if (column instanceof LongColumn && kind == LONG_COLUMN) {
+            final long[] values = new long[n];
+            readLongs(in, values, n);
+            for (int row = 0; row < rows; row++) {
+                if (present[row]) {
+                    ((LongColumn) column).set(row, values[i++]);
+                } else {
+                    column.setNull(row);
+                }
+            }
+        } else if (column instanceof DoubleColumn && kind == DOUBLE_COLUMN) {
+            final double[] values = new double[n];
+            readDoubles(in, values, n);
+            for (int row = 0; row < rows; row++) {
+                if (present[row]) {
+                    ((DoubleColumn) column).set(row, values[i++]);
+                } else {
+                    column.setNull(row);
+                }
+            }
+        } else if ((column instanceof StringColumn && kind == STRING_COLUMN)
+                || (column instanceof EnumColumn && kind == ENUM_COLUMN)
+                || (column instanceof ObjectColumn && kind == OBJECT_COLUMN)) {
+            final String[] values = new String[n];
+            readStrings(in, values, n);
+            for (int row = 0; row < rows; row++) {
+                if (!present[row]) {
+                    column.setNull(row);
+                } else if (column instanceof StringColumn) {
+                    ((StringColumn) column).set(row, values[i++]);
+                } else if (column instanceof EnumColumn) {
+                    ((EnumColumn) column).setName(row, values[i++]);
+                } else {
+                    final String field = column.getTag() + "=" + values[i++] + SOH;
+                    final FieldCursor cursor = FieldCursor.create(field);
+                    cursor.nextField();
+                    column.read(field, cursor, row);
+                }
+            }
+        } else {
+            throw new FixException("Field " + column.getTag() + " is archived with a different type");
+        }
+    }
+
+    /**
+     * An entry of the block index.
+     */
+    private static final class BlockInfo {
+        final String messageType;
+        final boolean raw;
+        final long offset;
+        final int length;
+        final int rows;
+        final Map<Integer, Statistic> statistics = new HashMap<>();
+
+        BlockInfo(ByteBuffer in) {
+            this.messageType = readString(in);
+            this.raw = in.get() == RAW_BLOCK;
+            this.offset = readVarLong(in);
+            this.length = readLength(in);
+            this.rows = readLength(in);
+            for (int i = readLength(in); i > 0; i--) {
+                final Statistic statistic = new Statistic(in);
+                statistics.put(statistic.tag, statistic);
+            }
+        }
+    }
+
+    /**
+     * The number of present values and the value range of a column in a block.
+     */
+    private static final class Statistic {
+        final int tag;
+        final byte kind;
+        final int present;
+        long minLong;
+        long maxLong;
+        double minDouble;
+        double maxDouble;
+        String minString;
+        String maxString;
+
+        Statistic(ByteBuffer in) {
+            this.tag = readLength(in);
+            this.kind = in.get();
+            this.present = readLength(in);
+            if (kind == LONG_COLUMN) {
+                minLong = in.getLong();
+                maxLong = in.getLong();
+                minDouble = minLong;
+                maxDouble = maxLong;
+            } else if (kind == DOUBLE_COLUMN) {
+                minDouble = in.getDouble();
+                maxDouble = in.getDouble();
+            } else {
+                minString = readString(in);
+                maxString = readString(in);
+            }
+        }
+    }
+
+    /**
+     * A condition that rules out the blocks whose statistics don't overlap with it.
+     */
+    private static final class Condition {
+        final int tag;
+        final byte kind;
+        final long minLong;
+        final long maxLong;
+        final double minDouble;
+        final double maxDouble;
+        final String value;
+
+        Condition(int tag, byte kind, long minLong, long maxLong, double minDouble, double maxDouble, String value) {
+            this.tag = tag;
+            this.kind = kind;
+            this.minLong = minLong;
+            this.maxLong = maxLong;
+            this.minDouble = minDouble;
+            this.maxDouble = maxDouble;
+            this.value = value;
+        }
+
+        boolean mayMatch(Statistic statistic) {
+            if (statistic == null) {
+                return true;
+            }
+            if (statistic.present == 0) {
+                return false;
+            }
+            if (kind == STRING_COLUMN) {
+                return statistic.kind != STRING_COLUMN ||
+                        (value.compareTo(statistic.minString) >= 0 && value.compareTo(statistic.maxString) <= 0);
+            }
+            if (statistic.kind == LONG_COLUMN) {
+                return statistic.maxLong >= minLong && statistic.minLong <= maxLong;
+            }
+            if (statistic.kind == DOUBLE_COLUMN) {
+                return statistic.maxDouble >= minDouble && statistic.minDouble <= maxDouble;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,433 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.columnar;
+
+import org.fixb.FixException;
+import org.fixb.impl.FieldCursor;
+import org.fixb.impl.NativeFixMessageBuilder;
+import org.fixb.meta.FixMessageMeta;
+import org.fixb.meta.FixMetaDictionary;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.fixb.FixConstants.BEGIN_STRING_TAG;
+import static org.fixb.FixConstants.MSG_TYPE_TAG;
+import static org.fixb.columnar.ColumnCodec.*;
+
+/**
+ * Writes a stream of FIX messages to a columnar archive file, which is read by ColumnarArchiveReader.
+ *
+ * The messages of each type mapped in the FixMetaDictionary are decoded by a ColumnarBatchDecoder, and every
+ * <tt>blockRows</tt> messages of a type are written as a block, in which each column (and each column of the repeating
+ * groups) is stored separately with the encoding that takes the least space (see ColumnCodec). The fields that are not
+ * mapped are kept as raw FIX fields in a dictionary-encoded column of their own per block and group (see
+ * ColumnarBatch.getUnknownFields()), and the messages of the types that are not mapped are kept verbatim in blocks of
+ * raw messages, so that no traffic is lost. The file ends with an index of the blocks that holds the min/max statistics
+ * of the top level columns of each block, so that a reader can skip the blocks that can't match a query and the
+ * columns that are not projected without reading them.
+ *
+ * The layout of the file is:
+ * <pre>
+ *     header:  magic, version, protocol version
+ *     blocks:  row count, columns (tag, kind, length, presence runs and values; groups nest entry counts and columns)
+ *              and the unknown fields column (tag 0), or row count and raw messages for the types that are not mapped
+ *     footer:  block count, for each block: message type, block kind, offset, length, row count and column statistics
+ *     trailer: footer offset, magic
+ * </pre>
+ *
+ * A writer is not thread-safe.
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class ColumnarArchiveWriter implements Closeable {
+    /**
+     * The default number of messages of a type in a block.
+     */
+    public static final int DEFAULT_BLOCK_ROWS = 4096;
+
+    static final int MAGIC = 0x46495843;
+    static final int VERSION = 1;
+    static final int TRAILER_SIZE = 12;
+
+    static final byte LONG_COLUMN = 1;
+    static final byte DOUBLE_COLUMN = 2;
+    static final byte STRING_COLUMN = 3;
+    static final byte ENUM_COLUMN = 4;
+    static final byte OBJECT_COLUMN = 5;
+    static final byte GROUP = 6;
+    static final byte UNKNOWN_FIELDS = 7;
+
+    static final byte COLUMNS_BLOCK = 0;
+    static final byte RAW_BLOCK = 1;
+
+    private final OutputStream out;
+    private final String protocolVersion;
+    private final int blockRows;
+    private final NativeFixMessageBuilder.Factory builderFactory;
+    private final Map<String, TypeWriter> writers = new TreeMap<>();
+    private final Map<String, List<String>> unmapped = new TreeMap<>();
+    private final ByteArrayOutputStream footer = new ByteArrayOutputStream();
+    private long position;
+    private int blockCount;
+    private long messageCount;
+    private boolean closed;
+
+    /**
+     * The same as the alternative constructor, but uses DEFAULT_BLOCK_ROWS.
+     */
+    public ColumnarArchiveWriter(Path file, String protocolVersion, FixMetaDictionary fixMetaDictionary) throws IOException {
+        this(file, protocolVersion, fixMetaDictionary, DEFAULT_BLOCK_ROWS);
+    }
+
+    /**
+     * @param file              the archive file (it is overwritten if it exists)
+     * @param protocolVersion   the FIX protocol version of the messages (used to re-create messages from the archive)
+     * @param fixMetaDictionary the dictionary of the message types to archive
+     * @param blockRows         the number of messages of a type in a block
+     */
+    public ColumnarArchiveWriter(Path file, String protocolVersion, FixMetaDictionary fixMetaDictionary, int blockRows) throws IOException {
+        if (blockRows <= 0) {
+            throw new IllegalArgumentException("blockRows must be positive");
+        }
+        this.protocolVersion = protocolVersion;
+        this.blockRows = blockRows;
+        this.builderFactory = new NativeFixMessageBuilder.Factory(fixMetaDictionary);
+        for (FixMessageMeta<?> meta : fixMetaDictionary.getAllMessageMetas()) {
+            writers.put(meta.getMessageType(), new TypeWriter(meta, fixMetaDictionary));
+        }
+
+        this.out = new BufferedOutputStream(Files.newOutputStream(file));
+        final ByteArrayOutputStream header = new ByteArrayOutputStream();
+        writeFixedInt(header, MAGIC);
+        writeFixedInt(header, VERSION);
+        writeString(header, protocolVersion);
+        write(header);
+    }
+
+    /**
+     * Adds the given message to the archive.
+     *
+     * @return true if the message has been decoded into columns, false if its type is not mapped and it has been kept
+     *         verbatim (see ColumnarArchiveReader.readUnmappedMessages()).
+     * @throws FixException if the message has no MsgType(35) or a required field is missing.
+     * @throws IOException  if a block can't be written.
+     */
+    public boolean append(CharSequence fixMessage) throws IOException {
+        final FieldCursor cursor = FieldCursor.create(fixMessage);
+        if (!cursor.nextField(MSG_TYPE_TAG)) {
+            throw FixException.fieldNotFound(MSG_TYPE_TAG, fixMessage.toString());
+        }
+        final String messageType = cursor.lastValue();
+        final TypeWriter writer = writers.get(messageType);
+        if (writer == null) {
+            appendUnmapped(messageType, fixMessage);
+            return false;
+        }
+        writer.decoder.append(writer.batch, fixMessage);
+        messageCount++;
+        if (writer.batch.size() == blockRows) {
+            writeBlock(writer);
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of messages added to the archive.
+     */
+    public long getMessageCount() {
+        return messageCount;
+    }
+
+    /**
+     * Writes the pending blocks and the block index and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            for (TypeWriter writer : writers.values()) {
+                if (writer.batch.size() > 0) {
+                    writeBlock(writer);
+                }
+            }
+            for (Map.Entry<String, List<String>> messages : unmapped.entrySet()) {
+                if (!messages.getValue().isEmpty()) {
+                    writeRawBlock(messages.getKey(), messages.getValue());
+                }
+            }
+            final long footerOffset = position;
+            final ByteArrayOutputStream index = new ByteArrayOutputStream();
+            writeVarLong(index, blockCount);
+            index.write(footer.toByteArray(), 0, footer.size());
+            writeFixedLong(index, footerOffset);
+            writeFixedInt(index, MAGIC);
+            write(index);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void appendUnmapped(String messageType, CharSequence fixMessage) throws IOException {
+        List<String> messages = unmapped.get(messageType);
+        if (messages == null) {
+            messages = new ArrayList<>();
+            unmapped.put(messageType, messages);
+        }
+        messages.add(fixMessage.toString());
+        messageCount++;
+        if (messages.size() == blockRows) {
+            writeRawBlock(messageType, messages);
+        }
+    }
+
+    private void write(ByteArrayOutputStream bytes) throws IOException {
+        out.write(bytes.toByteArray(), 0, bytes.size());
+        position += bytes.size();
+    }
+
+    private void writeBlock(TypeWriter writer) throws IOException {
+        final ColumnarBatch batch = writer.batch;
+        final ByteArrayOutputStream block = new ByteArrayOutputStream();
+        writeVarLong(block, batch.size());
+        writeColumns(block, batch);
+
+        writeString(footer, writer.messageType);
+        footer.write(COLUMNS_BLOCK);
+        writeVarLong(footer, position);
+        writeVarLong(footer, block.size());
+        writeVarLong(footer, batch.size());
+        writeStatistics(footer, batch);
+        blockCount++;
+
+        write(block);
+        batch.clear();
+    }
+
+    /**
+     * Writes the given messages of a type that is not mapped as a block of raw messages without statistics.
+     */
+    private void writeRawBlock(String messageType, List<String> messages) throws IOException {
+        final ByteArrayOutputStream block = new ByteArrayOutputStream();
+        writeVarLong(block, messages.size());
+        writeStrings(block, messages.toArray(new String[messages.size()]), messages.size());
+
+        writeString(footer, messageType);
+        footer.write(RAW_BLOCK);
+        writeVarLong(footer, position);
+        writeVarLong(footer, block.size());
+        writeVarLong(footer, messages.size());
+        writeVarLong(footer, 0);
+        blockCount++;
+
+        write(block);
+        messages.clear();
+    }
+
+    private void writeColumns(ByteArrayOutputStream out, ColumnarBatch batch) {
+        final int rows = batch.size();
+        final boolean hasUnknownFields = hasUnknownFields(batch);
+        writeVarLong(out, batch.tags.length + (hasUnknownFields ? 1 : 0));
+        for (int slot = 0; slot < batch.tags.length; slot++) {
+            final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            final byte kind;
+            if (batch.groups[slot] != null) {
+                final ColumnarBatch group = batch.groups[slot];
+                final long[] counts = new long[rows];
+                for (int row = 0; row < rows; row++) {
+                    counts[row] = group.entryCount(row);
+                }
+                writeVarLong(payload, group.size());
+                writeLongs(payload, counts, rows);
+                writeColumns(payload, group);
+                kind = GROUP;
+            } else {
+                kind = writeColumn(payload, batch.columns[slot], rows);
+            }
+            writeColumn(out, batch.tags[slot], kind, payload);
+        }
+        if (hasUnknownFields) {
+            final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            writeColumn(payload, batch.unknownFields, rows);
+            writeColumn(out, 0, UNKNOWN_FIELDS, payload);
+        }
+    }
+
+    private static void writeColumn(ByteArrayOutputStream out, int tag, byte kind, ByteArrayOutputStream payload) {
+        writeVarLong(out, tag);
+        out.write(kind);
+        writeVarLong(out, payload.size());
+        out.write(payload.toByteArray(), 0, payload.size());
+    }
+
+    private static boolean hasUnknownFields(ColumnarBatch batch) {
+        for (int row = 0; row < batch.size(); row++) {
+            if (!batch.unknownFields.isNull(row)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes the presence runs and the present values of the given column.
+     *
+     * @return the kind of the column.
+     */
+    private byte writeColumn(ByteArrayOutputStream out, Column column, int rows) {
+        final int n = writePresence(out, column, rows);
+        int i = 0;
+        if (column instanceof LongColumn) {
+            final long[] values = new long[n];
+            for (int row = 0; row < rows; row++) {
+                if (!column.isNull(row)) {
+                    values[i++] = ((LongColumn) column).get(row);
+                }
+            }
+            writeLongs(out, values, n);
+            return LONG_COLUMN;
+        }
+        if (column instanceof DoubleColumn) {
+            final double[] values = new double[n];
+            for (int row = 0; row < rows; row++) {
+                if (!column.isNull(row)) {
+                    values[i++] = ((DoubleColumn) column).get(row);
+                }
+            }
+            writeDoubles(out, values, n);
+            return DOUBLE_COLUMN;
+        }
+
+        final String[] values = new String[n];
+        for (int row = 0; row < rows; row++) {
+            if (!column.isNull(row)) {
+                values[i++] = textOf(column, row);
+            }
+        }
+        writeStrings(out, values, n);
+        return (column instanceof StringColumn) ? STRING_COLUMN : (column instanceof EnumColumn) ? ENUM_COLUMN : OBJECT_COLUMN;
+    }
+
+    /**
+     * @return the value of a string column, the name of an enum constant or the FIX representation of another value.
+     */
+    private String textOf(Column column, int row) {
+        if (column instanceof StringColumn) {
+            return ((StringColumn) column).get(row);
+        }
+        if (column instanceof EnumColumn) {
+            return ((EnumColumn) column).get(row).name();
+        }
+        final NativeFixMessageBuilder builder = builderFactory.create();
+        builder.setField(BEGIN_STRING_TAG, protocolVersion, true);
+        builder.setField(column.getTag(), column.getObject(row), false);
+        final FieldCursor cursor = FieldCursor.create(builder.build());
+        cursor.nextField(column.getTag());
+        return cursor.lastValue();
+    }
+
+    /**
+     * Writes the number of present values and the min/max values of the long, double and string columns of the given
+     * batch.
+     */
+    private static void writeStatistics(ByteArrayOutputStream out, ColumnarBatch batch) {
+        int count = 0;
+        for (Column column : batch.getColumns()) {
+            if (column instanceof LongColumn || column instanceof DoubleColumn || column instanceof StringColumn) {
+                count++;
+            }
+        }
+        writeVarLong(out, count);
+
+        for (Column column : batch.getColumns()) {
+            int present = 0;
+            if (column instanceof LongColumn) {
+                long min = Long.MAX_VALUE;
+                long max = Long.MIN_VALUE;
+                for (int row = 0; row < batch.size(); row++) {
+                    if (!column.isNull(row)) {
+                        present++;
+                        min = Math.min(min, ((LongColumn) column).get(row));
+                        max = Math.max(max, ((LongColumn) column).get(row));
+                    }
+                }
+                writeStatistic(out, column.getTag(), LONG_COLUMN, present);
+                writeFixedLong(out, min);
+                writeFixedLong(out, max);
+            } else if (column instanceof DoubleColumn) {
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                for (int row = 0; row < batch.size(); row++) {
+                    if (!column.isNull(row)) {
+                        present++;
+                        min = Math.min(min, ((DoubleColumn) column).get(row));
+                        max = Math.max(max, ((DoubleColumn) column).get(row));
+                    }
+                }
+                writeStatistic(out, column.getTag(), DOUBLE_COLUMN, present);
+                writeFixedLong(out, Double.doubleToRawLongBits(min));
+                writeFixedLong(out, Double.doubleToRawLongBits(max));
+            } else if (column instanceof StringColumn) {
+                String min = null;
+                String max = null;
+                for (int row = 0; row < batch.size(); row++) {
+                    final String value = ((StringColumn) column).get(row);
+                    if (value != null) {
+                        present++;
+                        min = (min == null || value.compareTo(min) < 0) ? value : min;
+                        max = (max == null || value.compareTo(max) > 0) ? value : max;
+                    }
+                }
+                writeStatistic(out, column.getTag(), STRING_COLUMN, present);
+                writeString(out, (min != null) ? min : "");
+                writeString(out, (max != null) ? max : "");
+            }
+        }
+    }
+
+    private static void writeStatistic(ByteArrayOutputStream out, int tag, byte kind, int present) {
+        writeVarLong(out, tag);
+        out.write(kind);
+        writeVarLong(out, present);
+    }
+
+    /**
+     * The decoder and the current batch of a message type.
+     */
+    private static final class TypeWriter {
+        final String messageType;
+        final ColumnarBatchDecoder<?> decoder;
+        final ColumnarBatch batch;
+
+        TypeWriter(FixMessageMeta<?> meta, FixMetaDictionary fixMetaDictionary) {
+            this.messageType = meta.getMessageType();
+            this.decoder = new ColumnarBatchDecoder<>(meta, fixMetaDictionary);
+            this.batch = decoder.newBatch();
+        }
+    }
+}
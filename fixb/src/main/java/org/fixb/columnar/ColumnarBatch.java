@@ -0,0 +1,263 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.columnar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A batch of FIX messages of one type decoded into columns (struct-of-arrays): the values of each field of all the
+ * messages are stored in one Column, so that scans over a field touch a single primitive array and no objects are
+ * created per message.
+ *
+ * Each repeating group is flattened into a child batch, the rows of which are the entries of the group in all the
+ * rows of this batch: the entries of a row are the rows between firstEntry(row) and firstEntry(row) + entryCount(row)
+ * of the child batch, and parentRow() maps them back. Nested groups are children of the child batch.
+ *
+ * Batches are created by a ColumnarBatchDecoder and can be cleared and re-used to decode further messages. Batches are
+ * not thread-safe.
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class ColumnarBatch {
+    final Object owner;
+    final Column[] columns;
+    final ColumnarBatch[] groups;
+    final int[] tags;
+    final StringColumn unknownFields = new StringColumn(0, "unknownFields", String.class);
+    private final List<Column> columnList;
+    private int size;
+    private int mark;
+    private int[] parentRows = new int[0];
+    private int[] offsets = new int[2];
+
+    /**
+     * @param owner   the decoder that the batch belongs to
+     * @param columns the columns of the fields indexed by slot (null in the slots of groups)
+     * @param groups  the batches of the groups indexed by slot (null in the slots of fields)
+     * @param tags    the tags of the slots
+     */
+    ColumnarBatch(Object owner, Column[] columns, ColumnarBatch[] groups, int[] tags) {
+        this.owner = owner;
+        this.columns = columns;
+        this.groups = groups;
+        this.tags = tags;
+        final List<Column> columnList = new ArrayList<>();
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i] != null) {
+                columnList.add(columns[i]);
+            }
+        }
+        this.columnList = Collections.unmodifiableList(columnList);
+    }
+
+    /**
+     * @return the number of rows in this batch.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the columns of this batch in the order of the fields of the message (or group component).
+     */
+    public List<Column> getColumns() {
+        return columnList;
+    }
+
+    /**
+     * @return the column of the fields of each row that are not mapped by the message type (or group component) as raw
+     *         FIX fields, including their delimiters. The column is null in the rows without such fields.
+     */
+    public StringColumn getUnknownFields() {
+        return unknownFields;
+    }
+
+    /**
+     * @return the column of the field with the given tag.
+     * @throws IllegalArgumentException if there is no such column in this batch.
+     */
+    @SuppressWarnings("unchecked")
+    public <C extends Column> C column(int tag) {
+        for (Column column : columnList) {
+            if (column.getTag() == tag) {
+                return (C) column;
+            }
+        }
+        throw new IllegalArgumentException("No column for tag " + tag);
+    }
+
+    /**
+     * @return the batch of the entries of the repeating group with the given NoXXX tag.
+     * @throws IllegalArgumentException if there is no such group in this batch.
+     */
+    public ColumnarBatch group(int tag) {
+        for (int i = 0; i < tags.length; i++) {
+            if (tags[i] == tag && groups[i] != null) {
+                return groups[i];
+            }
+        }
+        throw new IllegalArgumentException("No group for tag " + tag);
+    }
+
+    /**
+     * @return the first row of this group batch that is an entry of the given row of the parent batch.
+     */
+    public int firstEntry(int parentRow) {
+        return offsets[parentRow];
+    }
+
+    /**
+     * @return the number of rows of this group batch that are entries of the given row of the parent batch.
+     */
+    public int entryCount(int parentRow) {
+        return offsets[parentRow + 1] - offsets[parentRow];
+    }
+
+    /**
+     * @return the row of the parent batch that the given row of this group batch is an entry of.
+     */
+    public int parentRow(int row) {
+        return parentRows[row];
+    }
+
+    /**
+     * Removes all rows from this batch and its group batches. The arrays of the columns and the dictionaries of string
+     * columns are re-used.
+     */
+    public void clear() {
+        size = 0;
+        for (ColumnarBatch group : groups) {
+            if (group != null) {
+                group.clear();
+            }
+        }
+    }
+
+    /**
+     * Prepares the columns for the next row.
+     *
+     * @return the index of the next row.
+     */
+    int beginRow() {
+        for (Column column : columns) {
+            if (column != null) {
+                column.ensureCapacity(size + 1);
+            }
+        }
+        unknownFields.ensureCapacity(size + 1);
+        unknownFields.setNull(size);
+        return size;
+    }
+
+    /**
+     * Adds the row started by beginRow() to this batch.
+     *
+     * @param parentRow the row of the parent batch if this is a group batch
+     */
+    void commitRow(int parentRow) {
+        if (size == parentRows.length) {
+            parentRows = Arrays.copyOf(parentRows, Column.grow(size, size + 1));
+        }
+        parentRows[size] = parentRow;
+        for (ColumnarBatch group : groups) {
+            if (group != null) {
+                group.endParentRow(size);
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Remembers the current size of this batch and its group batches, which is restored by rollback().
+     */
+    void mark() {
+        mark = size;
+        for (ColumnarBatch group : groups) {
+            if (group != null) {
+                group.mark();
+            }
+        }
+    }
+
+    /**
+     * Drops the rows added since the last call to mark().
+     */
+    void rollback() {
+        size = mark;
+        for (ColumnarBatch group : groups) {
+            if (group != null) {
+                group.rollback();
+            }
+        }
+    }
+
+    /**
+     * @return the slot of the column or the group with the given tag or -1 if there is none.
+     */
+    int slotOf(int tag) {
+        for (int i = 0; i < tags.length; i++) {
+            if (tags[i] == tag) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Sets the number of rows of this batch (the values of the columns are to be set by the caller) and, for a group
+     * batch, the number of entries in each row of the parent batch.
+     *
+     * @param entryCounts the number of entries per parent row or null if this is not a group batch
+     */
+    void load(int rows, int[] entryCounts) {
+        for (Column column : columns) {
+            if (column != null) {
+                column.ensureCapacity(rows);
+            }
+        }
+        unknownFields.ensureCapacity(rows);
+        if (parentRows.length < rows) {
+            parentRows = new int[Column.grow(parentRows.length, rows)];
+        }
+        if (entryCounts != null) {
+            if (offsets.length < entryCounts.length + 1) {
+                offsets = new int[entryCounts.length + 1];
+            }
+            int row = 0;
+            for (int parent = 0; parent < entryCounts.length; parent++) {
+                offsets[parent] = row;
+                for (int i = 0; i < entryCounts[parent]; i++) {
+                    parentRows[row++] = parent;
+                }
+            }
+            offsets[entryCounts.length] = row;
+            if (row != rows) {
+                throw new IllegalArgumentException("Entry counts don't add up to " + rows + " rows");
+            }
+        }
+        size = rows;
+    }
+
+    private void endParentRow(int parentRow) {
+        if (parentRow + 2 > offsets.length) {
+            offsets = Arrays.copyOf(offsets, Column.grow(offsets.length, parentRow + 2));
+        }
+        offsets[parentRow + 1] = size;
+    }
+}
@@ -0,0 +1,431 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.columnar;
+
+import org.fixb.FixException;
+import org.fixb.UnknownFields;
+import org.fixb.impl.AsciiString;
+import org.fixb.impl.FieldCursor;
+import org.fixb.impl.FixFieldVisitor;
+import org.fixb.impl.NativeFixFieldExtractor;
+import org.fixb.impl.NativeFixMessageBuilder;
+import org.fixb.meta.FixBlockMeta;
+import org.fixb.meta.FixConstantFieldMeta;
+import org.fixb.meta.FixDynamicFieldMeta;
+import org.fixb.meta.FixEnumDictionary;
+import org.fixb.meta.FixFieldMeta;
+import org.fixb.meta.FixGroupMeta;
+import org.fixb.meta.FixMessageMeta;
+import org.fixb.meta.FixMetaDictionary;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.fixb.FixConstants.BEGIN_STRING_TAG;
+import static org.fixb.FixConstants.MSG_TYPE_TAG;
+import static org.fixb.impl.FormatConstants.SOH;
+
+/**
+ * Decodes FIX messages of one type into a ColumnarBatch instead of creating an object per message, which is meant for
+ * analytics over large numbers of messages (e.g. transaction cost analysis or back-testing over quote logs). The
+ * columns are derived from the FixMessageMeta of the message type:
+ * <ul>
+ *     <li>integer, boolean and char fields are stored in LongColumns;</li>
+ *     <li>double, float and BigDecimal fields in DoubleColumns;</li>
+ *     <li>String and CharSequence fields in dictionary-encoded StringColumns;</li>
+ *     <li>enum fields in EnumColumns of ordinals;</li>
+ *     <li>fields of other types (e.g. dates) in ObjectColumns;</li>
+ *     <li>repeating groups in child batches with columns of their own;</li>
+ *     <li>the fields that are not mapped (see UnknownFields) as raw FIX fields in the unknown fields column of the
+ *     batch of the message or of the group entry they belong to.</li>
+ * </ul>
+ * The fields are read in a single pass by NativeFixFieldExtractor.visit(), i.e. with the same parser and scoping rules
+ * for group entries as the objects decoded by NativeFixSerializer.
+ *
+ * A decoder is not thread-safe.
+ *
+ * @param <T> the type the message is mapped to
+ * @author vladyslav.yatsenko
+ */
+public final class ColumnarBatchDecoder<T> {
+    private final FixEnumDictionary enumDictionary;
+    private final NativeFixFieldExtractor extractor;
+    private final NativeFixMessageBuilder.Factory builderFactory;
+    private final FixMessageMeta<T> meta;
+    private final Block root;
+    private final RowVisitor rowVisitor = new RowVisitor();
+
+    /**
+     * @param fixMetaDictionary the dictionary to resolve the meta of the message type from
+     * @param type              the class the message type is mapped to
+     */
+    public ColumnarBatchDecoder(FixMetaDictionary fixMetaDictionary, Class<T> type) {
+        this(fixMetaDictionary.getMetaForClass(type), fixMetaDictionary);
+    }
+
+    /**
+     * @param meta           the meta of the message type to decode
+     * @param enumDictionary the dictionary used to map the values of enum fields
+     */
+    public ColumnarBatchDecoder(FixMessageMeta<T> meta, FixEnumDictionary enumDictionary) {
+        this.enumDictionary = enumDictionary;
+        this.extractor = new NativeFixFieldExtractor(enumDictionary);
+        this.builderFactory = new NativeFixMessageBuilder.Factory(enumDictionary);
+        this.meta = meta;
+        this.root = new Block(meta.getFields());
+    }
+
+    /**
+     * @return a new empty batch for the messages of this decoder.
+     */
+    public ColumnarBatch newBatch() {
+        return newBatch(root, null, null);
+    }
+
+    /**
+     * Decodes the given message into a new row of the given batch. Messages of other types are skipped.
+     *
+     * @return true if the message has been added to the batch, false if it is of another type.
+     * @throws FixException if a required field is missing or a group has fewer entries than declared; the batch is
+     *                      left unchanged in this case.
+     */
+    public boolean append(ColumnarBatch batch, CharSequence fixMessage) {
+        if (batch.owner != this) {
+            throw new IllegalArgumentException("The batch has not been created by this decoder");
+        }
+        final FieldCursor cursor = FieldCursor.create(fixMessage);
+        if (!cursor.nextField(MSG_TYPE_TAG) || !isMessageType(fixMessage, cursor)) {
+            return false;
+        }
+        batch.mark();
+        boolean added = false;
+        try {
+            rowVisitor.start(fixMessage, batch);
+            extractor.visit(cursor, meta, rowVisitor);
+            added = true;
+            return true;
+        } finally {
+            if (!added) {
+                batch.rollback();
+            }
+        }
+    }
+
+    /**
+     * Re-creates the FIX message of the given row of a batch of this decoder. The fields are written in the order of
+     * the meta, the same way as NativeFixSerializer does, and the unknown fields are written back the same way as the
+     * UnknownFields of a decoded object, hence the result is equivalent, but not necessarily identical, to the decoded
+     * message.
+     *
+     * @param protocolVersion the BeginString of the message
+     */
+    public String toFixMessage(ColumnarBatch batch, int row, String protocolVersion) {
+        if (batch.owner != this) {
+            throw new IllegalArgumentException("The batch has not been created by this decoder");
+        }
+        final NativeFixMessageBuilder builder = builderFactory.create();
+        builder.setField(BEGIN_STRING_TAG, protocolVersion, true);
+        root.encode(builder, batch, row);
+        return builder.build();
+    }
+
+    /**
+     * Decodes the given messages into a new batch. Messages of other types are skipped.
+     */
+    public ColumnarBatch decode(Iterable<? extends CharSequence> fixMessages) {
+        final ColumnarBatch batch = newBatch();
+        for (CharSequence fixMessage : fixMessages) {
+            append(batch, fixMessage);
+        }
+        return batch;
+    }
+
+    private ColumnarBatch newBatch(Block block, String groupName, FixGroupMeta simpleGroup) {
+        if (simpleGroup != null) {
+            return new ColumnarBatch(this,
+                    new Column[]{newColumn(simpleGroup.getComponentTag(), groupName, simpleGroup.getComponentType())},
+                    new ColumnarBatch[1],
+                    new int[]{simpleGroup.getComponentTag()});
+        }
+
+        final Column[] columns = new Column[block.fields.length];
+        final ColumnarBatch[] groups = new ColumnarBatch[block.fields.length];
+        final int[] tags = new int[block.fields.length];
+        for (int i = 0; i < block.fields.length; i++) {
+            final FixFieldMeta f = block.fields[i];
+            tags[i] = f.getTag();
+            if (f.isGroup()) {
+                final FixGroupMeta groupMeta = (FixGroupMeta) f;
+                groups[i] = groupMeta.isSimple() ?
+                        newBatch(null, nameOf(f), groupMeta) :
+                        newBatch(block.components[i], null, null);
+            } else {
+                columns[i] = newColumn(f.getTag(), nameOf(f), f.getType());
+            }
+        }
+        return new ColumnarBatch(this, columns, groups, tags);
+    }
+
+    private Column newColumn(int tag, String name, Class<?> type) {
+        if (type == long.class || type == Long.class || type == int.class || type == Integer.class
+                || type == short.class || type == Short.class || type == byte.class || type == Byte.class
+                || type == boolean.class || type == Boolean.class || type == char.class || type == Character.class) {
+            return new LongColumn(tag, name, type);
+        }
+        if (type == double.class || type == Double.class || type == float.class || type == Float.class
+                || type == BigDecimal.class) {
+            return new DoubleColumn(tag, name, type);
+        }
+        if (type == String.class || type == CharSequence.class || type == AsciiString.class) {
+            return new StringColumn(tag, name, type);
+        }
+        if (type.isEnum()) {
+            return new EnumColumn(tag, name, type, enumDictionary);
+        }
+        return new ObjectColumn(tag, name, type, extractor);
+    }
+
+    private boolean isMessageType(CharSequence fixMessage, FieldCursor cursor) {
+        final String messageType = meta.getMessageType();
+        final int start = cursor.lastValueStart();
+        if (cursor.lastValueEnd() - start != messageType.length()) {
+            return false;
+        }
+        for (int i = 0; i < messageType.length(); i++) {
+            if (fixMessage.charAt(start + i) != messageType.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String nameOf(FixFieldMeta f) {
+        return (f instanceof FixDynamicFieldMeta) ? ((FixDynamicFieldMeta) f).getName() : String.valueOf(f.getTag());
+    }
+
+    /**
+     * Adds the fields walked by NativeFixFieldExtractor.visit() to the rows of a batch and of its child batches.
+     */
+    private final class RowVisitor implements FixFieldVisitor {
+        private CharSequence fixMessage;
+        private int depth;
+        // the current block, batch, row, parent row and unknown fields of each nesting level
+        private Block[] blocks = new Block[4];
+        private ColumnarBatch[] batches = new ColumnarBatch[4];
+        private int[] rows = new int[4];
+        private int[] parentRows = new int[4];
+        private StringBuilder[] unknownFields = new StringBuilder[4];
+
+        void start(CharSequence fixMessage, ColumnarBatch batch) {
+            this.fixMessage = fixMessage;
+            this.depth = -1;
+            push(root, batch, -1);
+        }
+
+        @Override
+        public void onField(int index, FieldCursor cursor) {
+            batches[depth].columns[blocks[depth].slotOf(index)].read(fixMessage, cursor, rows[depth]);
+        }
+
+        @Override
+        public void onGroupValue(int index, FieldCursor cursor) {
+            final ColumnarBatch group = batches[depth].groups[blocks[depth].slotOf(index)];
+            group.columns[0].read(fixMessage, cursor, group.beginRow());
+            group.commitRow(rows[depth]);
+        }
+
+        @Override
+        public void onEntry(int index) {
+            final int slot = blocks[depth].slotOf(index);
+            push(blocks[depth].components[slot], batches[depth].groups[slot], rows[depth]);
+        }
+
+        @Override
+        public void onUnknownField(FieldCursor cursor) {
+            final StringBuilder fields = unknownFields[depth];
+            fields.append(fixMessage, cursor.lastFieldStart(), cursor.position());
+            if (fixMessage.charAt(cursor.position() - 1) != SOH) {
+                fields.append(SOH);
+            }
+        }
+
+        @Override
+        public void onEnd(boolean[] seen) {
+            final Block block = blocks[depth];
+            final ColumnarBatch batch = batches[depth];
+            for (int i = 0; i < seen.length; i++) {
+                final int slot = block.slotOf(i);
+                if (!seen[i] && slot >= 0 && batch.columns[slot] != null) {
+                    batch.columns[slot].setNull(rows[depth]);
+                }
+            }
+            if (unknownFields[depth].length() > 0) {
+                batch.unknownFields.set(rows[depth], unknownFields[depth]);
+            }
+            batch.commitRow(parentRows[depth]);
+            blocks[depth] = null;
+            batches[depth] = null;
+            depth--;
+        }
+
+        private void push(Block block, ColumnarBatch batch, int parentRow) {
+            if (++depth == blocks.length) {
+                blocks = Arrays.copyOf(blocks, depth * 2);
+                batches = Arrays.copyOf(batches, depth * 2);
+                rows = Arrays.copyOf(rows, depth * 2);
+                parentRows = Arrays.copyOf(parentRows, depth * 2);
+                unknownFields = Arrays.copyOf(unknownFields, depth * 2);
+            }
+            if (unknownFields[depth] == null) {
+                unknownFields[depth] = new StringBuilder();
+            }
+            unknownFields[depth].setLength(0);
+            blocks[depth] = block;
+            batches[depth] = batch;
+            rows[depth] = batch.beginRow();
+            parentRows[depth] = parentRow;
+        }
+    }
+
+    /**
+     * The fields of a message or a group component indexed by slot, with a lookup table from the indexes of the meta
+     * fields to slots.
+     */
+    private static final class Block {
+        final List<FixFieldMeta> allFields;
+        final FixFieldMeta[] fields;
+        final Block[] components;
+        // the slot of each meta field, or -1 for constant fields and repeated tags
+        final int[] slotsByIndex;
+        // the index of the meta field before which the unknown fields are written
+        final int unknownFieldsIndex;
+
+        Block(List<FixFieldMeta> allFields) {
+            this.allFields = allFields;
+            this.slotsByIndex = new int[allFields.size()];
+            final Set<Integer> mappedTags = new HashSet<>();
+            final List<FixFieldMeta> mapped = new ArrayList<>();
+            for (int i = 0; i < allFields.size(); i++) {
+                final FixFieldMeta f = allFields.get(i);
+                if (!(f instanceof FixConstantFieldMeta) && mappedTags.add(f.getTag())) {
+                    slotsByIndex[i] = mapped.size();
+                    mapped.add(f);
+                } else {
+                    slotsByIndex[i] = -1;
+                }
+            }
+            this.fields = mapped.toArray(new FixFieldMeta[mapped.size()]);
+            this.unknownFieldsIndex = unknownFieldsIndex(allFields);
+            this.components = new Block[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                if (fields[i].isGroup() && !((FixGroupMeta) fields[i]).isSimple()) {
+                    final FixBlockMeta<?> componentMeta = ((FixGroupMeta) fields[i]).getComponentMeta();
+                    components[i] = new Block(componentMeta.getFields());
+                }
+            }
+        }
+
+        /**
+         * @return the slot of the meta field at the given index.
+         */
+        int slotOf(int index) {
+            return slotsByIndex[index];
+        }
+
+        /**
+         * Writes the fields of the given row to the given builder. The unknown fields of the row are written before the
+         * first group of components (or at the end), so that they are not taken for fields of its last entry when the
+         * message is decoded again.
+         */
+        void encode(NativeFixMessageBuilder builder, ColumnarBatch batch, int row) {
+            for (int i = 0; i < allFields.size(); i++) {
+                if (i == unknownFieldsIndex) {
+                    encodeUnknownFields(builder, batch, row);
+                }
+                final FixFieldMeta f = allFields.get(i);
+                if (f instanceof FixConstantFieldMeta) {
+                    builder.setField(f.getTag(), f.getValue(null), f.isHeader());
+                    continue;
+                }
+                final int slot = slotOf(i);
+                if (slot < 0) {
+                    continue;
+                }
+                if (f.isGroup()) {
+                    encodeGroup(builder, batch.groups[slot], slot, row);
+                } else {
+                    final Object value = batch.columns[slot].getObject(row);
+                    if (value != null) {
+                        builder.setField(f.getTag(), value, f.isHeader());
+                    }
+                }
+            }
+            if (unknownFieldsIndex == allFields.size()) {
+                encodeUnknownFields(builder, batch, row);
+            }
+        }
+
+        private static void encodeUnknownFields(NativeFixMessageBuilder builder, ColumnarBatch batch, int row) {
+            final String raw = batch.unknownFields.get(row);
+            if (raw == null) {
+                return;
+            }
+            final UnknownFields unknownFields = new UnknownFields();
+            final FieldCursor cursor = FieldCursor.create(raw);
+            while (cursor.nextField()) {
+                unknownFields.add(raw, cursor.lastTag(), cursor.lastFieldStart(), cursor.position());
+            }
+            builder.setUnknownFields(unknownFields);
+        }
+
+        /**
+         * @return the index of the first group of components among the given fields or the number of fields if there
+         *         is none.
+         */
+        private static int unknownFieldsIndex(List<FixFieldMeta> allFields) {
+            for (int i = 0; i < allFields.size(); i++) {
+                final FixFieldMeta f = allFields.get(i);
+                if (f.isGroup() && !((FixGroupMeta) f).isSimple()) {
+                    return i;
+                }
+            }
+            return allFields.size();
+        }
+
+        private void encodeGroup(NativeFixMessageBuilder builder, ColumnarBatch group, int slot, int row) {
+            final FixGroupMeta groupMeta = (FixGroupMeta) fields[slot];
+            final int count = group.entryCount(row);
+            if (count == 0) {
+                return;
+            }
+            builder.setField(groupMeta.getTag(), count, groupMeta.isHeader());
+            for (int entry = group.firstEntry(row), end = entry + count; entry < end; entry++) {
+                if (components[slot] != null) {
+                    components[slot].encode(builder, group, entry);
+                } else {
+                    final Object value = group.columns[0].getObject(entry);
+                    if (value != null) {
+                        builder.setField(groupMeta.getComponentTag(), value, groupMeta.isHeader());
+                    }
+                }
+            }
+        }
+    }
+}
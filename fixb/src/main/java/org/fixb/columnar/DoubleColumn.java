@@ -0,0 +1,127 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.columnar;
+
+import org.fixb.impl.FieldCursor;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * A column of floating point values, used for fields of type double, float and BigDecimal. Plain decimal values with
+ * up to 15 significant digits are parsed without creating intermediate Strings.
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class DoubleColumn extends Column {
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+    };
+    private static final long MAX_EXACT = 1L << 53;
+
+    private double[] values = new double[0];
+
+    DoubleColumn(int tag, String name, Class<?> type) {
+        super(tag, name, type);
+    }
+
+    /**
+     * @return the value of the given row or NaN if the field is absent in the row.
+     */
+    public double get(int row) {
+        return values[row];
+    }
+
+    /**
+     * @return the array of values indexed by row.
+     */
+    public double[] values() {
+        return values;
+    }
+
+    /**
+     * Sets the value of the given row.
+     */
+    void set(int row, double value) {
+        values[row] = value;
+        setPresent(row, true);
+    }
+
+    @Override
+    Object getObject(int row) {
+        if (isNull(row)) {
+            return null;
+        }
+        return (getType() == BigDecimal.class) ? BigDecimal.valueOf(values[row]) : (Object) values[row];
+    }
+
+    @Override
+    void read(CharSequence fixMessage, FieldCursor cursor, int row) {
+        values[row] = parse(fixMessage, cursor);
+        setPresent(row, true);
+    }
+
+    @Override
+    void ensureCapacity(int rows) {
+        if (values.length < rows) {
+            values = Arrays.copyOf(values, grow(values.length, rows));
+        }
+    }
+
+    @Override
+    void setNull(int row) {
+        values[row] = Double.NaN;
+        setPresent(row, false);
+    }
+
+    /**
+     * Parses a value of the form [-]digits[.digits]. As long as the digits form an integer that is exactly
+     * representable as a double, dividing it by a power of ten gives the correctly rounded result. Other values are
+     * parsed by Double.parseDouble().
+     */
+    static double parse(CharSequence fixMessage, FieldCursor cursor) {
+        final int end = cursor.lastValueEnd();
+        int i = cursor.lastValueStart();
+        final boolean negative = i < end && fixMessage.charAt(i) == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int scale = -1;
+        int digits = 0;
+        for (; i < end; i++) {
+            final char c = fixMessage.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                if (scale >= 0) {
+                    scale++;
+                }
+                if (++digits > 18) {
+                    break;
+                }
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                break;
+            }
+        }
+        if (i < end || digits == 0 || mantissa >= MAX_EXACT) {
+            return Double.parseDouble(cursor.lastValue());
+        }
+        final double value = (scale > 0) ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+        return negative ? -value : value;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.columnar;
+
+import org.fixb.impl.FieldCursor;
+import org.fixb.meta.FixEnumDictionary;
+
+import java.util.Arrays;
+
+/**
+ * A column of enum values stored as ordinals. FIX values are mapped to the enum constants by the FixEnumMeta of the
+ * enum type if there is one in the enum dictionary, otherwise they are read as ordinals incremented by one (the same
+ * way as NativeFixFieldExtractor does). Values that do not map to any constant are stored as nulls.
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class EnumColumn extends Column {
+    private final Enum<?>[] constants;
+    private final String[] fixValues;
+    private int[] ordinals = new int[0];
+
+    @SuppressWarnings("unchecked")
+    EnumColumn(int tag, String name, Class<?> type, FixEnumDictionary enumDictionary) {
+        super(tag, name, type);
+        this.constants = (Enum<?>[]) type.getEnumConstants();
+        this.fixValues = new String[constants.length];
+        final boolean mapped = enumDictionary.hasFixEnumMeta(type);
+        for (int i = 0; i < constants.length; i++) {
+            fixValues[i] = mapped ?
+                    enumDictionary.getFixEnumMeta((Class) type).fixValueForEnum(constants[i]) :
+                    String.valueOf(i + 1);
+        }
+    }
+
+    /**
+     * @return the value of the given row or null if the field is absent in the row.
+     */
+    public Enum<?> get(int row) {
+        return (ordinals[row] < 0) ? null : constants[ordinals[row]];
+    }
+
+    /**
+     * @return the ordinal of the value of the given row or -1 if the field is absent in the row.
+     */
+    public int getOrdinal(int row) {
+        return ordinals[row];
+    }
+
+    /**
+     * @return the array of ordinals indexed by row.
+     */
+    public int[] ordinals() {
+        return ordinals;
+    }
+
+    /**
+     * Sets the ordinal of the given row.
+     */
+    void setOrdinal(int row, int ordinal) {
+        ordinals[row] = ordinal;
+        setPresent(row, true);
+    }
+
+    /**
+     * Sets the value of the given row to the constant with the given name or to null if there is no such constant.
+     */
+    void setName(int row, String name) {
+        for (Enum<?> constant : constants) {
+            if (constant.name().equals(name)) {
+                setOrdinal(row, constant.ordinal());
+                return;
+            }
+        }
+        setNull(row);
+    }
+
+    @Override
+    Object getObject(int row) {
+        return get(row);
+    }
+
+    @Override
+    void read(CharSequence fixMessage, FieldCursor cursor, int row) {
+        final int ordinal = ordinalOf(fixMessage, cursor.lastValueStart(), cursor.lastValueEnd());
+        ordinals[row] = ordinal;
+        setPresent(row, ordinal >= 0);
+    }
+
+    @Override
+    void ensureCapacity(int rows) {
+        if (ordinals.length < rows) {
+            ordinals = Arrays.copyOf(ordinals, grow(ordinals.length, rows));
+        }
+    }
+
+    @Override
+    void setNull(int row) {
+        ordinals[row] = -1;
+        setPresent(row, false);
+    }
+
+    private int ordinalOf(CharSequence source, int start, int end) {
+        next:
+        for (int i = 0; i < fixValues.length; i++) {
+            final String value = fixValues[i];
+            if (value == null || value.length() != end - start) {
+                continue;
+            }
+            for (int j = 0; j < value.length(); j++) {
+                if (value.charAt(j) != source.charAt(start + j)) {
+                    continue next;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
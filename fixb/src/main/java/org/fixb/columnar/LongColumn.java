@@ -0,0 +1,100 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.columnar;
+
+import org.fixb.impl.FieldCursor;
+
+import java.util.Arrays;
+
+/**
+ * A column of integer values. Fields of type boolean are stored as 1 and 0, fields of type char as character codes.
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class LongColumn extends Column {
+    private final boolean booleans;
+    private final boolean chars;
+    private long[] values = new long[0];
+
+    LongColumn(int tag, String name, Class<?> type) {
+        super(tag, name, type);
+        this.booleans = type == boolean.class || type == Boolean.class;
+        this.chars = type == char.class || type == Character.class;
+    }
+
+    /**
+     * @return the value of the given row or 0 if the field is absent in the row.
+     */
+    public long get(int row) {
+        return values[row];
+    }
+
+    /**
+     * @return the array of values indexed by row.
+     */
+    public long[] values() {
+        return values;
+    }
+
+    /**
+     * Sets the value of the given row.
+     */
+    void set(int row, long value) {
+        values[row] = value;
+        setPresent(row, true);
+    }
+
+    @Override
+    Object getObject(int row) {
+        if (isNull(row)) {
+            return null;
+        }
+        if (booleans) {
+            return values[row] != 0;
+        }
+        if (chars) {
+            return (char) values[row];
+        }
+        final Class<?> type = getType();
+        return (type == long.class || type == Long.class) ? (Object) values[row] : (Object) (int) values[row];
+    }
+
+    @Override
+    void read(CharSequence fixMessage, FieldCursor cursor, int row) {
+        if (booleans) {
+            final char c = fixMessage.charAt(cursor.lastValueStart());
+            values[row] = (c == 'Y' || c == '1') ? 1 : 0;
+        } else if (chars) {
+            values[row] = fixMessage.charAt(cursor.lastValueStart());
+        } else {
+            values[row] = cursor.lastValueAsLong();
+        }
+        setPresent(row, true);
+    }
+
+    @Override
+    void ensureCapacity(int rows) {
+        if (values.length < rows) {
+            values = Arrays.copyOf(values, grow(values.length, rows));
+        }
+    }
+
+    @Override
+    void setNull(int row) {
+        values[row] = 0;
+        setPresent(row, false);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.columnar;
+
+import org.fixb.impl.FieldCursor;
+import org.fixb.impl.NativeFixFieldExtractor;
+
+import java.util.Arrays;
+
+/**
+ * A column of values of the types that have no primitive representation (e.g. dates and times), which are converted
+ * by a NativeFixFieldExtractor and stored as objects.
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class ObjectColumn extends Column {
+    private final NativeFixFieldExtractor extractor;
+    private Object[] values = new Object[0];
+
+    ObjectColumn(int tag, String name, Class<?> type, NativeFixFieldExtractor extractor) {
+        super(tag, name, type);
+        this.extractor = extractor;
+    }
+
+    /**
+     * @return the value of the given row or null if the field is absent in the row.
+     */
+    public Object get(int row) {
+        return values[row];
+    }
+
+    @Override
+    Object getObject(int row) {
+        return values[row];
+    }
+
+    @Override
+    void read(CharSequence fixMessage, FieldCursor cursor, int row) {
+        values[row] = extractor.getFieldValue(cursor, getType());
+        setPresent(row, values[row] != null);
+    }
+
+    @Override
+    void ensureCapacity(int rows) {
+        if (values.length < rows) {
+            values = Arrays.copyOf(values, grow(values.length, rows));
+        }
+    }
+
+    @Override
+    void setNull(int row) {
+        values[row] = null;
+        setPresent(row, false);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.columnar;
+
+import org.fixb.impl.FieldCursor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A dictionary-encoded column of text values: each row holds the code of its value in the dictionary of the column.
+ * A String is only created for the first occurrence of each distinct value, which suits fields with few distinct
+ * values, e.g. symbols, venues or account ids.
+ *
+ * The dictionary is kept when the batch is cleared, so codes are stable across the batches decoded by one decoder.
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class StringColumn extends Column {
+    private int[] codes = new int[0];
+    private final List<String> dictionary = new ArrayList<>();
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int[] table = new int[INITIAL_CAPACITY * 2];
+
+    StringColumn(int tag, String name, Class<?> type) {
+        super(tag, name, type);
+    }
+
+    /**
+     * @return the value of the given row or null if the field is absent in the row.
+     */
+    public String get(int row) {
+        return isNull(row) ? null : dictionary.get(codes[row]);
+    }
+
+    /**
+     * @return the dictionary code of the value of the given row or -1 if the field is absent in the row.
+     */
+    public int getCode(int row) {
+        return codes[row];
+    }
+
+    /**
+     * @return the array of dictionary codes indexed by row.
+     */
+    public int[] codes() {
+        return codes;
+    }
+
+    /**
+     * @return the value with the given dictionary code.
+     */
+    public String lookup(int code) {
+        return dictionary.get(code);
+    }
+
+    /**
+     * @return the number of distinct values in the dictionary.
+     */
+    public int dictionarySize() {
+        return dictionary.size();
+    }
+
+    /**
+     * Sets the value of the given row.
+     */
+    void set(int row, CharSequence value) {
+        codes[row] = encode(value, 0, value.length());
+        setPresent(row, true);
+    }
+
+    @Override
+    Object getObject(int row) {
+        return get(row);
+    }
+
+    @Override
+    void read(CharSequence fixMessage, FieldCursor cursor, int row) {
+        codes[row] = encode(fixMessage, cursor.lastValueStart(), cursor.lastValueEnd());
+        setPresent(row, true);
+    }
+
+    @Override
+    void ensureCapacity(int rows) {
+        if (codes.length < rows) {
+            codes = Arrays.copyOf(codes, grow(codes.length, rows));
+        }
+    }
+
+    @Override
+    void setNull(int row) {
+        codes[row] = -1;
+        setPresent(row, false);
+    }
+
+    /**
+     * @return the code of the given value, which is added to the dictionary if it is not there yet.
+     */
+    private int encode(CharSequence source, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        final int mask = table.length - 1;
+        int i = mix(hash) & mask;
+        for (int slot; (slot = table[i]) != 0; i = (i + 1) & mask) {
+            if (hashes[slot - 1] == hash && regionEquals(dictionary.get(slot - 1), source, start, end)) {
+                return slot - 1;
+            }
+        }
+
+        final int code = dictionary.size();
+        dictionary.add(source.subSequence(start, end).toString());
+        if (code == hashes.length) {
+            hashes = Arrays.copyOf(hashes, code * 2);
+        }
+        hashes[code] = hash;
+        table[i] = code + 1;
+        if (dictionary.size() * 2 > table.length) {
+            rehash();
+        }
+        return code;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        final int mask = table.length - 1;
+        for (int code = 0; code < dictionary.size(); code++) {
+            int i = mix(hashes[code]) & mask;
+            while (table[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            table[i] = code + 1;
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean regionEquals(String value, CharSequence source, int start, int end) {
+        if (value.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) != source.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
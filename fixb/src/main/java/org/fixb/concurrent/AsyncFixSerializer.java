@@ -0,0 +1,208 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fixb.concurrent;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.fixb.FixSerializer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * An asynchronous facade of a FixSerializer (e.g. NativeFixSerializer) that serializes and deserializes messages on
+ * the given executor, so that the threads reading and writing FIX messages don't have to spend time on encoding and
+ * decoding. Results are delivered as ListenableFutures or to FutureCallbacks.
+ *
+ * The number of submitted but not yet completed tasks is bounded: when the limit is reached, the submitting thread
+ * is blocked until one of the pending tasks completes, which provides back-pressure to the reading side.
+ *
+ * Tasks submitted with a key (e.g. a symbol or an order id) are executed in submission order relative to other tasks
+ * with an equal key; to this end keys are hashed to a fixed number of serial stripes of the executor. Tasks submitted
+ * without a key may be executed in any order.
+ *
+ * If the executor rejects a task, submit methods throw the RejectedExecutionException, or, for a keyed task queued
+ * behind others, its future fails with it. Callbacks are invoked on the executor threads, so a callback must not submit
+ * further tasks while the limit of pending tasks may be reached: it would block an executor thread waiting for a
+ * permit that only the executor threads can release.
+ *
+ * @param <T> the type of the FIX objects
+ * @author vladyslav.yatsenko
+ */
+public class AsyncFixSerializer<T> {
+    /**
+     * The default number of stripes used to preserve the order of tasks with equal keys.
+     */
+    public static final int DEFAULT_ORDERING_STRIPES = 64;
+
+    private final FixSerializer<T> serializer;
+    private final Executor executor;
+    private final Semaphore permits;
+    private final int maxPending;
+    private final SerialExecutor[] stripes;
+
+    /**
+     * The same as the alternative constructor, but uses DEFAULT_ORDERING_STRIPES.
+     */
+    public AsyncFixSerializer(FixSerializer<T> serializer, Executor executor, int maxPending) {
+        this(serializer, executor, maxPending, DEFAULT_ORDERING_STRIPES);
+    }
+
+    /**
+     * @param serializer       a thread-safe serializer to delegate to
+     * @param executor         an executor to run serialization tasks on (e.g. a fixed thread pool)
+     * @param maxPending       the maximum number of submitted tasks that are not completed yet
+     * @param orderingStripes  the number of serial stripes used for tasks submitted with keys
+     */
+    public AsyncFixSerializer(FixSerializer<T> serializer, Executor executor, int maxPending, int orderingStripes) {
+        if (maxPending <= 0 || orderingStripes <= 0) {
+            throw new IllegalArgumentException("maxPending and orderingStripes must be positive");
+        }
+        this.serializer = serializer;
+        this.executor = executor;
+        this.maxPending = maxPending;
+        this.permits = new Semaphore(maxPending);
+        this.stripes = new SerialExecutor[orderingStripes];
+        for (int i = 0; i < orderingStripes; i++) {
+            stripes[i] = new SerialExecutor(executor);
+        }
+    }
+
+    /**
+     * Deserializes the given FIX message asynchronously.
+     *
+     * @return a future of the deserialized object.
+     */
+    public ListenableFuture<T> deserialize(String fixMessage) {
+        return submit(executor, deserializeTask(fixMessage));
+    }
+
+    /**
+     * Deserializes the given FIX message asynchronously after all messages previously submitted with an equal key.
+     *
+     * @return a future of the deserialized object.
+     */
+    public ListenableFuture<T> deserialize(Object key, String fixMessage) {
+        return submit(stripeFor(key), deserializeTask(fixMessage));
+    }
+
+    /**
+     * Deserializes the given FIX message asynchronously and passes the result (or the failure) to the given callback.
+     */
+    public void deserialize(String fixMessage, FutureCallback<? super T> callback) {
+        Futures.addCallback(deserialize(fixMessage), callback);
+    }
+
+    /**
+     * Deserializes the given FIX message asynchronously after all messages previously submitted with an equal key and
+     * passes the result (or the failure) to the given callback. Callbacks of messages with equal keys are invoked in
+     * submission order.
+     */
+    public void deserialize(Object key, String fixMessage, FutureCallback<? super T> callback) {
+        Futures.addCallback(deserialize(key, fixMessage), callback);
+    }
+
+    /**
+     * Serializes the given object asynchronously.
+     *
+     * @return a future of the FIX message.
+     */
+    public ListenableFuture<String> serialize(T message) {
+        return submit(executor, serializeTask(message));
+    }
+
+    /**
+     * Serializes the given object asynchronously after all objects previously submitted with an equal key.
+     *
+     * @return a future of the FIX message.
+     */
+    public ListenableFuture<String> serialize(Object key, T message) {
+        return submit(stripeFor(key), serializeTask(message));
+    }
+
+    /**
+     * @return the number of submitted tasks that have not completed yet.
+     */
+    public int pending() {
+        return maxPending - permits.availablePermits();
+    }
+
+    private Callable<T> deserializeTask(final String fixMessage) {
+        return new Callable<T>() {
+            @Override
+            public T call() {
+                return serializer.deserialize(fixMessage);
+            }
+        };
+    }
+
+    private Callable<String> serializeTask(final T message) {
+        return new Callable<String>() {
+            @Override
+            public String call() {
+                return serializer.serialize(message);
+            }
+        };
+    }
+
+    private Executor stripeFor(Object key) {
+        final int h = key.hashCode();
+        return stripes[((h ^ (h >>> 16)) & Integer.MAX_VALUE) % stripes.length];
+    }
+
+    private <R> ListenableFuture<R> submit(Executor target, final Callable<R> task) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Futures.immediateFailedFuture(e);
+        }
+
+        final SettableFuture<R> future = SettableFuture.create();
+        try {
+            target.execute(new SerialExecutor.Rejectable() {
+                @Override
+                public void run() {
+                    final R result;
+                    try {
+                        result = task.call();
+                    } catch (Throwable e) {
+                        permits.release();
+                        future.setException(e);
+                        return;
+                    }
+                    permits.release();
+                    future.set(result);
+                }
+
+                @Override
+                public void rejected(RejectedExecutionException e) {
+                    permits.release();
+                    future.setException(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+        return future;
+    }
+}
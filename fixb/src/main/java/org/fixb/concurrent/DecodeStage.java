@@ -0,0 +1,47 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.concurrent;
+
+import org.fixb.impl.NativeFixSerializer;
+
+/**
+ * A pipeline stage that decodes the raw FIX messages of the frames published by a reader (e.g. a socket reader
+ * thread) and passes the frames with the decoded objects to a handler.
+ *
+ * Each frame keeps its decoded object, which is re-populated by the next message of the same type if the type is
+ * bound by field injection, so a steady flow of such messages is decoded without allocating new objects.
+ *
+ * @param <T> the type of the FIX objects
+ * @author vladyslav.yatsenko
+ */
+public class DecodeStage<T> extends PipelineStage<T> {
+    private final NativeFixSerializer<T> serializer;
+
+    /**
+     * @param ringBuffer a buffer of frames with raw FIX messages
+     * @param serializer a serializer to decode the messages with
+     * @param handler    a handler of the decoded frames
+     */
+    public DecodeStage(RingBuffer<FixFrame<T>> ringBuffer, NativeFixSerializer<T> serializer, FixFrameHandler<T> handler) {
+        super(ringBuffer, handler);
+        this.serializer = serializer;
+    }
+
+    @Override
+    protected void process(FixFrame<T> frame) {
+        frame.setMessage(serializer.deserialize(frame.chars(), frame.getMessage()));
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.concurrent;
+
+import org.fixb.impl.NativeFixSerializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A pipeline stage that encodes the objects of the frames published by an application thread into the frames' byte
+ * buffers and passes the frames to a handler (e.g. the one writing the buffers to a socket). When the handler is
+ * called, the buffer of the frame is flipped, i.e. the encoded message is between its position and its limit.
+ *
+ * Messages are written by a builder re-used by the stage thread, so no intermediate Strings are created.
+ *
+ * @param <T> the type of the FIX objects
+ * @author vladyslav.yatsenko
+ */
+public class EncodeStage<T> extends PipelineStage<T> {
+    private final NativeFixSerializer<T> serializer;
+
+    /**
+     * @param ringBuffer a buffer of frames with objects to encode
+     * @param serializer a serializer to encode the objects with
+     * @param handler    a handler of the encoded frames
+     */
+    public EncodeStage(RingBuffer<FixFrame<T>> ringBuffer, NativeFixSerializer<T> serializer, FixFrameHandler<T> handler) {
+        super(ringBuffer, handler);
+        this.serializer = serializer;
+    }
+
+    @Override
+    protected void process(FixFrame<T> frame) {
+        final ByteBuffer buffer = frame.getBuffer();
+        buffer.clear();
+        serializer.serialize(frame.getMessage(), buffer);
+        buffer.flip();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.concurrent;
+
+import com.google.common.base.Supplier;
+import org.fixb.impl.AsciiString;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A re-usable slot of a RingBuffer of a FIX pipeline, which holds a raw FIX message in a pre-allocated byte buffer
+ * together with its decoded object. The raw message is the content of the buffer between its position and its limit,
+ * i.e. a producer of raw messages writes the bytes to the buffer and flips it before publishing the frame.
+ *
+ * The decoded object is kept in the frame after the frame is released, so that the next message of the same type is
+ * decoded into the same instance (see NativeFixSerializer.deserialize(CharSequence, Object)). Hence neither the object
+ * nor the CharSequence values referencing the buffer may be used after the frame has been released.
+ *
+ * @param <T> the type of the FIX objects
+ * @author vladyslav.yatsenko
+ */
+public final class FixFrame<T> {
+    private final ByteBuffer buffer;
+    private final AsciiString chars = new AsciiString();
+    private T message;
+
+    /**
+     * @param capacity the size of the byte buffer, i.e. the maximum length of a FIX message
+     */
+    public FixFrame(int capacity) {
+        this.buffer = ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * @return a factory of frames of the given capacity to be used with RingBuffer.
+     */
+    public static <T> Supplier<FixFrame<T>> factory(final int capacity) {
+        return new Supplier<FixFrame<T>>() {
+            @Override
+            public FixFrame<T> get() {
+                return new FixFrame<>(capacity);
+            }
+        };
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    public T getMessage() {
+        return message;
+    }
+
+    public void setMessage(T message) {
+        this.message = message;
+    }
+
+    /**
+     * @return the raw message as a CharSequence backed by the buffer.
+     */
+    CharSequence chars() {
+        return chars.wrap(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.concurrent;
+
+/**
+ * Receives the frames processed by a pipeline stage. The methods are invoked on the thread of the stage and the frame
+ * is released as soon as they return.
+ *
+ * @param <T> the type of the FIX objects
+ * @author vladyslav.yatsenko
+ */
+public interface FixFrameHandler<T> {
+    /**
+     * Called when the given frame has been processed successfully.
+     */
+    void onFrame(FixFrame<T> frame);
+
+    /**
+     * Called when the stage or onFrame() has failed to process the given frame.
+     */
+    void onError(FixFrame<T> frame, RuntimeException e);
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.concurrent;
+
+/**
+ * A base class of the pipeline stages that consume FixFrames from a RingBuffer on a dedicated thread. Each taken frame
+ * is processed, passed to a FixFrameHandler and released. Failures of a single frame are reported to the handler and
+ * don't stop the stage, neither do failures of the handler's onError() (which are ignored). If the stage dies
+ * nevertheless (e.g. of an Error), it is marked as terminated, so that the ones waiting for it to drain can give up.
+ *
+ * @param <T> the type of the FIX objects
+ * @author vladyslav.yatsenko
+ */
+public abstract class PipelineStage<T> implements Runnable {
+    private final RingBuffer<FixFrame<T>> ringBuffer;
+    private final FixFrameHandler<T> handler;
+    private volatile boolean running = true;
+    private volatile boolean terminated;
+
+    /**
+     * @param ringBuffer a buffer to consume the frames from (the stage is its only consumer)
+     * @param handler    a handler to pass the processed frames to
+     */
+    protected PipelineStage(RingBuffer<FixFrame<T>> ringBuffer, FixFrameHandler<T> handler) {
+        this.ringBuffer = ringBuffer;
+        this.handler = handler;
+    }
+
+    @Override
+    public void run() {
+        final WaitStrategy waitStrategy = ringBuffer.getWaitStrategy();
+        try {
+            while (running) {
+                final FixFrame<T> frame = ringBuffer.poll();
+                if (frame == null) {
+                    waitStrategy.idle();
+                    continue;
+                }
+                try {
+                    process(frame);
+                    handler.onFrame(frame);
+                } catch (RuntimeException e) {
+                    reportError(frame, e);
+                } finally {
+                    ringBuffer.release();
+                }
+            }
+        } finally {
+            terminated = true;
+        }
+    }
+
+    /**
+     * Makes run() return after the frame being processed, if any.
+     */
+    public void halt() {
+        running = false;
+    }
+
+    /**
+     * @return true if run() has returned (after halt() or a failure).
+     */
+    public boolean isTerminated() {
+        return terminated;
+    }
+
+    private void reportError(FixFrame<T> frame, RuntimeException e) {
+        try {
+            handler.onError(frame, e);
+        } catch (RuntimeException ignored) {
+            // a failing error handler must not stop the stage
+        }
+    }
+
+    /**
+     * Processes the given frame before it is passed to the handler.
+     */
+    protected abstract void process(FixFrame<T> frame);
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.concurrent;
+
+import com.google.common.base.Supplier;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded single-producer/single-consumer queue of pre-allocated, re-usable slots, which is used to hand FIX messages
+ * over between pipeline stages (e.g. from a socket reader to a DecodeStage) without locks and without allocating a
+ * node per message.
+ *
+ * The producer claims the next free slot, fills it in and publishes it; the consumer takes the next published slot,
+ * processes it and releases it, which makes the slot available to the producer again. Only one thread may produce and
+ * only one thread may consume at a time.
+ *
+ * @param <E> the type of the slots
+ * @author vladyslav.yatsenko
+ */
+public final class RingBuffer<E> {
+    private final Object[] slots;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+
+    // the number of slots published by the producer and released by the consumer respectively
+    private final Sequence published = new Sequence();
+    private final Sequence released = new Sequence();
+
+    // producer's state
+    private long claimed;
+    private long releasedCache;
+
+    // consumer's state
+    private long taken;
+    private long publishedCache;
+
+    /**
+     * @param capacity     the number of slots, must be a power of two
+     * @param slotFactory  creates the slots
+     * @param waitStrategy defines how claim() and take() wait for a free or a published slot respectively
+     */
+    public RingBuffer(int capacity, Supplier<? extends E> slotFactory, WaitStrategy waitStrategy) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.slots = new Object[capacity];
+        this.mask = capacity - 1;
+        this.waitStrategy = waitStrategy;
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = slotFactory.get();
+        }
+    }
+
+    /**
+     * @return the number of slots.
+     */
+    public int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * @return the wait strategy of this buffer.
+     */
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    /**
+     * @return the number of published slots that have not been released yet.
+     */
+    public int size() {
+        return (int) (published.get() - released.get());
+    }
+
+    /**
+     * Claims the next free slot, waiting according to the wait strategy while the buffer is full. The slot must be
+     * published before the next one is claimed.
+     *
+     * @return the claimed slot.
+     */
+    public E claim() {
+        E slot;
+        while ((slot = tryClaim()) == null) {
+            waitStrategy.idle();
+        }
+        return slot;
+    }
+
+    /**
+     * Claims the next free slot if there is one.
+     *
+     * @return the claimed slot or null if the buffer is full.
+     */
+    public E tryClaim() {
+        if (claimed == published.get()) {
+            if (claimed - releasedCache == slots.length) {
+                releasedCache = released.get();
+                if (claimed - releasedCache == slots.length) {
+                    return null;
+                }
+            }
+            claimed++;
+        }
+        return slot(claimed - 1);
+    }
+
+    /**
+     * Makes the last claimed slot available to the consumer.
+     */
+    public void publish() {
+        if (claimed == published.get()) {
+            throw new IllegalStateException("No slot has been claimed");
+        }
+        published.lazySet(claimed);
+    }
+
+    /**
+     * Takes the next published slot, waiting according to the wait strategy while the buffer is empty. The slot must
+     * be released before the next one is taken.
+     *
+     * @return the taken slot.
+     */
+    public E take() {
+        E slot;
+        while ((slot = poll()) == null) {
+            waitStrategy.idle();
+        }
+        return slot;
+    }
+
+    /**
+     * Takes the next published slot if there is one.
+     *
+     * @return the taken slot or null if the buffer is empty.
+     */
+    public E poll() {
+        if (taken == released.get()) {
+            if (taken == publishedCache) {
+                publishedCache = published.get();
+                if (taken == publishedCache) {
+                    return null;
+                }
+            }
+            taken++;
+        }
+        return slot(taken - 1);
+    }
+
+    /**
+     * Returns the last taken slot to the producer.
+     */
+    public void release() {
+        if (taken == released.get()) {
+            throw new IllegalStateException("No slot has been taken");
+        }
+        released.lazySet(taken);
+    }
+
+    @SuppressWarnings("unchecked")
+    private E slot(long sequence) {
+        return (E) slots[(int) sequence & mask];
+    }
+
+    /**
+     * A counter padded to its own cache line, so that the producer and the consumer don't invalidate each other's
+     * cache lines when updating their counters.
+     */
+    @SuppressWarnings("unused")
+    private static final class Sequence extends AtomicLong {
+        private static final long serialVersionUID = 1;
+        private long p1, p2, p3, p4, p5, p6, p7;
+    }
+}
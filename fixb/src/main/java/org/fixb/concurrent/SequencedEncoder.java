@@ -0,0 +1,289 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.concurrent;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.fixb.FixException;
+import org.fixb.impl.NativeFixSerializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import static org.fixb.FixConstants.BEGIN_STRING_TAG;
+import static org.fixb.FixConstants.BODY_LENGTH_TAG;
+import static org.fixb.FixConstants.MSG_SEQ_NUM_TAG;
+import static org.fixb.impl.AsciiEncoding.digits;
+import static org.fixb.impl.AsciiEncoding.put;
+import static org.fixb.impl.AsciiEncoding.putCheckSum;
+import static org.fixb.impl.AsciiEncoding.putInt;
+import static org.fixb.impl.FormatConstants.SOH;
+
+/**
+ * Serializes bursts of outbound messages on several threads while writing them to a stream strictly in submission
+ * order with consecutive sequence numbers.
+ *
+ * The header and the body fields of each message, which is where nearly all the work is, are formatted on the given
+ * executor, and the checksum of those bytes is computed there as well. A single writer thread then takes the encoded
+ * messages in submission order, stamps MsgSeqNum(34) right after MsgType(35), prepends BeginString(8) and
+ * BodyLength(9), appends CheckSum(10) and writes the message to the stream. Hence the FIX classes must not bind
+ * MsgSeqNum themselves, which submit() checks once per class.
+ *
+ * The number of submitted but not yet written messages is bounded, submit() blocks when the limit is reached. A message
+ * that fails to encode is skipped without consuming a sequence number and the failure is rethrown by stop(). If the
+ * writer thread is interrupted, it stops writing but keeps taking (and discarding) the submitted messages until stop(),
+ * so that submit() never blocks on a queue that nobody drains.
+ *
+ * @param <T> the type of the FIX objects
+ * @author vladyslav.yatsenko
+ */
+public class SequencedEncoder<T> {
+    // the maximum length of BeginString, BodyLength, MsgSeqNum and CheckSum fields
+    private static final int ENVELOPE_LENGTH = 64;
+
+    private final ListenableFuture<Encoded> end = Futures.immediateFuture(null);
+    private final NativeFixSerializer<T> serializer;
+    private final Executor executor;
+    private final OutputStream out;
+    private final BlockingQueue<ListenableFuture<Encoded>> queue;
+    private final ThreadLocal<ByteBuffer> encodeBuffers;
+    private final Set<Class<?>> checkedTypes = Collections.newSetFromMap(new ConcurrentHashMap<Class<?>, Boolean>());
+    private final ByteBuffer writeBuffer;
+    private final Thread writer;
+    private volatile int nextSeqNum;
+    private volatile Exception failure;
+
+    /**
+     * @param serializer       a serializer to format the messages with
+     * @param executor         an executor to format the messages on (e.g. a fixed thread pool)
+     * @param maxPending       the maximum number of submitted messages that are not written yet
+     * @param maxMessageLength the maximum length of a FIX message in bytes
+     * @param out              a stream to write the messages to (it is flushed once all the submitted messages have
+     *                         been written, but not closed)
+     * @param nextSeqNum       the sequence number of the first submitted message
+     * @param threadFactory    a factory of the writer thread
+     */
+    public SequencedEncoder(NativeFixSerializer<T> serializer,
+                            Executor executor,
+                            int maxPending,
+                            final int maxMessageLength,
+                            OutputStream out,
+                            int nextSeqNum,
+                            ThreadFactory threadFactory) {
+        this.serializer = serializer;
+        this.executor = executor;
+        this.out = out;
+        this.nextSeqNum = nextSeqNum;
+        this.queue = new ArrayBlockingQueue<>(maxPending);
+        this.writeBuffer = ByteBuffer.allocate(maxMessageLength + ENVELOPE_LENGTH);
+        this.encodeBuffers = new ThreadLocal<ByteBuffer>() {
+            @Override
+            protected ByteBuffer initialValue() {
+                return ByteBuffer.allocate(maxMessageLength);
+            }
+        };
+        this.writer = threadFactory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                writeAll();
+            }
+        });
+    }
+
+    /**
+     * Starts the writer thread.
+     */
+    public void start() {
+        writer.start();
+    }
+
+    /**
+     * Submits the given message for encoding. The messages are written in the order they are submitted, so this method
+     * is meant to be called by a single thread (or the callers have to order their calls themselves).
+     *
+     * @throws InterruptedException if interrupted while waiting for the number of pending messages to go down.
+     * @throws RejectedExecutionException if the executor rejects the message (which is then skipped like a message
+     *         that fails to encode).
+     * @throws FixException if the class of the given message binds MsgSeqNum(34).
+     */
+    public void submit(final T message) throws InterruptedException {
+        if (!checkedTypes.contains(message.getClass())) {
+            serializer.checkNotBound(message.getClass(), MSG_SEQ_NUM_TAG);
+            checkedTypes.add(message.getClass());
+        }
+        final SettableFuture<Encoded> future = SettableFuture.create();
+        queue.put(future);
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        future.set(encode(message));
+                    } catch (Throwable e) {
+                        future.setException(e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // the future is queued already, the writer thread must not wait for it forever
+            future.setException(e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return the sequence number of the next message to be written.
+     */
+    public int getNextSeqNum() {
+        return nextSeqNum;
+    }
+
+    /**
+     * Waits for all the submitted messages to be written and stops the writer thread.
+     *
+     * @throws IOException if the stream has failed (no messages are written after such failure).
+     * @throws RuntimeException if some of the messages have failed to encode (a failure that is not a RuntimeException
+     *         is wrapped in a FixException).
+     * @throws IllegalStateException if the writer thread has been interrupted (no messages are written after that).
+     */
+    public void stop() throws IOException, InterruptedException {
+        queue.put(end);
+        writer.join();
+        final Exception e = failure;
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        } else if (e instanceof InterruptedException) {
+            throw new IllegalStateException("The writer thread has been interrupted", e);
+        } else if (e != null) {
+            throw (RuntimeException) e;
+        }
+    }
+
+    private Encoded encode(T message) {
+        final ByteBuffer buffer = encodeBuffers.get();
+        buffer.clear();
+        final int length = serializer.serializeBody(message, buffer);
+        final byte[] bytes = new byte[length];
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += bytes[i] = buffer.get(i);
+        }
+        return new Encoded(bytes, sum);
+    }
+
+    private void writeAll() {
+        final byte[] beginString = (BEGIN_STRING_TAG + "=" + serializer.getProtocolVersion() + SOH + BODY_LENGTH_TAG + "=")
+                .getBytes(StandardCharsets.US_ASCII);
+        int beginStringSum = 0;
+        for (byte b : beginString) {
+            beginStringSum += b;
+        }
+        boolean writing = true;
+        boolean interrupted = false;
+        while (true) {
+            final Encoded encoded;
+            try {
+                final ListenableFuture<Encoded> future = queue.take();
+                if (future == end) {
+                    break;
+                }
+                encoded = future.get();
+            } catch (InterruptedException e) {
+                // the submitted messages are still taken and discarded, otherwise submit() would block forever
+                failure = e;
+                interrupted = true;
+                writing = false;
+                continue;
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = (e.getCause() instanceof RuntimeException)
+                            ? (RuntimeException) e.getCause()
+                            : new FixException("Failed to encode a message", e.getCause());
+                }
+                continue;
+            }
+            if (!writing) {
+                continue;
+            }
+            try {
+                write(encoded, beginString, beginStringSum);
+                nextSeqNum++;
+            } catch (IOException e) {
+                failure = e;
+                writing = false;
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        try {
+            if (writing) {
+                out.flush();
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(Encoded encoded, byte[] beginString, int beginStringSum) throws IOException {
+        final ByteBuffer buffer = writeBuffer;
+        buffer.clear();
+        final byte[] bytes = encoded.bytes;
+        int msgTypeEnd = 0;
+        while (bytes[msgTypeEnd] != SOH) {
+            msgTypeEnd++;
+        }
+        msgTypeEnd++;
+
+        buffer.put(beginString);
+        int sum = beginStringSum + encoded.sum;
+        sum += putInt(buffer, bytes.length + digits(nextSeqNum) + 4) + put(buffer, SOH);
+        buffer.put(bytes, 0, msgTypeEnd);
+        sum += putInt(buffer, MSG_SEQ_NUM_TAG) + put(buffer, '=') + putInt(buffer, nextSeqNum) + put(buffer, SOH);
+        buffer.put(bytes, msgTypeEnd, bytes.length - msgTypeEnd);
+        putCheckSum(buffer, sum);
+        out.write(buffer.array(), 0, buffer.position());
+    }
+
+    /**
+     * The header and body fields of a message and their checksum.
+     */
+    private static final class Encoded {
+        final byte[] bytes;
+        final int sum;
+
+        Encoded(byte[] bytes, int sum) {
+            this.bytes = bytes;
+            this.sum = sum;
+        }
+    }
+}
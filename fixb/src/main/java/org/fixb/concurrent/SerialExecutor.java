@@ -0,0 +1,100 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fixb.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * An Executor that runs the submitted tasks one at a time, in submission order, on an underlying executor. It does not
+ * own any thread: a task is handed to the underlying executor once the previous one has completed.
+ *
+ * If the underlying executor rejects a task submitted to an idle SerialExecutor, the RejectedExecutionException is
+ * thrown by execute(). If it rejects a queued task when the previous one completes, there is no caller to throw to: the
+ * task is notified instead if it implements Rejectable (and otherwise dropped), and the next queued task is tried, so
+ * that a rejection never leaves the executor stuck.
+ *
+ * @author vladyslav.yatsenko
+ */
+final class SerialExecutor implements Executor {
+    /**
+     * A task that is notified when the underlying executor rejects it after it has been queued.
+     */
+    interface Rejectable extends Runnable {
+        void rejected(RejectedExecutionException e);
+    }
+
+    private final Queue<Entry> tasks = new ArrayDeque<>();
+    private final Executor executor;
+    private Entry active;
+
+    /**
+     * @param executor the executor that runs the tasks
+     */
+    SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public synchronized void execute(final Runnable task) {
+        tasks.offer(new Entry(task));
+        if (active == null) {
+            active = tasks.poll();
+            try {
+                executor.execute(active);
+            } catch (RejectedExecutionException e) {
+                active = null;
+                throw e;
+            }
+        }
+    }
+
+    private synchronized void scheduleNext() {
+        while ((active = tasks.poll()) != null) {
+            try {
+                executor.execute(active);
+                return;
+            } catch (RejectedExecutionException e) {
+                if (active.task instanceof Rejectable) {
+                    ((Rejectable) active.task).rejected(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * A queued task, which schedules the next one once it completes.
+     */
+    private final class Entry implements Runnable {
+        final Runnable task;
+
+        Entry(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                scheduleNext();
+            }
+        }
+    }
+}
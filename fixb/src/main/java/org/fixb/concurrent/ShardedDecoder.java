@@ -0,0 +1,167 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.concurrent;
+
+import org.fixb.impl.NativeFixSerializer;
+
+import java.util.concurrent.ThreadFactory;
+
+import static org.fixb.impl.FormatConstants.SOH;
+
+/**
+ * Decodes inbound FIX messages on several threads (shards) while preserving the order of the messages with equal
+ * routing keys, e.g. messages of the same instrument (Symbol(55)) or of the same order (ClOrdID(11)).
+ *
+ * The dispatching thread only scans the raw message for the routing tag and hashes its value, without decoding the
+ * message, and copies the message to a frame of the RingBuffer of the selected shard. Each shard runs a DecodeStage
+ * that decodes the frames and passes them to the handler, so the handler is called concurrently by different shards,
+ * but the messages with equal keys are always handled by the same shard in the order they were dispatched.
+ *
+ * Routing tags are looked up in the order they are given, e.g. with tags 55 and 11 a message is routed by Symbol if
+ * it has one and by ClOrdID otherwise. Messages having none of the routing tags are all routed to the first shard.
+ *
+ * @param <T> the type of the FIX objects
+ * @author vladyslav.yatsenko
+ */
+public class ShardedDecoder<T> {
+    private final RingBuffer<FixFrame<T>>[] rings;
+    private final DecodeStage<T>[] stages;
+    private final Thread[] threads;
+    private final int[] routingTags;
+
+    /**
+     * @param serializer       a serializer to decode the messages with
+     * @param shards           the number of decoding threads
+     * @param ringCapacity     the number of frames per shard, must be a power of two
+     * @param maxMessageLength the maximum length of a FIX message in bytes
+     * @param waitStrategy     defines how the dispatcher and the shards wait for free and published frames
+     * @param handler          a thread-safe handler of the decoded frames
+     * @param threadFactory    a factory of the shard threads
+     * @param routingTags      the tags, the values of which are used as routing keys, in the order of preference
+     */
+    public ShardedDecoder(NativeFixSerializer<T> serializer,
+                          int shards,
+                          int ringCapacity,
+                          int maxMessageLength,
+                          WaitStrategy waitStrategy,
+                          FixFrameHandler<T> handler,
+                          ThreadFactory threadFactory,
+                          int... routingTags) {
+        if (shards <= 0 || routingTags.length == 0) {
+            throw new IllegalArgumentException("At least one shard and one routing tag are required");
+        }
+        this.routingTags = routingTags.clone();
+        @SuppressWarnings("unchecked")
+        final RingBuffer<FixFrame<T>>[] rings = (RingBuffer<FixFrame<T>>[]) new RingBuffer<?>[shards];
+        @SuppressWarnings("unchecked")
+        final DecodeStage<T>[] stages = (DecodeStage<T>[]) new DecodeStage<?>[shards];
+        this.rings = rings;
+        this.stages = stages;
+        this.threads = new Thread[shards];
+        for (int i = 0; i < shards; i++) {
+            rings[i] = new RingBuffer<>(ringCapacity, FixFrame.<T>factory(maxMessageLength), waitStrategy);
+            stages[i] = new DecodeStage<>(rings[i], serializer, handler);
+            threads[i] = threadFactory.newThread(stages[i]);
+        }
+    }
+
+    /**
+     * Starts the shard threads.
+     */
+    public void start() {
+        for (Thread thread : threads) {
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the shard threads once they have handled the messages dispatched so far, and waits for them to terminate.
+     */
+    public void stop() throws InterruptedException {
+        for (int i = 0; i < rings.length; i++) {
+            while (rings[i].size() > 0 && !stages[i].isTerminated()) {
+                rings[i].getWaitStrategy().idle();
+            }
+            stages[i].halt();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /**
+     * Copies the given FIX message to a frame of the shard selected by its routing key, waiting while the shard's
+     * buffer is full. This method must always be called by the same thread.
+     *
+     * @throws java.nio.BufferOverflowException if the message is longer than maxMessageLength.
+     */
+    public void dispatch(byte[] buffer, int offset, int length) {
+        final RingBuffer<FixFrame<T>> ring = rings[shardOf(buffer, offset, length)];
+        final FixFrame<T> frame = ring.claim();
+        frame.getBuffer().clear();
+        frame.getBuffer().put(buffer, offset, length).flip();
+        ring.publish();
+    }
+
+    /**
+     * @return the index of the shard that handles the given message.
+     */
+    public int shardOf(byte[] buffer, int offset, int length) {
+        final int hash = routingHash(buffer, offset, offset + length);
+        return (hash == 0) ? 0 : (hash & Integer.MAX_VALUE) % rings.length;
+    }
+
+    /**
+     * Scans the fields of the message for the most preferred routing tag.
+     *
+     * @return the hash of the routing key or 0 if the message has none of the routing tags.
+     */
+    private int routingHash(byte[] buffer, int start, int end) {
+        int bestHash = 0;
+        int bestIndex = routingTags.length;
+        int i = start;
+        while (i < end && bestIndex > 0) {
+            int tag = 0;
+            byte b;
+            while (i < end && (b = buffer[i]) != '=') {
+                tag = tag * 10 + (b - '0');
+                i++;
+            }
+            i++;
+            final int index = indexOf(tag, bestIndex);
+            int hash = 1;
+            while (i < end && (b = buffer[i]) != SOH) {
+                hash = 31 * hash + b;
+                i++;
+            }
+            i++;
+            if (index >= 0) {
+                bestIndex = index;
+                bestHash = (hash == 0) ? 1 : hash;
+            }
+        }
+        return bestHash;
+    }
+
+    private int indexOf(int tag, int limit) {
+        for (int i = 0; i < limit; i++) {
+            if (routingTags[i] == tag) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.concurrent;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Defines what a pipeline stage does while it waits for a RingBuffer to become non-empty (or non-full), trading CPU
+ * usage for latency.
+ *
+ * @author vladyslav.yatsenko
+ */
+public enum WaitStrategy {
+    /**
+     * Spins in a tight loop: the lowest latency, but the waiting thread occupies a CPU core completely.
+     */
+    BUSY_SPIN {
+        @Override
+        public void idle() {
+        }
+    },
+
+    /**
+     * Yields the CPU to other threads between the attempts.
+     */
+    YIELDING {
+        @Override
+        public void idle() {
+            Thread.yield();
+        }
+    },
+
+    /**
+     * Parks the waiting thread for the shortest possible period between the attempts, which keeps CPU usage low at the
+     * cost of the scheduler's wake-up latency.
+     */
+    PARKING {
+        @Override
+        public void idle() {
+            LockSupport.parkNanos(1);
+        }
+    };
+
+    /**
+     * Called by a waiting thread after each failed attempt.
+     */
+    public abstract void idle();
+}
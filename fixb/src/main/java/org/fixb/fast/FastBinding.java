@@ -0,0 +1,161 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.fast;
+
+import org.fixb.FixException;
+import org.fixb.impl.CollectionFactory;
+import org.fixb.meta.FixBlockMeta;
+import org.fixb.meta.FixConstantFieldMeta;
+import org.fixb.meta.FixFieldMeta;
+import org.fixb.meta.FixGroupMeta;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A binding of the fields of a template (or of the entries of a sequence) to the fields of a FIX annotated class by
+ * their tags. Fields of groups are bound to the fields of the enclosing class, as groups are transparent in FIX
+ * messages; sequences are bound to repeating groups. The entries of simple repeating groups have a single slot that
+ * holds the element itself.
+ *
+ * @author vladyslav.yatsenko
+ */
+final class FastBinding {
+    final FixBlockMeta<?> meta;
+    final FixFieldMeta[] fields;
+    final Class<?>[] types;
+    private final Map<Integer, Integer> slots = new HashMap<>();
+    private final Map<Integer, FastBinding> components = new HashMap<>();
+
+    /**
+     * Binds the given fields of the given template to the given class meta.
+     *
+     * @throws FixException if a mandatory field of the template or of the class is not bound.
+     */
+    static FastBinding of(FixBlockMeta<?> meta, FastField[] fields, String template) {
+        final List<FixFieldMeta> metaFields = meta.getFields();
+        final FastBinding binding = new FastBinding(meta, metaFields.toArray(new FixFieldMeta[metaFields.size()]));
+        for (int i = 0; i < binding.fields.length; i++) {
+            binding.types[i] = binding.fields[i].getType();
+            if (!(binding.fields[i] instanceof FixConstantFieldMeta)) {
+                binding.slots.put(binding.fields[i].getTag(), i);
+            }
+        }
+
+        final BitSet bound = new BitSet();
+        binding.bind(fields, template, bound);
+        for (int i = 0; i < binding.fields.length; i++) {
+            final FixFieldMeta field = binding.fields[i];
+            if (!bound.get(i) && !field.isOptional() && !(field instanceof FixConstantFieldMeta)) {
+                throw new FixException("Field " + field.getTag() + " of " + meta.getType().getName()
+                        + " is missing in template " + template);
+            }
+        }
+        return binding;
+    }
+
+    /**
+     * Binds the given fields of the entries of a sequence to the elements of the given simple repeating group.
+     *
+     * @throws FixException if the fields are not a single field with the tag of the elements of the group.
+     */
+    static FastBinding simple(FixGroupMeta group, FastField[] fields, String template) {
+        if (fields.length != 1 || fields[0].tag != group.getComponentTag() || fields[0].children != null) {
+            throw new FixException("Sequence " + group.getTag() + " of template " + template
+                    + " must have a single field " + group.getComponentTag());
+        }
+        final FastBinding binding = new FastBinding(null, new FixFieldMeta[]{group});
+        binding.types[0] = group.getComponentType();
+        binding.slots.put(group.getComponentTag(), 0);
+        return binding;
+    }
+
+    private FastBinding(FixBlockMeta<?> meta, FixFieldMeta[] fields) {
+        this.meta = meta;
+        this.fields = fields;
+        this.types = new Class<?>[fields.length];
+    }
+
+    /**
+     * @return the slot of the field with the given tag or -1 if the tag is not bound.
+     */
+    int slot(int tag) {
+        final Integer slot = slots.get(tag);
+        return (slot == null) ? -1 : slot;
+    }
+
+    /**
+     * @return the binding of the entries of the sequence with the given tag.
+     */
+    FastBinding component(int tag) {
+        return components.get(tag);
+    }
+
+    /**
+     * @return the value of the given slot of the given object (or the object itself for the elements of simple groups).
+     */
+    Object get(Object object, int slot) {
+        return (meta == null) ? object : fields[slot].getValue(object);
+    }
+
+    /**
+     * @return an object created from the given values of the slots; absent repeating groups are set to empty ones.
+     */
+    Object build(Object[] values) {
+        if (meta == null) {
+            return values[0];
+        }
+        for (int i = 0; i < fields.length; i++) {
+            if (values[i] == null && fields[i].isGroup()) {
+                final FixGroupMeta group = (FixGroupMeta) fields[i];
+                values[i] = group.toFieldValue(CollectionFactory.createCollection(group.getCollectionType(), 0));
+            }
+        }
+        return meta.createModel(values);
+    }
+
+    private void bind(FastField[] templateFields, String template, BitSet bound) {
+        for (FastField f : templateFields) {
+            if (f.type == FastField.Type.GROUP) {
+                bind(f.children, template, bound);
+                continue;
+            }
+            final int slot = (f.tag == 0) ? -1 : slot(f.tag);
+            if (f.type == FastField.Type.SEQUENCE) {
+                if (slot < 0 || !fields[slot].isGroup()) {
+                    throw new FixException("Sequence " + f.name + " of template " + template
+                            + " is not bound to a repeating group of " + meta.getType().getName());
+                }
+                final FixGroupMeta group = (FixGroupMeta) fields[slot];
+                components.put(f.tag, group.isSimple() ?
+                        simple(group, f.children, template) :
+                        of(group.getComponentMeta(), f.children, template));
+            } else if (slot < 0) {
+                if (!f.optional && f.operator != FastField.Operator.CONSTANT) {
+                    throw new FixException("Field " + f.name + " of template " + template
+                            + " is not bound to a field of " + meta.getType().getName());
+                }
+                continue;
+            } else if (fields[slot].isGroup()) {
+                throw new FixException("Field " + f.name + " of template " + template
+                        + " is bound to repeating group " + f.tag + " of " + meta.getType().getName());
+            }
+            bound.set(slot);
+        }
+    }
+}
@@ -0,0 +1,615 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.fast;
+
+import org.fixb.FixException;
+import org.fixb.impl.AsciiString;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.fixb.fast.FastDictionary.ASSIGNED;
+import static org.fixb.fast.FastDictionary.EMPTY;
+import static org.fixb.fast.FastDictionary.UNDEFINED;
+
+/**
+ * A decoder of a stream of FAST encoded messages. It keeps the dictionary of previous values of the stream, hence a
+ * decoder must be used for exactly one stream (e.g. one multicast channel) and reset whenever the stream is reset.
+ *
+ * Each call to decode() reads one message and reports its values to a FastHandler. After the buffers of the decoder
+ * have grown to the size of the largest strings of the stream, decoding does not create any objects.
+ *
+ * A decoder is not thread-safe.
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class FastDecoder {
+    private final FastTemplates templates;
+    private final FastDictionary dictionary;
+    private final AsciiString view = new AsciiString();
+
+    private byte[] buffer;
+    private int position;
+    private int limit;
+
+    // the presence map of the current segment
+    private int pmapPosition;
+    private int pmapByte;
+    private int pmapMask;
+    private boolean pmapLast;
+
+    // the value decoded by the last call to decode{Integer,Decimal,String}()
+    private boolean isNull;
+    private long value;
+    private int exponent;
+    private byte[] bytes;
+    private int bytesLength;
+
+    private byte[] scratch = new byte[64];
+    private byte[] deltaScratch = new byte[64];
+    private byte[] directScratch;
+
+    /**
+     * @param templates the templates of the stream
+     */
+    public FastDecoder(FastTemplates templates) {
+        this.templates = templates;
+        this.dictionary = new FastDictionary(templates.dictionarySize());
+    }
+
+    /**
+     * @return the templates of the stream.
+     */
+    public FastTemplates getTemplates() {
+        return templates;
+    }
+
+    /**
+     * Resets the dictionary of previous values, e.g. when a reset message is received.
+     */
+    public void reset() {
+        dictionary.reset();
+    }
+
+    /**
+     * Decodes the message in the given region of the given array and reports its values to the given handler.
+     *
+     * @return the number of bytes of the message.
+     * @throws FixException if the message is malformed, ends before the end of the region or refers to an unknown
+     *                      template.
+     */
+    public int decode(byte[] buffer, int offset, int length, FastHandler handler) {
+        this.buffer = buffer;
+        this.position = offset;
+        this.limit = offset + length;
+        readPresenceMap();
+        final int templateId;
+        if (nextBit()) {
+            templateId = (int) readUnsigned();
+            dictionary.templateId = templateId;
+        } else if (dictionary.templateId < 0) {
+            throw new FixException("FAST message without a template id");
+        } else {
+            templateId = dictionary.templateId;
+        }
+        final FastTemplate template = templates.get(templateId);
+        handler.onMessageStart(template);
+        decodeFields(template.fields, handler);
+        handler.onMessageEnd(template);
+        return position - offset;
+    }
+
+    /**
+     * Decodes the message starting at the current position of the given buffer and reports its values to the given
+     * handler. The position of the buffer is advanced past the message.
+     *
+     * @return the number of bytes of the message.
+     * @throws FixException if the message is malformed, ends before the limit of the buffer or refers to an unknown
+     *                      template.
+     */
+    public int decode(ByteBuffer buffer, FastHandler handler) {
+        final int length;
+        if (buffer.hasArray()) {
+            length = decode(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), handler);
+        } else {
+            if (directScratch == null || directScratch.length < buffer.remaining()) {
+                directScratch = new byte[Math.max(256, buffer.remaining())];
+            }
+            final int remaining = buffer.remaining();
+            buffer.duplicate().get(directScratch, 0, remaining);
+            length = decode(directScratch, 0, remaining, handler);
+        }
+        buffer.position(buffer.position() + length);
+        return length;
+    }
+
+    private void decodeFields(FastField[] fields, FastHandler handler) {
+        for (FastField f : fields) {
+            switch (f.type) {
+                case SEQUENCE:
+                    decodeSequence(f, handler);
+                    break;
+                case GROUP:
+                    if (!f.optional || nextBit()) {
+                        decodeSegment(f.children, f.childPresenceBits > 0, handler);
+                    }
+                    break;
+                case DECIMAL:
+                    decodeDecimal(f);
+                    if (!isNull) {
+                        handler.onDecimal(f.tag, value, exponent);
+                    }
+                    break;
+                case ASCII:
+                case UNICODE:
+                    decodeString(f);
+                    if (!isNull) {
+                        handler.onString(f.tag, stringValue());
+                    }
+                    break;
+                default:
+                    decodeInteger(f);
+                    if (!isNull) {
+                        handler.onInt(f.tag, value);
+                    }
+            }
+        }
+    }
+
+    private void decodeSequence(FastField f, FastHandler handler) {
+        decodeInteger(f.length);
+        if (isNull) {
+            return;
+        }
+        final int length = (int) value;
+        handler.onSequenceStart(f.tag, length);
+        for (int i = 0; i < length; i++) {
+            handler.onSequenceEntry(f.tag, i);
+            decodeSegment(f.children, f.childPresenceBits > 0, handler);
+        }
+        handler.onSequenceEnd(f.tag);
+    }
+
+    private void decodeSegment(FastField[] fields, boolean hasPresenceMap, FastHandler handler) {
+        final int savedPosition = pmapPosition;
+        final int savedByte = pmapByte;
+        final int savedMask = pmapMask;
+        final boolean savedLast = pmapLast;
+        if (hasPresenceMap) {
+            readPresenceMap();
+        }
+        decodeFields(fields, handler);
+        pmapPosition = savedPosition;
+        pmapByte = savedByte;
+        pmapMask = savedMask;
+        pmapLast = savedLast;
+    }
+
+    private void decodeInteger(FastField f) {
+        final boolean signed = f.type == FastField.Type.INT32 || f.type == FastField.Type.INT64;
+        switch (f.operator) {
+            case NONE:
+                readInteger(signed, f.isNullable());
+                break;
+            case CONSTANT:
+                setConstant(f, !f.optional || nextBit());
+                break;
+            case DEFAULT:
+                if (nextBit()) {
+                    readInteger(signed, f.isNullable());
+                } else {
+                    setConstant(f, checkInitial(f));
+                }
+                break;
+            case COPY:
+                if (nextBit()) {
+                    readInteger(signed, f.isNullable());
+                    storeInteger(f);
+                } else {
+                    priorInteger(f, false);
+                }
+                break;
+            case INCREMENT:
+                if (nextBit()) {
+                    readInteger(signed, f.isNullable());
+                    storeInteger(f);
+                } else {
+                    priorInteger(f, true);
+                }
+                break;
+            case DELTA:
+                readInteger(true, f.isNullable());
+                if (!isNull) {
+                    value += baseInteger(f);
+                    dictionary.setLong(f.slot, value);
+                }
+                break;
+            default:
+                throw new FixException("Unsupported operator of integer field " + f.name);
+        }
+    }
+
+    private void decodeDecimal(FastField f) {
+        switch (f.operator) {
+            case NONE:
+                readDecimal(f.isNullable());
+                break;
+            case CONSTANT:
+                setConstant(f, !f.optional || nextBit());
+                break;
+            case DEFAULT:
+                if (nextBit()) {
+                    readDecimal(f.isNullable());
+                } else {
+                    setConstant(f, checkInitial(f));
+                }
+                break;
+            case COPY:
+                if (nextBit()) {
+                    readDecimal(f.isNullable());
+                    if (isNull) {
+                        dictionary.setEmpty(f.slot);
+                    } else {
+                        dictionary.setDecimal(f.slot, value, exponent);
+                    }
+                } else {
+                    priorInteger(f, false);
+                }
+                break;
+            case DELTA:
+                readInteger(true, f.isNullable());
+                if (!isNull) {
+                    final int exponentDelta = (int) value;
+                    final long mantissaDelta = readSigned();
+                    final byte state = dictionary.states[f.slot];
+                    checkNotEmpty(f, state);
+                    final boolean fromPrior = state == ASSIGNED;
+                    final boolean fromInitial = state == UNDEFINED && f.hasInitialValue;
+                    exponent = exponentDelta + (fromPrior ? dictionary.exponents[f.slot] : fromInitial ? f.initialExponent : 0);
+                    value = mantissaDelta + (fromPrior ? dictionary.values[f.slot] : fromInitial ? f.initialValue : 0);
+                    dictionary.setDecimal(f.slot, value, exponent);
+                }
+                break;
+            default:
+                throw new FixException("Unsupported operator of decimal field " + f.name);
+        }
+    }
+
+    private void decodeString(FastField f) {
+        switch (f.operator) {
+            case NONE:
+                readString(f, f.isNullable());
+                break;
+            case CONSTANT:
+                setConstant(f, !f.optional || nextBit());
+                break;
+            case DEFAULT:
+                if (nextBit()) {
+                    readString(f, f.isNullable());
+                } else {
+                    setConstant(f, checkInitial(f));
+                }
+                break;
+            case COPY:
+                if (nextBit()) {
+                    readString(f, f.isNullable());
+                    storeString(f);
+                } else {
+                    priorString(f);
+                }
+                break;
+            case DELTA:
+                readInteger(true, f.isNullable());
+                if (!isNull) {
+                    final int subtraction = (int) value;
+                    readString(f, false);
+                    applyDelta(f, subtraction);
+                }
+                break;
+            case TAIL:
+                if (nextBit()) {
+                    readString(f, f.isNullable());
+                    if (isNull) {
+                        dictionary.setEmpty(f.slot);
+                    } else {
+                        applyTail(f);
+                    }
+                } else {
+                    priorString(f);
+                }
+                break;
+            default:
+                throw new FixException("Unsupported operator of string field " + f.name);
+        }
+    }
+
+    private void setConstant(FastField f, boolean present) {
+        isNull = !present;
+        value = f.initialValue;
+        exponent = f.initialExponent;
+        bytes = f.initialBytes;
+        bytesLength = (bytes == null) ? 0 : bytes.length;
+    }
+
+    private boolean checkInitial(FastField f) {
+        if (!f.hasInitialValue && !f.optional) {
+            throw new FixException("No initial value of mandatory field " + f.name);
+        }
+        return f.hasInitialValue;
+    }
+
+    private void checkNotEmpty(FastField f, byte state) {
+        if (state == EMPTY) {
+            throw new FixException("Empty previous value of field " + f.name);
+        }
+    }
+
+    private void storeInteger(FastField f) {
+        if (isNull) {
+            dictionary.setEmpty(f.slot);
+        } else {
+            dictionary.setLong(f.slot, value);
+        }
+    }
+
+    /**
+     * Sets the value of an integer or decimal field that is not present in the stream from the previous value.
+     */
+    private void priorInteger(FastField f, boolean increment) {
+        final byte state = dictionary.states[f.slot];
+        if (state == ASSIGNED) {
+            isNull = false;
+            value = dictionary.values[f.slot] + (increment ? 1 : 0);
+            exponent = dictionary.exponents[f.slot];
+            if (increment) {
+                dictionary.setLong(f.slot, value);
+            }
+        } else if (state == UNDEFINED && f.hasInitialValue) {
+            setConstant(f, true);
+            dictionary.setDecimal(f.slot, value, exponent);
+        } else if (f.optional) {
+            isNull = true;
+            dictionary.setEmpty(f.slot);
+        } else {
+            throw new FixException("No previous value of mandatory field " + f.name);
+        }
+    }
+
+    private long baseInteger(FastField f) {
+        final byte state = dictionary.states[f.slot];
+        checkNotEmpty(f, state);
+        if (state == ASSIGNED) {
+            return dictionary.values[f.slot];
+        }
+        return f.hasInitialValue ? f.initialValue : 0;
+    }
+
+    private void storeString(FastField f) {
+        if (isNull) {
+            dictionary.setEmpty(f.slot);
+        } else {
+            dictionary.setBytes(f.slot, bytes, 0, bytesLength);
+            pointToDictionary(f);
+        }
+    }
+
+    private void priorString(FastField f) {
+        final byte state = dictionary.states[f.slot];
+        if (state == ASSIGNED) {
+            isNull = false;
+            pointToDictionary(f);
+        } else if (state == UNDEFINED && f.hasInitialValue) {
+            dictionary.setBytes(f.slot, f.initialBytes, 0, f.initialBytes.length);
+            isNull = false;
+            pointToDictionary(f);
+        } else if (f.optional) {
+            isNull = true;
+            dictionary.setEmpty(f.slot);
+        } else {
+            throw new FixException("No previous value of mandatory field " + f.name);
+        }
+    }
+
+    /**
+     * Combines the base value of the given field with the string just read as a delta.
+     */
+    private void applyDelta(FastField f, int subtraction) {
+        final byte state = dictionary.states[f.slot];
+        checkNotEmpty(f, state);
+        final byte[] base = (state == ASSIGNED) ? dictionary.bytes[f.slot] : f.initialBytes;
+        final int baseLength = (state == ASSIGNED) ? dictionary.lengths[f.slot] : (base == null) ? 0 : base.length;
+        final boolean front = subtraction < 0;
+        final int removed = front ? -subtraction - 1 : subtraction;
+        if (removed > baseLength) {
+            throw new FixException("Subtraction length exceeds the previous value of field " + f.name);
+        }
+        final int length = baseLength - removed + bytesLength;
+        ensureDeltaScratch(length);
+        if (front) {
+            System.arraycopy(bytes, 0, deltaScratch, 0, bytesLength);
+            if (base != null) {
+                System.arraycopy(base, removed, deltaScratch, bytesLength, baseLength - removed);
+            }
+        } else {
+            if (base != null) {
+                System.arraycopy(base, 0, deltaScratch, 0, baseLength - removed);
+            }
+            System.arraycopy(bytes, 0, deltaScratch, baseLength - removed, bytesLength);
+        }
+        dictionary.setBytes(f.slot, deltaScratch, 0, length);
+        pointToDictionary(f);
+    }
+
+    /**
+     * Combines the base value of the given field with the tail just read.
+     */
+    private void applyTail(FastField f) {
+        final byte state = dictionary.states[f.slot];
+        final byte[] base = (state == ASSIGNED) ? dictionary.bytes[f.slot] : (state == UNDEFINED) ? f.initialBytes : null;
+        final int baseLength = (state == ASSIGNED) ? dictionary.lengths[f.slot] : (base == null) ? 0 : base.length;
+        final int kept = Math.max(0, baseLength - bytesLength);
+        final int length = kept + bytesLength;
+        ensureDeltaScratch(length);
+        if (kept > 0) {
+            System.arraycopy(base, 0, deltaScratch, 0, kept);
+        }
+        System.arraycopy(bytes, 0, deltaScratch, kept, bytesLength);
+        dictionary.setBytes(f.slot, deltaScratch, 0, length);
+        pointToDictionary(f);
+    }
+
+    private void pointToDictionary(FastField f) {
+        bytes = dictionary.bytes[f.slot];
+        bytesLength = dictionary.lengths[f.slot];
+    }
+
+    private void ensureDeltaScratch(int length) {
+        if (deltaScratch.length < length) {
+            deltaScratch = new byte[Math.max(length, deltaScratch.length * 2)];
+        }
+    }
+
+    private CharSequence stringValue() {
+        for (int i = 0; i < bytesLength; i++) {
+            if (bytes[i] < 0) {
+                return new String(bytes, 0, bytesLength, StandardCharsets.UTF_8);
+            }
+        }
+        return view.wrap(bytes, 0, bytesLength);
+    }
+
+    private void readPresenceMap() {
+        pmapPosition = position;
+        pmapMask = 0;
+        pmapLast = false;
+        while ((readByte() & 0x80) == 0) {
+            // skip to the stop bit
+        }
+    }
+
+    private boolean nextBit() {
+        if (pmapMask == 0) {
+            if (pmapLast) {
+                return false;
+            }
+            pmapByte = buffer[pmapPosition++];
+            pmapLast = (pmapByte & 0x80) != 0;
+            pmapMask = 0x40;
+        }
+        final boolean bit = (pmapByte & pmapMask) != 0;
+        pmapMask >>>= 1;
+        return bit;
+    }
+
+    private int readByte() {
+        if (position >= limit) {
+            throw new FixException("Truncated FAST message");
+        }
+        return buffer[position++];
+    }
+
+    private long readUnsigned() {
+        long result = 0;
+        int b;
+        do {
+            b = readByte();
+            result = (result << 7) | (b & 0x7F);
+        } while ((b & 0x80) == 0);
+        return result;
+    }
+
+    private long readSigned() {
+        int b = readByte();
+        long result = ((b & 0x40) != 0) ? -1 : 0;
+        while (true) {
+            result = (result << 7) | (b & 0x7F);
+            if ((b & 0x80) != 0) {
+                return result;
+            }
+            b = readByte();
+        }
+    }
+
+    private void readInteger(boolean signed, boolean nullable) {
+        value = signed ? readSigned() : readUnsigned();
+        isNull = nullable && value == 0;
+        if (nullable && value > 0) {
+            value--;
+        }
+    }
+
+    private void readDecimal(boolean nullable) {
+        readInteger(true, nullable);
+        if (!isNull) {
+            exponent = (int) value;
+            value = readSigned();
+        }
+    }
+
+    private void readString(FastField f, boolean nullable) {
+        isNull = false;
+        bytes = scratch;
+        if (f.type == FastField.Type.UNICODE) {
+            readInteger(false, nullable);
+            if (isNull) {
+                return;
+            }
+            bytesLength = (int) value;
+            if (bytesLength > limit - position) {
+                throw new FixException("Truncated FAST message");
+            }
+            ensureScratch(bytesLength);
+            System.arraycopy(buffer, position, scratch, 0, bytesLength);
+            position += bytesLength;
+            bytes = scratch;
+            return;
+        }
+
+        bytesLength = 0;
+        int b;
+        do {
+            b = readByte();
+            ensureScratch(bytesLength + 1);
+            scratch[bytesLength++] = (byte) (b & 0x7F);
+        } while ((b & 0x80) == 0);
+        bytes = scratch;
+        if (scratch[0] == 0 && bytesLength <= (nullable ? 3 : 2) && allZero(bytesLength)) {
+            // the encodings of null, the empty string and "\0"
+            bytesLength--;
+            if (nullable) {
+                isNull = bytesLength == 0;
+                bytesLength = Math.max(0, bytesLength - 1);
+            }
+        }
+    }
+
+    private boolean allZero(int length) {
+        for (int i = 0; i < length; i++) {
+            if (scratch[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void ensureScratch(int length) {
+        if (scratch.length < length) {
+            final byte[] grown = new byte[Math.max(length, scratch.length * 2)];
+            System.arraycopy(scratch, 0, grown, 0, scratch.length);
+            scratch = grown;
+        }
+    }
+}
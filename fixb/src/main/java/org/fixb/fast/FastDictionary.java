@@ -0,0 +1,79 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.fast;
+
+import java.util.Arrays;
+
+/**
+ * The previous values of the fields with stateful operators of a FAST stream, indexed by the dictionary slots of the
+ * fields. A value is undefined until it is assigned for the first time, and it is empty if the last value was null.
+ * String values are kept in byte arrays that are re-used as long as they are large enough.
+ *
+ * @author vladyslav.yatsenko
+ */
+final class FastDictionary {
+    static final byte UNDEFINED = 0;
+    static final byte ASSIGNED = 1;
+    static final byte EMPTY = 2;
+
+    final byte[] states;
+    final long[] values;
+    final int[] exponents;
+    final byte[][] bytes;
+    final int[] lengths;
+    int templateId = -1;
+
+    FastDictionary(int size) {
+        this.states = new byte[size];
+        this.values = new long[size];
+        this.exponents = new int[size];
+        this.bytes = new byte[size][];
+        this.lengths = new int[size];
+    }
+
+    void reset() {
+        Arrays.fill(states, UNDEFINED);
+        templateId = -1;
+    }
+
+    void setLong(int slot, long value) {
+        states[slot] = ASSIGNED;
+        values[slot] = value;
+    }
+
+    void setDecimal(int slot, long mantissa, int exponent) {
+        states[slot] = ASSIGNED;
+        values[slot] = mantissa;
+        exponents[slot] = exponent;
+    }
+
+    void setBytes(int slot, byte[] source, int offset, int length) {
+        states[slot] = ASSIGNED;
+        lengths[slot] = length;
+        System.arraycopy(source, offset, ensureCapacity(slot, length), 0, length);
+    }
+
+    void setEmpty(int slot) {
+        states[slot] = EMPTY;
+    }
+
+    byte[] ensureCapacity(int slot, int length) {
+        if (bytes[slot] == null || bytes[slot].length < length) {
+            bytes[slot] = new byte[Math.max(16, Math.max(length, (bytes[slot] == null) ? 0 : bytes[slot].length * 2))];
+        }
+        return bytes[slot];
+    }
+}
@@ -0,0 +1,614 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.fast;
+
+import org.fixb.FixException;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.fixb.fast.FastDictionary.ASSIGNED;
+import static org.fixb.fast.FastDictionary.EMPTY;
+import static org.fixb.fast.FastDictionary.UNDEFINED;
+
+/**
+ * An encoder of a stream of FAST encoded messages, the counterpart of FastDecoder. It keeps the dictionary of previous
+ * values of the stream, hence an encoder must be used for exactly one stream and reset whenever the stream is reset.
+ *
+ * Each call to encode() writes one message with the values provided by a FastSource. Messages are encoded into a
+ * buffer of the encoder first (the presence map of a segment is only known after its fields are encoded), which is
+ * then copied to the destination. If the destination is too small, the dictionary is already updated with the
+ * values of the message, so the encoder (and the decoder of the stream) must be reset. After the buffers of the
+ * encoder have grown to the size of the largest messages of the stream, encoding does not create any objects other
+ * than those created by the source.
+ *
+ * An encoder is not thread-safe.
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class FastEncoder {
+    private final FastTemplates templates;
+    private final FastDictionary dictionary;
+
+    private byte[] out = new byte[256];
+    private int position;
+
+    // the presence map of the current segment
+    private int pmapStart;
+    private int pmapBit;
+
+    private byte[] scratch = new byte[64];
+    private int scratchLength;
+
+    /**
+     * @param templates the templates of the stream
+     */
+    public FastEncoder(FastTemplates templates) {
+        this.templates = templates;
+        this.dictionary = new FastDictionary(templates.dictionarySize());
+    }
+
+    /**
+     * @return the templates of the stream.
+     */
+    public FastTemplates getTemplates() {
+        return templates;
+    }
+
+    /**
+     * Resets the dictionary of previous values, e.g. when a reset message is sent.
+     */
+    public void reset() {
+        dictionary.reset();
+    }
+
+    /**
+     * Encodes a message of the given template into the given array.
+     *
+     * @return the number of bytes written.
+     * @throws BufferOverflowException if the message does not fit in the array.
+     * @throws FixException            if the template is unknown or a value can't be encoded by its operator.
+     */
+    public int encode(int templateId, FastSource source, byte[] buffer, int offset) {
+        final int length = encodeMessage(templateId, source);
+        if (length > buffer.length - offset) {
+            throw new BufferOverflowException();
+        }
+        System.arraycopy(out, 0, buffer, offset, length);
+        return length;
+    }
+
+    /**
+     * Encodes a message of the given template into the given buffer, starting at its current position, which is
+     * advanced past the message.
+     *
+     * @return the number of bytes written.
+     * @throws BufferOverflowException if the message does not fit in the remaining space of the buffer.
+     * @throws FixException            if the template is unknown or a value can't be encoded by its operator.
+     */
+    public int encode(int templateId, FastSource source, ByteBuffer buffer) {
+        final int length = encodeMessage(templateId, source);
+        buffer.put(out, 0, length);
+        return length;
+    }
+
+    /**
+     * Encodes a message of the given template into a new array.
+     *
+     * @return the encoded message.
+     * @throws FixException if the template is unknown or a value can't be encoded by its operator.
+     */
+    public byte[] encode(int templateId, FastSource source) {
+        return Arrays.copyOf(out, encodeMessage(templateId, source));
+    }
+
+    private int encodeMessage(int templateId, FastSource source) {
+        final FastTemplate template = templates.get(templateId);
+        position = 0;
+        beginPresenceMap(template.presenceBits);
+        if (dictionary.templateId == templateId) {
+            pmapBit++;
+        } else {
+            setBit(true);
+            writeUnsigned(templateId);
+            dictionary.templateId = templateId;
+        }
+        encodeFields(template.fields, source);
+        endPresenceMap(template.presenceBits);
+        return position;
+    }
+
+    private void encodeFields(FastField[] fields, FastSource source) {
+        for (FastField f : fields) {
+            switch (f.type) {
+                case SEQUENCE:
+                    encodeSequence(f, source);
+                    break;
+                case GROUP:
+                    final boolean present = !f.optional || isGroupPresent(f, source);
+                    if (f.optional) {
+                        setBit(present);
+                    }
+                    if (present) {
+                        encodeSegment(f.children, f.childPresenceBits, source);
+                    }
+                    break;
+                case DECIMAL:
+                    encodeDecimal(f, source);
+                    break;
+                case ASCII:
+                case UNICODE:
+                    encodeString(f, source);
+                    break;
+                default:
+                    final boolean has = !f.optional || source.has(f.tag);
+                    encodeInteger(f, has, (has && f.operator != FastField.Operator.CONSTANT) ? source.getInt(f.tag) : 0);
+            }
+        }
+    }
+
+    private void encodeSequence(FastField f, FastSource source) {
+        final int length = source.getSequenceLength(f.tag);
+        if (length < 0 && !f.optional) {
+            throw new FixException("Missing mandatory sequence " + f.name);
+        }
+        encodeInteger(f.length, length >= 0, length);
+        for (int i = 0; i < length; i++) {
+            source.enterEntry(f.tag, i);
+            encodeSegment(f.children, f.childPresenceBits, source);
+            source.exitEntry(f.tag);
+        }
+    }
+
+    private void encodeSegment(FastField[] fields, int presenceBits, FastSource source) {
+        if (presenceBits == 0) {
+            encodeFields(fields, source);
+            return;
+        }
+        final int savedStart = pmapStart;
+        final int savedBit = pmapBit;
+        beginPresenceMap(presenceBits);
+        encodeFields(fields, source);
+        endPresenceMap(presenceBits);
+        pmapStart = savedStart;
+        pmapBit = savedBit;
+    }
+
+    private static boolean isGroupPresent(FastField group, FastSource source) {
+        if (group.tag != 0) {
+            return source.has(group.tag);
+        }
+        for (FastField f : group.children) {
+            if (f.type == FastField.Type.SEQUENCE ? source.getSequenceLength(f.tag) >= 0 : f.tag != 0 && source.has(f.tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void encodeInteger(FastField f, boolean present, long value) {
+        final boolean signed = f.type == FastField.Type.INT32 || f.type == FastField.Type.INT64;
+        switch (f.operator) {
+            case NONE:
+                writeInteger(signed, f.isNullable(), present, value);
+                break;
+            case CONSTANT:
+                if (f.optional) {
+                    setBit(present);
+                }
+                break;
+            case DEFAULT:
+                if (present ? f.hasInitialValue && value == f.initialValue : !f.hasInitialValue) {
+                    setBit(false);
+                } else {
+                    setBit(true);
+                    writeInteger(signed, f.isNullable(), present, value);
+                }
+                break;
+            case COPY:
+            case INCREMENT:
+                final int increment = (f.operator == FastField.Operator.INCREMENT) ? 1 : 0;
+                final byte state = dictionary.states[f.slot];
+                if (present ?
+                        (state == ASSIGNED && value == dictionary.values[f.slot] + increment)
+                                || (state == UNDEFINED && f.hasInitialValue && value == f.initialValue) :
+                        state == EMPTY || (state == UNDEFINED && !f.hasInitialValue && f.optional)) {
+                    setBit(false);
+                } else {
+                    setBit(true);
+                    writeInteger(signed, f.isNullable(), present, value);
+                }
+                store(f, present, value, 0);
+                break;
+            case DELTA:
+                if (!present) {
+                    writeInteger(true, true, false, 0);
+                } else {
+                    writeInteger(true, f.isNullable(), true, value - baseValue(f, false));
+                    dictionary.setLong(f.slot, value);
+                }
+                break;
+            default:
+                throw new FixException("Unsupported operator of integer field " + f.name);
+        }
+    }
+
+    private void encodeDecimal(FastField f, FastSource source) {
+        final boolean present = !f.optional || source.has(f.tag);
+        final boolean valued = present && f.operator != FastField.Operator.CONSTANT;
+        final long mantissa = valued ? source.getMantissa(f.tag) : 0;
+        final int exponent = valued ? source.getExponent(f.tag) : 0;
+        switch (f.operator) {
+            case NONE:
+                writeDecimal(f.isNullable(), present, mantissa, exponent);
+                break;
+            case CONSTANT:
+                if (f.optional) {
+                    setBit(present);
+                }
+                break;
+            case DEFAULT:
+                if (present ?
+                        f.hasInitialValue && mantissa == f.initialValue && exponent == f.initialExponent :
+                        !f.hasInitialValue) {
+                    setBit(false);
+                } else {
+                    setBit(true);
+                    writeDecimal(f.isNullable(), present, mantissa, exponent);
+                }
+                break;
+            case COPY:
+                final byte state = dictionary.states[f.slot];
+                if (present ?
+                        (state == ASSIGNED && mantissa == dictionary.values[f.slot] && exponent == dictionary.exponents[f.slot])
+                                || (state == UNDEFINED && f.hasInitialValue && mantissa == f.initialValue && exponent == f.initialExponent) :
+                        state == EMPTY || (state == UNDEFINED && !f.hasInitialValue && f.optional)) {
+                    setBit(false);
+                } else {
+                    setBit(true);
+                    writeDecimal(f.isNullable(), present, mantissa, exponent);
+                }
+                store(f, present, mantissa, exponent);
+                break;
+            case DELTA:
+                if (!present) {
+                    writeInteger(true, true, false, 0);
+                } else {
+                    final long baseMantissa = baseValue(f, false);
+                    final int baseExponent = (int) baseValue(f, true);
+                    writeInteger(true, f.isNullable(), true, exponent - baseExponent);
+                    writeSigned(mantissa - baseMantissa);
+                    dictionary.setDecimal(f.slot, mantissa, exponent);
+                }
+                break;
+            default:
+                throw new FixException("Unsupported operator of decimal field " + f.name);
+        }
+    }
+
+    private void encodeString(FastField f, FastSource source) {
+        if (f.operator == FastField.Operator.CONSTANT) {
+            if (f.optional) {
+                setBit(source.has(f.tag));
+            }
+            return;
+        }
+        final CharSequence value = (!f.optional || source.has(f.tag)) ? source.getString(f.tag) : null;
+        if (value == null && !f.optional) {
+            throw new FixException("Missing mandatory field " + f.name);
+        }
+        final boolean present = value != null;
+        if (present) {
+            toBytes(f, value);
+        }
+        final byte state = (f.slot >= 0) ? dictionary.states[f.slot] : UNDEFINED;
+        switch (f.operator) {
+            case NONE:
+                writeString(f, f.isNullable(), present, 0, scratchLength);
+                break;
+            case DEFAULT:
+                if (present ? f.hasInitialValue && equalsInitial(f) : !f.hasInitialValue) {
+                    setBit(false);
+                } else {
+                    setBit(true);
+                    writeString(f, f.isNullable(), present, 0, scratchLength);
+                }
+                break;
+            case COPY:
+                if (present ?
+                        (state == ASSIGNED && equalsPrior(f)) || (state == UNDEFINED && f.hasInitialValue && equalsInitial(f)) :
+                        state == EMPTY || (state == UNDEFINED && !f.hasInitialValue && f.optional)) {
+                    setBit(false);
+                } else {
+                    setBit(true);
+                    writeString(f, f.isNullable(), present, 0, scratchLength);
+                }
+                storeString(f, present);
+                break;
+            case DELTA:
+                if (!present) {
+                    writeInteger(true, true, false, 0);
+                } else {
+                    encodeStringDelta(f, state);
+                }
+                break;
+            case TAIL:
+                if (present ?
+                        (state == ASSIGNED && equalsPrior(f)) || (state == UNDEFINED && f.hasInitialValue && equalsInitial(f)) :
+                        state == EMPTY || (state == UNDEFINED && !f.hasInitialValue && f.optional)) {
+                    setBit(false);
+                } else {
+                    setBit(true);
+                    if (present) {
+                        encodeTail(f, state);
+                    } else {
+                        writeString(f, true, false, 0, 0);
+                    }
+                }
+                storeString(f, present);
+                break;
+            default:
+                throw new FixException("Unsupported operator of string field " + f.name);
+        }
+    }
+
+    private void encodeStringDelta(FastField f, byte state) {
+        if (state == EMPTY) {
+            throw new FixException("Empty previous value of field " + f.name);
+        }
+        final byte[] base = (state == ASSIGNED) ? dictionary.bytes[f.slot] : f.initialBytes;
+        final int baseLength = (state == ASSIGNED) ? dictionary.lengths[f.slot] : (base == null) ? 0 : base.length;
+        final int max = Math.min(baseLength, scratchLength);
+        int prefix = 0;
+        while (prefix < max && base[prefix] == scratch[prefix]) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max && base[baseLength - 1 - suffix] == scratch[scratchLength - 1 - suffix]) {
+            suffix++;
+        }
+        if (scratchLength - prefix <= scratchLength - suffix) {
+            writeInteger(true, f.isNullable(), true, baseLength - prefix);
+            writeString(f, false, true, prefix, scratchLength);
+        } else {
+            writeInteger(true, f.isNullable(), true, -(baseLength - suffix) - 1);
+            writeString(f, false, true, 0, scratchLength - suffix);
+        }
+        dictionary.setBytes(f.slot, scratch, 0, scratchLength);
+    }
+
+    private void encodeTail(FastField f, byte state) {
+        final byte[] base = (state == ASSIGNED) ? dictionary.bytes[f.slot] : (state == UNDEFINED) ? f.initialBytes : null;
+        final int baseLength = (state == ASSIGNED) ? dictionary.lengths[f.slot] : (base == null) ? 0 : base.length;
+        if (scratchLength < baseLength) {
+            throw new FixException("Tail operator can't shorten the value of field " + f.name);
+        }
+        int prefix = 0;
+        if (scratchLength == baseLength) {
+            while (prefix < baseLength && base[prefix] == scratch[prefix]) {
+                prefix++;
+            }
+        }
+        writeString(f, f.isNullable(), true, prefix, scratchLength);
+    }
+
+    private long baseValue(FastField f, boolean exponent) {
+        final byte state = dictionary.states[f.slot];
+        if (state == EMPTY) {
+            throw new FixException("Empty previous value of field " + f.name);
+        }
+        if (state == ASSIGNED) {
+            return exponent ? dictionary.exponents[f.slot] : dictionary.values[f.slot];
+        }
+        if (!f.hasInitialValue) {
+            return 0;
+        }
+        return exponent ? f.initialExponent : f.initialValue;
+    }
+
+    private void store(FastField f, boolean present, long value, int exponent) {
+        if (present) {
+            dictionary.setDecimal(f.slot, value, exponent);
+        } else {
+            dictionary.setEmpty(f.slot);
+        }
+    }
+
+    private void storeString(FastField f, boolean present) {
+        if (present) {
+            dictionary.setBytes(f.slot, scratch, 0, scratchLength);
+        } else {
+            dictionary.setEmpty(f.slot);
+        }
+    }
+
+    private boolean equalsPrior(FastField f) {
+        return equalsScratch(dictionary.bytes[f.slot], dictionary.lengths[f.slot]);
+    }
+
+    private boolean equalsInitial(FastField f) {
+        return equalsScratch(f.initialBytes, f.initialBytes.length);
+    }
+
+    private boolean equalsScratch(byte[] bytes, int length) {
+        if (length != scratchLength) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] != scratch[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Converts the given value to the bytes of its encoding in the scratch buffer.
+     */
+    private void toBytes(FastField f, CharSequence value) {
+        final int length = value.length();
+        ensureScratch(length);
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c >= 0x80) {
+                if (f.type == FastField.Type.ASCII) {
+                    throw new FixException("Non-ASCII value of field " + f.name);
+                }
+                final byte[] utf8 = value.toString().getBytes(StandardCharsets.UTF_8);
+                ensureScratch(utf8.length);
+                System.arraycopy(utf8, 0, scratch, 0, utf8.length);
+                scratchLength = utf8.length;
+                return;
+            }
+            scratch[i] = (byte) c;
+        }
+        scratchLength = length;
+    }
+
+    private void ensureScratch(int length) {
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+    }
+
+    private void beginPresenceMap(int bits) {
+        pmapStart = position;
+        pmapBit = 0;
+        final int length = Math.max(1, (bits + 6) / 7);
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            out[position++] = 0;
+        }
+    }
+
+    /**
+     * Truncates the presence map of the current segment after its last set bit, sets the stop bit and moves the
+     * fields of the segment to follow it.
+     */
+    private void endPresenceMap(int bits) {
+        final int reserved = Math.max(1, (bits + 6) / 7);
+        int length = reserved;
+        while (length > 1 && out[pmapStart + length - 1] == 0) {
+            length--;
+        }
+        out[pmapStart + length - 1] |= (byte) 0x80;
+        if (length < reserved) {
+            System.arraycopy(out, pmapStart + reserved, out, pmapStart + length, position - pmapStart - reserved);
+            position -= reserved - length;
+        }
+    }
+
+    private void setBit(boolean bit) {
+        if (bit) {
+            out[pmapStart + pmapBit / 7] |= (byte) (0x40 >>> (pmapBit % 7));
+        }
+        pmapBit++;
+    }
+
+    private void writeInteger(boolean signed, boolean nullable, boolean present, long value) {
+        if (!present) {
+            if (!nullable) {
+                throw new FixException("Null value of a mandatory field");
+            }
+            write(0x80);
+        } else if (signed) {
+            writeSigned((nullable && value >= 0) ? value + 1 : value);
+        } else {
+            writeUnsigned(nullable ? value + 1 : value);
+        }
+    }
+
+    private void writeDecimal(boolean nullable, boolean present, long mantissa, int exponent) {
+        writeInteger(true, nullable, present, exponent);
+        if (present) {
+            writeSigned(mantissa);
+        }
+    }
+
+    /**
+     * Writes the given range of the scratch buffer as the value of a string field, or null if not present.
+     */
+    private void writeString(FastField f, boolean nullable, boolean present, int from, int to) {
+        final int length = to - from;
+        if (f.type == FastField.Type.UNICODE) {
+            writeInteger(false, nullable, present, length);
+            if (present) {
+                ensureCapacity(length);
+                System.arraycopy(scratch, from, out, position, length);
+                position += length;
+            }
+            return;
+        }
+        if (!present) {
+            write(0x80);
+            return;
+        }
+        final boolean zero = length == 1 && scratch[from] == 0;
+        if (length == 0 || zero) {
+            if (nullable) {
+                write(0);
+            }
+            if (zero) {
+                write(0);
+            }
+            write(0x80);
+            return;
+        }
+        ensureCapacity(length);
+        System.arraycopy(scratch, from, out, position, length);
+        position += length;
+        out[position - 1] |= (byte) 0x80;
+    }
+
+    private void writeUnsigned(long value) {
+        int groups = 1;
+        for (long rest = value >>> 7; rest != 0; rest >>>= 7) {
+            groups++;
+        }
+        writeGroups(value, groups);
+    }
+
+    private void writeSigned(long value) {
+        int groups = 1;
+        for (long rest = value; rest < -64 || rest > 63; rest >>= 7) {
+            groups++;
+        }
+        writeGroups(value, groups);
+    }
+
+    private void writeGroups(long value, int groups) {
+        ensureCapacity(groups);
+        for (int i = groups - 1; i >= 0; i--) {
+            out[position++] = (byte) ((value >>> (7 * i)) & 0x7F);
+        }
+        out[position - 1] |= (byte) 0x80;
+    }
+
+    private void write(int b) {
+        ensureCapacity(1);
+        out[position++] = (byte) b;
+    }
+
+    private void ensureCapacity(int length) {
+        if (out.length - position < length) {
+            final byte[] grown = new byte[Math.max(position + length, out.length * 2)];
+            System.arraycopy(out, 0, grown, 0, position);
+            out = grown;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.fast;
+
+/**
+ * An instruction of a FAST template: a field with its type, presence and operator, or a sequence or group of nested
+ * instructions.
+ *
+ * @author vladyslav.yatsenko
+ */
+final class FastField {
+    enum Type {
+        INT32, UINT32, INT64, UINT64, DECIMAL, ASCII, UNICODE, SEQUENCE, GROUP;
+
+        boolean isInteger() {
+            return this == INT32 || this == UINT32 || this == INT64 || this == UINT64;
+        }
+
+        boolean isString() {
+            return this == ASCII || this == UNICODE;
+        }
+    }
+
+    enum Operator {
+        NONE, CONSTANT, DEFAULT, COPY, INCREMENT, DELTA, TAIL
+    }
+
+    final Type type;
+    final String name;
+    final int tag;
+    final boolean optional;
+    final Operator operator;
+
+    /**
+     * The initial value of the operator: an integer, the mantissa and exponent of a decimal or the bytes of a string.
+     */
+    final boolean hasInitialValue;
+    final long initialValue;
+    final int initialExponent;
+    final byte[] initialBytes;
+
+    /**
+     * The dictionary key of the operator (null if the operator has no state) and the slot assigned to it.
+     */
+    final String key;
+    int slot = -1;
+
+    /**
+     * The nested instructions of sequences and groups, and the length field of sequences.
+     */
+    final FastField[] children;
+    final FastField length;
+    final int childPresenceBits;
+
+    FastField(Type type,
+              String name,
+              int tag,
+              boolean optional,
+              Operator operator,
+              boolean hasInitialValue,
+              long initialValue,
+              int initialExponent,
+              byte[] initialBytes,
+              String key,
+              FastField[] children,
+              FastField length) {
+        this.type = type;
+        this.name = name;
+        this.tag = tag;
+        this.optional = optional;
+        this.operator = operator;
+        this.hasInitialValue = hasInitialValue;
+        this.initialValue = initialValue;
+        this.initialExponent = initialExponent;
+        this.initialBytes = initialBytes;
+        this.key = key;
+        this.children = children;
+        this.length = length;
+        this.childPresenceBits = (children != null) ? presenceBits(children) : 0;
+    }
+
+    /**
+     * @return true if the field (or the group) takes a bit of the presence map of the enclosing segment.
+     */
+    boolean usesPresenceBit() {
+        switch (operator) {
+            case CONSTANT:
+                return optional;
+            case DEFAULT:
+            case COPY:
+            case INCREMENT:
+            case TAIL:
+                return true;
+            default:
+                return type == Type.GROUP && optional;
+        }
+    }
+
+    /**
+     * @return true if the operator keeps the previous value in the dictionary.
+     */
+    boolean hasState() {
+        return operator == Operator.COPY || operator == Operator.INCREMENT || operator == Operator.DELTA
+                || operator == Operator.TAIL;
+    }
+
+    /**
+     * @return true if the nullable representation is used for the value of this field.
+     */
+    boolean isNullable() {
+        return optional && operator != Operator.CONSTANT;
+    }
+
+    /**
+     * @return the number of bits of the presence map taken by the given instructions.
+     */
+    static int presenceBits(FastField[] fields) {
+        int bits = 0;
+        for (FastField f : fields) {
+            if (f.usesPresenceBit() || (f.type == Type.SEQUENCE && f.length.usesPresenceBit())) {
+                bits++;
+            }
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.fast;
+
+import org.fixb.FixException;
+import org.fixb.impl.CollectionFactory;
+import org.fixb.meta.FixGroupMeta;
+import org.fixb.meta.FixMessageMeta;
+import org.fixb.meta.FixMetaDictionary;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Encodes and decodes FIX annotated objects as FAST messages. Each template is bound to the class of a FIX message
+ * by the tags of their fields: templates with a constant MsgType(35) field are bound to the class of that message
+ * type automatically, others can be bound explicitly. Groups of a template are bound to the fields of the enclosing
+ * class, sequences are bound to repeating groups (a sequence bound to a simple group must have a single field with
+ * the tag of its elements). Fields of a template that are not bound to the class are ignored while decoding and
+ * encoded as absent.
+ *
+ * A codec keeps the dictionaries of one stream of messages, i.e. a codec must be used for exactly one stream in each
+ * direction and reset whenever the stream is reset. Decoding and encoding allocate the objects of the messages and of
+ * their values; use FastDecoder and FastEncoder directly to avoid that.
+ *
+ * A codec is not thread-safe.
+ *
+ * @param <T> the type of the FIX objects
+ * @author vladyslav.yatsenko
+ */
+public final class FastFixCodec<T> {
+    private final FixMetaDictionary fixMetaDictionary;
+    private final FastDecoder decoder;
+    private final FastEncoder encoder;
+    private final FastValues values;
+    private final Map<Integer, FastBinding> bindings = new HashMap<>();
+    private final Map<Class<?>, Integer> templateIds = new HashMap<>();
+    private final Decoding decoding = new Decoding();
+    private final Encoding encoding = new Encoding();
+
+    /**
+     * @param templates         the templates of the stream
+     * @param fixMetaDictionary a FIX bindings meta dictionary
+     * @throws FixException if a template with a constant MsgType(35) field can't be bound to the class of the message
+     *                      type.
+     */
+    public FastFixCodec(FastTemplates templates, FixMetaDictionary fixMetaDictionary) {
+        this.fixMetaDictionary = fixMetaDictionary;
+        this.decoder = new FastDecoder(templates);
+        this.encoder = new FastEncoder(templates);
+        this.values = new FastValues(fixMetaDictionary);
+
+        final Map<String, FixMessageMeta<?>> metas = new HashMap<>();
+        for (FixMessageMeta<?> meta : fixMetaDictionary.getAllMessageMetas()) {
+            metas.put(meta.getMessageType(), meta);
+        }
+        for (FastTemplate template : templates.getTemplates()) {
+            final FixMessageMeta<?> meta = metas.get(template.getMessageType());
+            if (meta != null) {
+                bind(template, meta);
+            }
+        }
+    }
+
+    /**
+     * Binds the template with the given id to the given class.
+     *
+     * @return this codec.
+     * @throws FixException if the template is unknown or can't be bound to the class.
+     */
+    public FastFixCodec<T> bind(int templateId, Class<? extends T> type) {
+        bind(encoder.getTemplates().get(templateId), fixMetaDictionary.getMetaForClass(type));
+        return this;
+    }
+
+    /**
+     * Resets the dictionaries of both directions, e.g. when a reset message is sent or received.
+     */
+    public void reset() {
+        decoder.reset();
+        encoder.reset();
+    }
+
+    /**
+     * Decodes the message in the given region of the given array.
+     *
+     * @return an object populated with the values of the message.
+     * @throws FixException if the message is malformed or its template is not bound to a class.
+     */
+    @SuppressWarnings("unchecked")
+    public T decode(byte[] buffer, int offset, int length) {
+        decoder.decode(buffer, offset, length, decoding);
+        return (T) decoding.result();
+    }
+
+    /**
+     * Decodes the message starting at the current position of the given buffer, which is advanced past the message.
+     *
+     * @return an object populated with the values of the message.
+     * @throws FixException if the message is malformed or its template is not bound to a class.
+     */
+    @SuppressWarnings("unchecked")
+    public T decode(ByteBuffer buffer) {
+        decoder.decode(buffer, decoding);
+        return (T) decoding.result();
+    }
+
+    /**
+     * Encodes the given object into a new array.
+     *
+     * @return the encoded message.
+     * @throws FixException if the class of the object is not bound to a template or a value can't be encoded.
+     */
+    public byte[] encode(T message) {
+        final int templateId = templateIdFor(message);
+        encoding.start(bindings.get(templateId), message);
+        return encoder.encode(templateId, encoding);
+    }
+
+    /**
+     * Encodes the given object into the given buffer, starting at its current position, which is advanced past the
+     * message. If the message does not fit, the codec must be reset (see FastEncoder).
+     *
+     * @return the number of bytes written.
+     * @throws java.nio.BufferOverflowException if the message does not fit in the remaining space of the buffer.
+     * @throws FixException                     if the class of the object is not bound to a template or a value can't
+     *                                          be encoded.
+     */
+    public int encode(T message, ByteBuffer buffer) {
+        final int templateId = templateIdFor(message);
+        encoding.start(bindings.get(templateId), message);
+        return encoder.encode(templateId, encoding, buffer);
+    }
+
+    private void bind(FastTemplate template, FixMessageMeta<?> meta) {
+        bindings.put(template.getId(), FastBinding.of(meta, template.fields, template.getName()));
+        if (!templateIds.containsKey(meta.getType())) {
+            templateIds.put(meta.getType(), template.getId());
+        }
+    }
+
+    private int templateIdFor(T message) {
+        final Integer templateId = templateIds.get(message.getClass());
+        if (templateId == null) {
+            throw new FixException("No FAST template is bound to " + message.getClass().getName());
+        }
+        return templateId;
+    }
+
+    /**
+     * The values of a segment being decoded (a message or an entry of a sequence), or of a sequence being decoded.
+     */
+    private static final class Frame {
+        final FastBinding binding;
+        final Object[] values;
+        final int slot;
+        final Collection<Object> elements;
+
+        Frame(FastBinding binding) {
+            this(binding, -1, null);
+        }
+
+        Frame(FastBinding binding, int slot, Collection<Object> elements) {
+            this.binding = binding;
+            this.values = (elements == null) ? new Object[binding.fields.length] : null;
+            this.slot = slot;
+            this.elements = elements;
+        }
+    }
+
+    /**
+     * Collects the decoded values into the objects of the message.
+     */
+    private final class Decoding implements FastHandler {
+        private final Deque<Frame> frames = new ArrayDeque<>();
+        private Object result;
+
+        Object result() {
+            final Object message = result;
+            result = null;
+            return message;
+        }
+
+        @Override
+        public void onMessageStart(FastTemplate template) {
+            final FastBinding binding = bindings.get(template.getId());
+            if (binding == null) {
+                throw new FixException("FAST template " + template + " is not bound to a class");
+            }
+            frames.clear();
+            frames.push(new Frame(binding));
+        }
+
+        @Override
+        public void onInt(int tag, long value) {
+            final Frame frame = frames.peek();
+            final int slot = frame.binding.slot(tag);
+            if (slot >= 0) {
+                frame.values[slot] = values.fromInt(value, frame.binding.types[slot]);
+            }
+        }
+
+        @Override
+        public void onDecimal(int tag, long mantissa, int exponent) {
+            final Frame frame = frames.peek();
+            final int slot = frame.binding.slot(tag);
+            if (slot >= 0) {
+                frame.values[slot] = values.fromDecimal(mantissa, exponent, frame.binding.types[slot]);
+            }
+        }
+
+        @Override
+        public void onString(int tag, CharSequence value) {
+            final Frame frame = frames.peek();
+            final int slot = frame.binding.slot(tag);
+            if (slot >= 0) {
+                frame.values[slot] = values.fromString(value, frame.binding.types[slot]);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void onSequenceStart(int tag, int length) {
+            final Frame parent = frames.peek();
+            final int slot = parent.binding.slot(tag);
+            final FixGroupMeta group = (FixGroupMeta) parent.binding.fields[slot];
+            frames.push(new Frame(parent.binding.component(tag), slot,
+                    (Collection<Object>) CollectionFactory.createCollection(group.getCollectionType(), length)));
+        }
+
+        @Override
+        public void onSequenceEntry(int tag, int index) {
+            if (index > 0) {
+                endEntry();
+            }
+            frames.push(new Frame(frames.peek().binding));
+        }
+
+        @Override
+        public void onSequenceEnd(int tag) {
+            if (frames.peek().elements == null) {
+                endEntry();
+            }
+            final Frame sequence = frames.pop();
+            final Frame parent = frames.peek();
+            parent.values[sequence.slot] = ((FixGroupMeta) parent.binding.fields[sequence.slot]).toFieldValue(sequence.elements);
+        }
+
+        @Override
+        public void onMessageEnd(FastTemplate template) {
+            final Frame frame = frames.pop();
+            result = frame.binding.build(frame.values);
+        }
+
+        private void endEntry() {
+            final Frame entry = frames.pop();
+            frames.peek().elements.add(entry.binding.build(entry.values));
+        }
+    }
+
+    /**
+     * Provides the values of the objects of the message being encoded.
+     */
+    private final class Encoding implements FastSource {
+        private final Deque<Object> objects = new ArrayDeque<>();
+        private final Deque<FastBinding> bindings = new ArrayDeque<>();
+        private final Deque<Iterator<?>> entries = new ArrayDeque<>();
+
+        void start(FastBinding binding, Object message) {
+            objects.clear();
+            bindings.clear();
+            entries.clear();
+            objects.push(message);
+            bindings.push(binding);
+        }
+
+        @Override
+        public boolean has(int tag) {
+            return value(tag) != null;
+        }
+
+        @Override
+        public long getInt(int tag) {
+            return values.toInt(required(tag));
+        }
+
+        @Override
+        public long getMantissa(int tag) {
+            return FastValues.mantissaOf(values.toDecimal(required(tag)));
+        }
+
+        @Override
+        public int getExponent(int tag) {
+            return -values.toDecimal(required(tag)).scale();
+        }
+
+        @Override
+        public CharSequence getString(int tag) {
+            final Object value = value(tag);
+            return (value == null) ? null : values.toString(value);
+        }
+
+        @Override
+        public int getSequenceLength(int tag) {
+            final Collection<?> elements = (Collection<?>) value(tag);
+            return (elements == null) ? -1 : elements.size();
+        }
+
+        @Override
+        public void enterEntry(int tag, int index) {
+            if (index == 0) {
+                entries.push(((Collection<?>) value(tag)).iterator());
+            }
+            final Iterator<?> iterator = entries.peek();
+            objects.push(iterator.next());
+            bindings.push(bindings.peek().component(tag));
+        }
+
+        @Override
+        public void exitEntry(int tag) {
+            objects.pop();
+            bindings.pop();
+            if (!entries.peek().hasNext()) {
+                entries.pop();
+            }
+        }
+
+        private Object value(int tag) {
+            final FastBinding binding = bindings.peek();
+            final int slot = binding.slot(tag);
+            return (slot < 0) ? null : binding.get(objects.peek(), slot);
+        }
+
+        private Object required(int tag) {
+            final Object value = value(tag);
+            if (value == null) {
+                throw new FixException("Missing value of mandatory field " + tag);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.fast;
+
+/**
+ * A receiver of the values decoded by FastDecoder. Values are reported in the order of the template instructions and
+ * identified by the <tt>id</tt> attributes (FIX tags) of the instructions; absent optional fields are not reported.
+ * Groups are transparent: their fields are reported as fields of the enclosing segment.
+ *
+ * No objects are created to report values: CharSequence values are views of a buffer of the decoder that are only
+ * valid until the callback returns.
+ *
+ * @author vladyslav.yatsenko
+ */
+public interface FastHandler {
+    /**
+     * Called before the fields of a message.
+     */
+    void onMessageStart(FastTemplate template);
+
+    /**
+     * Called for an integer field.
+     */
+    void onInt(int tag, long value);
+
+    /**
+     * Called for a decimal field with the value <tt>mantissa * 10^exponent</tt>.
+     */
+    void onDecimal(int tag, long mantissa, int exponent);
+
+    /**
+     * Called for a string field.
+     */
+    void onString(int tag, CharSequence value);
+
+    /**
+     * Called before the entries of a present sequence, the tag of which is the id of its length field.
+     */
+    void onSequenceStart(int tag, int length);
+
+    /**
+     * Called before the fields of each entry of a sequence.
+     */
+    void onSequenceEntry(int tag, int index);
+
+    /**
+     * Called after the last entry of a sequence.
+     */
+    void onSequenceEnd(int tag);
+
+    /**
+     * Called after the fields of a message.
+     */
+    void onMessageEnd(FastTemplate template);
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.fast;
+
+/**
+ * A provider of the values encoded by FastEncoder. The encoder asks for the values in the order of the template
+ * instructions, identifying them by the <tt>id</tt> attributes (FIX tags) of the instructions. The values of the
+ * entries of a sequence are provided between the calls to enterEntry() and exitEntry().
+ *
+ * @author vladyslav.yatsenko
+ */
+public interface FastSource {
+    /**
+     * @return true if the field with the given tag has a value (only asked for optional fields).
+     */
+    boolean has(int tag);
+
+    /**
+     * @return the value of the integer field with the given tag.
+     */
+    long getInt(int tag);
+
+    /**
+     * @return the mantissa of the decimal field with the given tag, normalized with the exponent returned by
+     *         getExponent() for the same tag.
+     */
+    long getMantissa(int tag);
+
+    /**
+     * @return the exponent of the decimal field with the given tag.
+     */
+    int getExponent(int tag);
+
+    /**
+     * @return the value of the string field with the given tag.
+     */
+    CharSequence getString(int tag);
+
+    /**
+     * @return the number of entries of the sequence with the given tag (the id of its length field) or -1 if the
+     *         sequence is absent.
+     */
+    int getSequenceLength(int tag);
+
+    /**
+     * Makes the entry with the given index of the sequence with the given tag the source of the following values.
+     */
+    void enterEntry(int tag, int index);
+
+    /**
+     * Makes the enclosing segment the source of the following values again.
+     */
+    void exitEntry(int tag);
+}
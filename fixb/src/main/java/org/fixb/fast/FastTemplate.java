@@ -0,0 +1,79 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.fast;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.fixb.FixConstants.MSG_TYPE_TAG;
+
+/**
+ * A FAST template loaded by FastTemplates. Fields of templates are identified by their <tt>id</tt> attributes, which
+ * are expected to be FIX tags, so that templates can be bound to FIX annotated classes by FastFixCodec. The length
+ * field of a sequence carries the tag of the NoXXX field of the repeating group.
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class FastTemplate {
+    private final int id;
+    private final String name;
+    private final String messageType;
+    final FastField[] fields;
+
+    /**
+     * The number of bits of the presence map of a message, including the bit of the template id.
+     */
+    final int presenceBits;
+
+    FastTemplate(int id, String name, FastField[] fields) {
+        this.id = id;
+        this.name = name;
+        this.fields = fields;
+        this.presenceBits = 1 + FastField.presenceBits(fields);
+        String type = null;
+        for (FastField f : fields) {
+            if (f.tag == MSG_TYPE_TAG && f.operator == FastField.Operator.CONSTANT && f.type.isString()) {
+                type = new String(f.initialBytes, StandardCharsets.UTF_8);
+            }
+        }
+        this.messageType = type;
+    }
+
+    /**
+     * @return the id of this template.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return the name of this template.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the value of the constant MsgType(35) field of this template or null if it has none.
+     */
+    public String getMessageType() {
+        return messageType;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + id + ")";
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.fast;
+
+import org.fixb.FixException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A set of FAST 1.1 templates loaded from a template definition document, e.g.
+ * <pre>
+ * &lt;templates xmlns="http://www.fixprotocol.org/ns/fast/td/1.1"&gt;
+ *   &lt;template name="MDIncRefresh" id="1"&gt;
+ *     &lt;string name="MessageType" id="35"&gt;&lt;constant value="X"/&gt;&lt;/string&gt;
+ *     &lt;uInt32 name="MsgSeqNum" id="34"&gt;&lt;increment/&gt;&lt;/uInt32&gt;
+ *     &lt;sequence name="MDEntries"&gt;
+ *       &lt;length name="NoMDEntries" id="268"/&gt;
+ *       &lt;string name="Symbol" id="55"&gt;&lt;copy/&gt;&lt;/string&gt;
+ *       &lt;decimal name="MDEntryPx" id="270"&gt;&lt;delta/&gt;&lt;/decimal&gt;
+ *     &lt;/sequence&gt;
+ *   &lt;/template&gt;
+ * &lt;/templates&gt;
+ * </pre>
+ *
+ * The supported field types are int32, uInt32, int64, uInt64, decimal (with a single operator), string (ASCII or
+ * unicode), sequence and group, with the constant, default, copy, increment, delta and tail operators. Operators use
+ * the global dictionary unless <tt>dictionary="template"</tt> is specified by the operator, the template or the
+ * templates element. Template references and individual operators of decimal exponents and mantissas are not
+ * supported.
+ *
+ * Templates are immutable and can be shared by any number of encoders and decoders.
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class FastTemplates {
+    private final Map<Integer, FastTemplate> templates;
+    private final FastTemplate[] templatesById;
+    private final int dictionarySize;
+
+    /**
+     * Loads the templates from the given template definition document. The stream is not closed.
+     *
+     * @throws FixException if the document is malformed or uses unsupported features.
+     */
+    public static FastTemplates load(InputStream in) {
+        final Document document;
+        try {
+            final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            document = factory.newDocumentBuilder().parse(in);
+        } catch (Exception e) {
+            throw new FixException("Unable to read FAST templates", e);
+        }
+        return new FastTemplates(document.getDocumentElement());
+    }
+
+    /**
+     * @return the template with the given id.
+     * @throws FixException if there is no such template.
+     */
+    public FastTemplate get(int id) {
+        final FastTemplate template = (id >= 0 && id < templatesById.length) ? templatesById[id] : null;
+        if (template == null) {
+            throw new FixException("Unknown FAST template id: " + id);
+        }
+        return template;
+    }
+
+    /**
+     * @return all templates in the order of the template definition document.
+     */
+    public Collection<FastTemplate> getTemplates() {
+        return Collections.unmodifiableCollection(templates.values());
+    }
+
+    /**
+     * @return the number of dictionary entries used by the operators of all templates.
+     */
+    int dictionarySize() {
+        return dictionarySize;
+    }
+
+    private FastTemplates(Element root) {
+        if (!"templates".equals(nameOf(root)) && !"template".equals(nameOf(root))) {
+            throw new FixException("Not a FAST template definition: " + nameOf(root));
+        }
+        final String rootDictionary = attribute(root, "dictionary", "global");
+        final Map<String, Integer> slots = new HashMap<>();
+        this.templates = new LinkedHashMap<>();
+        int maxId = 0;
+        final List<Element> templateElements = "template".equals(nameOf(root)) ?
+                Collections.singletonList(root) :
+                children(root, "template");
+        for (Element element : templateElements) {
+            final int id = Integer.parseInt(required(element, "id"));
+            final String dictionary = attribute(element, "dictionary", rootDictionary);
+            final FastTemplate template = new FastTemplate(id, required(element, "name"),
+                    parseFields(element, id, dictionary, slots));
+            if (templates.put(id, template) != null) {
+                throw new FixException("Duplicate FAST template id: " + id);
+            }
+            maxId = Math.max(maxId, id);
+        }
+        this.templatesById = new FastTemplate[maxId + 1];
+        for (FastTemplate template : templates.values()) {
+            templatesById[template.getId()] = template;
+        }
+        this.dictionarySize = slots.size();
+    }
+
+    private static FastField[] parseFields(Element parent, int templateId, String dictionary, Map<String, Integer> slots) {
+        final List<FastField> fields = new ArrayList<>();
+        for (Element element : children(parent, null)) {
+            final String name = nameOf(element);
+            if ("length".equals(name) || "typeRef".equals(name)) {
+                continue;
+            }
+            if ("templateRef".equals(name)) {
+                throw new FixException("FAST template references are not supported");
+            }
+            fields.add(parseField(element, templateId, attribute(element, "dictionary", dictionary), slots));
+        }
+        return fields.toArray(new FastField[fields.size()]);
+    }
+
+    private static FastField parseField(Element element, int templateId, String dictionary, Map<String, Integer> slots) {
+        final FastField.Type type = typeOf(element);
+        final String name = required(element, "name");
+        final int tag = Integer.parseInt(attribute(element, "id", "0"));
+        final boolean optional = "optional".equals(attribute(element, "presence", "mandatory"));
+
+        if (type == FastField.Type.SEQUENCE) {
+            final List<Element> lengths = children(element, "length");
+            final FastField length = lengths.isEmpty() ?
+                    new FastField(FastField.Type.UINT32, name + "Length", 0, optional, FastField.Operator.NONE,
+                            false, 0, 0, null, null, null, null) :
+                    parseScalar(lengths.get(0), FastField.Type.UINT32, templateId, dictionary, slots, optional);
+            return new FastField(type, name, length.tag, optional, FastField.Operator.NONE, false, 0, 0, null, null,
+                    parseFields(element, templateId, dictionary, slots), length);
+        }
+        if (type == FastField.Type.GROUP) {
+            return new FastField(type, name, tag, optional, FastField.Operator.NONE, false, 0, 0, null, null,
+                    parseFields(element, templateId, dictionary, slots), null);
+        }
+        return parseScalar(element, type, templateId, dictionary, slots, optional);
+    }
+
+    private static FastField parseScalar(Element element,
+                                         FastField.Type type,
+                                         int templateId,
+                                         String dictionary,
+                                         Map<String, Integer> slots,
+                                         boolean optional) {
+        final String name = attribute(element, "name", nameOf(element));
+        final int tag = Integer.parseInt(attribute(element, "id", "0"));
+        FastField.Operator operator = FastField.Operator.NONE;
+        String value = null;
+        String key = null;
+        for (Element child : children(element, null)) {
+            final String childName = nameOf(child);
+            if ("exponent".equals(childName) || "mantissa".equals(childName)) {
+                throw new FixException("Individual decimal operators are not supported: " + name);
+            }
+            operator = operatorOf(child);
+            value = child.hasAttribute("value") ? child.getAttribute("value") : null;
+            key = attribute(child, "key", name);
+            dictionary = attribute(child, "dictionary", dictionary);
+        }
+        if (operator == FastField.Operator.CONSTANT && value == null) {
+            throw new FixException("Constant without a value: " + name);
+        }
+        if (operator == FastField.Operator.INCREMENT && !type.isInteger()) {
+            throw new FixException("Increment operator on a non-integer field: " + name);
+        }
+        if (operator == FastField.Operator.TAIL && !type.isString()) {
+            throw new FixException("Tail operator on a non-string field: " + name);
+        }
+
+        long initialValue = 0;
+        int initialExponent = 0;
+        byte[] initialBytes = null;
+        if (value != null) {
+            if (type.isInteger()) {
+                initialValue = Long.parseLong(value.trim());
+            } else if (type == FastField.Type.DECIMAL) {
+                final BigDecimal decimal = new BigDecimal(value.trim());
+                initialValue = decimal.unscaledValue().longValue();
+                initialExponent = -decimal.scale();
+            } else {
+                initialBytes = value.getBytes((type == FastField.Type.ASCII) ? StandardCharsets.US_ASCII : StandardCharsets.UTF_8);
+            }
+        }
+
+        final FastField field = new FastField(type, name, tag, optional, operator, value != null, initialValue,
+                initialExponent, initialBytes, key, null, null);
+        if (field.hasState()) {
+            final String scopedKey = "template".equals(dictionary) ? templateId + ":" + key : key;
+            Integer slot = slots.get(scopedKey);
+            if (slot == null) {
+                slot = slots.size();
+                slots.put(scopedKey, slot);
+            }
+            field.slot = slot;
+        }
+        return field;
+    }
+
+    private static FastField.Type typeOf(Element element) {
+        switch (nameOf(element)) {
+            case "int32":
+                return FastField.Type.INT32;
+            case "uInt32":
+                return FastField.Type.UINT32;
+            case "int64":
+                return FastField.Type.INT64;
+            case "uInt64":
+                return FastField.Type.UINT64;
+            case "decimal":
+                return FastField.Type.DECIMAL;
+            case "string":
+                return "unicode".equals(attribute(element, "charset", "ascii")) ?
+                        FastField.Type.UNICODE :
+                        FastField.Type.ASCII;
+            case "sequence":
+                return FastField.Type.SEQUENCE;
+            case "group":
+                return FastField.Type.GROUP;
+            default:
+                throw new FixException("Unsupported FAST instruction: " + nameOf(element));
+        }
+    }
+
+    private static FastField.Operator operatorOf(Element element) {
+        switch (nameOf(element)) {
+            case "constant":
+                return FastField.Operator.CONSTANT;
+            case "default":
+                return FastField.Operator.DEFAULT;
+            case "copy":
+                return FastField.Operator.COPY;
+            case "increment":
+                return FastField.Operator.INCREMENT;
+            case "delta":
+                return FastField.Operator.DELTA;
+            case "tail":
+                return FastField.Operator.TAIL;
+            default:
+                throw new FixException("Unsupported FAST operator: " + nameOf(element));
+        }
+    }
+
+    private static List<Element> children(Element parent, String name) {
+        final List<Element> result = new ArrayList<>();
+        final NodeList nodes = parent.getChildNodes();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            final Node node = nodes.item(i);
+            if (node.getNodeType() == Node.ELEMENT_NODE && (name == null || name.equals(nameOf((Element) node)))) {
+                result.add((Element) node);
+            }
+        }
+        return result;
+    }
+
+    private static String nameOf(Element element) {
+        return (element.getLocalName() != null) ? element.getLocalName() : element.getNodeName();
+    }
+
+    private static String attribute(Element element, String name, String defaultValue) {
+        return element.hasAttribute(name) ? element.getAttribute(name) : defaultValue;
+    }
+
+    private static String required(Element element, String name) {
+        if (!element.hasAttribute(name)) {
+            throw new FixException("Missing attribute " + name + " of FAST instruction " + nameOf(element));
+        }
+        return element.getAttribute(name);
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.fast;
+
+import org.fixb.FixException;
+import org.fixb.impl.FieldCursor;
+import org.fixb.impl.NativeFixFieldExtractor;
+import org.fixb.impl.NativeFixMessageBuilder;
+import org.fixb.meta.FixEnumDictionary;
+import org.fixb.meta.FixEnumMeta;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+import org.joda.time.LocalTime;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Date;
+
+import static org.fixb.FixConstants.BEGIN_STRING_TAG;
+import static org.fixb.impl.FormatConstants.SOH;
+
+/**
+ * Converts the values of FAST fields to the types of the fields of FIX annotated classes and back.
+ *
+ * Integer fields hold numbers, booleans (1 or 0), enums (the FIX value of a @FixEnum or the ordinal + 1, as in FIX
+ * messages), dates (yyyyMMdd), times (HHmmssSSS) and timestamps (yyyyMMddHHmmssSSS, in UTC). Decimal fields hold
+ * numbers. String fields hold any type in its FIX representation.
+ *
+ * @author vladyslav.yatsenko
+ */
+final class FastValues {
+    private static final int VALUE_TAG = 1;
+
+    private final FixEnumDictionary enumDictionary;
+    private final NativeFixFieldExtractor extractor;
+    private final NativeFixMessageBuilder.Factory builderFactory;
+
+    FastValues(FixEnumDictionary enumDictionary) {
+        this.enumDictionary = enumDictionary;
+        this.extractor = new NativeFixFieldExtractor(enumDictionary);
+        this.builderFactory = new NativeFixMessageBuilder.Factory(enumDictionary);
+    }
+
+    @SuppressWarnings("unchecked")
+    Object fromInt(long value, Class<?> type) {
+        if (type == int.class || type == Integer.class) return (int) value;
+        if (type == long.class || type == Long.class) return value;
+        if (type == short.class || type == Short.class) return (short) value;
+        if (type == byte.class || type == Byte.class) return (byte) value;
+        if (type == double.class || type == Double.class) return (double) value;
+        if (type == float.class || type == Float.class) return (float) value;
+        if (type == BigDecimal.class) return BigDecimal.valueOf(value);
+        if (type == boolean.class || type == Boolean.class) return value != 0;
+        if (type.isEnum()) return toEnum(value, (Class<Enum>) type);
+        if (type == LocalDate.class) return toLocalDate(value);
+        if (type == LocalTime.class) return toLocalTime(value);
+        if (type == LocalDateTime.class) return toLocalDate(value / 1000000000L).toLocalDateTime(toLocalTime(value % 1000000000L));
+        if (type == DateTime.class) return toLocalDate(value / 1000000000L).toDateTime(toLocalTime(value % 1000000000L), DateTimeZone.UTC);
+        if (type == Date.class) return toLocalDate(value / 1000000000L).toDateTime(toLocalTime(value % 1000000000L), DateTimeZone.UTC).toDate();
+        return fromString(Long.toString(value), type);
+    }
+
+    long toInt(Object value) {
+        if (value instanceof Number) return ((Number) value).longValue();
+        if (value instanceof Boolean) return ((Boolean) value) ? 1 : 0;
+        if (value instanceof Enum) return toInt((Enum<?>) value);
+        if (value instanceof LocalDate) return toInt((LocalDate) value);
+        if (value instanceof LocalTime) return toInt((LocalTime) value);
+        if (value instanceof LocalDateTime) return toInt(((LocalDateTime) value).toLocalDate()) * 1000000000L + toInt(((LocalDateTime) value).toLocalTime());
+        if (value instanceof DateTime) return toInt(((DateTime) value).withZone(DateTimeZone.UTC).toLocalDateTime());
+        if (value instanceof Date) return toInt(new DateTime(value, DateTimeZone.UTC).toLocalDateTime());
+        try {
+            return Long.parseLong(toString(value).toString());
+        } catch (NumberFormatException e) {
+            throw new FixException("Unable to encode [" + value + "] as a FAST integer", e);
+        }
+    }
+
+    Object fromDecimal(long mantissa, int exponent, Class<?> type) {
+        if (type == double.class || type == Double.class) {
+            return (exponent >= 0) ? mantissa * Math.pow(10, exponent) : BigDecimal.valueOf(mantissa, -exponent).doubleValue();
+        }
+        final BigDecimal value = BigDecimal.valueOf(mantissa, -exponent);
+        if (type == BigDecimal.class) return value;
+        if (type == float.class || type == Float.class) return value.floatValue();
+        if (type == long.class || type == Long.class) return value.longValue();
+        if (type == int.class || type == Integer.class) return value.intValue();
+        return fromString(value.toPlainString(), type);
+    }
+
+    /**
+     * @return the given value as a decimal without trailing zeros.
+     */
+    BigDecimal toDecimal(Object value) {
+        final BigDecimal decimal;
+        if (value instanceof BigDecimal) {
+            decimal = (BigDecimal) value;
+        } else if (value instanceof Double || value instanceof Float) {
+            decimal = BigDecimal.valueOf(((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            decimal = BigDecimal.valueOf(((Number) value).longValue());
+        } else {
+            try {
+                decimal = new BigDecimal(toString(value).toString());
+            } catch (NumberFormatException e) {
+                throw new FixException("Unable to encode [" + value + "] as a FAST decimal", e);
+            }
+        }
+        return (decimal.signum() == 0) ? BigDecimal.ZERO : decimal.stripTrailingZeros();
+    }
+
+    static long mantissaOf(BigDecimal decimal) {
+        final BigInteger mantissa = decimal.unscaledValue();
+        if (mantissa.bitLength() > 63) {
+            throw new FixException("Unable to encode [" + decimal + "] as a FAST decimal");
+        }
+        return mantissa.longValue();
+    }
+
+    Object fromString(CharSequence value, Class<?> type) {
+        if (type == String.class || type == CharSequence.class) return value.toString();
+        if ((type == char.class || type == Character.class) && value.length() == 1) return value.charAt(0);
+        final FieldCursor cursor = FieldCursor.create(VALUE_TAG + "=" + value + SOH);
+        cursor.nextField();
+        final Object result = extractor.getFieldValue(cursor, type);
+        if (result == null) {
+            throw new FixException("Unable to decode [" + value + "] as " + type.getName());
+        }
+        return result;
+    }
+
+    CharSequence toString(Object value) {
+        if (value instanceof CharSequence) return (CharSequence) value;
+        if (value instanceof Character) return String.valueOf(value);
+        final NativeFixMessageBuilder builder = builderFactory.create();
+        builder.setField(BEGIN_STRING_TAG, "FIX.4.4", true);
+        builder.setField(VALUE_TAG, value, false);
+        final FieldCursor cursor = FieldCursor.create(builder.build());
+        cursor.nextField(VALUE_TAG);
+        return cursor.lastValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Enum<?> toEnum(long value, Class<Enum> type) {
+        if (enumDictionary.hasFixEnumMeta(type)) {
+            final Enum<?> result = enumDictionary.getFixEnumMeta(type).enumForFixValue(Long.toString(value));
+            if (result == null) {
+                throw new FixException("Unknown value " + value + " of " + type.getName());
+            }
+            return result;
+        }
+        final Enum<?>[] constants = type.getEnumConstants();
+        if (value < 1 || value > constants.length) {
+            throw new FixException("Unknown value " + value + " of " + type.getName());
+        }
+        return constants[(int) value - 1];
+    }
+
+    @SuppressWarnings("unchecked")
+    private long toInt(Enum<?> value) {
+        final Class<Enum> type = (Class<Enum>) value.getDeclaringClass();
+        if (enumDictionary.hasFixEnumMeta(type)) {
+            final FixEnumMeta<?> meta = enumDictionary.getFixEnumMeta(type);
+            try {
+                return Long.parseLong(meta.fixValueForEnum(value));
+            } catch (NumberFormatException e) {
+                throw new FixException("Unable to encode " + value + " as a FAST integer", e);
+            }
+        }
+        return value.ordinal() + 1;
+    }
+
+    private static LocalDate toLocalDate(long value) {
+        return new LocalDate((int) (value / 10000), (int) (value / 100 % 100), (int) (value % 100));
+    }
+
+    private static LocalTime toLocalTime(long value) {
+        return new LocalTime((int) (value / 10000000), (int) (value / 100000 % 100), (int) (value / 1000 % 100),
+                (int) (value % 1000));
+    }
+
+    private static long toInt(LocalDate value) {
+        return value.getYear() * 10000L + value.getMonthOfYear() * 100 + value.getDayOfMonth();
+    }
+
+    private static long toInt(LocalTime value) {
+        return value.getHourOfDay() * 10000000L + value.getMinuteOfHour() * 100000 + value.getSecondOfMinute() * 1000
+                + value.getMillisOfSecond();
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.filter;
+
+import org.fixb.impl.AsciiString;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.fixb.impl.FormatConstants.SOH;
+
+/**
+ * Evaluates a FixPredicate against raw FIX messages without decoding them.
+ *
+ * The message is scanned from the start only as far as needed: when a predicate asks for a tag that has not been
+ * reached yet, the scan continues up to that tag, remembering the bounds of the other tags read by the predicate
+ * that it passes on the way. Since the predicates short-circuit, a message is usually rejected after reading only
+ * its first few fields. Only the first occurrence of each tag is considered.
+ *
+ * A filter keeps the scan state in pre-allocated arrays, so evaluation does not allocate, but a filter must not be
+ * used by several threads at the same time (compile one filter per thread; predicates can be shared).
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class FixFilter {
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+    };
+    // the largest mantissa converted to a double exactly
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private final FixPredicate predicate;
+    private final int[] tags;
+    private final int[] valueStarts;
+    private final int[] valueEnds;
+    private final AsciiString bytes = new AsciiString();
+
+    private CharSequence message;
+    private int position;
+    private int current;
+
+    /**
+     * @return a new filter evaluating the given predicate.
+     */
+    public static FixFilter compile(FixPredicate predicate) {
+        final Set<Integer> tags = new TreeSet<>();
+        predicate.collectTags(tags);
+        return new FixFilter(predicate, tags);
+    }
+
+    /**
+     * @return true if the given FIX message matches the predicate of this filter.
+     */
+    public boolean matches(CharSequence fixMessage) {
+        message = fixMessage;
+        position = 0;
+        Arrays.fill(valueStarts, -1);
+        return predicate.evaluate(this);
+    }
+
+    /**
+     * The same as {@link #matches(CharSequence)}, but reads an ASCII encoded message from a region of a byte buffer.
+     */
+    public boolean matches(byte[] buffer, int offset, int length) {
+        return matches(bytes.wrap(buffer, offset, length));
+    }
+
+    /**
+     * Finds the first field with the given tag and makes it the current field.
+     *
+     * @return false if the message has no such field.
+     */
+    boolean locate(int tag) {
+        final int slot = Arrays.binarySearch(tags, tag);
+        if (valueStarts[slot] < 0 && !scanTo(slot)) {
+            return false;
+        }
+        current = slot;
+        return true;
+    }
+
+    /**
+     * @return true if the value of the current field is equal to the given string.
+     */
+    boolean valueEquals(String value) {
+        final int start = valueStarts[current];
+        final int length = valueEnds[current] - start;
+        if (length != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (message.charAt(start + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the value of the current field parsed as a decimal number or NaN if it is not a number.
+     */
+    double valueAsDouble() {
+        final int start = valueStarts[current];
+        int i = start;
+        final int end = valueEnds[current];
+        if (i == end) {
+            return Double.NaN;
+        }
+        final boolean negative = message.charAt(i) == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int scale = -1;
+        int digits = 0;
+        for (; i < end; i++) {
+            final char c = message.charAt(i);
+            if (c == '.' && scale < 0) {
+                scale = 0;
+            } else if (c >= '0' && c <= '9') {
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                }
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (digits == 0) {
+            return Double.NaN;
+        }
+        if (digits > 18 || mantissa > MAX_EXACT_MANTISSA) {
+            // a single division is only correctly rounded for a mantissa that is exactly representable
+            return Double.parseDouble(message.subSequence(start, end).toString());
+        }
+        final double value = (scale > 0) ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+        return negative ? -value : value;
+    }
+
+    /**
+     * Scans the message from the current position until the given slot is found, recording the bounds of the other
+     * slots found on the way.
+     */
+    private boolean scanTo(int slot) {
+        final CharSequence msg = message;
+        final int length = msg.length();
+        while (position < length) {
+            int i = position;
+            int tag = 0;
+            char c;
+            while (i < length && (c = msg.charAt(i)) != '=') {
+                tag = tag * 10 + (c - '0');
+                i++;
+            }
+            final int valueStart = ++i;
+            while (i < length && msg.charAt(i) != SOH) {
+                i++;
+            }
+            position = i + 1;
+
+            final int found = (tag <= tags[tags.length - 1]) ? Arrays.binarySearch(tags, tag) : -1;
+            if (found >= 0 && valueStarts[found] < 0) {
+                valueStarts[found] = valueStart;
+                valueEnds[found] = Math.min(i, length);
+                if (found == slot) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private FixFilter(FixPredicate predicate, Set<Integer> tags) {
+        this.predicate = predicate;
+        this.tags = new int[tags.size()];
+        int i = 0;
+        for (Integer tag : tags) {
+            this.tags[i++] = tag;
+        }
+        this.valueStarts = new int[this.tags.length];
+        this.valueEnds = new int[this.tags.length];
+    }
+}
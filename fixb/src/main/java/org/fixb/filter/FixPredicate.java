@@ -0,0 +1,43 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.filter;
+
+import java.util.Set;
+
+/**
+ * A condition on the field values of a raw FIX message. Predicates are created by FixPredicates and evaluated by a
+ * FixFilter compiled from them, which reads the message lazily: a field is only looked for when a predicate needs it,
+ * and evaluation stops as soon as the result is known.
+ *
+ * @author vladyslav.yatsenko
+ */
+public abstract class FixPredicate {
+    /**
+     * Package-private constructor: predicates are only created by FixPredicates.
+     */
+    FixPredicate() {
+    }
+
+    /**
+     * @return the result of this predicate for the message the given filter is evaluating.
+     */
+    abstract boolean evaluate(FixFilter filter);
+
+    /**
+     * Adds the tags this predicate reads to the given set.
+     */
+    abstract void collectTags(Set<Integer> tags);
+}
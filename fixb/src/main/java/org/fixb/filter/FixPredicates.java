@@ -0,0 +1,220 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.filter;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Factory methods of FixPredicates, e.g.
+ * <pre>
+ *     FixFilter filter = FixFilter.compile(and(in(55, "EUR/USD", "GBP/USD"), eq(150, "F"), not(eq(54, "1"))));
+ * </pre>
+ * Values are compared as they appear in the message, i.e. as strings, except for the numeric range predicates.
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class FixPredicates {
+    private FixPredicates() {
+    }
+
+    /**
+     * @return a predicate that is true if the message has the given tag with the given value.
+     */
+    public static FixPredicate eq(int tag, String value) {
+        return in(tag, value);
+    }
+
+    /**
+     * @return a predicate that is true if the message has the given tag with one of the given values.
+     */
+    public static FixPredicate in(final int tag, final String... values) {
+        final String[] candidates = values.clone();
+        return new FixPredicate() {
+            @Override
+            boolean evaluate(FixFilter filter) {
+                if (!filter.locate(tag)) {
+                    return false;
+                }
+                for (String candidate : candidates) {
+                    if (filter.valueEquals(candidate)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            void collectTags(Set<Integer> tags) {
+                tags.add(tag);
+            }
+
+            @Override
+            public String toString() {
+                return tag + " in " + Arrays.toString(candidates);
+            }
+        };
+    }
+
+    /**
+     * @return a predicate that is true if the message has the given tag with a numeric value in the given inclusive
+     *         range.
+     */
+    public static FixPredicate between(final int tag, final double min, final double max) {
+        return new FixPredicate() {
+            @Override
+            boolean evaluate(FixFilter filter) {
+                if (!filter.locate(tag)) {
+                    return false;
+                }
+                final double value = filter.valueAsDouble();
+                return value >= min && value <= max;
+            }
+
+            @Override
+            void collectTags(Set<Integer> tags) {
+                tags.add(tag);
+            }
+
+            @Override
+            public String toString() {
+                return tag + " in [" + min + ", " + max + "]";
+            }
+        };
+    }
+
+    /**
+     * @return a predicate that is true if the message has the given tag with a numeric value not less than the given
+     *         one.
+     */
+    public static FixPredicate ge(int tag, double min) {
+        return between(tag, min, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * @return a predicate that is true if the message has the given tag with a numeric value not greater than the
+     *         given one.
+     */
+    public static FixPredicate le(int tag, double max) {
+        return between(tag, Double.NEGATIVE_INFINITY, max);
+    }
+
+    /**
+     * @return a predicate that is true if the message has the given tag.
+     */
+    public static FixPredicate present(final int tag) {
+        return new FixPredicate() {
+            @Override
+            boolean evaluate(FixFilter filter) {
+                return filter.locate(tag);
+            }
+
+            @Override
+            void collectTags(Set<Integer> tags) {
+                tags.add(tag);
+            }
+
+            @Override
+            public String toString() {
+                return tag + " present";
+            }
+        };
+    }
+
+    /**
+     * @return a predicate that is true if all of the given predicates are true (evaluated from left to right until
+     *         one is false).
+     */
+    public static FixPredicate and(final FixPredicate... predicates) {
+        final FixPredicate[] operands = predicates.clone();
+        return new FixPredicate() {
+            @Override
+            boolean evaluate(FixFilter filter) {
+                for (FixPredicate operand : operands) {
+                    if (!operand.evaluate(filter)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            void collectTags(Set<Integer> tags) {
+                for (FixPredicate operand : operands) {
+                    operand.collectTags(tags);
+                }
+            }
+
+            @Override
+            public String toString() {
+                return "and" + Arrays.toString(operands);
+            }
+        };
+    }
+
+    /**
+     * @return a predicate that is true if any of the given predicates is true (evaluated from left to right until
+     *         one is true).
+     */
+    public static FixPredicate or(final FixPredicate... predicates) {
+        final FixPredicate[] operands = predicates.clone();
+        return new FixPredicate() {
+            @Override
+            boolean evaluate(FixFilter filter) {
+                for (FixPredicate operand : operands) {
+                    if (operand.evaluate(filter)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            void collectTags(Set<Integer> tags) {
+                for (FixPredicate operand : operands) {
+                    operand.collectTags(tags);
+                }
+            }
+
+            @Override
+            public String toString() {
+                return "or" + Arrays.toString(operands);
+            }
+        };
+    }
+
+    /**
+     * @return a predicate that is true if the given predicate is false.
+     */
+    public static FixPredicate not(final FixPredicate predicate) {
+        return new FixPredicate() {
+            @Override
+            boolean evaluate(FixFilter filter) {
+                return !predicate.evaluate(filter);
+            }
+
+            @Override
+            void collectTags(Set<Integer> tags) {
+                predicate.collectTags(tags);
+            }
+
+            @Override
+            public String toString() {
+                return "not(" + predicate + ")";
+            }
+        };
+    }
+}
@@ -0,0 +1,608 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.flyweight;
+
+import org.fixb.impl.AsciiEncoding;
+import org.fixb.impl.AsciiString;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.fixb.FixConstants.CHECKSUM_TAG;
+import static org.fixb.impl.FormatConstants.SOH;
+
+/**
+ * The base class of flyweight accessors of FIX messages (and of entries of repeating groups) that read and patch the
+ * fields directly in a byte buffer instead of decoding the message into an object. The accessors of a message type are
+ * generated by FixFlyweightGenerator from the annotations of its class; the protected methods of this class access the
+ * fields by tag.
+ *
+ * Wrapping a buffer indexes the bounds of the fields in a single pass (using the same scoping rules for group entries
+ * as NativeFixSerializer), after which the getters parse the values on access and the setters overwrite them in place.
+ * A setter only succeeds if the new value fits the width of the old one: numbers are padded with leading zeros and
+ * decimals keep the number of fractional digits of the old value, while texts must have the same length. CheckSum(10)
+ * is updated by each successful setter, and BodyLength(9) never changes.
+ *
+ * No objects are created by wrapping, by the getters (CharSequence values are flyweights re-used per field) or by
+ * iterating groups, except on the first use of a flyweight. A flyweight is not thread-safe and the buffer must not be
+ * modified by other means while it is wrapped.
+ *
+ * @author vladyslav.yatsenko
+ */
+public abstract class FixFlyweight {
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+    };
+
+    private final FixFlyweightLayout layout;
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] groupPositions;
+    private final AsciiString[] chars;
+    private boolean[][] seen;
+
+    private FixFlyweight root;
+    private byte[] buffer;
+    private int offset;
+    private int limit;
+    private int end;
+    private int checkSumStart = -1;
+
+    // the field parsed by nextField()
+    private int fieldTag;
+    private int valueStart;
+    private int valueEnd;
+
+    /**
+     * @param layout the layout of the message type or of the group component
+     */
+    protected FixFlyweight(FixFlyweightLayout layout) {
+        this.layout = layout;
+        this.starts = new int[layout.size()];
+        this.ends = new int[layout.size()];
+        this.groupPositions = new int[layout.size()];
+        this.chars = new AsciiString[layout.size()];
+        Arrays.fill(starts, -1);
+    }
+
+    /**
+     * Wraps the message in the given range of the given buffer.
+     *
+     * @return this flyweight.
+     */
+    public FixFlyweight wrap(byte[] buffer, int offset, int length) {
+        this.root = this;
+        this.buffer = buffer;
+        this.offset = offset;
+        this.limit = offset + length;
+        this.checkSumStart = -1;
+        this.end = index(offset, false);
+        return this;
+    }
+
+    /**
+     * Wraps the whole given buffer.
+     *
+     * @return this flyweight.
+     */
+    public FixFlyweight wrap(byte[] buffer) {
+        return wrap(buffer, 0, buffer.length);
+    }
+
+    /**
+     * @return the wrapped buffer.
+     */
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * @return the index of the first byte of the message (or group entry) in the buffer.
+     */
+    public int offset() {
+        return offset;
+    }
+
+    /**
+     * @return the number of bytes of the message (or group entry) in the buffer.
+     */
+    public int length() {
+        return end - offset;
+    }
+
+    @Override
+    public String toString() {
+        return (buffer == null) ? "" : new String(buffer, offset, end - offset, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return true if the field with the given tag is present.
+     */
+    protected final boolean has(int tag) {
+        final int slot = layout.slotOf(tag);
+        return slot >= 0 && starts[slot] >= 0;
+    }
+
+    /**
+     * @return the value of the field with the given tag or 0 if it is absent.
+     * @throws NumberFormatException if the value is not an integer.
+     */
+    protected final long longValue(int tag) {
+        final int slot = presentSlot(tag);
+        return (slot < 0) ? 0 : parseLong(starts[slot], ends[slot]);
+    }
+
+    /**
+     * @return the value of the field with the given tag or 0 if it is absent.
+     * @throws NumberFormatException if the value is not an integer.
+     */
+    protected final int intValue(int tag) {
+        return (int) longValue(tag);
+    }
+
+    /**
+     * @return the value of the field with the given tag or NaN if it is absent.
+     * @throws NumberFormatException if the value is not a number.
+     */
+    protected final double doubleValue(int tag) {
+        final int slot = presentSlot(tag);
+        return (slot < 0) ? Double.NaN : parseDouble(starts[slot], ends[slot]);
+    }
+
+    /**
+     * @return the first character of the value of the field with the given tag or 0 if it is absent.
+     */
+    protected final char charValue(int tag) {
+        final int slot = presentSlot(tag);
+        return (slot < 0 || starts[slot] == ends[slot]) ? 0 : (char) buffer[starts[slot]];
+    }
+
+    /**
+     * @return true if the value of the field with the given tag is Y (or 1).
+     */
+    protected final boolean booleanValue(int tag) {
+        final char c = charValue(tag);
+        return c == 'Y' || c == '1';
+    }
+
+    /**
+     * @return the value of the field with the given tag or null if it is absent. The returned flyweight is re-used
+     *         by further calls for the same tag.
+     */
+    protected final CharSequence charsValue(int tag) {
+        final int slot = presentSlot(tag);
+        if (slot < 0) {
+            return null;
+        }
+        if (chars[slot] == null) {
+            chars[slot] = new AsciiString();
+        }
+        return chars[slot].wrap(buffer, starts[slot], ends[slot] - starts[slot]);
+    }
+
+    /**
+     * @return the enum constant of the value of the field with the given tag or null if it is absent or unknown.
+     */
+    @SuppressWarnings("unchecked")
+    protected final <E extends Enum<E>> E enumValue(int tag) {
+        final int slot = presentSlot(tag);
+        if (slot < 0 || layout.enumValues(slot) == null) {
+            return null;
+        }
+        final byte[][] values = layout.enumValues(slot);
+        for (int i = 0; i < values.length; i++) {
+            if (regionEquals(values[i], starts[slot], ends[slot])) {
+                return (E) layout.enumConstants(slot)[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of entries of the repeating group with the given tag, 0 if it is absent.
+     */
+    protected final int groupSize(int tag) {
+        return (int) longValue(tag);
+    }
+
+    /**
+     * Positions the given group at the first entry of the repeating group with the given tag.
+     *
+     * @return the given group.
+     */
+    protected final <E extends FixFlyweight> FixFlyweightGroup<E> group(int tag, FixFlyweightGroup<E> group) {
+        final int slot = presentSlot(tag);
+        group.reset(this, (slot < 0) ? limit : groupPositions[slot], (slot < 0) ? 0 : groupSize(tag));
+        return group;
+    }
+
+    /**
+     * Positions the given cursor at the first value of the simple repeating group with the given tag.
+     *
+     * @return the given cursor.
+     */
+    protected final FixFlyweightValues values(int tag, FixFlyweightValues values) {
+        final int slot = presentSlot(tag);
+        values.reset(this, (slot < 0) ? limit : groupPositions[slot], (slot < 0) ? 0 : groupSize(tag),
+                (slot < 0) ? 0 : layout.componentTag(slot));
+        return values;
+    }
+
+    /**
+     * Sets the value of the field with the given tag, padded with leading zeros to the width of the old value.
+     *
+     * @return false if the field is absent or the value does not fit.
+     */
+    protected final boolean setLong(int tag, long value) {
+        final int slot = presentSlot(tag);
+        return slot >= 0 && patchLong(starts[slot], ends[slot], value);
+    }
+
+    /**
+     * Sets the value of the field with the given tag using the number of fractional digits of the old value.
+     *
+     * @return false if the field is absent or the value can't be written exactly in the width of the old value.
+     */
+    protected final boolean setDouble(int tag, double value) {
+        final int slot = presentSlot(tag);
+        if (slot < 0) {
+            return false;
+        }
+        final int start = starts[slot];
+        final int end = ends[slot];
+        int point = end;
+        for (int i = start; i < end; i++) {
+            if (buffer[i] == '.') {
+                point = i;
+            }
+        }
+        final int scale = (point == end) ? 0 : end - point - 1;
+        if (scale >= POWERS_OF_TEN.length || Double.isNaN(value) || Double.isInfinite(value)
+                || Math.abs(value) * POWERS_OF_TEN[scale] >= 1e18) {
+            return false;
+        }
+        final long mantissa = Math.round(value * POWERS_OF_TEN[scale]);
+        if (mantissa / POWERS_OF_TEN[scale] != value) {
+            return false;
+        }
+        if (scale == 0) {
+            return patchLong(start, end, mantissa);
+        }
+        final long unit = (long) POWERS_OF_TEN[scale];
+        final int sum = sum(start, end);
+        final long fraction = Math.abs(mantissa) % unit;
+        final long integer = Math.abs(mantissa) / unit;
+        // the digits are written in place: writeLong() leaves the buffer intact if the integer part does not fit, and
+        // the fraction always fits as it has at most scale digits
+        if (!writeLong(start, point, (mantissa < 0) ? -integer : integer, mantissa < 0)) {
+            return false;
+        }
+        writeLong(point + 1, end, fraction, false);
+        root.adjustCheckSum(sum(start, end) - sum);
+        return true;
+    }
+
+    /**
+     * Sets the value of the field with the given tag.
+     *
+     * @return false if the field is absent or its value is not a single character.
+     */
+    protected final boolean setChar(int tag, char value) {
+        final int slot = presentSlot(tag);
+        if (slot < 0 || ends[slot] - starts[slot] != 1) {
+            return false;
+        }
+        root.adjustCheckSum(AsciiEncoding.checkAscii(value) - buffer[starts[slot]]);
+        buffer[starts[slot]] = (byte) value;
+        return true;
+    }
+
+    /**
+     * Sets the value of the field with the given tag to Y or N.
+     *
+     * @return false if the field is absent or its value is not a single character.
+     */
+    protected final boolean setBoolean(int tag, boolean value) {
+        return setChar(tag, value ? 'Y' : 'N');
+    }
+
+    /**
+     * Sets the value of the field with the given tag.
+     *
+     * @return false if the field is absent or the value has another length than the old one.
+     */
+    protected final boolean setChars(int tag, CharSequence value) {
+        final int slot = presentSlot(tag);
+        if (slot < 0 || ends[slot] - starts[slot] != value.length()) {
+            return false;
+        }
+        final int delta = AsciiEncoding.sum(value, 0, value.length()) - AsciiEncoding.sum(buffer, starts[slot], ends[slot]);
+        for (int i = 0; i < value.length(); i++) {
+            buffer[starts[slot] + i] = (byte) value.charAt(i);
+        }
+        root.adjustCheckSum(delta);
+        return true;
+    }
+
+    /**
+     * Sets the value of the enum field with the given tag.
+     *
+     * @return false if the field is absent or the FIX value of the constant has another length than the old value.
+     */
+    protected final boolean setEnum(int tag, Enum<?> value) {
+        final int slot = presentSlot(tag);
+        if (slot < 0 || layout.enumValues(slot) == null) {
+            return false;
+        }
+        final byte[] fixValue = layout.enumValues(slot)[value.ordinal()];
+        if (ends[slot] - starts[slot] != fixValue.length) {
+            return false;
+        }
+        final int sum = sum(starts[slot], ends[slot]);
+        System.arraycopy(fixValue, 0, buffer, starts[slot], fixValue.length);
+        root.adjustCheckSum(sum(starts[slot], ends[slot]) - sum);
+        return true;
+    }
+
+    /**
+     * Wraps a group entry starting at the given position of the buffer of the given flyweight.
+     *
+     * @return false if there is no entry at the position.
+     */
+    final boolean wrapEntry(FixFlyweight parent, int position) {
+        this.root = parent.root;
+        this.buffer = parent.buffer;
+        this.offset = position;
+        this.limit = parent.limit;
+        this.end = index(position, true);
+        return end > position;
+    }
+
+    /**
+     * Reads the field at the given position.
+     *
+     * @return the position of the next field or -1 if there is no well-formed field at the position.
+     */
+    final int nextField(int position) {
+        int tag = 0;
+        int i = position;
+        while (i < limit && buffer[i] >= '0' && buffer[i] <= '9') {
+            tag = tag * 10 + (buffer[i++] - '0');
+        }
+        if (i == position || i == limit || buffer[i] != '=') {
+            return -1;
+        }
+        final int start = ++i;
+        while (i < limit && buffer[i] != SOH) {
+            i++;
+        }
+        fieldTag = tag;
+        valueStart = start;
+        valueEnd = i;
+        return (i < limit) ? i + 1 : i;
+    }
+
+    final int fieldTag() {
+        return fieldTag;
+    }
+
+    final int valueStart() {
+        return valueStart;
+    }
+
+    final int valueEnd() {
+        return valueEnd;
+    }
+
+    final byte[] bytes() {
+        return buffer;
+    }
+
+    final long parseLong(int start, int end) {
+        int i = start;
+        final boolean negative = i < end && buffer[i] == '-';
+        if (negative || (i < end && buffer[i] == '+')) {
+            i++;
+        }
+        if (i == end || end - i > 18) {
+            throw new NumberFormatException("Invalid integer: " + new String(buffer, start, end - start, StandardCharsets.US_ASCII));
+        }
+        long result = 0;
+        for (; i < end; i++) {
+            final int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Invalid integer: " + new String(buffer, start, end - start, StandardCharsets.US_ASCII));
+            }
+            result = result * 10 + digit;
+        }
+        return negative ? -result : result;
+    }
+
+    final double parseDouble(int start, int end) {
+        int i = start;
+        final boolean negative = i < end && buffer[i] == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int scale = -1;
+        int digits = 0;
+        for (; i < end; i++) {
+            final byte c = buffer[i];
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                if (scale >= 0) {
+                    scale++;
+                }
+                if (++digits > 15) {
+                    break;
+                }
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                break;
+            }
+        }
+        if (i < end || digits == 0) {
+            return Double.parseDouble(new String(buffer, start, end - start, StandardCharsets.US_ASCII));
+        }
+        final double value = (scale > 0) ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+        return negative ? -value : value;
+    }
+
+    /**
+     * Indexes the fields of the message (or of the group entry if <tt>entry</tt> is set) starting at the given position.
+     *
+     * @return the position after the last field of the message or the entry.
+     */
+    private int index(int position, boolean entry) {
+        Arrays.fill(starts, -1);
+        boolean found = false;
+        int next;
+        while (position < limit && (next = nextField(position)) >= 0) {
+            final int slot = layout.slotOf(fieldTag);
+            if (entry && (found ? (slot < 0 || starts[slot] >= 0) : fieldTag != layout.delimiterTag())) {
+                break;
+            }
+            if (slot >= 0 && starts[slot] < 0) {
+                starts[slot] = valueStart;
+                ends[slot] = valueEnd;
+                found = true;
+                if (layout.isGroup(slot)) {
+                    groupPositions[slot] = next;
+                    next = skipGroup(layout, slot, next, (int) parseLong(valueStart, valueEnd));
+                }
+            } else if (!entry && fieldTag == CHECKSUM_TAG && checkSumStart < 0) {
+                checkSumStart = valueStart;
+            }
+            position = next;
+        }
+        return position;
+    }
+
+    /**
+     * Moves past the entries of the group in the given slot of the given layout.
+     *
+     * @return the position after the last entry.
+     */
+    private int skipGroup(FixFlyweightLayout owner, int slot, int position, int count) {
+        final FixFlyweightLayout component = owner.component(slot);
+        for (int n = 0; n < count && position < limit; n++) {
+            final int next = (component != null) ?
+                    skipEntry(component, position) :
+                    skipValue(owner.componentTag(slot), position);
+            if (next == position) {
+                break;
+            }
+            position = next;
+        }
+        return position;
+    }
+
+    private int skipValue(int componentTag, int position) {
+        final int next = nextField(position);
+        return (next >= 0 && fieldTag == componentTag) ? next : position;
+    }
+
+    private int skipEntry(FixFlyweightLayout component, int position) {
+        if (seen == null) {
+            seen = new boolean[layout.nodeCount()][];
+        }
+        final int node = component.id() - layout.id();
+        if (seen[node] == null) {
+            seen[node] = new boolean[component.size()];
+        }
+        final boolean[] entrySeen = seen[node];
+        Arrays.fill(entrySeen, false);
+
+        boolean found = false;
+        int next;
+        while (position < limit && (next = nextField(position)) >= 0) {
+            final int slot = component.slotOf(fieldTag);
+            if (found ? (slot < 0 || entrySeen[slot]) : fieldTag != component.delimiterTag()) {
+                break;
+            }
+            entrySeen[slot] = true;
+            found = true;
+            if (component.isGroup(slot)) {
+                next = skipGroup(component, slot, next, (int) parseLong(valueStart, valueEnd));
+            }
+            position = next;
+        }
+        return position;
+    }
+
+    private int presentSlot(int tag) {
+        final int slot = layout.slotOf(tag);
+        return (slot >= 0 && starts[slot] >= 0) ? slot : -1;
+    }
+
+    private boolean regionEquals(byte[] value, int start, int end) {
+        if (value.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < value.length; i++) {
+            if (value[i] != buffer[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean patchLong(int start, int end, long value) {
+        final int sum = sum(start, end);
+        if (!writeLong(start, end, value, value < 0)) {
+            return false;
+        }
+        root.adjustCheckSum(sum(start, end) - sum);
+        return true;
+    }
+
+    /**
+     * Writes the absolute value of the given number right-aligned and padded with zeros (after the sign if negative)
+     * to the given range, unless it does not fit, in which case the buffer is not modified.
+     */
+    private boolean writeLong(int start, int end, long value, boolean negative) {
+        long abs = Math.abs(value);
+        int digits = 1;
+        for (long v = abs / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        if (value == Long.MIN_VALUE || digits + (negative ? 1 : 0) > end - start) {
+            return false;
+        }
+        for (int i = end - 1; i >= start; i--) {
+            buffer[i] = (byte) ('0' + abs % 10);
+            abs /= 10;
+        }
+        if (negative) {
+            buffer[start] = '-';
+        }
+        return true;
+    }
+
+    private int sum(int start, int end) {
+        return AsciiEncoding.sum(buffer, start, end);
+    }
+
+    private void adjustCheckSum(int delta) {
+        if (checkSumStart < 0 || checkSumStart + 3 > limit) {
+            return;
+        }
+        final int old = (buffer[checkSumStart] - '0') * 100 + (buffer[checkSumStart + 1] - '0') * 10 + (buffer[checkSumStart + 2] - '0');
+        AsciiEncoding.setCheckSum(buffer, checkSumStart, old + delta);
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.flyweight;
+
+import org.fixb.annotations.FixMessage;
+import org.fixb.meta.FixBlockMeta;
+import org.fixb.meta.FixDynamicFieldMeta;
+import org.fixb.meta.FixFieldMeta;
+import org.fixb.meta.FixGroupMeta;
+import org.fixb.meta.FixMetaScanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates the Java source of FixFlyweight accessors of classes annotated with @FixMessage. For a message class
+ * <tt>Quote</tt> the generator emits <tt>QuoteFlyweight</tt> with the following methods for each mapped field, named
+ * after the class field:
+ * <ul>
+ * <li><tt>price()</tt> returning the value as a primitive (int, long, double, char or boolean), an enum constant or,
+ * for any other type, a CharSequence;</li>
+ * <li><tt>hasPrice()</tt> telling whether the field is present;</li>
+ * <li><tt>price(value)</tt> setting the value in place (see FixFlyweight for when this is possible);</li>
+ * <li>for repeating groups, <tt>legs()</tt> returning a re-used FixFlyweightGroup of generated entry flyweights, or a
+ * FixFlyweightValues cursor for groups of simple values.</li>
+ * </ul>
+ *
+ * The generated classes only depend on the message class to compile its layout once when they are loaded. They can
+ * be generated at build time (e.g. by exec-maven-plugin) using the main method:
+ * <pre>
+ * FixFlyweightGenerator &lt;output directory&gt; &lt;package&gt; &lt;message class&gt;...
+ * </pre>
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class FixFlyweightGenerator {
+    private static final Set<String> RESERVED_NAMES = new HashSet<>(Arrays.asList(
+            "wrap", "buffer", "offset", "length", "toString", "hashCode", "equals", "getClass", "notify", "notifyAll",
+            "wait", "clone", "finalize", "has", "longValue", "intValue", "doubleValue", "charValue", "booleanValue",
+            "charsValue", "enumValue", "groupSize", "group", "values", "setLong", "setDouble", "setChar", "setBoolean",
+            "setChars", "setEnum", "LAYOUT"));
+
+    private final String packageName;
+
+    /**
+     * @param packageName the package of the generated classes
+     */
+    public FixFlyweightGenerator(String packageName) {
+        this.packageName = packageName;
+    }
+
+    /**
+     * Generates the flyweights of the given classes to the given source directory.
+     *
+     * @param args the output directory, the package of the generated classes and the names of the message classes
+     * @throws IOException if the sources can't be written.
+     * @throws ClassNotFoundException if a message class is not found.
+     */
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        if (args.length < 3) {
+            System.err.println("Usage: FixFlyweightGenerator <output directory> <package> <message class>...");
+            System.exit(1);
+        }
+        final FixFlyweightGenerator generator = new FixFlyweightGenerator(args[1]);
+        for (int i = 2; i < args.length; i++) {
+            generator.generate(Class.forName(args[i]), Paths.get(args[0]));
+        }
+    }
+
+    /**
+     * Writes the source of the flyweight of the given message class to the package directory under the given root.
+     *
+     * @return the written file.
+     * @throws IOException if the source can't be written.
+     */
+    public Path generate(Class<?> messageType, Path sourceRoot) throws IOException {
+        final Path directory = sourceRoot.resolve(packageName.replace('.', File.separatorChar));
+        Files.createDirectories(directory);
+        final Path file = directory.resolve(flyweightName(messageType) + ".java");
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(generate(messageType));
+        }
+        return file;
+    }
+
+    /**
+     * @return the Java source of the flyweight of the given message class.
+     * @throws IllegalArgumentException if the class is not annotated with @FixMessage.
+     */
+    public String generate(Class<?> messageType) {
+        if (!messageType.isAnnotationPresent(FixMessage.class)) {
+            throw new IllegalArgumentException(messageType.getName() + " is not annotated with @FixMessage");
+        }
+        final FixBlockMeta<?> meta = FixMetaScanner.scanClass(messageType);
+        final String name = flyweightName(messageType);
+        final StringBuilder out = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            out.append("package ").append(packageName).append(";\n\n");
+        }
+        out.append("import org.fixb.flyweight.FixFlyweight;\n");
+        out.append("import org.fixb.flyweight.FixFlyweightGroup;\n");
+        out.append("import org.fixb.flyweight.FixFlyweightLayout;\n");
+        out.append("import org.fixb.flyweight.FixFlyweightValues;\n\n");
+        out.append("/**\n * A flyweight accessor of ").append(messageType.getSimpleName())
+                .append(" messages generated by FixFlyweightGenerator.\n */\n");
+        out.append("public final class ").append(name).append(" extends FixFlyweight {\n");
+        out.append("    public static final FixFlyweightLayout LAYOUT = FixFlyweightLayout.forClass(")
+                .append(messageType.getCanonicalName()).append(".class);\n\n");
+
+        final StringBuilder entries = new StringBuilder();
+        final Set<String> classNames = new HashSet<>();
+        classNames.add(name);
+        appendBody(out, entries, classNames, name, "LAYOUT", meta.getFields(), "    ", true);
+        out.append(entries);
+        out.append("}\n");
+        return out.toString();
+    }
+
+    private static String flyweightName(Class<?> messageType) {
+        return messageType.getSimpleName() + "Flyweight";
+    }
+
+    /**
+     * Appends the fields, the constructor and the accessors of a flyweight class to <tt>out</tt> and the classes of the
+     * entries of its complex groups to <tt>entries</tt>.
+     */
+    private void appendBody(StringBuilder out,
+                            StringBuilder entries,
+                            Set<String> classNames,
+                            String className,
+                            String layout,
+                            List<FixFieldMeta> fields,
+                            String indent,
+                            boolean message) {
+        final Set<String> names = new HashSet<>(RESERVED_NAMES);
+        final Set<Integer> tags = new HashSet<>();
+        final StringBuilder declarations = new StringBuilder();
+        final StringBuilder initializers = new StringBuilder();
+        final StringBuilder methods = new StringBuilder();
+        for (FixFieldMeta f : fields) {
+            if (!(f instanceof FixDynamicFieldMeta) || !tags.add(f.getTag())) {
+                continue;
+            }
+            String name = ((FixDynamicFieldMeta) f).getName();
+            if (names.contains(name) || names.contains(hasName(name))) {
+                name = name + f.getTag();
+            }
+            names.add(name);
+            names.add(hasName(name));
+
+            if (!f.isGroup()) {
+                appendField(methods, f, name, indent);
+            } else if (((FixGroupMeta) f).isSimple()) {
+                declarations.append(indent).append("private final FixFlyweightValues ").append(name)
+                        .append(" = new FixFlyweightValues();\n");
+                appendGroupMethods(methods, f.getTag(), "FixFlyweightValues", "values", name, indent);
+            } else {
+                final FixGroupMeta groupMeta = (FixGroupMeta) f;
+                final String entryName = uniqueName(classNames, groupMeta.getComponentType().getSimpleName() + "Flyweight");
+                final String type = "FixFlyweightGroup<" + entryName + ">";
+                declarations.append(indent).append("private final ").append(type).append(' ').append(name).append(";\n");
+                initializers.append(indent).append("    this.").append(name).append(" = new FixFlyweightGroup<>(new ")
+                        .append(entryName).append('(').append(layout).append(".group(").append(f.getTag()).append(")));\n");
+                appendGroupMethods(methods, f.getTag(), type, "group", name, indent);
+
+                final StringBuilder entry = new StringBuilder();
+                final StringBuilder nestedEntries = new StringBuilder();
+                entry.append("\n    /**\n     * A flyweight accessor of ").append(groupMeta.getComponentType().getSimpleName())
+                        .append(" entries of ").append(className).append('.').append(name).append("().\n     */\n");
+                entry.append("    public static final class ").append(entryName).append(" extends FixFlyweight {\n");
+                appendBody(entry, nestedEntries, classNames, entryName, "layout",
+                        groupMeta.getComponentMeta().getFields(), "        ", false);
+                entry.append("    }\n");
+                entries.append(entry).append(nestedEntries);
+            }
+        }
+
+        out.append(declarations);
+        if (declarations.length() > 0) {
+            out.append('\n');
+        }
+        if (message) {
+            out.append(indent).append("public ").append(className).append("() {\n");
+            out.append(indent).append("    super(LAYOUT);\n");
+        } else {
+            out.append(indent).append(className).append("(FixFlyweightLayout layout) {\n");
+            out.append(indent).append("    super(layout);\n");
+        }
+        out.append(initializers);
+        out.append(indent).append("}\n");
+        out.append(methods);
+    }
+
+    private static void appendField(StringBuilder out, FixFieldMeta f, String name, String indent) {
+        final Class<?> type = f.getType();
+        final String javaType;
+        final String getter;
+        final String setter;
+        if (type == int.class || type == Integer.class || type == short.class || type == Short.class
+                || type == byte.class || type == Byte.class) {
+            javaType = "int";
+            getter = "intValue";
+            setter = "setLong";
+        } else if (type == long.class || type == Long.class) {
+            javaType = "long";
+            getter = "longValue";
+            setter = "setLong";
+        } else if (type == double.class || type == Double.class || type == float.class || type == Float.class
+                || type == BigDecimal.class) {
+            javaType = "double";
+            getter = "doubleValue";
+            setter = "setDouble";
+        } else if (type == char.class || type == Character.class) {
+            javaType = "char";
+            getter = "charValue";
+            setter = "setChar";
+        } else if (type == boolean.class || type == Boolean.class) {
+            javaType = "boolean";
+            getter = "booleanValue";
+            setter = "setBoolean";
+        } else if (type.isEnum()) {
+            javaType = type.getCanonicalName();
+            getter = "enumValue";
+            setter = "setEnum";
+        } else {
+            javaType = "CharSequence";
+            getter = "charsValue";
+            setter = "setChars";
+        }
+
+        out.append('\n');
+        out.append(indent).append("public ").append(javaType).append(' ').append(name).append("() {\n");
+        out.append(indent).append("    return ").append(type.isEnum() ? "this.<" + javaType + ">" : "")
+                .append(getter).append('(').append(f.getTag()).append(");\n");
+        out.append(indent).append("}\n\n");
+        out.append(indent).append("public boolean ").append(hasName(name)).append("() {\n");
+        out.append(indent).append("    return has(").append(f.getTag()).append(");\n");
+        out.append(indent).append("}\n\n");
+        out.append(indent).append("public boolean ").append(name).append('(').append(javaType).append(" value) {\n");
+        out.append(indent).append("    return ").append(setter).append('(').append(f.getTag()).append(", value);\n");
+        out.append(indent).append("}\n");
+    }
+
+    private static void appendGroupMethods(StringBuilder out, int tag, String type, String method, String name, String indent) {
+        out.append('\n');
+        out.append(indent).append("public ").append(type).append(' ').append(name).append("() {\n");
+        out.append(indent).append("    return ").append(method).append('(').append(tag).append(", ").append(name).append(");\n");
+        out.append(indent).append("}\n\n");
+        out.append(indent).append("public boolean ").append(hasName(name)).append("() {\n");
+        out.append(indent).append("    return has(").append(tag).append(");\n");
+        out.append(indent).append("}\n");
+    }
+
+    private static String hasName(String name) {
+        return "has" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static String uniqueName(Set<String> names, String name) {
+        String result = name;
+        for (int i = 2; !names.add(result); i++) {
+            result = name + i;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.flyweight;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The entries of a repeating group of a FixFlyweight. The group is at the same time an Iterable and its only Iterator:
+ * iterator() rewinds the group and next() re-wraps the same entry flyweight around the following entry, so that
+ * iterating a group does not create any objects. Consequently, a group can't be iterated by nested loops and an entry
+ * returned by next() is only valid until the following call.
+ *
+ * @param <E> the type of the entry flyweight
+ * @author vladyslav.yatsenko
+ */
+public final class FixFlyweightGroup<E extends FixFlyweight> implements Iterable<E>, Iterator<E> {
+    private final E entry;
+    private FixFlyweight parent;
+    private int start;
+    private int size;
+    private int position;
+    private int next;
+
+    /**
+     * @param entry the flyweight to wrap the entries with
+     */
+    public FixFlyweightGroup(E entry) {
+        this.entry = entry;
+    }
+
+    /**
+     * @return the number of entries declared by the group's counter field.
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        position = start;
+        next = 0;
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next < size && parent.nextField(position) >= 0;
+    }
+
+    @Override
+    public E next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        entry.wrapEntry(parent, position);
+        position = entry.offset() + entry.length();
+        next++;
+        return entry;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Flyweight groups are read-only");
+    }
+
+    void reset(FixFlyweight parent, int start, int size) {
+        this.parent = parent;
+        this.start = start;
+        this.size = size;
+        iterator();
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.flyweight;
+
+import org.fixb.annotations.FixEnum;
+import org.fixb.meta.FixBlockMeta;
+import org.fixb.meta.FixConstantFieldMeta;
+import org.fixb.meta.FixEnumMeta;
+import org.fixb.meta.FixFieldMeta;
+import org.fixb.meta.FixGroupMeta;
+import org.fixb.meta.FixMetaScanner;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The layout of a FIX message or group component compiled from its FixBlockMeta for FixFlyweights: the mapped tags
+ * with their slots, the layouts of the components of repeating groups and the FIX values of enum fields. Layouts are
+ * immutable and can be shared by any number of flyweights.
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class FixFlyweightLayout {
+    private final int[] tags;
+    private final int[] slots;
+    private final int[] slotTags;
+    private final int delimiterTag;
+    private final FixFlyweightLayout[] components;
+    private final int[] componentTags;
+    private final Enum<?>[][] enumConstants;
+    private final byte[][][] enumValues;
+    private final int id;
+    private final int nodeCount;
+
+    /**
+     * @return the layout of the given class annotated with @FixMessage or @FixBlock.
+     */
+    public static FixFlyweightLayout forClass(Class<?> type) {
+        return of(FixMetaScanner.scanClass(type));
+    }
+
+    /**
+     * @return the layout of the given block.
+     */
+    public static FixFlyweightLayout of(FixBlockMeta<?> meta) {
+        return new FixFlyweightLayout(meta.getFields(), new int[1]);
+    }
+
+    /**
+     * @return the layout of the component of the repeating group with the given tag.
+     * @throws IllegalArgumentException if there is no such group or it is a group of simple values.
+     */
+    public FixFlyweightLayout group(int tag) {
+        final int slot = slotOf(tag);
+        if (slot < 0 || components[slot] == null) {
+            throw new IllegalArgumentException("No group of components with tag " + tag);
+        }
+        return components[slot];
+    }
+
+    /**
+     * @return the number of slots (mapped tags) of this layout.
+     */
+    public int size() {
+        return slotTags.length;
+    }
+
+    int slotOf(int tag) {
+        int low = 0;
+        int high = tags.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (tags[mid] < tag) {
+                low = mid + 1;
+            } else if (tags[mid] > tag) {
+                high = mid - 1;
+            } else {
+                return slots[mid];
+            }
+        }
+        return -1;
+    }
+
+    int delimiterTag() {
+        return delimiterTag;
+    }
+
+    boolean isGroup(int slot) {
+        return components[slot] != null || componentTags[slot] != 0;
+    }
+
+    FixFlyweightLayout component(int slot) {
+        return components[slot];
+    }
+
+    int componentTag(int slot) {
+        return componentTags[slot];
+    }
+
+    Enum<?>[] enumConstants(int slot) {
+        return enumConstants[slot];
+    }
+
+    byte[][] enumValues(int slot) {
+        return enumValues[slot];
+    }
+
+    /**
+     * @return the index of this layout in the tree of the layouts of its root.
+     */
+    int id() {
+        return id;
+    }
+
+    /**
+     * @return the number of layouts in the tree of this (root) layout.
+     */
+    int nodeCount() {
+        return nodeCount;
+    }
+
+    private FixFlyweightLayout(List<FixFieldMeta> fields, int[] nextId) {
+        this.id = nextId[0]++;
+        final SortedMap<Integer, Integer> slotsByTag = new TreeMap<>();
+        final List<FixFieldMeta> mapped = new ArrayList<>();
+        for (FixFieldMeta f : fields) {
+            if (!(f instanceof FixConstantFieldMeta) && !slotsByTag.containsKey(f.getTag())) {
+                slotsByTag.put(f.getTag(), mapped.size());
+                mapped.add(f);
+            }
+        }
+
+        this.slotTags = new int[mapped.size()];
+        this.components = new FixFlyweightLayout[mapped.size()];
+        this.componentTags = new int[mapped.size()];
+        this.enumConstants = new Enum<?>[mapped.size()][];
+        this.enumValues = new byte[mapped.size()][][];
+        for (int i = 0; i < mapped.size(); i++) {
+            final FixFieldMeta f = mapped.get(i);
+            slotTags[i] = f.getTag();
+            if (f.isGroup()) {
+                final FixGroupMeta groupMeta = (FixGroupMeta) f;
+                if (groupMeta.isSimple()) {
+                    componentTags[i] = groupMeta.getComponentTag();
+                } else {
+                    components[i] = new FixFlyweightLayout(groupMeta.getComponentMeta().getFields(), nextId);
+                }
+            } else if (f.getType().isEnum()) {
+                initEnum(i, f.getType());
+            }
+        }
+        this.nodeCount = nextId[0] - id;
+
+        this.tags = new int[slotsByTag.size()];
+        this.slots = new int[slotsByTag.size()];
+        int i = 0;
+        for (Integer tag : slotsByTag.keySet()) {
+            tags[i] = tag;
+            slots[i++] = slotsByTag.get(tag);
+        }
+        this.delimiterTag = mapped.isEmpty() ? -1 : slotTags[0];
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void initEnum(int slot, Class<?> type) {
+        final Enum<?>[] constants = (Enum<?>[]) type.getEnumConstants();
+        final FixEnumMeta<?> enumMeta = type.isAnnotationPresent(FixEnum.class) ? FixEnumMeta.forClass((Class) type) : null;
+        enumConstants[slot] = constants;
+        enumValues[slot] = new byte[constants.length][];
+        for (int i = 0; i < constants.length; i++) {
+            final String value = (enumMeta != null) ? enumMeta.fixValueForEnum(constants[i]) : String.valueOf(i + 1);
+            enumValues[slot][i] = value.getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.flyweight;
+
+import org.fixb.impl.AsciiString;
+
+/**
+ * A cursor over the values of a simple repeating group of a FixFlyweight (a group whose entries consist of a single
+ * field). The cursor is re-used for each traversal of the group and does not create any objects while advancing.
+ *
+ * <pre>
+ * for (FixFlyweightValues v = quote.amounts(); v.next(); ) {
+ *     total += v.longValue();
+ * }
+ * </pre>
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class FixFlyweightValues {
+    private final AsciiString chars = new AsciiString();
+    private FixFlyweight parent;
+    private int position;
+    private int size;
+    private int componentTag;
+    private int next;
+    private int start;
+    private int end;
+
+    /**
+     * @return the number of values declared by the group's counter field.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Moves to the next value.
+     *
+     * @return false if there are no more values.
+     */
+    public boolean next() {
+        if (next == size) {
+            return false;
+        }
+        final int nextPosition = parent.nextField(position);
+        if (nextPosition < 0 || parent.fieldTag() != componentTag) {
+            next = size;
+            return false;
+        }
+        start = parent.valueStart();
+        end = parent.valueEnd();
+        position = nextPosition;
+        next++;
+        return true;
+    }
+
+    /**
+     * @return the current value as a long.
+     * @throws NumberFormatException if the value is not an integer.
+     */
+    public long longValue() {
+        return parent.parseLong(start, end);
+    }
+
+    /**
+     * @return the current value as an int.
+     * @throws NumberFormatException if the value is not an integer.
+     */
+    public int intValue() {
+        return (int) longValue();
+    }
+
+    /**
+     * @return the current value as a double.
+     * @throws NumberFormatException if the value is not a number.
+     */
+    public double doubleValue() {
+        return parent.parseDouble(start, end);
+    }
+
+    /**
+     * @return the current value. The returned flyweight is re-used for all values.
+     */
+    public CharSequence charsValue() {
+        return chars.wrap(parent.bytes(), start, end - start);
+    }
+
+    void reset(FixFlyweight parent, int position, int size, int componentTag) {
+        this.parent = parent;
+        this.position = position;
+        this.size = size;
+        this.componentTag = componentTag;
+        this.next = 0;
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.impl;
+
+import org.fixb.FixException;
+
+import java.nio.ByteBuffer;
+
+import static org.fixb.FixConstants.CHECKSUM_TAG;
+
+/**
+ * Static helpers that write FIX fields as ASCII bytes and compute their byte sums for CheckSum(10). They are shared by
+ * the encoders that write messages to byte buffers and by the classes that patch encoded messages in place.
+ *
+ * The put methods return the sum of the bytes written, so that the callers can compute CheckSum(10) on the way.
+ *
+ * FIX messages are encoded as ASCII by every encoding path (Strings, byte buffers and streams), so that BodyLength(9)
+ * and CheckSum(10) are the same whichever path is used: a character outside of the ASCII range is rejected with a
+ * FixException rather than truncated or expanded to several bytes.
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class AsciiEncoding {
+    /**
+     * The length of a UTCTimestamp with milliseconds (yyyyMMdd-HH:mm:ss.SSS).
+     */
+    public static final int TIMESTAMP_LENGTH = 21;
+
+    private static final long MILLIS_PER_DAY = 86400000L;
+
+    private AsciiEncoding() {
+    }
+
+    /**
+     * @return the given character if it is an ASCII character.
+     * @throws FixException if the given character is outside of the ASCII range.
+     */
+    public static char checkAscii(char c) {
+        if (c > 0x7F) {
+            throw new FixException("Non-ASCII character [\\u" + String.format("%04x", (int) c) + "] can not be encoded in a FIX message");
+        }
+        return c;
+    }
+
+    /**
+     * Writes the given character as a single byte.
+     *
+     * @return the value of the written byte.
+     * @throws FixException if the given character is outside of the ASCII range.
+     */
+    public static int put(ByteBuffer buffer, char c) {
+        buffer.put((byte) checkAscii(c));
+        return c;
+    }
+
+    /**
+     * Writes the given characters as single bytes.
+     *
+     * @return the sum of the written bytes.
+     */
+    public static int put(ByteBuffer buffer, CharSequence chars) {
+        return put(buffer, chars, 0, chars.length());
+    }
+
+    /**
+     * Writes the characters of the given range as single bytes.
+     *
+     * @return the sum of the written bytes.
+     */
+    public static int put(ByteBuffer buffer, CharSequence chars, int start, int end) {
+        int sum = 0;
+        for (int i = start; i < end; i++) {
+            sum += put(buffer, chars.charAt(i));
+        }
+        return sum;
+    }
+
+    /**
+     * Writes the decimal digits of the given non-negative number.
+     *
+     * @return the sum of the written bytes.
+     */
+    public static int putInt(ByteBuffer buffer, int value) {
+        return putLong(buffer, value);
+    }
+
+    /**
+     * Writes the decimal digits of the given non-negative number.
+     *
+     * @return the sum of the written bytes.
+     */
+    public static int putLong(ByteBuffer buffer, long value) {
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        int sum = 0;
+        for (; divisor > 0; divisor /= 10) {
+            sum += put(buffer, (char) ('0' + value / divisor % 10));
+        }
+        return sum;
+    }
+
+    /**
+     * Writes the CheckSum(10) field (without a trailing delimiter) for the given sum of the preceding bytes.
+     */
+    public static void putCheckSum(ByteBuffer buffer, int sum) {
+        putInt(buffer, CHECKSUM_TAG);
+        put(buffer, '=');
+        final int checkSum = checkSum(sum);
+        put(buffer, (char) ('0' + checkSum / 100));
+        put(buffer, (char) ('0' + checkSum / 10 % 10));
+        put(buffer, (char) ('0' + checkSum % 10));
+    }
+
+    /**
+     * Overwrites the three digits of a CheckSum(10) value starting at the given offset.
+     *
+     * @param sum the sum of the bytes preceding CheckSum(10), which may be negative if it was adjusted by a delta
+     */
+    public static void setCheckSum(byte[] bytes, int offset, int sum) {
+        final int checkSum = checkSum(sum);
+        bytes[offset] = (byte) ('0' + checkSum / 100);
+        bytes[offset + 1] = (byte) ('0' + checkSum / 10 % 10);
+        bytes[offset + 2] = (byte) ('0' + checkSum % 10);
+    }
+
+    /**
+     * Overwrites the bytes starting at the given offset with the given time as a UTCTimestamp with milliseconds
+     * (yyyyMMdd-HH:mm:ss.SSS).
+     *
+     * @param epochMillis the time as milliseconds since the epoch, which may be negative
+     * @return the difference between the sum of the written bytes and the sum of the overwritten ones.
+     */
+    public static int setTimestamp(byte[] bytes, int offset, long epochMillis) {
+        long days = epochMillis / MILLIS_PER_DAY;
+        long millisOfDay = epochMillis % MILLIS_PER_DAY;
+        if (millisOfDay < 0) {
+            days--;
+            millisOfDay += MILLIS_PER_DAY;
+        }
+
+        // civil date from the number of days since 1970-01-01 in the proleptic Gregorian calendar
+        final long z = days + 719468;
+        final long era = (z >= 0 ? z : z - 146096) / 146097;
+        final long dayOfEra = z - era * 146097;
+        final long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        final long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        final long mp = (5 * dayOfYear + 2) / 153;
+        final int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        final int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        final int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+        final int millis = (int) millisOfDay;
+        int delta = setDigits(bytes, offset, year, 4);
+        delta += setDigits(bytes, offset + 4, month, 2);
+        delta += setDigits(bytes, offset + 6, day, 2);
+        delta += set(bytes, offset + 8, '-');
+        delta += setDigits(bytes, offset + 9, millis / 3600000, 2);
+        delta += set(bytes, offset + 11, ':');
+        delta += setDigits(bytes, offset + 12, millis / 60000 % 60, 2);
+        delta += set(bytes, offset + 14, ':');
+        delta += setDigits(bytes, offset + 15, millis / 1000 % 60, 2);
+        delta += set(bytes, offset + 17, '.');
+        delta += setDigits(bytes, offset + 18, millis % 1000, 3);
+        return delta;
+    }
+
+    /**
+     * @return the number of decimal digits of the given non-negative number.
+     */
+    public static int digits(int value) {
+        int digits = 1;
+        while ((value /= 10) > 0) {
+            digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * @return the sum of the characters of the given range.
+     * @throws FixException if any of the characters is outside of the ASCII range.
+     */
+    public static int sum(CharSequence chars, int start, int end) {
+        int sum = 0;
+        for (int i = start; i < end; i++) {
+            sum += checkAscii(chars.charAt(i));
+        }
+        return sum;
+    }
+
+    /**
+     * @return the sum of the bytes of the given range.
+     */
+    public static int sum(byte[] bytes, int start, int end) {
+        int sum = 0;
+        for (int i = start; i < end; i++) {
+            sum += bytes[i];
+        }
+        return sum;
+    }
+
+    private static int setDigits(byte[] bytes, int offset, int value, int width) {
+        int delta = 0;
+        for (int i = offset + width - 1; i >= offset; i--) {
+            delta += set(bytes, i, (char) ('0' + value % 10));
+            value /= 10;
+        }
+        return delta;
+    }
+
+    private static int set(byte[] bytes, int index, char c) {
+        final int delta = c - bytes[index];
+        bytes[index] = (byte) c;
+        return delta;
+    }
+
+    private static int checkSum(int sum) {
+        return (sum % 256 + 256) % 256;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fixb.impl;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A lightweight flyweight CharSequence of ASCII characters that points into a region of a source buffer (either a
+ * byte array or another CharSequence, e.g. the String of a raw FIX message) without copying it.
+ *
+ * The hash code is the same as the hash code of a String with the same characters and neither equals nor hashCode
+ * allocate. A String copy is only created when toString() is invoked explicitly. Since the source buffer is not copied,
+ * an AsciiString is only valid as long as the underlying buffer is not modified.
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class AsciiString implements CharSequence, Comparable<AsciiString> {
+    private byte[] bytes;
+    private CharSequence chars;
+    private int offset;
+    private int length;
+    private int hash;
+
+    /**
+     * @param value a string of ASCII characters
+     * @return a new AsciiString pointing to the given string.
+     */
+    public static AsciiString of(String value) {
+        return new AsciiString().wrap(value, 0, value.length());
+    }
+
+    /**
+     * Tests whether two character sequences contain the same characters.
+     *
+     * @return true if both sequences have the same length and characters, false otherwise.
+     */
+    public static boolean contentEquals(CharSequence a, CharSequence b) {
+        if (a == b) return true;
+        if (a == null || b == null) return false;
+        final int length = a.length();
+        if (length != b.length()) return false;
+        for (int i = 0; i < length; i++) {
+            if (a.charAt(i) != b.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Creates an empty AsciiString that can be pointed to a buffer using one of the wrap methods.
+     */
+    public AsciiString() {
+        this.chars = "";
+    }
+
+    /**
+     * Points this instance to the whole given byte array.
+     *
+     * @return this instance.
+     */
+    public AsciiString wrap(byte[] bytes) {
+        return wrap(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Points this instance to a region of the given byte array.
+     *
+     * @param bytes  the source buffer
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     * @return this instance.
+     */
+    public AsciiString wrap(byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException("offset=" + offset + ", length=" + length + ", buffer=" + bytes.length);
+        }
+        this.bytes = bytes;
+        this.chars = null;
+        this.offset = offset;
+        this.length = length;
+        this.hash = 0;
+        return this;
+    }
+
+    /**
+     * Points this instance to a region of the given character sequence.
+     *
+     * @param source the source character sequence
+     * @param start  the index of the first character (inclusive)
+     * @param end    the index of the last character (exclusive)
+     * @return this instance.
+     */
+    public AsciiString wrap(CharSequence source, int start, int end) {
+        if (start < 0 || end < start || end > source.length()) {
+            throw new IndexOutOfBoundsException("start=" + start + ", end=" + end + ", length=" + source.length());
+        }
+        if (source instanceof AsciiString) {
+            final AsciiString other = (AsciiString) source;
+            this.bytes = other.bytes;
+            this.chars = other.chars;
+            this.offset = other.offset + start;
+        } else {
+            this.bytes = null;
+            this.chars = source;
+            this.offset = start;
+        }
+        this.length = end - start;
+        this.hash = 0;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index=" + index + ", length=" + length);
+        }
+        return at(index);
+    }
+
+    @Override
+    public AsciiString subSequence(int start, int end) {
+        if (start < 0 || end < start || end > length) {
+            throw new IndexOutOfBoundsException("start=" + start + ", end=" + end + ", length=" + length);
+        }
+        final AsciiString result = new AsciiString();
+        result.bytes = bytes;
+        result.chars = chars;
+        result.offset = offset + start;
+        result.length = end - start;
+        return result;
+    }
+
+    /**
+     * @return true if this sequence contains the same characters as the given one, false otherwise.
+     */
+    public boolean contentEquals(CharSequence other) {
+        return contentEquals(this, other);
+    }
+
+    @Override
+    public int compareTo(AsciiString o) {
+        final int n = Math.min(length, o.length);
+        for (int i = 0; i < n; i++) {
+            final int diff = at(i) - o.at(i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - o.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AsciiString)) {
+            return false;
+        }
+        final AsciiString other = (AsciiString) o;
+        return length == other.length && (hash == 0 || other.hash == 0 || hash == other.hash) && contentEquals(this, other);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0 && length > 0) {
+            for (int i = 0; i < length; i++) {
+                h = 31 * h + at(i);
+            }
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Materializes this sequence as a new String.
+     */
+    @Override
+    public String toString() {
+        return (bytes != null) ?
+                new String(bytes, offset, length, StandardCharsets.US_ASCII) :
+                chars.subSequence(offset, offset + length).toString();
+    }
+
+    private char at(int index) {
+        return (bytes != null) ? (char) (bytes[offset + index] & 0xFF) : chars.charAt(offset + index);
+    }
+}
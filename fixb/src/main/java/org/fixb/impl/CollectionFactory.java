@@ -18,36 +18,146 @@ package org.fixb.impl;
 
 import org.fixb.FixException;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Modifier;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * A static factory for Collection types.
+ * A static factory for Collection types used as repeating group targets.
+ *
+ * Collections are created by suppliers that are resolved once per collection class and cached, so reflection is only
+ * involved in the first lookup (and only for custom collection classes).
  *
  * @author vladyslav.yatsenko
  */
 public class CollectionFactory {
+    private static final ConcurrentMap<Class<?>, CollectionSupplier> SUPPLIERS = new ConcurrentHashMap<>();
+
+    /**
+     * Creates collections of a specific type.
+     */
+    interface CollectionSupplier {
+        /**
+         * @param expectedSize the expected number of elements (a hint that may be ignored)
+         * @return a new empty collection.
+         */
+        Collection<?> create(int expectedSize);
+    }
+
     /**
      * Creates an empty instance of the given collection type.
      * If the given an class in an interface, an ArrayList will be created for java.util.List
      * or java.util.Collection interfaces, and HashSet for java.util.Set interface.
      */
-    @SuppressWarnings("unchecked")
     public static <T extends Collection<?>> T createCollection(Class<T> collClass) {
-        if (!collClass.isInterface() && !Modifier.isAbstract(collClass.getModifiers())) {
-            try {
-                return collClass.newInstance();
-            } catch (InstantiationException | IllegalAccessException e) {
-                throw new FixException(e.getMessage(), e);
-            }
+        return createCollection(collClass, -1);
+    }
+
+    /**
+     * The same as {@link #createCollection(Class)}, but the created collection is pre-sized to hold the given number
+     * of elements if the collection type supports it.
+     *
+     * @param collClass    the collection type
+     * @param expectedSize the expected number of elements, or a negative number if unknown
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Collection<?>> T createCollection(Class<T> collClass, int expectedSize) {
+        return (T) supplierOf(collClass).create(expectedSize);
+    }
+
+    private static CollectionSupplier supplierOf(Class<?> collClass) {
+        CollectionSupplier supplier = SUPPLIERS.get(collClass);
+        if (supplier == null) {
+            supplier = resolveSupplier(collClass);
+            SUPPLIERS.putIfAbsent(collClass, supplier);
+        }
+        return supplier;
+    }
+
+    private static CollectionSupplier resolveSupplier(final Class<?> collClass) {
+        if (collClass == ArrayList.class || collClass == List.class || collClass == Collection.class || collClass == Iterable.class) {
+            return new CollectionSupplier() {
+                @Override
+                public Collection<?> create(int expectedSize) {
+                    return expectedSize < 0 ? new ArrayList<>() : new ArrayList<>(expectedSize);
+                }
+            };
+        } else if (collClass == HashSet.class || collClass == Set.class) {
+            return new CollectionSupplier() {
+                @Override
+                public Collection<?> create(int expectedSize) {
+                    return expectedSize < 0 ? new HashSet<>() : new HashSet<>(hashCapacity(expectedSize));
+                }
+            };
+        } else if (collClass == LinkedHashSet.class) {
+            return new CollectionSupplier() {
+                @Override
+                public Collection<?> create(int expectedSize) {
+                    return expectedSize < 0 ? new LinkedHashSet<>() : new LinkedHashSet<>(hashCapacity(expectedSize));
+                }
+            };
+        } else if (collClass == LinkedList.class) {
+            return new CollectionSupplier() {
+                @Override
+                public Collection<?> create(int expectedSize) {
+                    return new LinkedList<>();
+                }
+            };
+        } else if (collClass == ArrayDeque.class || collClass == Queue.class || collClass == Deque.class) {
+            return new CollectionSupplier() {
+                @Override
+                public Collection<?> create(int expectedSize) {
+                    return expectedSize < 0 ? new ArrayDeque<>() : new ArrayDeque<>(expectedSize);
+                }
+            };
+        } else if (!collClass.isInterface() && !Modifier.isAbstract(collClass.getModifiers())) {
+            return reflectiveSupplier(collClass);
         } else if (List.class.isAssignableFrom(collClass)) {
-            return (T) new ArrayList<>();
+            return resolveSupplier(List.class);
         } else if (Set.class.isAssignableFrom(collClass)) {
-            return (T) new HashSet<>();
+            return resolveSupplier(Set.class);
         } else if (Collection.class.isAssignableFrom(collClass)) {
-            return (T) new ArrayList<>();
+            return resolveSupplier(Collection.class);
         } else {
             throw new IllegalArgumentException("Unknown collection type: " + collClass);
         }
     }
+
+    private static CollectionSupplier reflectiveSupplier(final Class<?> collClass) {
+        if (!Collection.class.isAssignableFrom(collClass)) {
+            throw new ClassCastException("Not a collection type: " + collClass.getName());
+        }
+        Constructor<?> sizedConstructor;
+        try {
+            sizedConstructor = collClass.getConstructor(int.class);
+        } catch (NoSuchMethodException e) {
+            sizedConstructor = null;
+        }
+        final Constructor<?> defaultConstructor;
+        try {
+            defaultConstructor = collClass.getConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new FixException("Collection type " + collClass.getName() + " does not have a public default constructor", e);
+        }
+
+        final Constructor<?> withSize = sizedConstructor;
+        return new CollectionSupplier() {
+            @Override
+            public Collection<?> create(int expectedSize) {
+                try {
+                    return (Collection<?>) ((withSize != null && expectedSize >= 0) ?
+                            withSize.newInstance(expectedSize) :
+                            defaultConstructor.newInstance());
+                } catch (ReflectiveOperationException e) {
+                    throw new FixException(e.getMessage(), e);
+                }
+            }
+        };
+    }
+
+    private static int hashCapacity(int expectedSize) {
+        return Math.max(expectedSize + expectedSize / 3 + 1, 16);
+    }
 }
@@ -25,15 +25,23 @@ import static org.fixb.impl.FormatConstants.SOH;
  * Can extract separate tag values from a FIX message string while keeping track of the read position in it. It is used
  * in the implementation of NativeFixFieldExtractor.
  *
+ * The cursor works on any CharSequence (e.g. a String or an AsciiString wrapping a byte buffer) and does not copy
+ * field values unless they are requested as Strings: it only keeps the bounds of the last read value, so that the
+ * value can be parsed in place or exposed as a flyweight AsciiString.
+ *
  * @author vladyslav.yatsenko
  */
 public class FieldCursor {
-    private Map<Integer, String> buffer = new HashMap<Integer, String>();
+    private Map<Integer, Long> buffer;
     private int lastPosition = -1;
+    private int fieldStart;
     private int lastTag;
+    private int valueStart;
+    private int valueEnd;
+    private String lastValue;
+    private boolean pushedBack;
 
-    final String fixMessage;
-    String lastValue;
+    final CharSequence fixMessage;
 
     /**
      * A static factory method.
@@ -41,17 +49,106 @@ public class FieldCursor {
      * @param fixMessage a string representing FIX message
      * @return a new instance of FieldCursor based on the given FIX message.
      */
-    public static FieldCursor create(String fixMessage) {
+    public static FieldCursor create(CharSequence fixMessage) {
         return new FieldCursor(fixMessage);
     }
 
     /**
-     * @return the last read FIX field value.
+     * @param fixMessage a string representing FIX message
+     * @param position   the index of the first character of the field to start reading from
+     * @return a new instance of FieldCursor based on the given FIX message and positioned at the given index.
+     */
+    public static FieldCursor create(CharSequence fixMessage, int position) {
+        final FieldCursor cursor = new FieldCursor(fixMessage);
+        cursor.lastPosition = position;
+        return cursor;
+    }
+
+    /**
+     * @return the last read FIX field value (the String is created on the first call for each field).
      */
     public String lastValue() {
+        if (lastValue == null && lastTag != 0) {
+            lastValue = fixMessage.subSequence(valueStart, valueEnd).toString();
+        }
         return lastValue;
     }
 
+    /**
+     * @return a new flyweight pointing to the last read FIX field value in the underlying message.
+     */
+    public AsciiString lastValueSequence() {
+        return new AsciiString().wrap(fixMessage, valueStart, valueEnd);
+    }
+
+    /**
+     * Parses the last read FIX field value as an <tt>int</tt> without creating an intermediate String.
+     *
+     * @throws NumberFormatException if the value is not a valid integer.
+     */
+    public int lastValueAsInt() {
+        final long value = lastValueAsLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Integer value of tag " + lastTag + " is out of range: " + lastValue());
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parses the last read FIX field value as a <tt>long</tt> without creating an intermediate String.
+     *
+     * @throws NumberFormatException if the value is not a valid integer.
+     */
+    public long lastValueAsLong() {
+        int i = valueStart;
+        if (i == valueEnd) {
+            throw new NumberFormatException("Empty value of tag " + lastTag);
+        }
+        final boolean negative = fixMessage.charAt(i) == '-';
+        if (negative || fixMessage.charAt(i) == '+') {
+            i++;
+        }
+        if (i == valueEnd) {
+            throw new NumberFormatException("Invalid integer value of tag " + lastTag + ": " + lastValue());
+        }
+        // accumulated negatively (like Long.parseLong()), so that Long.MIN_VALUE can be parsed as well
+        final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        final long multiplicationLimit = limit / 10;
+        long result = 0;
+        for (; i < valueEnd; i++) {
+            final int digit = fixMessage.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Invalid integer value of tag " + lastTag + ": " + lastValue());
+            }
+            if (result < multiplicationLimit || result * 10 < limit + digit) {
+                throw new NumberFormatException("Integer value of tag " + lastTag + " is out of range: " + lastValue());
+            }
+            result = result * 10 - digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * @return the index of the first character of the last read value in the underlying message.
+     */
+    public int lastValueStart() {
+        return valueStart;
+    }
+
+    /**
+     * @return the index after the last character of the last read value in the underlying message.
+     */
+    public int lastValueEnd() {
+        return valueEnd;
+    }
+
+    /**
+     * @return the index of the first character of the last read field (i.e. of its tag) in the underlying message.
+     */
+    public int lastFieldStart() {
+        return fieldStart;
+    }
+
     /**
      * @return the last read FIX tag.
      */
@@ -65,21 +162,31 @@ public class FieldCursor {
      * @return <code>true</code> if next field could be read, <code>false</code> if reached the end of message.
      */
     public boolean nextField() {
+        if (pushedBack) {
+            pushedBack = false;
+            return lastTag != 0;
+        }
+
+        final int length = fixMessage.length();
         final int start = lastPosition == -1 ? 0 : lastPosition;
-        final int interim = fixMessage.indexOf('=', start);
+        final int interim = indexOf('=', start);
+
+        lastValue = null;
 
         if (interim == -1) {
             lastTag = 0;
-            lastValue = null;
-            lastPosition = fixMessage.length();
+            valueStart = valueEnd = length;
+            lastPosition = length;
             return false;
         }
 
-        final int end = fixMessage.indexOf(SOH, interim + 1);
+        final int end = indexOf(SOH, interim + 1);
 
-        lastTag = Integer.valueOf(fixMessage.substring(start, interim));
-        lastValue = (end > -1) ? fixMessage.substring(interim + 1, end) : fixMessage.substring(interim + 1);
-        lastPosition = (end > -1) ? end + 1 : fixMessage.length();
+        fieldStart = start;
+        lastTag = parseTag(start, interim);
+        valueStart = interim + 1;
+        valueEnd = (end > -1) ? end : length;
+        lastPosition = (end > -1) ? end + 1 : length;
 
         return true;
     }
@@ -90,30 +197,91 @@ public class FieldCursor {
      * @return <code>true</code> if the field was found, <code>false</code> if reached the end of message.
      */
     public boolean nextField(int tag) {
-        final String value = buffer.get(tag);
-        if (value != null) {
+        final Long bounds = (buffer == null) ? null : buffer.remove(tag);
+        if (bounds != null) {
             lastTag = tag;
-            lastValue = value;
-            buffer.remove(tag);
+            lastValue = null;
+            valueStart = (int) (bounds >>> 32);
+            valueEnd = (int) bounds.longValue();
             return true;
         } else {
             while (nextField()) {
                 if (lastTag == tag) {
                     return true;
                 } else {
-                    buffer.put(lastTag, lastValue);
+                    if (buffer == null) {
+                        buffer = new HashMap<>();
+                    }
+                    buffer.put(lastTag, ((long) valueStart << 32) | valueEnd);
                 }
             }
         }
         return false;
     }
 
+    /**
+     * Makes the next call to {@link #nextField()} return the last read field again. It is used to hand a field that
+     * does not belong to a repeating group entry back to the reader of the enclosing block.
+     */
+    public void pushBack() {
+        pushedBack = true;
+    }
+
+    /**
+     * @return the index of the first character of the field that will be read by the next call to {@link #nextField()}.
+     */
+    public int position() {
+        return pushedBack ? fieldStart : Math.max(lastPosition, 0);
+    }
+
+    /**
+     * Moves the cursor back to the beginning of the message.
+     */
+    public void rewind() {
+        buffer = null;
+        lastPosition = -1;
+        lastTag = 0;
+        lastValue = null;
+        pushedBack = false;
+        valueStart = valueEnd = 0;
+    }
+
+    private int parseTag(int start, int end) {
+        if (end - start > 9) {
+            throw new NumberFormatException("FIX tag is too long: " + fixMessage.subSequence(start, end));
+        }
+        int tag = 0;
+        for (int i = start; i < end; i++) {
+            final int digit = fixMessage.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Invalid FIX tag: " + fixMessage.subSequence(start, end));
+            }
+            tag = tag * 10 + digit;
+        }
+        if (start == end) {
+            throw new NumberFormatException("Empty FIX tag at position " + start);
+        }
+        return tag;
+    }
+
+    private int indexOf(char c, int from) {
+        if (fixMessage instanceof String) {
+            return ((String) fixMessage).indexOf(c, from);
+        }
+        for (int i = from, n = fixMessage.length(); i < n; i++) {
+            if (fixMessage.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     /**
      * A minimal constructor.
      *
      * @param fixMessage a string representing FIX message.
      */
-    private FieldCursor(String fixMessage) {
+    private FieldCursor(CharSequence fixMessage) {
         this.fixMessage = fixMessage;
     }
 }
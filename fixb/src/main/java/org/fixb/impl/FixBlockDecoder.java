@@ -0,0 +1,583 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fixb.impl;
+
+import org.fixb.FixException;
+import org.fixb.UnknownFields;
+import org.fixb.meta.FixBlockMeta;
+import org.fixb.meta.FixConstantFieldMeta;
+import org.fixb.meta.FixFieldMeta;
+import org.fixb.meta.FixGroupMeta;
+
+import java.lang.reflect.Array;
+import java.util.*;
+
+import static org.fixb.FixConstants.BEGIN_STRING_TAG;
+import static org.fixb.FixConstants.BODY_LENGTH_TAG;
+import static org.fixb.FixConstants.CHECKSUM_TAG;
+
+/**
+ * A decoder of a FIX block compiled from its FixBlockMeta. It reads a FIX message in a single pass: the tag of every
+ * field is dispatched to the slot of the matching field meta through a lookup table, and the converted value is stored
+ * in an array of values that is then used to create (or populate) the domain object. Repeating groups are read by the
+ * decoders of their components, so decoding takes time linear in the length of the message whatever the field order.
+ *
+ * Tags below DENSE_TAG_LIMIT are resolved by a direct array lookup, higher (e.g. user defined) tags by a binary search.
+ *
+ * Each entry of a repeating group is scoped by its delimiter (the first field of the component) and the number of
+ * entries read is given by the value of the NoXXX field, so nested groups and optional fields inside group entries
+ * never pick up values from the next entry or from the fields that follow the group. An entry ends at the next
+ * delimiter, at a field of the entry that has already been read, or at a field mapped by one of the enclosing blocks;
+ * other fields that are not mapped by the entry are skipped. A group with fewer entries than declared by its NoXXX
+ * field is rejected.
+ *
+ * Groups bound to fields of type Iterable or FixGroupSource are not materialized: their entries are only skipped while
+ * the enclosing block is decoded and a LazyGroup view decodes them from the message when it is iterated.
+ *
+ * If the block type declares a @FixUnknownFields field, the bounds of the fields that are not mapped by the block are
+ * collected in an UnknownFields holder, except for the standard envelope fields and the constant fields of the block.
+ * This applies to the component types of repeating groups as well: the unmapped fields inside a group entry belong to
+ * that entry.
+ *
+ * @author vladyslav.yatsenko
+ */
+final class FixBlockDecoder<T> {
+    static final int DENSE_TAG_LIMIT = 8192;
+
+    // a visitor that ignores the fields, used to skip the entries of lazily decoded groups
+    private static final FixFieldVisitor SKIPPING = new FixFieldVisitor() {
+        @Override
+        public void onField(int index, FieldCursor cursor) {
+        }
+
+        @Override
+        public void onGroupValue(int index, FieldCursor cursor) {
+        }
+
+        @Override
+        public void onEntry(int index) {
+        }
+
+        @Override
+        public void onUnknownField(FieldCursor cursor) {
+        }
+
+        @Override
+        public void onEnd(boolean[] seen) {
+        }
+    };
+
+    private final FixBlockMeta<T> meta;
+    private final NativeFixFieldExtractor extractor;
+    private final FixFieldMeta[] fields;
+    private final FixBlockDecoder<?>[] componentDecoders;
+    private final boolean[] lazyGroups;
+    private final int[] denseSlots;
+    private final int[] sparseTags;
+    private final int[] sparseSlots;
+    private final int delimiterTag;
+    private final int[] knownUnmappedTags;
+    private final int[] enclosingTags;
+
+    /**
+     * @param meta      the metadata of the block to decode
+     * @param extractor the extractor used to convert field values and to resolve decoders of group components
+     */
+    FixBlockDecoder(FixBlockMeta<T> meta, NativeFixFieldExtractor extractor) {
+        this(meta, extractor, new int[]{BEGIN_STRING_TAG, BODY_LENGTH_TAG, CHECKSUM_TAG});
+    }
+
+    /**
+     * @param enclosingTags the sorted tags mapped by the blocks that enclose the entries decoded by this decoder (the
+     *                      entries end at these tags)
+     */
+    private FixBlockDecoder(FixBlockMeta<T> meta, NativeFixFieldExtractor extractor, int[] enclosingTags) {
+        this.meta = meta;
+        this.extractor = extractor;
+        this.fields = meta.getFields().toArray(new FixFieldMeta[meta.getFields().size()]);
+        this.componentDecoders = new FixBlockDecoder<?>[fields.length];
+        this.lazyGroups = new boolean[fields.length];
+        this.enclosingTags = enclosingTags;
+
+        int delimiter = -1;
+        final SortedMap<Integer, Integer> slots = new TreeMap<>();
+        final Set<Integer> knownUnmapped = new TreeSet<>(Arrays.asList(BEGIN_STRING_TAG, BODY_LENGTH_TAG, CHECKSUM_TAG));
+        for (int i = 0; i < fields.length; i++) {
+            final FixFieldMeta f = fields[i];
+            if (f instanceof FixConstantFieldMeta) {
+                knownUnmapped.add(f.getTag());
+                continue;
+            }
+            if (slots.containsKey(f.getTag())) {
+                continue;
+            }
+            if (delimiter == -1) {
+                delimiter = f.getTag();
+            }
+            slots.put(f.getTag(), i);
+        }
+
+        // component decoders are specific to this block, as their entries end at the tags mapped by this block
+        int[] componentEnclosingTags = null;
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].isGroup()) {
+                final FixGroupMeta groupMeta = (FixGroupMeta) fields[i];
+                lazyGroups[i] = groupMeta.isLazy();
+                if (!groupMeta.isSimple()) {
+                    if (componentEnclosingTags == null) {
+                        componentEnclosingTags = withTagsOf(enclosingTags, fields);
+                    }
+                    componentDecoders[i] = new FixBlockDecoder<>(groupMeta.getComponentMeta(), extractor, componentEnclosingTags);
+                }
+            }
+        }
+
+        this.delimiterTag = delimiter;
+        this.knownUnmappedTags = new int[knownUnmapped.size()];
+        int k = 0;
+        for (Integer tag : knownUnmapped) {
+            knownUnmappedTags[k++] = tag;
+        }
+
+        final SortedMap<Integer, Integer> dense = slots.headMap(DENSE_TAG_LIMIT);
+        this.denseSlots = new int[dense.isEmpty() ? 0 : dense.lastKey() + 1];
+        for (Map.Entry<Integer, Integer> slot : dense.entrySet()) {
+            denseSlots[slot.getKey()] = slot.getValue() + 1;
+        }
+
+        final SortedMap<Integer, Integer> sparse = slots.tailMap(DENSE_TAG_LIMIT);
+        this.sparseTags = new int[sparse.size()];
+        this.sparseSlots = new int[sparse.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> slot : sparse.entrySet()) {
+            sparseTags[i] = slot.getKey();
+            sparseSlots[i++] = slot.getValue();
+        }
+    }
+
+    /**
+     * Reads the remaining fields of the message and creates an object from them. Fields that are not mapped by the
+     * block are skipped.
+     */
+    T decode(FieldCursor cursor) {
+        final UnknownFields unknownFields = meta.hasUnknownFields() ? new UnknownFields() : null;
+        final T result = meta.createModel(decodeValues(cursor, null, false, unknownFields));
+        if (unknownFields != null) {
+            meta.setUnknownFields(result, unknownFields);
+        }
+        return result;
+    }
+
+    /**
+     * Reads the remaining fields of the message and sets them to the given object. Collections and arrays of repeating
+     * groups referenced by the target are re-used where possible, and so are the entries of component groups held by
+     * arrays and random access lists.
+     */
+    T decodeInto(FieldCursor cursor, T target) {
+        return meta.populateModel(target, decodeValues(cursor, target, false, reusedUnknownFields(target)));
+    }
+
+    /**
+     * Walks the remaining fields of the message with the same scoping rules as {@link #decode(FieldCursor)}, passing
+     * them to the given visitor instead of converting them.
+     *
+     * @throws FixException if a required field is missing or a group has fewer entries than declared.
+     */
+    void visit(FieldCursor cursor, FixFieldVisitor visitor) {
+        visitBlock(cursor, visitor, false, new boolean[fields.length]);
+    }
+
+    /**
+     * Reads a single entry of a repeating group. An entry must start with the delimiter field (the first field of the
+     * block) and ends before the first field that has already been read for this entry (e.g. the delimiter of the next
+     * entry) or that is mapped by an enclosing block. That field is pushed back to the cursor, so that it is read by the
+     * next entry or by the enclosing block. Other fields that are not mapped by the block are skipped, or collected
+     * as the unknown fields of the entry if the block type declares a @FixUnknownFields field.
+     *
+     * @return an object created from the entry fields or null if the next field is not the delimiter.
+     */
+    T decodeEntry(FieldCursor cursor) {
+        final UnknownFields unknownFields = meta.hasUnknownFields() ? new UnknownFields() : null;
+        final Object[] values = decodeValues(cursor, null, true, unknownFields);
+        if (values == null) {
+            return null;
+        }
+        final T result = meta.createModel(values);
+        if (unknownFields != null) {
+            meta.setUnknownFields(result, unknownFields);
+        }
+        return result;
+    }
+
+    /**
+     * The same as {@link #decodeEntry(FieldCursor)}, but populates the given object from a previous message in place if
+     * it is an instance of the block type bound by field injection.
+     *
+     * @return the given object, a new object if it can't be re-used, or null if the next field is not the delimiter.
+     */
+    @SuppressWarnings("unchecked")
+    T decodeEntryInto(FieldCursor cursor, Object reused) {
+        if (reused == null || meta.isConstructorBased() || !meta.getType().isInstance(reused)) {
+            return decodeEntry(cursor);
+        }
+        final Object[] values = decodeValues(cursor, reused, true, reusedUnknownFields((T) reused));
+        return (values != null) ? meta.populateModel((T) reused, values) : null;
+    }
+
+    /**
+     * Reads the entries of a repeating group that follow its NoXXX field and adds them to the given collection.
+     *
+     * @param count the value of the NoXXX field
+     * @return the given collection.
+     * @throws FixException if the message contains fewer entries than <tt>count</tt>.
+     */
+    <C extends Collection<? super T>> C decodeGroup(FieldCursor cursor, int count, C result) {
+        for (int i = 0; i < count; i++) {
+            final T entry = decodeEntry(cursor);
+            if (entry == null) {
+                throw entriesNotFound(delimiterTag, count, i, cursor);
+            }
+            result.add(entry);
+        }
+        return result;
+    }
+
+    /**
+     * The same as {@link #decodeGroup(FieldCursor, int, Collection)}, but the entries already held by the given list
+     * are populated in place instead of being replaced by new objects. New entries are only created for the positions
+     * beyond the size of the list, and the surplus entries are removed from its end.
+     *
+     * @param entries a list of the entries decoded from a previous message (it must support random access)
+     * @return the given list.
+     */
+    List<Object> decodeGroupInto(FieldCursor cursor, int count, List<Object> entries) {
+        int n = 0;
+        for (; n < count; n++) {
+            final Object old = (n < entries.size()) ? entries.get(n) : null;
+            final T entry = decodeEntryInto(cursor, old);
+            if (entry == null) {
+                throw entriesNotFound(delimiterTag, count, n, cursor);
+            }
+            if (n == entries.size()) {
+                entries.add(entry);
+            } else if (entry != old) {
+                entries.set(n, entry);
+            }
+        }
+        while (entries.size() > n) {
+            entries.remove(entries.size() - 1);
+        }
+        return entries;
+    }
+
+    /**
+     * Reads the values of a simple repeating group that follow its NoXXX field and adds them to the given collection.
+     *
+     * @throws FixException if the message contains fewer values than <tt>count</tt>.
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> void decodeGroupValues(FieldCursor cursor,
+                                              int componentTag,
+                                              Class<E> componentType,
+                                              int count,
+                                              NativeFixFieldExtractor extractor,
+                                              Collection<? super E> result) {
+        for (int i = 0; i < count; i++) {
+            if (!nextGroupValue(cursor, componentTag)) {
+                throw entriesNotFound(componentTag, count, i, cursor);
+            }
+            result.add((E) extractor.convert(cursor, componentType, false));
+        }
+    }
+
+    /**
+     * @return the cleared unknown fields held by the given object (a new holder is set if it has none), or null if the
+     *         block type does not declare a @FixUnknownFields field.
+     */
+    private UnknownFields reusedUnknownFields(T target) {
+        if (!meta.hasUnknownFields()) {
+            return null;
+        }
+        UnknownFields unknownFields = meta.getUnknownFields(target);
+        if (unknownFields == null) {
+            unknownFields = new UnknownFields();
+            meta.setUnknownFields(target, unknownFields);
+        } else {
+            unknownFields.clear();
+        }
+        return unknownFields;
+    }
+
+    private Object[] decodeValues(FieldCursor cursor, Object target, boolean entry, UnknownFields unknownFields) {
+        final Object[] values = new Object[fields.length];
+        boolean found = false;
+
+        while (cursor.nextField()) {
+            final int tag = cursor.lastTag();
+            final int slot = slotOf(tag);
+            if (entry && endsEntry(tag, slot, found, slot >= 0 && values[slot] != null)) {
+                cursor.pushBack();
+                break;
+            }
+            if (slot >= 0 && values[slot] == null) {
+                values[slot] = readValue(cursor, slot, target);
+                found = true;
+            } else if (slot < 0 && unknownFields != null && Arrays.binarySearch(knownUnmappedTags, tag) < 0) {
+                unknownFields.add(cursor.fixMessage, tag, cursor.lastFieldStart(), cursor.position());
+            }
+        }
+
+        if (entry && !found) {
+            return null;
+        }
+
+        for (int i = 0; i < fields.length; i++) {
+            final FixFieldMeta f = fields[i];
+            if (values[i] != null || f instanceof FixConstantFieldMeta) {
+                continue;
+            }
+            if (!f.isOptional()) {
+                throw FixException.fieldNotFound(f.getTag(), cursor.fixMessage.toString());
+            }
+            if (f.isGroup()) {
+                values[i] = readGroup(cursor, i, target, 0);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @param found whether the delimiter of the entry has been read
+     * @param read  whether the field in the given slot has already been read for the entry
+     * @return true if the given field does not belong to the current group entry.
+     */
+    private boolean endsEntry(int tag, int slot, boolean found, boolean read) {
+        if (!found) {
+            return tag != delimiterTag;
+        }
+        return (slot >= 0) ? read : Arrays.binarySearch(enclosingTags, tag) >= 0;
+    }
+
+    private int slotOf(int tag) {
+        if (tag < denseSlots.length) {
+            return denseSlots[tag] - 1;
+        }
+        if (sparseTags.length == 0) {
+            return -1;
+        }
+        final int i = Arrays.binarySearch(sparseTags, tag);
+        return (i >= 0) ? sparseSlots[i] : -1;
+    }
+
+    private Object readValue(FieldCursor cursor, int slot, Object target) {
+        final FixFieldMeta f = fields[slot];
+        return f.isGroup() ?
+                readGroup(cursor, slot, target, cursor.lastValueAsInt()) :
+                extractor.convert(cursor, f.getType(), f.isIntern());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object readGroup(FieldCursor cursor, int slot, Object target, int count) {
+        final FixGroupMeta groupMeta = (FixGroupMeta) fields[slot];
+        if (lazyGroups[slot]) {
+            final int position = cursor.position();
+            final int size = skipGroup(cursor, slot, count);
+            return (componentDecoders[slot] != null) ?
+                    LazyGroup.of(cursor.fixMessage, position, size, componentDecoders[slot]) :
+                    LazyGroup.of(cursor.fixMessage, position, size, groupMeta.getComponentTag(),
+                            (Class<Object>) groupMeta.getComponentType(), extractor);
+        }
+        return groupMeta.isArray() ?
+                readArray(cursor, groupMeta, componentDecoders[slot], count,
+                        (target != null) ? groupMeta.getFieldValue(target) : null) :
+                readCollection(cursor, groupMeta, componentDecoders[slot], count,
+                        (target != null) ? groupMeta.getValue(target) : null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Collection<Object> readCollection(FieldCursor cursor, FixGroupMeta groupMeta, FixBlockDecoder<?> decoder, int count, Collection<?> reused) {
+        if (decoder != null && reused instanceof List && reused instanceof RandomAccess) {
+            return decoder.decodeGroupInto(cursor, count, (List<Object>) reused);
+        }
+        final Collection<Object> result = NativeFixFieldExtractor.newOrCleared(
+                (Class<Collection<Object>>) groupMeta.getType(), (Collection<Object>) reused, count);
+
+        if (decoder != null) {
+            decoder.decodeGroup(cursor, count, result);
+        } else {
+            decodeGroupValues(cursor, groupMeta.getComponentTag(),
+                    (Class<Object>) groupMeta.getComponentType(), count, extractor, result);
+        }
+        return result;
+    }
+
+    /**
+     * Reads a repeating group mapped to an array. Arrays of <tt>int</tt>, <tt>long</tt> and <tt>double</tt> are filled
+     * without boxing. The given array is re-used if it has the same length as the group.
+     *
+     * @throws FixException if the message contains fewer entries than <tt>count</tt>.
+     */
+    private Object readArray(FieldCursor cursor, FixGroupMeta groupMeta, FixBlockDecoder<?> decoder, int count, Object reused) {
+        final Class<?> componentType = groupMeta.getComponentType();
+        final Object array = (reused != null && Array.getLength(reused) == count) ?
+                reused :
+                Array.newInstance(componentType, count);
+
+        if (decoder != null) {
+            final Object[] elements = (Object[]) array;
+            for (int i = 0; i < count; i++) {
+                if ((elements[i] = decoder.decodeEntryInto(cursor, elements[i])) == null) {
+                    throw entriesNotFound(decoder.delimiterTag, count, i, cursor);
+                }
+            }
+        } else {
+            final int componentTag = groupMeta.getComponentTag();
+            for (int i = 0; i < count; i++) {
+                if (!nextGroupValue(cursor, componentTag)) {
+                    throw entriesNotFound(componentTag, count, i, cursor);
+                }
+                if (componentType == int.class) {
+                    ((int[]) array)[i] = cursor.lastValueAsInt();
+                } else if (componentType == long.class) {
+                    ((long[]) array)[i] = cursor.lastValueAsLong();
+                } else if (componentType == double.class) {
+                    ((double[]) array)[i] = Double.parseDouble(cursor.lastValue());
+                } else {
+                    Array.set(array, i, extractor.convert(cursor, componentType, false));
+                }
+            }
+        }
+        return array;
+    }
+
+    /**
+     * Moves the cursor past the entries of the group in the given slot without decoding them.
+     *
+     * @return the number of entries skipped.
+     * @throws FixException if the message contains fewer entries than <tt>count</tt>.
+     */
+    private int skipGroup(FieldCursor cursor, int slot, int count) {
+        return visitGroup(cursor, slot, count, SKIPPING);
+    }
+
+    /**
+     * Passes the entries of the group in the given slot to the given visitor.
+     *
+     * @return the number of entries visited.
+     * @throws FixException if the message contains fewer entries than <tt>count</tt>.
+     */
+    private int visitGroup(FieldCursor cursor, int slot, int count, FixFieldVisitor visitor) {
+        final FixBlockDecoder<?> decoder = componentDecoders[slot];
+        if (decoder != null) {
+            final boolean[] seen = new boolean[decoder.fields.length];
+            for (int n = 0; n < count; n++) {
+                visitor.onEntry(slot);
+                if (!decoder.visitBlock(cursor, visitor, true, seen)) {
+                    throw entriesNotFound(decoder.delimiterTag, count, n, cursor);
+                }
+            }
+        } else {
+            final int componentTag = ((FixGroupMeta) fields[slot]).getComponentTag();
+            for (int n = 0; n < count; n++) {
+                if (!nextGroupValue(cursor, componentTag)) {
+                    throw entriesNotFound(componentTag, count, n, cursor);
+                }
+                visitor.onGroupValue(slot, cursor);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Walks the fields of the block (or of a group entry if <tt>entry</tt> is set) using the same scoping rules as
+     * {@link #decodeValues(FieldCursor, Object, boolean, UnknownFields)}. Like decoding, it fails if a required field
+     * is missing, so that lazily decoded groups are validated as strictly as the materialized ones.
+     *
+     * @param seen an array used to track the fields of the block (it is cleared by this method)
+     * @return false if an entry is expected and the next field is not its delimiter.
+     */
+    private boolean visitBlock(FieldCursor cursor, FixFieldVisitor visitor, boolean entry, boolean[] seen) {
+        Arrays.fill(seen, false);
+        boolean found = false;
+        while (cursor.nextField()) {
+            final int tag = cursor.lastTag();
+            final int slot = slotOf(tag);
+            if (entry && endsEntry(tag, slot, found, slot >= 0 && seen[slot])) {
+                cursor.pushBack();
+                break;
+            }
+            if (slot < 0) {
+                if (Arrays.binarySearch(knownUnmappedTags, tag) < 0) {
+                    visitor.onUnknownField(cursor);
+                }
+                continue;
+            }
+            if (seen[slot]) {
+                continue;
+            }
+            seen[slot] = true;
+            found = true;
+            if (fields[slot].isGroup()) {
+                visitGroup(cursor, slot, cursor.lastValueAsInt(), visitor);
+            } else {
+                visitor.onField(slot, cursor);
+            }
+        }
+        if (entry && !found) {
+            return false;
+        }
+        for (int i = 0; i < fields.length; i++) {
+            if (!seen[i] && !fields[i].isOptional() && !(fields[i] instanceof FixConstantFieldMeta)) {
+                throw FixException.fieldNotFound(fields[i].getTag(), cursor.fixMessage.toString());
+            }
+        }
+        visitor.onEnd(seen);
+        return true;
+    }
+
+    private static int[] withTagsOf(int[] tags, FixFieldMeta[] fields) {
+        final Set<Integer> union = new TreeSet<>();
+        for (int tag : tags) {
+            union.add(tag);
+        }
+        for (FixFieldMeta f : fields) {
+            union.add(f.getTag());
+        }
+        final int[] result = new int[union.size()];
+        int i = 0;
+        for (Integer tag : union) {
+            result[i++] = tag;
+        }
+        return result;
+    }
+
+    private static FixException entriesNotFound(int firstTag, int count, int found, FieldCursor cursor) {
+        return new FixException("Repeating group entries starting with field [" + firstTag + "] were not found: " + count
+                + " declared, " + found + " found in message: " + cursor.fixMessage);
+    }
+
+    static boolean nextGroupValue(FieldCursor cursor, int componentTag) {
+        if (!cursor.nextField()) {
+            return false;
+        }
+        if (cursor.lastTag() != componentTag) {
+            cursor.pushBack();
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.impl;
+
+/**
+ * Receives the fields of a message walked by {@link NativeFixFieldExtractor#visit(FieldCursor,
+ * org.fixb.meta.FixBlockMeta, FixFieldVisitor)}, which applies the same scoping rules for group entries as the
+ * decoding of objects, but leaves the conversion of the values to the visitor. The cursor passed to the callbacks is
+ * positioned at the visited field, the fields are identified by their indexes in the fields of the block they belong to
+ * (see FixBlockMeta.getFields()).
+ *
+ * @author vladyslav.yatsenko
+ */
+public interface FixFieldVisitor {
+    /**
+     * Called for a field of the current block that is not a repeating group.
+     */
+    void onField(int index, FieldCursor cursor);
+
+    /**
+     * Called for each value of the simple repeating group at the given index of the current block.
+     */
+    void onGroupValue(int index, FieldCursor cursor);
+
+    /**
+     * Called when an entry of the repeating group of components at the given index of the current block starts. The
+     * fields that follow, up to the matching {@link #onEnd(boolean[])}, belong to the component of that group.
+     */
+    void onEntry(int index);
+
+    /**
+     * Called for a field of the current block that is not mapped by it (except for the standard envelope fields and
+     * the constant fields of the block), i.e. for the fields that the decoding of objects collects as UnknownFields.
+     */
+    void onUnknownField(FieldCursor cursor);
+
+    /**
+     * Called when the current block (the message or a group entry) ends, after its required fields have been checked.
+     *
+     * @param seen whether the field at each index of the block has been visited
+     */
+    void onEnd(boolean[] seen);
+}
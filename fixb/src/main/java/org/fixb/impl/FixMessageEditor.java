@@ -0,0 +1,394 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.impl;
+
+import org.fixb.FixException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.fixb.FixConstants.BEGIN_STRING_TAG;
+import static org.fixb.FixConstants.BODY_LENGTH_TAG;
+import static org.fixb.FixConstants.CHECKSUM_TAG;
+import static org.fixb.FixConstants.MSG_TYPE_TAG;
+import static org.fixb.FixConstants.isHeaderTag;
+import static org.fixb.impl.AsciiEncoding.digits;
+import static org.fixb.impl.AsciiEncoding.put;
+import static org.fixb.impl.AsciiEncoding.putCheckSum;
+import static org.fixb.impl.AsciiEncoding.putInt;
+import static org.fixb.impl.AsciiEncoding.sum;
+import static org.fixb.impl.FormatConstants.SOH;
+
+/**
+ * Edits raw FIX messages without decoding them, e.g. to rewrite routing fields such as SenderCompID(49),
+ * TargetCompID(56), OnBehalfOfCompID(115) or DeliverToCompID(128) of a forwarded message.
+ *
+ * On wrap() the editor indexes the fields of the message (their tags and bounds). Edits only record what has to be
+ * replaced, inserted or removed; the original message is never modified. When the result is written, the untouched
+ * fields are copied verbatim, BodyLength(9) is adjusted by the difference in length of the edited fields and
+ * CheckSum(10) is adjusted by the difference of their byte sums, so no field is re-encoded or re-scanned.
+ *
+ * An editor is meant to be re-used for many messages by a single thread: wrap() discards the previous message and its
+ * edits without allocating (as long as the number of fields doesn't grow), since the fields are indexed by their
+ * positions in the message. Values set by the edits are referenced, not copied, until the result is written.
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class FixMessageEditor {
+    private static final Object REMOVED = new Object();
+
+    private CharSequence message;
+    private int beginStringStart;
+    private int beginStringEnd;
+    private int bodyStart;
+    private int bodyEnd;
+    private int bodySum;
+    // the characters following the value of CheckSum(10), if any
+    private int trailerStart;
+
+    // the index of the fields between BodyLength and CheckSum
+    private int fieldCount;
+    private int[] tags = new int[32];
+    private int[] starts = new int[32];
+    private int[] valueStarts = new int[32];
+    private int[] ends = new int[32];
+
+    // a replacement value (or REMOVED) per field
+    private Object[] edits = new Object[32];
+
+    // inserted fields
+    private int insertCount;
+    private int[] insertAfter = new int[4];
+    private int[] insertTags = new int[4];
+    private CharSequence[] insertValues = new CharSequence[4];
+
+    /**
+     * Indexes the given FIX message and discards all the edits of the previous one.
+     *
+     * @param fixMessage a complete FIX message starting with BeginString(8) and BodyLength(9) and ending with
+     *                   CheckSum(10) (optionally followed by a delimiter)
+     * @return this editor.
+     * @throws FixException if the message is malformed.
+     */
+    public FixMessageEditor wrap(CharSequence fixMessage) {
+        this.message = fixMessage;
+        this.fieldCount = 0;
+        this.insertCount = 0;
+        this.bodySum = 0;
+
+        int i = 0;
+        int checkSumStart = -1;
+        for (int n = 0; i < fixMessage.length(); n++) {
+            final int start = i;
+            int tag = 0;
+            char c;
+            while (i < fixMessage.length() && (c = fixMessage.charAt(i)) != '=') {
+                if (c < '0' || c > '9') {
+                    throw new FixException("Invalid tag at position " + start + " in: " + fixMessage);
+                }
+                tag = tag * 10 + (c - '0');
+                i++;
+            }
+            final int valueStart = ++i;
+            while (i < fixMessage.length() && fixMessage.charAt(i) != SOH) {
+                i++;
+            }
+            final int end = Math.min(++i, fixMessage.length());
+
+            if (n == 0) {
+                if (tag != BEGIN_STRING_TAG) {
+                    throw new FixException("Invalid FIX message, BeginString(8) expected in: " + fixMessage);
+                }
+                beginStringStart = valueStart;
+                beginStringEnd = end - 1;
+            } else if (n == 1) {
+                if (tag != BODY_LENGTH_TAG) {
+                    throw new FixException("Invalid FIX message, BodyLength(9) expected in: " + fixMessage);
+                }
+                bodyStart = end;
+            } else if (tag == CHECKSUM_TAG) {
+                checkSumStart = start;
+                trailerStart = Math.min(valueStart + 3, fixMessage.length());
+                break;
+            } else {
+                add(tag, start, valueStart, end);
+            }
+        }
+        if (checkSumStart < 0) {
+            throw new FixException("Invalid FIX message, CheckSum(10) is missing in: " + fixMessage);
+        }
+        bodyEnd = checkSumStart;
+        bodySum = sum(fixMessage, bodyStart, bodyEnd);
+        return this;
+    }
+
+    /**
+     * @return the value of the first field with the given tag (a view of the original message, ignoring the edits), or
+     *         null if the message has no such field.
+     */
+    public CharSequence get(int tag) {
+        final int index = indexOf(tag);
+        return (index < 0) ? null : message.subSequence(valueStarts[index], ends[index] - 1);
+    }
+
+    /**
+     * Replaces the value of the first field with the given tag, or adds the field if there is no such field: a standard
+     * header field (see FixConstants.isHeaderTag()) is inserted right after MsgType(35), any other field is appended
+     * to the end of the message. A field removed or inserted by a previous edit is set in its place.
+     *
+     * @return this editor.
+     */
+    public FixMessageEditor set(int tag, CharSequence value) {
+        if (!replace(tag, value)) {
+            insert(isHeaderTag(tag) ? indexOf(MSG_TYPE_TAG) : fieldCount - 1, tag, value);
+        }
+        return this;
+    }
+
+    /**
+     * Replaces the value of the first field with the given tag, or inserts the field right after the first field
+     * with the anchor tag if there is no such field, e.g. insertAfter(35, 115, "BROKER") adds OnBehalfOfCompID to the
+     * header.
+     *
+     * @return this editor.
+     * @throws FixException if the message has neither the given nor the anchor tag.
+     */
+    public FixMessageEditor setOrInsertAfter(int anchorTag, int tag, CharSequence value) {
+        if (replace(tag, value)) {
+            return this;
+        }
+        final int anchor = indexOf(anchorTag);
+        if (anchor < 0) {
+            throw FixException.fieldNotFound(anchorTag, message.toString());
+        }
+        insert(anchor, tag, value);
+        return this;
+    }
+
+    /**
+     * Removes the first field with the given tag, if any (including a field inserted by a previous edit).
+     *
+     * @return this editor.
+     */
+    public FixMessageEditor remove(int tag) {
+        final int index = indexOf(tag);
+        if (index >= 0) {
+            edits[index] = REMOVED;
+            return this;
+        }
+        final int insert = insertIndexOf(tag);
+        if (insert >= 0) {
+            insertCount--;
+            System.arraycopy(insertAfter, insert + 1, insertAfter, insert, insertCount - insert);
+            System.arraycopy(insertTags, insert + 1, insertTags, insert, insertCount - insert);
+            System.arraycopy(insertValues, insert + 1, insertValues, insert, insertCount - insert);
+            insertValues[insertCount] = null;
+        }
+        return this;
+    }
+
+    /**
+     * @return the length of the edited message in bytes.
+     */
+    public int length() {
+        final int bodyLength = bodyLength();
+        return digits(BEGIN_STRING_TAG) + 1 + beginStringEnd - beginStringStart + 1
+                + digits(BODY_LENGTH_TAG) + 1 + digits(bodyLength) + 1
+                + bodyLength
+                + digits(CHECKSUM_TAG) + 1 + 3 + message.length() - trailerStart;
+    }
+
+    /**
+     * Writes the edited message as ASCII bytes to the given buffer starting at its current position.
+     *
+     * @return the number of bytes written.
+     * @throws java.nio.BufferOverflowException if the message does not fit in the remaining space of the buffer.
+     */
+    public int writeTo(ByteBuffer buffer) {
+        final int start = buffer.position();
+        final int bodyLength = bodyLength();
+        int sum = bodySum;
+        for (int i = 0; i < fieldCount; i++) {
+            if (edits[i] != null) {
+                sum -= sum(message, starts[i], ends[i]);
+                if (edits[i] != REMOVED) {
+                    sum += fieldSum(tags[i], (CharSequence) edits[i]);
+                }
+            }
+        }
+        for (int i = 0; i < insertCount; i++) {
+            sum += fieldSum(insertTags[i], insertValues[i]);
+        }
+
+        sum += putInt(buffer, BEGIN_STRING_TAG) + put(buffer, '=') + put(buffer, message, beginStringStart, beginStringEnd)
+                + put(buffer, SOH);
+        sum += putInt(buffer, BODY_LENGTH_TAG) + put(buffer, '=') + putInt(buffer, bodyLength) + put(buffer, SOH);
+
+        putInserts(buffer, -1);
+        int copyFrom = bodyStart;
+        for (int i = 0; i < fieldCount; i++) {
+            if (edits[i] != null) {
+                put(buffer, message, copyFrom, starts[i]);
+                copyFrom = ends[i];
+                if (edits[i] != REMOVED) {
+                    putField(buffer, tags[i], (CharSequence) edits[i]);
+                }
+            }
+            if (insertCount > 0 && hasInserts(i)) {
+                put(buffer, message, copyFrom, ends[i]);
+                copyFrom = ends[i];
+                putInserts(buffer, i);
+            }
+        }
+        put(buffer, message, copyFrom, bodyEnd);
+
+        putCheckSum(buffer, sum);
+        put(buffer, message, trailerStart, message.length());
+        return buffer.position() - start;
+    }
+
+    /**
+     * @return the edited message.
+     */
+    @Override
+    public String toString() {
+        final ByteBuffer buffer = ByteBuffer.allocate(length());
+        writeTo(buffer);
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII);
+    }
+
+    private int indexOf(int tag) {
+        for (int i = 0; i < fieldCount; i++) {
+            if (tags[i] == tag && edits[i] != REMOVED) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int insertIndexOf(int tag) {
+        for (int i = 0; i < insertCount; i++) {
+            if (insertTags[i] == tag) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Sets the value of the first original field with the given tag (restoring it if it was removed), or else of the
+     * first inserted field with the tag.
+     *
+     * @return false if there is no such field.
+     */
+    private boolean replace(int tag, CharSequence value) {
+        for (int i = 0; i < fieldCount; i++) {
+            if (tags[i] == tag) {
+                edits[i] = value;
+                return true;
+            }
+        }
+        final int insert = insertIndexOf(tag);
+        if (insert >= 0) {
+            insertValues[insert] = value;
+            return true;
+        }
+        return false;
+    }
+
+    private int bodyLength() {
+        int length = bodyEnd - bodyStart;
+        for (int i = 0; i < fieldCount; i++) {
+            if (edits[i] != null) {
+                length -= ends[i] - starts[i];
+                if (edits[i] != REMOVED) {
+                    length += fieldLength(tags[i], (CharSequence) edits[i]);
+                }
+            }
+        }
+        for (int i = 0; i < insertCount; i++) {
+            length += fieldLength(insertTags[i], insertValues[i]);
+        }
+        return length;
+    }
+
+    private void add(int tag, int start, int valueStart, int end) {
+        if (fieldCount == tags.length) {
+            final int capacity = fieldCount * 2;
+            tags = Arrays.copyOf(tags, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            valueStarts = Arrays.copyOf(valueStarts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            edits = Arrays.copyOf(edits, capacity);
+        }
+        tags[fieldCount] = tag;
+        starts[fieldCount] = start;
+        valueStarts[fieldCount] = valueStart;
+        ends[fieldCount] = end;
+        edits[fieldCount] = null;
+        fieldCount++;
+    }
+
+    private void insert(int after, int tag, CharSequence value) {
+        if (insertCount == insertTags.length) {
+            final int capacity = insertCount * 2;
+            insertAfter = Arrays.copyOf(insertAfter, capacity);
+            insertTags = Arrays.copyOf(insertTags, capacity);
+            insertValues = Arrays.copyOf(insertValues, capacity);
+        }
+        insertAfter[insertCount] = after;
+        insertTags[insertCount] = tag;
+        insertValues[insertCount] = value;
+        insertCount++;
+    }
+
+    private boolean hasInserts(int after) {
+        for (int i = 0; i < insertCount; i++) {
+            if (insertAfter[i] == after) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void putInserts(ByteBuffer buffer, int after) {
+        for (int i = 0; i < insertCount; i++) {
+            if (insertAfter[i] == after) {
+                putField(buffer, insertTags[i], insertValues[i]);
+            }
+        }
+    }
+
+    private static void putField(ByteBuffer buffer, int tag, CharSequence value) {
+        putInt(buffer, tag);
+        put(buffer, '=');
+        put(buffer, value, 0, value.length());
+        put(buffer, SOH);
+    }
+
+    private static int fieldLength(int tag, CharSequence value) {
+        return digits(tag) + 1 + value.length() + 1;
+    }
+
+    private static int fieldSum(int tag, CharSequence value) {
+        int sum = '=' + SOH + sum(value, 0, value.length());
+        for (; tag > 0; tag /= 10) {
+            sum += '0' + tag % 10;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fixb.impl;
+
+import org.fixb.FixGroupSource;
+
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only view of a repeating group that decodes its entries from the raw FIX message while being iterated. It is
+ * used for groups bound to fields of type Iterable or FixGroupSource, so that a group with thousands of entries (e.g.
+ * MDEntries of a full book snapshot) never has to be held in memory as a whole: each iteration decodes the entries one
+ * by one.
+ *
+ * The view only keeps a reference to the message and the position of the first entry, hence the message (or the byte
+ * buffer it was read from) must not be modified while the view is in use.
+ *
+ * @author vladyslav.yatsenko
+ */
+final class LazyGroup<T> extends AbstractCollection<T> implements FixGroupSource<T> {
+    private final CharSequence fixMessage;
+    private final int position;
+    private final int size;
+    private final FixBlockDecoder<T> decoder;
+    private final int componentTag;
+    private final Class<T> componentType;
+    private final NativeFixFieldExtractor extractor;
+
+    /**
+     * Creates a view of a complex group, the entries of which are decoded using the given decoder.
+     */
+    static <T> LazyGroup<T> of(CharSequence fixMessage, int position, int size, FixBlockDecoder<T> decoder) {
+        return new LazyGroup<>(fixMessage, position, size, decoder, -1, null, null);
+    }
+
+    /**
+     * Creates a view of a simple group, the values of which are converted using the given extractor.
+     */
+    static <T> LazyGroup<T> of(CharSequence fixMessage,
+                               int position,
+                               int size,
+                               int componentTag,
+                               Class<T> componentType,
+                               NativeFixFieldExtractor extractor) {
+        return new LazyGroup<>(fixMessage, position, size, null, componentTag, componentType, extractor);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        final FieldCursor cursor = FieldCursor.create(fixMessage, position);
+        return new Iterator<T>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (next == size) {
+                    throw new NoSuchElementException();
+                }
+                next++;
+                if (decoder != null) {
+                    return decoder.decodeEntry(cursor);
+                }
+                FixBlockDecoder.nextGroupValue(cursor, componentTag);
+                return (T) extractor.convert(cursor, componentType, false);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Repeating group views are read-only");
+            }
+        };
+    }
+
+    private LazyGroup(CharSequence fixMessage,
+                      int position,
+                      int size,
+                      FixBlockDecoder<T> decoder,
+                      int componentTag,
+                      Class<T> componentType,
+                      NativeFixFieldExtractor extractor) {
+        this.fixMessage = fixMessage;
+        this.position = position;
+        this.size = size;
+        this.decoder = decoder;
+        this.componentTag = componentTag;
+        this.componentType = componentType;
+        this.extractor = extractor;
+    }
+}
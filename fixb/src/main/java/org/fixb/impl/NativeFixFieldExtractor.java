@@ -23,6 +23,8 @@ import org.joda.time.*;
 
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * An implementation of FixFieldExtractor that is used to extract field values straight from a raw string representation
@@ -33,14 +35,25 @@ import java.util.*;
  */
 public class NativeFixFieldExtractor implements FixFieldExtractor<String> {
     private final FixEnumDictionary fixEnumDictionary;
+    private final StringInternTable internTable;
+    private final ConcurrentMap<FixBlockMeta<?>, FixBlockDecoder<?>> decoders = new ConcurrentHashMap<>();
 
     public NativeFixFieldExtractor(FixEnumDictionary fixEnumDictionary) {
+        this(fixEnumDictionary, new StringInternTable());
+    }
+
+    /**
+     * @param fixEnumDictionary a dictionary of FIX enum bindings
+     * @param internTable       a table used to resolve canonical values of fields marked with @FixField(intern = true)
+     */
+    public NativeFixFieldExtractor(FixEnumDictionary fixEnumDictionary, StringInternTable internTable) {
         this.fixEnumDictionary = fixEnumDictionary;
+        this.internTable = internTable;
     }
 
     @Override
     public <T> T getFieldValue(String fixMessage, Class<T> type, int tag, boolean optional) {
-        return extractFieldValue(FieldCursor.create(fixMessage), tag, type, optional);
+        return extractFieldValue(FieldCursor.create(fixMessage), tag, type, optional, false);
     }
 
     @Override
@@ -61,34 +74,69 @@ public class NativeFixFieldExtractor implements FixFieldExtractor<String> {
      * @param <T>           a type of object to create
      * @return an instance of type T populated with values from the given FieldCursor.
      */
-    @SuppressWarnings("unchecked")
     <T> T extractFixBlock(FieldCursor cursor, FixBlockMeta<T> componentMeta) {
-        final Map<FixFieldMeta, Object> values = new LinkedHashMap<>(componentMeta.getFields().size());
-
-        for (FixFieldMeta f : componentMeta.getFields()) {
-            if (f instanceof FixConstantFieldMeta) continue;
-
-            final Object fieldValue;
-            if (f.isGroup()) {
-                final FixGroupMeta groupMeta = (FixGroupMeta) f;
-                fieldValue = groupMeta.isSimple() ?
-                        getGroups(cursor,
-                                (Class<Collection<Object>>) groupMeta.getType(),
-                                groupMeta.getTag(),
-                                (Class<Object>) groupMeta.getComponentType(),
-                                groupMeta.getComponentTag(),
-                                groupMeta.isOptional()) :
-                        getGroups(cursor,
-                                (Class<Collection<Object>>) groupMeta.getType(),
-                                groupMeta.getTag(),
-                                (FixBlockMeta<Object>) groupMeta.getComponentMeta(),
-                                groupMeta.isOptional());
-            } else {
-                fieldValue = extractFieldValue(cursor, f.getTag(), f.getType(), f.isOptional());
+        return decoderFor(componentMeta).decode(cursor);
+    }
+
+    /**
+     * Extracts values using the given FieldCursor that are defined by the given FixBlockMeta and sets them to the given
+     * object. Collections of repeating groups already referenced by the target object are cleared and re-filled.
+     *
+     * @param cursor        a FieldCursor operating on the FIX message of interest
+     * @param componentMeta a metadata with FIX mappings of the target object (must not be constructor based)
+     * @param target        the object to populate
+     * @param <T>           a type of object to populate
+     * @return the given target object.
+     */
+    <T> T extractFixBlockInto(FieldCursor cursor, FixBlockMeta<T> componentMeta, T target) {
+        return decoderFor(componentMeta).decodeInto(cursor, target);
+    }
+
+    /**
+     * Walks the remaining fields of the message read by the given cursor as fields of the given block, using the same
+     * scoping rules for group entries as the decoding of objects, and passes them to the given visitor. It lets other
+     * representations of messages (e.g. columnar batches) be filled without a parser of their own.
+     *
+     * @throws FixException if a required field is missing or a group has fewer entries than declared.
+     */
+    public void visit(FieldCursor cursor, FixBlockMeta<?> meta, FixFieldVisitor visitor) {
+        decoderFor(meta).visit(cursor, visitor);
+    }
+
+    /**
+     * @return a decoder compiled from the given block meta (decoders are created once and cached).
+     */
+    @SuppressWarnings("unchecked")
+    <T> FixBlockDecoder<T> decoderFor(FixBlockMeta<T> meta) {
+        FixBlockDecoder<T> decoder = (FixBlockDecoder<T>) decoders.get(meta);
+        if (decoder == null) {
+            decoder = new FixBlockDecoder<>(meta, this);
+            final FixBlockDecoder<T> existing = (FixBlockDecoder<T>) decoders.putIfAbsent(meta, decoder);
+            if (existing != null) {
+                decoder = existing;
             }
-            values.put(f, fieldValue);
         }
-        return componentMeta.createModel(values);
+        return decoder;
+    }
+
+    /**
+     * Converts the last value read by the given cursor into the given type.
+     *
+     * @return the converted value or null if the type is not supported.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getFieldValue(FieldCursor cursor, Class<T> type) {
+        return (T) convert(cursor, type, false);
+    }
+
+    /**
+     * Converts the last value read by the given cursor into the given type.
+     *
+     * @param intern whether String and CharSequence values should be resolved through the intern table
+     * @return the converted value or null if the type is not supported.
+     */
+    Object convert(FieldCursor cursor, Class<?> type, boolean intern) {
+        return intern ? toInternedType(cursor, type) : toRequestedType(cursor, type);
     }
 
     private <T, C extends Collection<T>> C getGroups(FieldCursor cursor, Class<C> type, int groupTag, FixBlockMeta<T> componentMeta, boolean optional) {
@@ -96,42 +144,45 @@ public class NativeFixFieldExtractor implements FixFieldExtractor<String> {
             if (optional) {
                 return CollectionFactory.createCollection(type);
             } else {
-                throw FixException.fieldNotFound(groupTag, cursor.fixMessage);
+                throw FixException.fieldNotFound(groupTag, cursor.fixMessage.toString());
             }
         }
 
-        final int count = Integer.parseInt(cursor.lastValue);
-        final C result = CollectionFactory.createCollection(type);
-
-        for (int i = 0; i < count; i++) {
-            result.add(extractFixBlock(cursor, componentMeta));
-        }
-        return result;
+        final int count = cursor.lastValueAsInt();
+        return decoderFor(componentMeta).decodeGroup(cursor, count, CollectionFactory.createCollection(type, count));
     }
 
+    @SuppressWarnings("unchecked")
     private <T, C extends Collection<T>> C getGroups(FieldCursor cursor, Class<C> type, int groupTag, Class<T> elementType, int elementTag, boolean optional) {
         if (!cursor.nextField(groupTag)) {
             if (optional) {
                 return CollectionFactory.createCollection(type);
             } else {
-                throw FixException.fieldNotFound(groupTag, cursor.fixMessage);
+                throw FixException.fieldNotFound(groupTag, cursor.fixMessage.toString());
             }
         }
 
-        final int count = Integer.parseInt(cursor.lastValue);
-        final C result = CollectionFactory.createCollection(type);
-
-        for (int i = 0; i < count && cursor.nextField(elementTag); i++) {
-            result.add(toRequestedType(cursor.lastValue, elementType));
+        // unlike the decoding of blocks, this method tolerates fewer values than declared, as it always did
+        final int count = cursor.lastValueAsInt();
+        final C result = CollectionFactory.createCollection(type, count);
+        for (int i = 0; i < count && FixBlockDecoder.nextGroupValue(cursor, elementTag); i++) {
+            result.add((T) convert(cursor, elementType, false));
         }
-
         return result;
     }
 
-    private <T> T extractFieldValue(FieldCursor cursor, int tag, Class<T> type, boolean optional) {
+    static <C extends Collection<?>> C newOrCleared(Class<C> type, C reused, int expectedSize) {
+        if (reused == null) {
+            return CollectionFactory.createCollection(type, expectedSize);
+        }
+        reused.clear();
+        return reused;
+    }
+
+    private <T> T extractFieldValue(FieldCursor cursor, int tag, Class<T> type, boolean optional, boolean intern) {
         T value = null;
         if (cursor.nextField(tag)) {
-            value = toRequestedType(cursor.lastValue, type);
+            value = intern ? toInternedType(cursor, type) : toRequestedType(cursor, type);
         }
 
         if (value != null) {
@@ -139,11 +190,35 @@ public class NativeFixFieldExtractor implements FixFieldExtractor<String> {
         } else if (optional) {
             return null;
         } else {
-            throw FixException.fieldNotFound(tag, cursor.fixMessage);
+            throw FixException.fieldNotFound(tag, cursor.fixMessage.toString());
         }
 
     }
 
+    /**
+     * Converts the last value read by the given cursor into the requested type. CharSequence and AsciiString values
+     * are returned as flyweights pointing into the FIX message, all other types are converted from a String.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T toRequestedType(FieldCursor cursor, Class<T> type) {
+        if (type == CharSequence.class || type == AsciiString.class) return (T) cursor.lastValueSequence();
+        if (type == Integer.class || type == int.class) return (T) (Integer) cursor.lastValueAsInt();
+        if (type == Long.class || type == long.class) return (T) (Long) cursor.lastValueAsLong();
+        return toRequestedType(cursor.lastValue(), type);
+    }
+
+    /**
+     * Resolves the last value read by the given cursor through the intern table if the requested type is String or
+     * CharSequence, otherwise converts it as usual.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T toInternedType(FieldCursor cursor, Class<T> type) {
+        if (type == String.class || type == CharSequence.class) {
+            return (T) internTable.intern(cursor.fixMessage, cursor.lastValueStart(), cursor.lastValueEnd());
+        }
+        return toRequestedType(cursor, type);
+    }
+
     @SuppressWarnings("unchecked")
     private <T> T toRequestedType(String value, Class<T> type) {
         if (type == String.class) return (T) value;
@@ -152,6 +227,7 @@ public class NativeFixFieldExtractor implements FixFieldExtractor<String> {
         if (type == Byte.class || type == byte.class) return (T) Byte.valueOf(value);
         if (type == Short.class || type == short.class) return (T) Short.valueOf(value);
         if (type == Integer.class || type == int.class) return (T) Integer.valueOf(value);
+        if (type == Long.class || type == long.class) return (T) Long.valueOf(value);
         if (type == Double.class || type == double.class) return (T) Double.valueOf(value);
         if (type == Float.class || type == float.class) return (T) Float.valueOf(value);
         if (type == BigDecimal.class) return (T) new BigDecimal(value);
@@ -18,10 +18,13 @@ package org.fixb.impl;
 
 import org.fixb.FixException;
 import org.fixb.FixMessageBuilder;
+import org.fixb.UnknownFields;
+import org.fixb.meta.FixBlockMeta;
 import org.fixb.meta.FixEnumDictionary;
 import org.fixb.meta.FixEnumMeta;
 import org.fixb.meta.FixFieldMeta;
 import org.fixb.meta.FixGroupMeta;
+import org.fixb.meta.FixGroupValues;
 import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
 import org.joda.time.LocalDateTime;
@@ -29,12 +32,16 @@ import org.joda.time.LocalTime;
 import org.joda.time.format.DateTimeFormatterBuilder;
 
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
 import static org.fixb.FixConstants.*;
+import static org.fixb.impl.AsciiEncoding.put;
+import static org.fixb.impl.AsciiEncoding.putCheckSum;
+import static org.fixb.impl.AsciiEncoding.putInt;
 import static org.fixb.impl.FormatConstants.*;
 
 /**
@@ -48,6 +55,7 @@ public final class NativeFixMessageBuilder extends FixMessageBuilder<String> {
     private final StringBuilder head = new StringBuilder();
     private final StringBuilder body;
     private String beginString;
+    private boolean reusable;
 
     public static final class Factory implements FixMessageBuilder.Factory<String, NativeFixMessageBuilder> {
 
@@ -68,18 +76,33 @@ public final class NativeFixMessageBuilder extends FixMessageBuilder<String> {
         }
     }
 
+    /**
+     * Creates a builder that is meant to be re-used for many messages by a single thread: build() only validates the
+     * message and returns null, while the message is written out by {@link #writeTo(java.nio.ByteBuffer)} without
+     * creating a String; {@link #reset()} prepares the builder for the next message.
+     */
+    static NativeFixMessageBuilder reusable(FixEnumDictionary fixEnumDictionary) {
+        final NativeFixMessageBuilder builder = new NativeFixMessageBuilder(fixEnumDictionary, new StringBuilder());
+        builder.reusable = true;
+        return builder;
+    }
+
     @Override
     public String build() {
         if (beginString == null) {
             throw new FixException("BeginString (tag " + BEGIN_STRING_TAG + ") is missing");
         }
+        if (reusable) {
+            return null;
+        }
 
         final StringBuilder headAndBody = head.append(body);
         final int bodyLength = headAndBody.length();
         final StringBuilder beginString = appendTag(new StringBuilder(bodyLength + 10), BEGIN_STRING_TAG).append(this.beginString).append(SOH);
         final StringBuilder message = appendTag(beginString, BODY_LENGTH_TAG).append(bodyLength).append(SOH).append(headAndBody);
 
-        return appendTag(message, CHECKSUM_TAG).append(generateCheckSum(message)).toString();
+        final int checkSum = AsciiEncoding.sum(message, 0, message.length()) % 256;
+        return appendTag(message, CHECKSUM_TAG).append(formatCheckSum(checkSum)).toString();
     }
 
     @Override
@@ -94,6 +117,12 @@ public final class NativeFixMessageBuilder extends FixMessageBuilder<String> {
         return this;
     }
 
+    @Override
+    public FixMessageBuilder<String> setField(int tag, long value, boolean header) {
+        appendTag(tag, header).append(value).append(SOH);
+        return this;
+    }
+
     @Override
     public FixMessageBuilder<String> setField(int tag, double value, boolean header) {
         appendTag(tag, header).append(value).append(SOH);
@@ -152,6 +181,15 @@ public final class NativeFixMessageBuilder extends FixMessageBuilder<String> {
         return this;
     }
 
+    @Override
+    public FixMessageBuilder<String> setField(int tag, CharSequence value, boolean header) {
+        if (tag == BEGIN_STRING_TAG) {
+            return setField(tag, value.toString(), header);
+        }
+        appendTag(tag, header).append(value).append(SOH);
+        return this;
+    }
+
     @Override
     public FixMessageBuilder<String> setField(int tag, Enum<?> value, boolean header) {
         FixEnumMeta<? extends Enum<?>> fixEnumMeta = fixEnumDictionary.getFixEnumMeta(value.getDeclaringClass());
@@ -162,10 +200,26 @@ public final class NativeFixMessageBuilder extends FixMessageBuilder<String> {
 
     @Override
     public FixMessageBuilder<String> setGroups(int tag, int componentTag, Collection<?> collection, boolean header) {
-        if (!collection.isEmpty()) {
+        if (collection != null && !collection.isEmpty()) {
             setField(tag, collection.size(), header);
-            for (Object o : collection) {
-                setField(componentTag, o, header);
+            final Object array = (collection instanceof FixGroupValues.ArrayView) ?
+                    ((FixGroupValues.ArrayView) collection).array() : null;
+            if (array instanceof int[]) {
+                for (int value : (int[]) array) {
+                    setField(componentTag, value, header);
+                }
+            } else if (array instanceof long[]) {
+                for (long value : (long[]) array) {
+                    setField(componentTag, value, header);
+                }
+            } else if (array instanceof double[]) {
+                for (double value : (double[]) array) {
+                    setField(componentTag, value, header);
+                }
+            } else {
+                for (Object o : collection) {
+                    setField(componentTag, o, header);
+                }
             }
         }
         return this;
@@ -173,26 +227,119 @@ public final class NativeFixMessageBuilder extends FixMessageBuilder<String> {
 
     @Override
     public FixMessageBuilder<String> setGroups(int tag, List<FixFieldMeta> fields, Collection<?> collection, boolean header) {
-        if (!collection.isEmpty()) {
+        return setEntries(tag, fields, null, collection, header);
+    }
+
+    /**
+     * Copies the raw unknown fields of each entry verbatim after the mapped fields of the entry.
+     */
+    @Override
+    public FixMessageBuilder<String> setGroups(int tag, FixBlockMeta<?> componentMeta, Collection<?> collection, boolean header) {
+        return setEntries(tag, componentMeta.getFields(), componentMeta, collection, header);
+    }
+
+    private FixMessageBuilder<String> setEntries(int tag,
+                                                 List<FixFieldMeta> fields,
+                                                 FixBlockMeta<?> componentMeta,
+                                                 Collection<?> collection,
+                                                 boolean header) {
+        if (collection != null && !collection.isEmpty()) {
             setField(tag, collection.size(), header);
             for (Object o : collection) {
                 for (FixFieldMeta fieldMeta : fields) {
                     if (fieldMeta.isGroup()) {
                         final FixGroupMeta groupMeta = (FixGroupMeta) fieldMeta;
                         if (groupMeta.isSimple()) {
-                            setGroups(groupMeta.getTag(), groupMeta.getComponentTag(), (Collection<?>) o, header);
+                            setGroups(groupMeta.getTag(), groupMeta.getComponentTag(), groupMeta.getValue(o), header);
                         } else {
-                            setGroups(groupMeta.getTag(), groupMeta.getComponentMeta().getFields(), (Collection<?>) o, header);
+                            setGroups(groupMeta.getTag(), groupMeta.getComponentMeta(), groupMeta.getValue(o), header);
                         }
                     } else {
                         setField(fieldMeta.getTag(), fieldMeta.getValue(o), header);
                     }
                 }
+                final UnknownFields unknownFields = (componentMeta == null) ? null : componentMeta.getUnknownFields(o);
+                if (unknownFields != null) {
+                    unknownFields.appendTo(header ? head : body);
+                }
             }
         }
         return this;
     }
 
+    /**
+     * Copies the raw unknown fields verbatim: the standard header fields to the end of the header, the others to the end
+     * of the body.
+     */
+    @Override
+    public FixMessageBuilder<String> setUnknownFields(UnknownFields fields) {
+        fields.appendTo(head, true);
+        fields.appendTo(body, false);
+        return this;
+    }
+
+    /**
+     * @return the buffer with the body fields set so far (it is used by NativeFixStreamEncoder to format fields one by
+     *         one without building the whole message).
+     */
+    StringBuilder body() {
+        return body;
+    }
+
+    /**
+     * Clears the fields set so far.
+     */
+    void reset() {
+        head.setLength(0);
+        body.setLength(0);
+        beginString = null;
+    }
+
+    /**
+     * Clears the fields set so far and starts the body with the given FIX fields, just like a builder created by
+     * {@link Factory#createWithMessage(String)}.
+     */
+    void reset(String fixMessage) {
+        reset();
+        body.append(fixMessage);
+    }
+
+    /**
+     * Writes the complete message (including BodyLength and CheckSum) as ASCII bytes to the given buffer starting at
+     * its current position.
+     *
+     * @return the number of bytes written.
+     * @throws java.nio.BufferOverflowException if the message does not fit in the remaining space of the buffer.
+     */
+    int writeTo(ByteBuffer buffer) {
+        final int start = buffer.position();
+        int sum = putInt(buffer, BEGIN_STRING_TAG) + put(buffer, '=') + put(buffer, beginString) + put(buffer, SOH);
+        sum += putInt(buffer, BODY_LENGTH_TAG) + put(buffer, '=') + putInt(buffer, head.length() + body.length()) + put(buffer, SOH);
+        sum += put(buffer, head) + put(buffer, body);
+        putCheckSum(buffer, sum);
+        return buffer.position() - start;
+    }
+
+    /**
+     * @return the length of the header and the body fields set so far.
+     */
+    int bodyLength() {
+        return head.length() + body.length();
+    }
+
+    /**
+     * Writes the header and the body fields (i.e. the part of the message covered by BodyLength, without BeginString,
+     * BodyLength and CheckSum) as ASCII bytes to the given buffer starting at its current position.
+     *
+     * @return the number of bytes written.
+     * @throws java.nio.BufferOverflowException if the fields do not fit in the remaining space of the buffer.
+     */
+    int writeBodyTo(ByteBuffer buffer) {
+        put(buffer, head);
+        put(buffer, body);
+        return bodyLength();
+    }
+
     private NativeFixMessageBuilder(FixEnumDictionary fixEnumDictionary, final StringBuilder body) {
         this.fixEnumDictionary = fixEnumDictionary;
         this.body = body;
@@ -206,12 +353,14 @@ public final class NativeFixMessageBuilder extends FixMessageBuilder<String> {
         return buf.append(tag).append('=');
     }
 
-    private int generateCheckSum(StringBuilder buf) {
-        int sum = 0;
-        for (int idx = 0; idx < buf.length(); idx++) {
-            sum += buf.charAt(idx);
-        }
-        return sum % 256;
+    /**
+     * @return the given CheckSum(10) value formatted as three digits.
+     */
+    static String formatCheckSum(int checkSum) {
+        return new String(new char[]{
+                (char) ('0' + checkSum / 100),
+                (char) ('0' + checkSum / 10 % 10),
+                (char) ('0' + checkSum % 10)});
     }
 
 }
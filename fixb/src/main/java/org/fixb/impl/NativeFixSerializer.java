@@ -18,36 +18,90 @@ package org.fixb.impl;
 
 import org.fixb.FixAdapter;
 import org.fixb.FixException;
+import org.fixb.FixMessageBuilder;
 import org.fixb.FixSerializer;
 import org.fixb.adapter.CommonFixAdapter;
 import org.fixb.meta.FixMessageMeta;
 import org.fixb.meta.FixMetaDictionary;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.fixb.FixConstants.MSG_SEQ_NUM_TAG;
 import static org.fixb.FixConstants.MSG_TYPE_TAG;
+import static org.fixb.FixConstants.SENDING_TIME_TAG;
 
 /**
  * An implementation of FixSerializer that is used to serialize/deserialize instances of FIX annotated classes to/from
  * raw FIX messages.
  *
+ * Besides String messages it can read messages directly from byte buffers and decode them into existing instances of
+ * classes bound by field injection, so that the same objects can be re-used for many messages. The latter can be done
+ * either explicitly with deserializeInto() or by enabling an object pool for a message type, in which case
+ * deserialize() takes instances from the pool and release() puts them back.
+ *
+ * Messages with huge repeating groups can be serialized straight to an OutputStream or a channel with constant memory.
+ *
  * @author vladyslav.yatsenko
  */
 public class NativeFixSerializer<T> implements FixSerializer<T> {
     private final FixAdapter<Object, String> fixAdapter;
+    private final FixAdapter<Object, String> reusingFixAdapter;
+    private final ThreadLocal<NativeFixMessageBuilder> reusableBuilders;
     private final NativeFixFieldExtractor extractor;
+    private final NativeFixStreamEncoder streamEncoder;
     private final FixMetaDictionary fixMetaDictionary;
+    private final String protocolVersion;
+    private final ConcurrentMap<Class<?>, ObjectPool<Object>> objectPools = new ConcurrentHashMap<>();
+    private final Set<Class<?>> patchableTypes = Collections.newSetFromMap(new ConcurrentHashMap<Class<?>, Boolean>());
 
     /**
      * @param protocolVersion   a FIX protocol version (used to build a header of the resulting FIX messages)
      * @param fixMetaDictionary a FIX bindings meta dictionary
      */
-    public NativeFixSerializer(String protocolVersion, FixMetaDictionary fixMetaDictionary) {
+    public NativeFixSerializer(String protocolVersion, final FixMetaDictionary fixMetaDictionary) {
         this.fixMetaDictionary = fixMetaDictionary;
+        this.protocolVersion = protocolVersion;
         this.extractor = new NativeFixFieldExtractor(fixMetaDictionary);
+        this.streamEncoder = new NativeFixStreamEncoder(protocolVersion, fixMetaDictionary);
         this.fixAdapter = new CommonFixAdapter<>(
                 protocolVersion,
                 extractor,
                 new NativeFixMessageBuilder.Factory(fixMetaDictionary),
                 fixMetaDictionary);
+        this.reusableBuilders = new ThreadLocal<NativeFixMessageBuilder>() {
+            @Override
+            protected NativeFixMessageBuilder initialValue() {
+                return NativeFixMessageBuilder.reusable(fixMetaDictionary);
+            }
+        };
+        this.reusingFixAdapter = new CommonFixAdapter<>(
+                protocolVersion,
+                extractor,
+                new FixMessageBuilder.Factory<String, NativeFixMessageBuilder>() {
+                    @Override
+                    public NativeFixMessageBuilder create() {
+                        final NativeFixMessageBuilder builder = reusableBuilders.get();
+                        builder.reset();
+                        return builder;
+                    }
+
+                    @Override
+                    public NativeFixMessageBuilder createWithMessage(String fixMessage) {
+                        final NativeFixMessageBuilder builder = reusableBuilders.get();
+                        builder.reset(fixMessage);
+                        return builder;
+                    }
+                },
+                fixMetaDictionary);
     }
 
     @Override
@@ -55,15 +109,224 @@ public class NativeFixSerializer<T> implements FixSerializer<T> {
         return fixAdapter.toFix(message);
     }
 
+    /**
+     * Serializes the given object directly to the given stream without building the whole message in memory, which
+     * keeps the heap usage constant for messages with huge repeating groups. The result is the same as the one of
+     * {@link #serialize(Object)}.
+     *
+     * Since BodyLength(9) precedes the body, the object is traversed twice: the first time to compute the body length
+     * and the second time to write the message. Collections of repeating groups must therefore return the same elements
+     * on both iterations, but they don't have to hold them in memory (e.g. a collection view generating its elements).
+     *
+     * @param message an object to serialize
+     * @param out     a stream to write the FIX message to (it is neither flushed nor closed)
+     * @throws IOException if the stream fails.
+     */
+    public void serialize(T message, OutputStream out) throws IOException {
+        streamEncoder.encode(message, out);
+    }
+
+    /**
+     * The same as {@link #serialize(Object, java.io.OutputStream)}, but writes the FIX message to the given channel.
+     */
+    public void serialize(T message, WritableByteChannel channel) throws IOException {
+        streamEncoder.encode(message, Channels.newOutputStream(channel));
+    }
+
+    /**
+     * Serializes the given object as ASCII bytes into the given buffer, starting at its current position. Unlike
+     * {@link #serialize(Object)}, it does not create a String: the fields are formatted by a builder that is re-used
+     * by the calling thread, which makes it suitable for pre-allocated I/O buffers on latency sensitive paths.
+     *
+     * @param message an object to serialize
+     * @param buffer  a buffer to write the FIX message to
+     * @return the number of bytes written.
+     * @throws java.nio.BufferOverflowException if the message does not fit in the remaining space of the buffer (the
+     *                                          position of the buffer is left unchanged in that case).
+     */
+    public int serialize(T message, ByteBuffer buffer) {
+        reusingFixAdapter.toFix(message);
+        final int start = buffer.position();
+        try {
+            return reusableBuilders.get().writeTo(buffer);
+        } catch (BufferOverflowException e) {
+            buffer.position(start);
+            throw e;
+        }
+    }
+
+    /**
+     * The same as {@link #serialize(Object, java.nio.ByteBuffer)}, but only writes the part of the message covered by
+     * BodyLength(9), i.e. the header fields starting with MsgType(35) followed by the body fields. It is meant for
+     * callers that complete the message themselves, e.g. to stamp MsgSeqNum(34) when the message is sent.
+     *
+     * @return the number of bytes written.
+     * @throws java.nio.BufferOverflowException if the message does not fit in the remaining space of the buffer (the
+     *                                          position of the buffer is left unchanged in that case).
+     */
+    public int serializeBody(T message, ByteBuffer buffer) {
+        reusingFixAdapter.toFix(message);
+        final int start = buffer.position();
+        try {
+            return reusableBuilders.get().writeBodyTo(buffer);
+        } catch (BufferOverflowException e) {
+            buffer.position(start);
+            throw e;
+        }
+    }
+
+    /**
+     * Serializes the given object into a message with fixed-width placeholders for MsgSeqNum(34) and SendingTime(52)
+     * following MsgType(35), which can be patched in place when the message is sent. The FIX classes must not bind
+     * these tags themselves.
+     *
+     * @param message an object to serialize
+     * @return the pre-encoded message.
+     * @throws FixException if the class of the given object binds MsgSeqNum(34) or SendingTime(52).
+     */
+    public PatchableFixMessage serializePatchable(T message) {
+        if (!patchableTypes.contains(message.getClass())) {
+            checkNotBound(message.getClass(), MSG_SEQ_NUM_TAG, SENDING_TIME_TAG);
+            patchableTypes.add(message.getClass());
+        }
+        reusingFixAdapter.toFix(message);
+        final NativeFixMessageBuilder builder = reusableBuilders.get();
+        final ByteBuffer body = ByteBuffer.allocate(builder.bodyLength());
+        return PatchableFixMessage.create(protocolVersion, body, builder.writeBodyTo(body));
+    }
+
+    /**
+     * Checks that the given FIX class binds none of the given tags, which is required by the callers that write those
+     * tags themselves (e.g. MsgSeqNum(34) stamped when the message is sent), as they would appear twice otherwise.
+     *
+     * @param type a FIX message class
+     * @param tags the tags written by the caller
+     * @throws FixException if the given class binds any of the given tags.
+     */
+    public void checkNotBound(Class<?> type, int... tags) {
+        final FixMessageMeta<?> meta = fixMetaDictionary.getMetaForClass(type);
+        for (int tag : tags) {
+            if (meta.hasTag(tag)) {
+                throw new FixException("Tag " + tag + " is bound by " + type.getName()
+                        + ", but it is written by the encoder and would appear twice in the message");
+            }
+        }
+    }
+
+    /**
+     * @return the FIX protocol version used as BeginString(8) of the serialized messages.
+     */
+    public String getProtocolVersion() {
+        return protocolVersion;
+    }
+
     @Override
     public T deserialize(String fixMessage) {
-        FieldCursor cursor = FieldCursor.create(fixMessage);
-        if (!cursor.nextField(MSG_TYPE_TAG)) {
-            throw new FixException("Invalid FIX message, MsgType(35) is missing in: " + fixMessage);
+        return deserialize((CharSequence) fixMessage);
+    }
+
+    /**
+     * Deserializes a FIX message read from the given region of a byte buffer. The bytes are not copied, hence
+     * CharSequence fields of the result point into the given buffer.
+     *
+     * @param buffer a buffer containing an ASCII encoded FIX message
+     * @param offset the index of the first byte of the message
+     * @param length the length of the message
+     * @return an object populated with the values from the given FIX message.
+     */
+    public T deserialize(byte[] buffer, int offset, int length) {
+        return deserialize(new AsciiString().wrap(buffer, offset, length));
+    }
+
+    /**
+     * Deserializes the given FIX message into an existing object, which must be an instance of a class bound by field
+     * injection. Collections of repeating groups referenced by the target are cleared and re-filled.
+     *
+     * @param fixMessage a FIX message to read
+     * @param target     the object to populate
+     * @return the given target object.
+     * @throws FixException if the message type does not match the type of the target.
+     */
+    public <M extends T> M deserializeInto(CharSequence fixMessage, M target) {
+        final FieldCursor cursor = FieldCursor.create(fixMessage);
+        final FixMessageMeta<M> meta = getMessageMeta(cursor);
+        if (meta.getType() != target.getClass()) {
+            throw new FixException("Expected object type: " + meta.getType() + ", received: " + target.getClass());
         }
+        return extractor.extractFixBlockInto(cursor, meta, target);
+    }
 
+    /**
+     * The same as {@link #deserializeInto(CharSequence, Object)}, but reads a FIX message from a region of a byte
+     * buffer without copying it.
+     */
+    public <M extends T> M deserializeInto(byte[] buffer, int offset, int length, M target) {
+        return deserializeInto(new AsciiString().wrap(buffer, offset, length), target);
+    }
 
-        FixMessageMeta<Object> meta = fixMetaDictionary.getMetaForMessageType(cursor.lastValue());
+    /**
+     * Deserializes the given FIX message re-using the given object when possible: if it is an instance of the class
+     * bound to the message type and that class is bound by field injection, the object is populated in place,
+     * otherwise the message is deserialized as by {@link #deserialize(String)}. It lets a caller that keeps the last
+     * decoded object (e.g. a slot of a pre-allocated buffer) avoid allocations without knowing the message type.
+     *
+     * @param fixMessage a FIX message to read
+     * @param previous   an object to re-use, or null
+     * @return an object populated with the values from the given FIX message.
+     */
+    @SuppressWarnings("unchecked")
+    public T deserialize(CharSequence fixMessage, T previous) {
+        final FieldCursor cursor = FieldCursor.create(fixMessage);
+        final FixMessageMeta<Object> meta = getMessageMeta(cursor);
+        if (previous != null && previous.getClass() == meta.getType() && !meta.isConstructorBased()) {
+            return (T) extractor.extractFixBlockInto(cursor, meta, previous);
+        }
+        final ObjectPool<Object> pool = objectPools.isEmpty() ? null : objectPools.get(meta.getType());
+        if (pool != null) {
+            final Object target = pool.acquire();
+            return (T) extractor.extractFixBlockInto(cursor, meta, (target != null) ? target : meta.createEmptyModel());
+        }
         return (T) extractor.extractFixBlock(cursor, meta);
     }
+
+    /**
+     * Enables recycling of instances of the given type: subsequent calls to deserialize() populate objects taken from
+     * a pool of the given capacity, and objects passed to {@link #release(Object)} are put back to the pool.
+     *
+     * @param type     a FIX message class bound by field injection
+     * @param capacity the maximum number of idle instances kept in the pool
+     * @throws FixException if the given type is bound by a constructor.
+     */
+    public void enableObjectPool(Class<? extends T> type, int capacity) {
+        final FixMessageMeta<? extends T> meta = fixMetaDictionary.getMetaForClass(type);
+        if (meta.isConstructorBased()) {
+            throw new FixException("Instances of " + type.getName() + " are created using a constructor and can't be re-used.");
+        }
+        objectPools.putIfAbsent(meta.getType(), new ObjectPool<>(capacity));
+    }
+
+    /**
+     * Returns the given object to the pool of its type, if object pooling is enabled for that type. The object must
+     * not be used after it has been released. Objects of other types (including types unknown to the dictionary) and
+     * null are ignored.
+     *
+     * @return true if the object was put to a pool, false otherwise.
+     */
+    public boolean release(T message) {
+        final ObjectPool<Object> pool = (message == null) ? null : objectPools.get(message.getClass());
+        return pool != null && pool.release(message);
+    }
+
+    private T deserialize(CharSequence fixMessage) {
+        return deserialize(fixMessage, null);
+    }
+
+    private <M> FixMessageMeta<M> getMessageMeta(FieldCursor cursor) {
+        if (!cursor.nextField(MSG_TYPE_TAG)) {
+            throw new FixException("Invalid FIX message, MsgType(35) is missing in: " + cursor.fixMessage);
+        }
+        final FixMessageMeta<M> meta = fixMetaDictionary.getMetaForMessageType(cursor.lastValue());
+        cursor.rewind();
+        return meta;
+    }
 }
@@ -0,0 +1,342 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fixb.impl;
+
+import org.fixb.FixAdapter;
+import org.fixb.FixMessageBuilder;
+import org.fixb.UnknownFields;
+import org.fixb.adapter.CommonFixAdapter;
+import org.fixb.meta.FixBlockMeta;
+import org.fixb.meta.FixFieldMeta;
+import org.fixb.meta.FixGroupMeta;
+import org.fixb.meta.FixMetaDictionary;
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+import org.joda.time.LocalTime;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import static org.fixb.FixConstants.BEGIN_STRING_TAG;
+import static org.fixb.FixConstants.BODY_LENGTH_TAG;
+import static org.fixb.FixConstants.CHECKSUM_TAG;
+import static org.fixb.impl.FormatConstants.SOH;
+
+/**
+ * Encodes FIX annotated objects directly to an OutputStream without building the whole message in memory, which is
+ * meant for messages with huge repeating groups (e.g. reference data snapshots with tens of thousands of entries).
+ *
+ * The fields are formatted one at a time by a NativeFixMessageBuilder, so the output is identical to the one of
+ * NativeFixSerializer.serialize(). Like the other encoding paths, it rejects characters outside of the ASCII range (see
+ * {@link AsciiEncoding}).
+ *
+ * As BodyLength(9) has to be written before the body, the message is traversed twice: the first pass only measures the
+ * fields and the second one writes them, computing CheckSum(10) on the way. The header fields, which are few, are kept
+ * by the first pass and written ahead of the body by the second one. Hence repeating groups are iterated twice and
+ * must return the same elements on both iterations, but they don't have to hold the elements in memory: a
+ * {@link org.fixb.FixGroupSource} can generate or read its entries on the fly, knowing their number in advance (the
+ * number of entries of any other Iterable is counted by an extra iteration).
+ *
+ * @author vladyslav.yatsenko
+ */
+final class NativeFixStreamEncoder {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final String protocolVersion;
+    private final FixMetaDictionary fixMetaDictionary;
+
+    /**
+     * @param protocolVersion   a FIX protocol version (used to build a header of the resulting FIX messages)
+     * @param fixMetaDictionary a FIX bindings meta dictionary
+     */
+    NativeFixStreamEncoder(String protocolVersion, FixMetaDictionary fixMetaDictionary) {
+        this.protocolVersion = protocolVersion;
+        this.fixMetaDictionary = fixMetaDictionary;
+    }
+
+    /**
+     * Encodes the given object to the given stream. The stream is neither flushed nor closed.
+     *
+     * @throws IOException if the stream fails.
+     */
+    void encode(Object message, OutputStream out) throws IOException {
+        final StreamBuilder builder = new StreamBuilder(new NativeFixMessageBuilder.Factory(fixMetaDictionary).create(), out);
+        final FixAdapter<Object, Void> adapter = new CommonFixAdapter<>(protocolVersion, null, builder, fixMetaDictionary);
+        try {
+            adapter.toFix(message);
+            final int bodyLength = builder.length;
+
+            builder.startWriting();
+            builder.write(BEGIN_STRING_TAG + "=" + protocolVersion + SOH + BODY_LENGTH_TAG + "=" + bodyLength + SOH);
+            builder.write(builder.headerFields);
+            adapter.toFix(message);
+            builder.write(CHECKSUM_TAG + "=" + NativeFixMessageBuilder.formatCheckSum((int) (builder.sum % 256)));
+            builder.flush();
+        } catch (StreamFailure e) {
+            throw (IOException) e.getCause();
+        }
+    }
+
+    /**
+     * A FixMessageBuilder that, instead of collecting the fields, either measures them (keeping the header fields) or
+     * writes the body fields to a stream.
+     */
+    private static final class StreamBuilder extends FixMessageBuilder<Void>
+            implements FixMessageBuilder.Factory<Void, StreamBuilder> {
+        private final NativeFixMessageBuilder formatter;
+        private final OutputStream out;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final StringBuilder headerFields = new StringBuilder();
+        private int buffered;
+        private boolean writing;
+        private int length;
+        private long sum;
+
+        StreamBuilder(NativeFixMessageBuilder formatter, OutputStream out) {
+            this.formatter = formatter;
+            this.out = out;
+        }
+
+        void startWriting() {
+            length = 0;
+            sum = 0;
+            writing = true;
+        }
+
+        @Override
+        public StreamBuilder create() {
+            return this;
+        }
+
+        /**
+         * The same as {@link #create()}, as a Void message carries no fields to start with.
+         */
+        @Override
+        public StreamBuilder createWithMessage(Void fixMessage) {
+            return create();
+        }
+
+        @Override
+        public Void build() {
+            return null;
+        }
+
+        @Override
+        public FixMessageBuilder<Void> setField(int tag, Object value, boolean header) {
+            if (value != null && !(header && writing)) {
+                final StringBuilder field = formatter.body();
+                formatter.setField(tag, value, false);
+                if (header) {
+                    headerFields.append(field);
+                }
+                write(field);
+                field.setLength(0);
+            }
+            return this;
+        }
+
+        @Override
+        public FixMessageBuilder<Void> setGroups(int tag, int componentTag, Collection<?> collection, boolean header) {
+            final int size = (collection != null && !(header && writing)) ? collection.size() : 0;
+            if (size > 0) {
+                setField(tag, size, header);
+                for (Object o : collection) {
+                    setField(componentTag, o, header);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public FixMessageBuilder<Void> setGroups(int tag, List<FixFieldMeta> fields, Collection<?> collection, boolean header) {
+            return setEntries(tag, fields, null, collection, header);
+        }
+
+        @Override
+        public FixMessageBuilder<Void> setGroups(int tag, FixBlockMeta<?> componentMeta, Collection<?> collection, boolean header) {
+            return setEntries(tag, componentMeta.getFields(), componentMeta, collection, header);
+        }
+
+        /**
+         * Copies the raw unknown fields the same way as NativeFixMessageBuilder: the standard header fields are kept
+         * with the other header fields, the others are written to the body.
+         */
+        @Override
+        public FixMessageBuilder<Void> setUnknownFields(UnknownFields fields) {
+            final StringBuilder field = formatter.body();
+            if (!writing) {
+                fields.appendTo(field, true);
+                headerFields.append(field);
+                write(field);
+                field.setLength(0);
+            }
+            fields.appendTo(field, false);
+            write(field);
+            field.setLength(0);
+            return this;
+        }
+
+        private FixMessageBuilder<Void> setEntries(int tag,
+                                                   List<FixFieldMeta> fields,
+                                                   FixBlockMeta<?> componentMeta,
+                                                   Collection<?> collection,
+                                                   boolean header) {
+            final int size = (collection != null && !(header && writing)) ? collection.size() : 0;
+            if (size > 0) {
+                setField(tag, size, header);
+                for (Object o : collection) {
+                    for (FixFieldMeta fieldMeta : fields) {
+                        if (fieldMeta.isGroup()) {
+                            final FixGroupMeta groupMeta = (FixGroupMeta) fieldMeta;
+                            if (groupMeta.isSimple()) {
+                                setGroups(groupMeta.getTag(), groupMeta.getComponentTag(), groupMeta.getValue(o), header);
+                            } else {
+                                setGroups(groupMeta.getTag(), groupMeta.getComponentMeta(), groupMeta.getValue(o), header);
+                            }
+                        } else {
+                            setField(fieldMeta.getTag(), fieldMeta.getValue(o), header);
+                        }
+                    }
+                    final UnknownFields unknownFields = (componentMeta == null) ? null : componentMeta.getUnknownFields(o);
+                    if (unknownFields != null && !unknownFields.isEmpty()) {
+                        final StringBuilder field = formatter.body();
+                        unknownFields.appendTo(field);
+                        if (header) {
+                            headerFields.append(field);
+                        }
+                        write(field);
+                        field.setLength(0);
+                    }
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public FixMessageBuilder<Void> setField(int tag, char value, boolean header) {
+            return setField(tag, (Object) value, header);
+        }
+
+        @Override
+        public FixMessageBuilder<Void> setField(int tag, int value, boolean header) {
+            return setField(tag, (Object) value, header);
+        }
+
+        @Override
+        public FixMessageBuilder<Void> setField(int tag, long value, boolean header) {
+            return setField(tag, (Object) value, header);
+        }
+
+        @Override
+        public FixMessageBuilder<Void> setField(int tag, double value, boolean header) {
+            return setField(tag, (Object) value, header);
+        }
+
+        @Override
+        public FixMessageBuilder<Void> setField(int tag, boolean value, boolean header) {
+            return setField(tag, (Object) value, header);
+        }
+
+        @Override
+        public FixMessageBuilder<Void> setField(int tag, BigDecimal value, boolean header) {
+            return setField(tag, (Object) value, header);
+        }
+
+        @Override
+        public FixMessageBuilder<Void> setField(int tag, LocalDate value, boolean header) {
+            return setField(tag, (Object) value, header);
+        }
+
+        @Override
+        public FixMessageBuilder<Void> setField(int tag, LocalTime value, boolean header) {
+            return setField(tag, (Object) value, header);
+        }
+
+        @Override
+        public FixMessageBuilder<Void> setField(int tag, LocalDateTime value, boolean header) {
+            return setField(tag, (Object) value, header);
+        }
+
+        @Override
+        public FixMessageBuilder<Void> setField(int tag, DateTime value, boolean header) {
+            return setField(tag, (Object) value, header);
+        }
+
+        @Override
+        public FixMessageBuilder<Void> setField(int tag, Date value, boolean header) {
+            return setField(tag, (Object) value, header);
+        }
+
+        @Override
+        public FixMessageBuilder<Void> setField(int tag, String value, boolean header) {
+            return setField(tag, (Object) value, header);
+        }
+
+        @Override
+        public FixMessageBuilder<Void> setField(int tag, CharSequence value, boolean header) {
+            return setField(tag, (Object) value, header);
+        }
+
+        @Override
+        public FixMessageBuilder<Void> setField(int tag, Enum<?> value, boolean header) {
+            return setField(tag, (Object) value, header);
+        }
+
+        private void write(CharSequence chars) {
+            final int n = chars.length();
+            for (int i = 0; i < n; i++) {
+                write(AsciiEncoding.checkAscii(chars.charAt(i)));
+            }
+        }
+
+        private void write(int b) {
+            length++;
+            sum += b;
+            if (writing) {
+                if (buffered == buffer.length) {
+                    flush();
+                }
+                buffer[buffered++] = (byte) b;
+            }
+        }
+
+        private void flush() {
+            try {
+                out.write(buffer, 0, buffered);
+                buffered = 0;
+            } catch (IOException e) {
+                throw new StreamFailure(e);
+            }
+        }
+    }
+
+    /**
+     * Carries an IOException of the output stream through the FixMessageBuilder calls.
+     */
+    private static final class StreamFailure extends RuntimeException {
+        private static final long serialVersionUID = 1;
+
+        StreamFailure(IOException cause) {
+            super(cause);
+        }
+    }
+}
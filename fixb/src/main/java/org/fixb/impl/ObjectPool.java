@@ -0,0 +1,77 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fixb.impl;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded lock-free pool of re-usable objects. Objects are never created by the pool itself: acquire() returns
+ * <code>null</code> when the pool is empty and release() drops the object when the pool is full.
+ *
+ * @param <T> the type of pooled objects
+ * @author vladyslav.yatsenko
+ */
+public class ObjectPool<T> {
+    private final AtomicReferenceArray<T> slots;
+
+    /**
+     * @param capacity the maximum number of idle objects held by the pool
+     */
+    public ObjectPool(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Pool capacity must be positive: " + capacity);
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * @return an idle object taken from the pool or <code>null</code> if the pool is empty.
+     */
+    public T acquire() {
+        for (int i = 0; i < slots.length(); i++) {
+            final T object = slots.get(i);
+            if (object != null && slots.compareAndSet(i, object, null)) {
+                return object;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the given object to the pool.
+     *
+     * @return true if the object was added to the pool, false if the pool is full.
+     */
+    public boolean release(T object) {
+        if (object == null) {
+            throw new NullPointerException("object");
+        }
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) == null && slots.compareAndSet(i, null, object)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the maximum number of idle objects held by the pool.
+     */
+    public int capacity() {
+        return slots.length();
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.fixb.FixConstants.BEGIN_STRING_TAG;
+import static org.fixb.FixConstants.BODY_LENGTH_TAG;
+import static org.fixb.FixConstants.CHECKSUM_TAG;
+import static org.fixb.FixConstants.MSG_SEQ_NUM_TAG;
+import static org.fixb.FixConstants.SENDING_TIME_TAG;
+import static org.fixb.impl.FormatConstants.SOH;
+
+/**
+ * A complete, pre-encoded FIX message with fixed-width slots for MsgSeqNum(34) and SendingTime(52), which are only
+ * known when the message is sent. The slots follow MsgType(35) and are initially filled with zeros; as their width
+ * never changes, patching them does not move any other byte nor change BodyLength(9), and CheckSum(10) is updated
+ * incrementally from the patched bytes only. Thus a message can be encoded off the critical path and the send step
+ * costs a constant number of byte writes.
+ *
+ * MsgSeqNum is written as a zero-padded ten digit number and SendingTime as a UTC timestamp with milliseconds
+ * (yyyyMMdd-HH:mm:ss.SSS). Instances are not thread-safe.
+ *
+ * @author vladyslav.yatsenko
+ * @see NativeFixSerializer#serializePatchable(Object)
+ */
+public final class PatchableFixMessage {
+    static final int SEQ_NUM_WIDTH = 10;
+    static final int SENDING_TIME_WIDTH = AsciiEncoding.TIMESTAMP_LENGTH;
+
+    private final byte[] bytes;
+    private final int seqNumOffset;
+    private final int sendingTimeOffset;
+    private final int checkSumOffset;
+    private int sum;
+
+    /**
+     * Creates a message from the given header and body fields, inserting the slots for MsgSeqNum and SendingTime after
+     * the first field, which must be MsgType(35).
+     *
+     * @param beginString a FIX protocol version
+     * @param body        the buffer with the header fields starting with MsgType followed by the body fields
+     * @param bodyLength  the length of the fields in the buffer
+     */
+    static PatchableFixMessage create(String beginString, ByteBuffer body, int bodyLength) {
+        int msgTypeEnd = 0;
+        while (body.get(msgTypeEnd) != SOH) {
+            msgTypeEnd++;
+        }
+        msgTypeEnd++;
+
+        final String slots = MSG_SEQ_NUM_TAG + "=" + zeros(SEQ_NUM_WIDTH) + SOH
+                + SENDING_TIME_TAG + "=" + zeros(8) + "-00:00:00.000" + SOH;
+        final String prefix = BEGIN_STRING_TAG + "=" + beginString + SOH
+                + BODY_LENGTH_TAG + "=" + (bodyLength + slots.length()) + SOH;
+        final byte[] bytes = new byte[prefix.length() + bodyLength + slots.length() + 6];
+
+        int i = copy(prefix, bytes, 0);
+        for (int j = 0; j < msgTypeEnd; j++) {
+            bytes[i++] = body.get(j);
+        }
+        final int slotsOffset = i;
+        i = copy(slots, bytes, i);
+        for (int j = msgTypeEnd; j < bodyLength; j++) {
+            bytes[i++] = body.get(j);
+        }
+        copy(CHECKSUM_TAG + "=000", bytes, i);
+
+        final int seqNumOffset = slotsOffset + 3;
+        return new PatchableFixMessage(bytes, seqNumOffset, seqNumOffset + SEQ_NUM_WIDTH + 4, i + 3);
+    }
+
+    /**
+     * Overwrites the value of MsgSeqNum(34).
+     *
+     * @param seqNum a non-negative sequence number
+     * @return this message.
+     */
+    public PatchableFixMessage setMsgSeqNum(int seqNum) {
+        if (seqNum < 0) {
+            throw new IllegalArgumentException("Negative MsgSeqNum: " + seqNum);
+        }
+        patchDigits(seqNumOffset, seqNum, SEQ_NUM_WIDTH);
+        updateCheckSum();
+        return this;
+    }
+
+    /**
+     * Overwrites the value of SendingTime(52).
+     *
+     * @param epochMillis the sending time as milliseconds since the epoch
+     * @return this message.
+     */
+    public PatchableFixMessage setSendingTime(long epochMillis) {
+        sum += AsciiEncoding.setTimestamp(bytes, sendingTimeOffset, epochMillis);
+        updateCheckSum();
+        return this;
+    }
+
+    /**
+     * @return the length of the message in bytes.
+     */
+    public int length() {
+        return bytes.length;
+    }
+
+    /**
+     * @return a read-only buffer wrapping the message bytes (it reflects subsequent patches).
+     */
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+
+    /**
+     * Writes the message to the given stream.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes);
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private PatchableFixMessage(byte[] bytes, int seqNumOffset, int sendingTimeOffset, int checkSumOffset) {
+        this.bytes = bytes;
+        this.seqNumOffset = seqNumOffset;
+        this.sendingTimeOffset = sendingTimeOffset;
+        this.checkSumOffset = checkSumOffset;
+        for (int i = 0; i < checkSumOffset - 3; i++) {
+            sum += bytes[i];
+        }
+        updateCheckSum();
+    }
+
+    private int patchDigits(int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            patch(i, '0' + value % 10);
+            value /= 10;
+        }
+        return offset + width;
+    }
+
+    private void patch(int index, int c) {
+        sum += c - bytes[index];
+        bytes[index] = (byte) c;
+    }
+
+    private void updateCheckSum() {
+        AsciiEncoding.setCheckSum(bytes, checkSumOffset, sum);
+    }
+
+    private static int copy(String s, byte[] bytes, int offset) {
+        for (int i = 0; i < s.length(); i++) {
+            bytes[offset++] = (byte) AsciiEncoding.checkAscii(s.charAt(i));
+        }
+        return offset;
+    }
+
+    private static String zeros(int n) {
+        return new String(new char[n]).replace('\0', '0');
+    }
+}
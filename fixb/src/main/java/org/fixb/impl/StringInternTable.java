@@ -0,0 +1,114 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fixb.impl;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded lock-free table of canonical String instances that is looked up directly by a region of a character
+ * sequence, so that a String is only created when a value is seen for the first time (or after it has been evicted).
+ * It is used to decode low-cardinality FIX fields, e.g. Symbol(55) or Currency(15), without allocation.
+ *
+ * The table is split in buckets of 4 entries. When a bucket is full one of its entries is replaced, hence the table
+ * never grows beyond its capacity. Concurrent lookups never block, at worst two equal Strings may be returned for the
+ * same value when threads race to add it.
+ *
+ * @author vladyslav.yatsenko
+ */
+public class StringInternTable {
+    public static final int DEFAULT_CAPACITY = 4096;
+    private static final int BUCKET_SIZE = 4;
+
+    private final AtomicReferenceArray<String> table;
+    private final int mask;
+
+    /**
+     * Creates a table with the default capacity.
+     */
+    public StringInternTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the maximum number of canonical values (rounded up to a power of two)
+     */
+    public StringInternTable(int capacity) {
+        if (capacity < BUCKET_SIZE) {
+            throw new IllegalArgumentException("Capacity must be at least " + BUCKET_SIZE + ": " + capacity);
+        }
+        final int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.table = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return the canonical instance of the given string.
+     */
+    public String intern(String value) {
+        return intern(value, 0, value.length());
+    }
+
+    /**
+     * Returns a canonical String with the characters of the given region of the source sequence.
+     *
+     * @param source the source character sequence
+     * @param start  the index of the first character (inclusive)
+     * @param end    the index of the last character (exclusive)
+     * @return a canonical String instance equal to <code>source.subSequence(start, end).toString()</code>.
+     */
+    public String intern(CharSequence source, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + source.charAt(i);
+        }
+        final int spread = h ^ (h >>> 16);
+        final int bucket = spread & mask & ~(BUCKET_SIZE - 1);
+
+        int free = -1;
+        for (int i = bucket; i < bucket + BUCKET_SIZE; i++) {
+            final String candidate = table.get(i);
+            if (candidate == null) {
+                if (free == -1) free = i;
+            } else if (candidate.hashCode() == h && regionEquals(candidate, source, start, end)) {
+                return candidate;
+            }
+        }
+
+        final String value = source.subSequence(start, end).toString();
+        table.lazySet(free != -1 ? free : bucket + ((spread >>> 16) & (BUCKET_SIZE - 1)), value);
+        return value;
+    }
+
+    /**
+     * @return the maximum number of values held by this table.
+     */
+    public int capacity() {
+        return table.length();
+    }
+
+    private static boolean regionEquals(String value, CharSequence source, int start, int end) {
+        if (value.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (value.charAt(i - start) != source.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
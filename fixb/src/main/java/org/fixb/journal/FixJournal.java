@@ -0,0 +1,345 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.journal;
+
+import org.fixb.FixException;
+import org.fixb.impl.FieldCursor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.fixb.FixConstants.MSG_SEQ_NUM_TAG;
+
+/**
+ * An append-only journal of the sent messages of a FIX session by MsgSeqNum(34), which serves ResendRequests.
+ *
+ * Messages are appended to memory-mapped segment files of a directory (see FixJournalSegment), hence an append is a
+ * memory copy, and the messages are persisted by the OS or forced to the storage device according to a ForcePolicy.
+ * A range of messages is resent by transferring the regions of the segment files directly to a channel (e.g. the
+ * socket of the session) with FileChannel.transferTo(), without copying them through the Java heap. The messages are
+ * transferred as they were sent, so a session that has to set PossDupFlag(43) and OrigSendingTime(122) on resent
+ * messages should read() and edit them instead.
+ *
+ * MsgSeqNums must be appended in increasing order (gaps are allowed); a session that resets its sequence numbers
+ * should start a new journal in another directory. When a journal is opened, the segments of its directory are
+ * recovered and appending continues after the last journaled message.
+ *
+ * A journal is not thread-safe.
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class FixJournal implements Closeable {
+    /**
+     * The default size of the data file of a segment (64 MB).
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    /**
+     * The average message size the index of a segment is sized for: segments of smaller messages are rolled over
+     * when their index is full.
+     */
+    static final int AVERAGE_MESSAGE_SIZE = 64;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final ForcePolicy forcePolicy;
+    private final List<FixJournalSegment> segments = new ArrayList<>();
+    private FixJournalSegment active;
+    private int lastSeqNum;
+    private int unforced;
+    private long lastForce = System.nanoTime();
+
+    /**
+     * The same as the alternative open(), but uses DEFAULT_SEGMENT_SIZE and ForcePolicy.never().
+     */
+    public static FixJournal open(Path directory) throws IOException {
+        return open(directory, DEFAULT_SEGMENT_SIZE, ForcePolicy.never());
+    }
+
+    /**
+     * Opens the journal in the given directory, which is created if it does not exist.
+     *
+     * @param directory   a directory of the segment files of the journal
+     * @param segmentSize the size of the data file of a segment, i.e. the maximum size of a message
+     * @param forcePolicy defines when the appended messages are forced to the storage device
+     * @throws IOException  if the segment files can't be read or created.
+     * @throws FixException if the directory contains invalid segment files.
+     */
+    public static FixJournal open(Path directory, int segmentSize, ForcePolicy forcePolicy) throws IOException {
+        if (segmentSize < AVERAGE_MESSAGE_SIZE) {
+            throw new IllegalArgumentException("Segment size must be at least " + AVERAGE_MESSAGE_SIZE);
+        }
+        Files.createDirectories(directory);
+        final List<Integer> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.index")) {
+            for (Path file : files) {
+                final String name = file.getFileName().toString();
+                numbers.add(Integer.parseInt(name.substring(0, name.length() - ".index".length())));
+            }
+        } catch (NumberFormatException e) {
+            throw new FixException("Unexpected file in FIX journal directory " + directory, e);
+        }
+        Collections.sort(numbers);
+
+        final FixJournal journal = new FixJournal(directory, segmentSize, forcePolicy);
+        try {
+            for (int i = 0; i < numbers.size(); i++) {
+                journal.add(FixJournalSegment.open(directory, numbers.get(i), i == numbers.size() - 1));
+            }
+            if (journal.active == null) {
+                journal.add(journal.createSegment(1));
+            }
+        } catch (IOException | RuntimeException e) {
+            journal.close();
+            throw e;
+        }
+        return journal;
+    }
+
+    /**
+     * @return the MsgSeqNum of the last journaled message or 0 if the journal is empty.
+     */
+    public int getLastSeqNum() {
+        return lastSeqNum;
+    }
+
+    /**
+     * Appends the given message, e.g. a message returned by NativeFixSerializer.serialize().
+     *
+     * @return the MsgSeqNum(34) of the message.
+     * @throws FixException if the message has no MsgSeqNum or it is not greater than the last journaled one.
+     */
+    public int append(CharSequence fixMessage) throws IOException {
+        final FieldCursor cursor = FieldCursor.create(fixMessage);
+        if (!cursor.nextField(MSG_SEQ_NUM_TAG)) {
+            throw FixException.fieldNotFound(MSG_SEQ_NUM_TAG, fixMessage.toString());
+        }
+        final int seqNum = cursor.lastValueAsInt();
+        append(seqNum, fixMessage);
+        return seqNum;
+    }
+
+    /**
+     * Appends the given message with the given MsgSeqNum.
+     *
+     * @throws FixException if the MsgSeqNum is not greater than the last journaled one or the message is longer than
+     *                      a segment.
+     */
+    public void append(int seqNum, CharSequence fixMessage) throws IOException {
+        segmentFor(seqNum, fixMessage.length()).append(seqNum, fixMessage);
+        appended(seqNum);
+    }
+
+    /**
+     * Appends the message in the given region of the given array with the given MsgSeqNum.
+     *
+     * @throws FixException if the MsgSeqNum is not greater than the last journaled one or the message is longer than
+     *                      a segment.
+     */
+    public void append(int seqNum, byte[] message, int offset, int length) throws IOException {
+        segmentFor(seqNum, length).append(seqNum, message, offset, length);
+        appended(seqNum);
+    }
+
+    /**
+     * Appends the remaining bytes of the given buffer as the message with the given MsgSeqNum. The position of the
+     * buffer is advanced to its limit.
+     *
+     * @throws FixException if the MsgSeqNum is not greater than the last journaled one or the message is longer than
+     *                      a segment.
+     */
+    public void append(int seqNum, ByteBuffer message) throws IOException {
+        segmentFor(seqNum, message.remaining()).append(seqNum, message);
+        appended(seqNum);
+    }
+
+    /**
+     * @return the message with the given MsgSeqNum or null if it is not journaled.
+     */
+    public String read(int seqNum) throws IOException {
+        final FixJournalSegment segment = segmentOf(seqNum);
+        if (segment == null) {
+            return null;
+        }
+        final int i = segment.lowerBound(seqNum);
+        return (i < segment.size() && segment.seqNumAt(i) == seqNum) ? segment.read(i) : null;
+    }
+
+    /**
+     * Transfers the journaled messages with MsgSeqNums in the given inclusive range to the given channel, which should
+     * be in blocking mode. As in ResendRequest(2), toSeqNum 0 stands for the last journaled message.
+     *
+     * @return the number of bytes transferred.
+     */
+    public long transferTo(int fromSeqNum, int toSeqNum, WritableByteChannel target) throws IOException {
+        final int to = (toSeqNum == 0) ? lastSeqNum : toSeqNum;
+        long transferred = 0;
+        for (FixJournalSegment segment : segments) {
+            if (segment.size() == 0 || segment.seqNumAt(segment.size() - 1) < fromSeqNum) {
+                continue;
+            }
+            if (segment.seqNumAt(0) > to) {
+                break;
+            }
+            final int first = segment.lowerBound(fromSeqNum);
+            final int last = segment.lowerBound(to + 1) - 1;
+            if (first <= last) {
+                transferred += segment.transferTo(first, last, target);
+            }
+        }
+        return transferred;
+    }
+
+    /**
+     * Forces all appended messages to the storage device, whatever the force policy.
+     */
+    public void force() {
+        active.force();
+        unforced = 0;
+        lastForce = System.nanoTime();
+    }
+
+    /**
+     * Forces the appended messages and closes the segment files.
+     */
+    @Override
+    public void close() throws IOException {
+        if (active != null) {
+            force();
+            active = null;
+        }
+        IOException failure = null;
+        for (FixJournalSegment segment : segments) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        segments.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private FixJournal(Path directory, int segmentSize, ForcePolicy forcePolicy) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.forcePolicy = forcePolicy;
+    }
+
+    private void add(FixJournalSegment segment) {
+        segments.add(segment);
+        active = segment;
+        if (segment.size() > 0) {
+            lastSeqNum = segment.seqNumAt(segment.size() - 1);
+        }
+    }
+
+    private FixJournalSegment createSegment(int number) throws IOException {
+        return FixJournalSegment.create(directory, number, segmentSize, segmentSize / AVERAGE_MESSAGE_SIZE);
+    }
+
+    private FixJournalSegment segmentFor(int seqNum, int length) throws IOException {
+        if (active == null) {
+            throw new IllegalStateException("The journal is closed");
+        }
+        if (seqNum <= lastSeqNum) {
+            throw new FixException("MsgSeqNum " + seqNum + " is not greater than the last journaled " + lastSeqNum);
+        }
+        if (length > segmentSize) {
+            throw new FixException("Message of " + length + " bytes is longer than a journal segment");
+        }
+        if (!active.fits(length)) {
+            active.seal();
+            add(createSegment(active.number + 1));
+        }
+        return active;
+    }
+
+    private void appended(int seqNum) {
+        lastSeqNum = seqNum;
+        unforced++;
+        if (forcePolicy.isDue(unforced, System.nanoTime() - lastForce)) {
+            force();
+        }
+    }
+
+    /**
+     * @return the segment that holds the given MsgSeqNum if it is journaled.
+     */
+    private FixJournalSegment segmentOf(int seqNum) {
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            final FixJournalSegment segment = segments.get(i);
+            if (segment.size() > 0 && segment.seqNumAt(0) <= seqNum) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Defines when the appended messages are forced to the storage device. Messages that are not forced yet survive
+     * a crash of the process, but not a crash of the OS.
+     */
+    public static final class ForcePolicy {
+        private final int messages;
+        private final long nanos;
+
+        /**
+         * @return a policy that leaves writing the messages to the OS (they are forced on close() or force() only).
+         */
+        public static ForcePolicy never() {
+            return new ForcePolicy(0, 0);
+        }
+
+        /**
+         * @return a policy that forces every appended message, which makes appends as slow as the storage device.
+         */
+        public static ForcePolicy always() {
+            return new ForcePolicy(1, 0);
+        }
+
+        /**
+         * @return a policy that forces the appended messages in batches, once the given number of messages is
+         *         appended or, on the next append, once the given interval has passed since the last force.
+         */
+        public static ForcePolicy batched(int messages, long interval, TimeUnit unit) {
+            if (messages <= 0 || interval <= 0) {
+                throw new IllegalArgumentException("messages and interval must be positive");
+            }
+            return new ForcePolicy(messages, unit.toNanos(interval));
+        }
+
+        private ForcePolicy(int messages, long nanos) {
+            this.messages = messages;
+            this.nanos = nanos;
+        }
+
+        boolean isDue(int unforced, long nanosSinceForce) {
+            return (messages > 0 && unforced >= messages) || (nanos > 0 && nanosSinceForce >= nanos);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.journal;
+
+import org.fixb.FixException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A segment of a FixJournal: a data file holding the journaled messages back to back, so that any run of consecutive
+ * messages can be transferred as one region of the file, and an index file holding a header followed by fixed-width
+ * records (MsgSeqNum, offset and length of a message) in MsgSeqNum order.
+ *
+ * Both files are created with their full size and memory-mapped. A record is written after its message, and its
+ * MsgSeqNum last, so the records of a segment end at the first record with MsgSeqNum 0. Only the index and the data
+ * of the segment being written are mapped; messages of sealed segments are read through their file channel.
+ *
+ * @author vladyslav.yatsenko
+ */
+final class FixJournalSegment implements Closeable {
+    static final int MAGIC = 0x464A4E4C;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 12;
+
+    final int number;
+    private final FileChannel dataChannel;
+    private final FileChannel indexChannel;
+    private final MappedByteBuffer index;
+    private final int dataSize;
+    private final int capacity;
+    private MappedByteBuffer data;
+    private int count;
+    private int dataLength;
+
+    /**
+     * Creates a new segment with the given number in the given directory.
+     */
+    static FixJournalSegment create(Path directory, int number, int dataSize, int capacity) throws IOException {
+        final FileChannel indexChannel = FileChannel.open(indexFile(directory, number), CREATE_NEW, READ, WRITE);
+        final MappedByteBuffer index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+        index.putInt(0, MAGIC);
+        index.putInt(4, VERSION);
+        index.putInt(8, dataSize);
+        index.putInt(12, capacity);
+        final FileChannel dataChannel = FileChannel.open(dataFile(directory, number), CREATE_NEW, READ, WRITE);
+        return new FixJournalSegment(number, dataChannel, indexChannel, index, true);
+    }
+
+    /**
+     * Opens an existing segment with the given number in the given directory.
+     *
+     * @param writable whether further messages will be appended to the segment
+     * @throws FixException if the index file is not a valid journal index.
+     */
+    static FixJournalSegment open(Path directory, int number, boolean writable) throws IOException {
+        final FileChannel indexChannel = FileChannel.open(indexFile(directory, number), READ, WRITE);
+        final MappedByteBuffer index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexChannel.size());
+        if (index.capacity() < HEADER_SIZE || index.getInt(0) != MAGIC || index.getInt(4) != VERSION) {
+            indexChannel.close();
+            throw new FixException("Not a FIX journal index: " + indexFile(directory, number));
+        }
+        final FileChannel dataChannel = FileChannel.open(dataFile(directory, number), READ, WRITE);
+        return new FixJournalSegment(number, dataChannel, indexChannel, index, writable);
+    }
+
+    static Path indexFile(Path directory, int number) {
+        return directory.resolve(String.format("%010d.index", number));
+    }
+
+    static Path dataFile(Path directory, int number) {
+        return directory.resolve(String.format("%010d.data", number));
+    }
+
+    private FixJournalSegment(int number, FileChannel dataChannel, FileChannel indexChannel, MappedByteBuffer index,
+                              boolean writable) throws IOException {
+        this.number = number;
+        this.dataChannel = dataChannel;
+        this.indexChannel = indexChannel;
+        this.index = index;
+        this.dataSize = index.getInt(8);
+        this.capacity = Math.min(index.getInt(12), (index.capacity() - HEADER_SIZE) / RECORD_SIZE);
+        while (count < capacity && seqNumAt(count) != 0) {
+            count++;
+        }
+        if (count > 0) {
+            dataLength = offsetAt(count - 1) + lengthAt(count - 1);
+        }
+        if (writable) {
+            data = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, dataSize);
+        }
+    }
+
+    /**
+     * @return the number of messages in this segment.
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * @return true if a message of the given length can be appended to this segment.
+     */
+    boolean fits(int length) {
+        return data != null && count < capacity && length <= dataSize - dataLength;
+    }
+
+    void append(int seqNum, byte[] message, int offset, int length) {
+        data.position(dataLength);
+        data.put(message, offset, length);
+        commit(seqNum, length);
+    }
+
+    void append(int seqNum, ByteBuffer message) {
+        final int length = message.remaining();
+        data.position(dataLength);
+        data.put(message);
+        commit(seqNum, length);
+    }
+
+    void append(int seqNum, CharSequence message) {
+        final int length = message.length();
+        for (int i = 0; i < length; i++) {
+            data.put(dataLength + i, (byte) message.charAt(i));
+        }
+        commit(seqNum, length);
+    }
+
+    int seqNumAt(int i) {
+        return index.getInt(HEADER_SIZE + i * RECORD_SIZE);
+    }
+
+    /**
+     * @return the position of the first message with a MsgSeqNum greater than or equal to the given one.
+     */
+    int lowerBound(int seqNum) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (seqNumAt(mid) < seqNum) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    String read(int i) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(lengthAt(i));
+        read(offsetAt(i), buffer);
+        return new String(buffer.array(), StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Transfers the messages from the given position to the given one (inclusive) to the given channel.
+     *
+     * @return the number of bytes transferred.
+     */
+    long transferTo(int from, int to, WritableByteChannel target) throws IOException {
+        final long start = offsetAt(from);
+        final long end = offsetAt(to) + lengthAt(to);
+        long position = start;
+        while (position < end) {
+            position += dataChannel.transferTo(position, end - position, target);
+        }
+        return end - start;
+    }
+
+    /**
+     * Forces the appended messages and their index records to the storage device.
+     */
+    void force() {
+        if (data != null) {
+            data.force();
+        }
+        index.force();
+    }
+
+    /**
+     * Forces this segment and unmaps its data, after which no more messages can be appended.
+     */
+    void seal() {
+        force();
+        data = null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            dataChannel.close();
+        } finally {
+            indexChannel.close();
+        }
+    }
+
+    private void commit(int seqNum, int length) {
+        final int record = HEADER_SIZE + count * RECORD_SIZE;
+        index.putInt(record + 4, dataLength);
+        index.putInt(record + 8, length);
+        index.putInt(record, seqNum);
+        dataLength += length;
+        count++;
+    }
+
+    private int offsetAt(int i) {
+        return index.getInt(HEADER_SIZE + i * RECORD_SIZE + 4);
+    }
+
+    private int lengthAt(int i) {
+        return index.getInt(HEADER_SIZE + i * RECORD_SIZE + 8);
+    }
+
+    private void read(long position, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (dataChannel.read(buffer, position + buffer.position()) < 0) {
+                throw new FixException("Journal segment " + number + " is shorter than its index");
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.log;
+
+import org.fixb.FixException;
+import org.fixb.impl.FieldCursor;
+import org.fixb.impl.NativeFixSerializer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static org.fixb.log.FixLogIndexer.*;
+
+/**
+ * A read-only view of an index written by FixLogIndexer. The index file is memory-mapped and binary searched, and only
+ * the matching messages are read from the log (and optionally decoded), so a lookup costs a few page reads whatever
+ * the size of the log. Lookups of key indexes verify the value of each candidate message, hence hash collisions never
+ * produce false matches.
+ *
+ * The records are mapped in segments of at most 1 GB, so an index is not limited by the 2 GB capacity of a single
+ * MappedByteBuffer.
+ *
+ * Instances are not thread-safe.
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class FixLogIndex implements Closeable {
+    private static final int SEGMENT_RECORDS = (1 << 30) / RECORD_SIZE;
+
+    private final FileChannel log;
+    private final MappedByteBuffer[] segments;
+    private final int segmentRecords;
+    private final int tag;
+    private final int kind;
+    private final long size;
+
+    /**
+     * Opens the given index of the given log file.
+     *
+     * @throws IOException  if the files can't be read.
+     * @throws FixException if the index file is not a valid index.
+     */
+    public static FixLogIndex open(Path logFile, Path indexFile) throws IOException {
+        return open(logFile, indexFile, SEGMENT_RECORDS);
+    }
+
+    /**
+     * The same as {@link #open(Path, Path)}, but maps the given number of records per segment.
+     */
+    static FixLogIndex open(Path logFile, Path indexFile, int segmentRecords) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile, READ)) {
+            final long fileSize = channel.size();
+            final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(fileSize, HEADER_SIZE));
+            if (fileSize < HEADER_SIZE || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new FixException("Not a FIX log index: " + indexFile);
+            }
+            final long size = header.getLong(16);
+            if (size < 0 || size > (fileSize - HEADER_SIZE) / RECORD_SIZE) {
+                throw new FixException("Truncated FIX log index: " + indexFile);
+            }
+            final MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((size + segmentRecords - 1) / segmentRecords)];
+            for (int i = 0; i < segments.length; i++) {
+                final long first = (long) i * segmentRecords;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_SIZE + first * RECORD_SIZE,
+                        Math.min(segmentRecords, size - first) * RECORD_SIZE);
+            }
+            return new FixLogIndex(FileChannel.open(logFile, READ), segments, segmentRecords,
+                    header.getInt(8), header.getInt(12), size);
+        }
+    }
+
+    /**
+     * @return the indexed tag.
+     */
+    public int getTag() {
+        return tag;
+    }
+
+    /**
+     * @return true if this is a timestamp index supporting range lookups, false if it is a key index.
+     */
+    public boolean isTimestampIndex() {
+        return kind == TIMESTAMP_INDEX;
+    }
+
+    /**
+     * @return the number of indexed messages.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Finds the messages in which the first field with the indexed tag has the given value.
+     *
+     * @return the raw messages in the order they appear in the log.
+     */
+    public List<String> find(CharSequence value) throws IOException {
+        final long key = isTimestampIndex() ? timestampKey(value) : hash(value);
+        final List<String> result = new ArrayList<>();
+        for (long i = lowerBound(key); i < size && keyAt(i) == key; i++) {
+            final String message = readMessage(i);
+            if (isTimestampIndex() || matches(message, value)) {
+                result.add(message);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the messages in which the first field with the indexed timestamp tag is within the given inclusive range.
+     *
+     * @param from a UTC timestamp, e.g. "20130101-12:00:00" or "20130101-12:00:00.000"
+     * @param to   a UTC timestamp
+     * @return the raw messages in the order of their timestamps.
+     * @throws FixException if this is not a timestamp index or the bounds are malformed.
+     */
+    public List<String> findBetween(CharSequence from, CharSequence to) throws IOException {
+        if (!isTimestampIndex()) {
+            throw new FixException("Tag " + tag + " is not indexed as a timestamp");
+        }
+        final long fromKey = timestampKey(from);
+        final long toKey = timestampKey(to);
+        if (fromKey == Long.MIN_VALUE || toKey == Long.MIN_VALUE) {
+            throw new FixException("Invalid timestamp range: " + from + " - " + to);
+        }
+        final List<String> result = new ArrayList<>();
+        for (long i = lowerBound(fromKey); i < size && keyAt(i) <= toKey; i++) {
+            result.add(readMessage(i));
+        }
+        return result;
+    }
+
+    /**
+     * The same as {@link #find(CharSequence)}, but decodes the found messages with the given serializer.
+     */
+    public <T> List<T> find(CharSequence value, NativeFixSerializer<T> serializer) throws IOException {
+        return deserialize(find(value), serializer);
+    }
+
+    /**
+     * The same as {@link #findBetween(CharSequence, CharSequence)}, but decodes the found messages with the given
+     * serializer.
+     */
+    public <T> List<T> findBetween(CharSequence from, CharSequence to, NativeFixSerializer<T> serializer) throws IOException {
+        return deserialize(findBetween(from, to), serializer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+
+    private FixLogIndex(FileChannel log, MappedByteBuffer[] segments, int segmentRecords, int tag, int kind, long size) {
+        this.log = log;
+        this.segments = segments;
+        this.segmentRecords = segmentRecords;
+        this.tag = tag;
+        this.kind = kind;
+        this.size = size;
+    }
+
+    private long lowerBound(long key) {
+        long low = 0;
+        long high = size;
+        while (low < high) {
+            final long mid = (low + high) >>> 1;
+            if (keyAt(mid) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private long keyAt(long i) {
+        return segment(i).getLong(recordPosition(i));
+    }
+
+    private String readMessage(long i) throws IOException {
+        final MappedByteBuffer segment = segment(i);
+        final int position = recordPosition(i);
+        final long offset = segment.getLong(position + 8);
+        final int length = segment.getInt(position + 16);
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (log.read(buffer, offset + buffer.position()) < 0) {
+                throw new FixException("The log is shorter than the indexed message at " + offset);
+            }
+        }
+        return new String(buffer.array(), StandardCharsets.US_ASCII);
+    }
+
+    private MappedByteBuffer segment(long i) {
+        return segments[(int) (i / segmentRecords)];
+    }
+
+    private int recordPosition(long i) {
+        return (int) (i % segmentRecords) * RECORD_SIZE;
+    }
+
+    private boolean matches(String message, CharSequence value) {
+        final FieldCursor cursor = FieldCursor.create(message);
+        return cursor.nextField(tag) && cursor.lastValue().contentEquals(value);
+    }
+
+    private static <T> List<T> deserialize(List<String> messages, NativeFixSerializer<T> serializer) {
+        final List<T> result = new ArrayList<>(messages.size());
+        for (String message : messages) {
+            result.add(serializer.deserialize(message));
+        }
+        return result;
+    }
+}
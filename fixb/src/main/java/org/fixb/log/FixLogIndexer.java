@@ -0,0 +1,288 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.log;
+
+import org.fixb.impl.AsciiString;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Builds persistent secondary indexes of a FIX log file, e.g. by ClOrdID(11), OrderID(37), Symbol(55) or
+ * SendingTime(52), which are then searched with FixLogIndex.
+ *
+ * The log is scanned once for all the requested tags. Each index is written to its own file as a header followed by
+ * fixed-width records (key, message offset, message length) sorted by key, so that it can be memory-mapped and binary
+ * searched without loading it. Two kinds of indexes are supported:
+ * <ul>
+ *     <li>key indexes, where the key of a record is a 64-bit hash of the value (only the first MAX_VALUE_LENGTH
+ *     characters are hashed), which supports lookups by exact value;</li>
+ *     <li>timestamp indexes, where the key is the UTC timestamp value (yyyyMMdd-HH:mm:ss[.SSS]) read as a number of
+ *     the form yyyyMMddHHmmssSSS, which preserves the order and supports range lookups.</li>
+ * </ul>
+ * Only the first occurrence of a tag in a message is indexed. The records of an index are collected in memory before
+ * they are sorted and written (20 bytes per message).
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class FixLogIndexer {
+    static final int MAGIC = 0x46495849;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    static final int RECORD_SIZE = 20;
+    static final int MAX_VALUE_LENGTH = 64;
+    static final int KEY_INDEX = 0;
+    static final int TIMESTAMP_INDEX = 1;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Path logFile;
+    private final List<int[]> indexes = new ArrayList<>();
+
+    /**
+     * @param logFile a FIX log file to index
+     */
+    public FixLogIndexer(Path logFile) {
+        this.logFile = logFile;
+    }
+
+    /**
+     * Requests an index for lookups by exact value of the given tag.
+     *
+     * @return this indexer.
+     */
+    public FixLogIndexer byKey(int tag) {
+        indexes.add(new int[]{tag, KEY_INDEX});
+        return this;
+    }
+
+    /**
+     * Requests an index for lookups by ranges of the UTC timestamp value of the given tag.
+     *
+     * @return this indexer.
+     */
+    public FixLogIndexer byTimestamp(int tag) {
+        indexes.add(new int[]{tag, TIMESTAMP_INDEX});
+        return this;
+    }
+
+    /**
+     * Scans the log and writes the requested indexes to the given directory (see {@link #indexFile(Path, Path, int)}).
+     *
+     * @return the number of messages found in the log.
+     * @throws IOException if the log can't be read or an index can't be written.
+     */
+    public long writeIndexes(Path indexDir) throws IOException {
+        final int[] tags = new int[indexes.size()];
+        final Records[] records = new Records[indexes.size()];
+        for (int i = 0; i < tags.length; i++) {
+            tags[i] = indexes.get(i)[0];
+            records[i] = new Records();
+        }
+        final long[] count = new long[1];
+
+        new FixLogScanner(tags, MAX_VALUE_LENGTH).scan(logFile, new FixLogScanner.Listener() {
+            private final AsciiString chars = new AsciiString();
+
+            @Override
+            public void onMessage(long offset, int length, byte[][] values, int[] valueLengths) {
+                count[0]++;
+                for (int i = 0; i < tags.length; i++) {
+                    if (valueLengths[i] >= 0) {
+                        final long key = (indexes.get(i)[1] == KEY_INDEX) ?
+                                hash(values[i], valueLengths[i]) :
+                                timestampKey(chars.wrap(values[i], 0, valueLengths[i]));
+                        if (key != Long.MIN_VALUE) {
+                            records[i].add(key, offset, length);
+                        }
+                    }
+                }
+            }
+        });
+
+        for (int i = 0; i < tags.length; i++) {
+            records[i].sort();
+            records[i].write(indexFile(indexDir, logFile, tags[i]), tags[i], indexes.get(i)[1]);
+        }
+        return count[0];
+    }
+
+    /**
+     * @return the path of the index of the given tag of the given log file in the given directory.
+     */
+    public static Path indexFile(Path indexDir, Path logFile, int tag) {
+        return indexDir.resolve(logFile.getFileName() + "." + tag + ".idx");
+    }
+
+    static long hash(byte[] value, int length) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ (value[i] & 0xFF)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    static long hash(CharSequence value) {
+        long hash = FNV_OFFSET;
+        for (int i = 0, n = Math.min(value.length(), MAX_VALUE_LENGTH); i < n; i++) {
+            hash = (hash ^ (value.charAt(i) & 0xFF)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * @return the given timestamp as a number of the form yyyyMMddHHmmssSSS or Long.MIN_VALUE if it is malformed (a
+     *         timestamp must have all the 14 digits of yyyyMMdd-HH:mm:ss, the milliseconds are optional).
+     */
+    static long timestampKey(CharSequence value) {
+        long key = 0;
+        int digits = 0;
+        int fraction = -1;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (fraction < 0) {
+                    key = key * 10 + (c - '0');
+                    digits++;
+                } else if (fraction < 3) {
+                    key = key * 10 + (c - '0');
+                    fraction++;
+                }
+            } else if (c == '.' && fraction < 0 && digits == 14) {
+                fraction = 0;
+            } else if (c != '-' && c != ':') {
+                return Long.MIN_VALUE;
+            }
+        }
+        if (digits != 14) {
+            return Long.MIN_VALUE;
+        }
+        for (int i = Math.max(fraction, 0); i < 3; i++) {
+            key *= 10;
+        }
+        return key;
+    }
+
+    /**
+     * The records of an index: parallel arrays of keys, message offsets and lengths.
+     */
+    private static final class Records {
+        private long[] keys = new long[1024];
+        private long[] offsets = new long[1024];
+        private int[] lengths = new int[1024];
+        private int size;
+
+        void add(long key, long offset, int length) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+            }
+            keys[size] = key;
+            offsets[size] = offset;
+            lengths[size] = length;
+            size++;
+        }
+
+        void sort() {
+            sort(0, size - 1);
+        }
+
+        void write(Path file, int tag, int kind) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, CREATE, WRITE, TRUNCATE_EXISTING)) {
+                final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 4096);
+                buffer.putInt(MAGIC).putInt(VERSION).putInt(tag).putInt(kind).putLong(size);
+                for (int i = 0; i < size; i++) {
+                    if (buffer.remaining() < RECORD_SIZE) {
+                        flush(channel, buffer);
+                    }
+                    buffer.putLong(keys[i]).putLong(offsets[i]).putInt(lengths[i]);
+                }
+                flush(channel, buffer);
+            }
+        }
+
+        private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Sorts the records by key and offset (quicksort falling back to insertion sort for short ranges).
+         */
+        private void sort(int from, int to) {
+            while (to - from > 16) {
+                final int mid = (from + to) >>> 1;
+                final long pivotKey = keys[mid];
+                final long pivotOffset = offsets[mid];
+                int i = from;
+                int j = to;
+                while (i <= j) {
+                    while (compare(i, pivotKey, pivotOffset) < 0) {
+                        i++;
+                    }
+                    while (compare(j, pivotKey, pivotOffset) > 0) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        swap(i++, j--);
+                    }
+                }
+                if (j - from < to - i) {
+                    sort(from, j);
+                    from = i;
+                } else {
+                    sort(i, to);
+                    to = j;
+                }
+            }
+            for (int i = from + 1; i <= to; i++) {
+                for (int j = i; j > from && compare(j - 1, keys[j], offsets[j]) > 0; j--) {
+                    swap(j - 1, j);
+                }
+            }
+        }
+
+        private int compare(int i, long key, long offset) {
+            return (keys[i] != key) ? (keys[i] < key ? -1 : 1) : (offsets[i] < offset ? -1 : (offsets[i] == offset ? 0 : 1));
+        }
+
+        private void swap(int i, int j) {
+            final long key = keys[i];
+            keys[i] = keys[j];
+            keys[j] = key;
+            final long offset = offsets[i];
+            offsets[i] = offsets[j];
+            offsets[j] = offset;
+            final int length = lengths[i];
+            lengths[i] = lengths[j];
+            lengths[j] = length;
+        }
+    }
+}
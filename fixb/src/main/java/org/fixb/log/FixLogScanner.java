@@ -0,0 +1,165 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.fixb.FixConstants.BEGIN_STRING_TAG;
+import static org.fixb.FixConstants.CHECKSUM_TAG;
+import static org.fixb.impl.FormatConstants.SOH;
+
+/**
+ * Scans a FIX log file in a single sequential pass and reports the offset and the length of each FIX message found in
+ * it together with the values of the requested tags. Anything between the messages (e.g. timestamps or session ids
+ * prefixed by a logger, line breaks) is skipped: a message starts with "8=FIX" and ends with the delimiter of its
+ * CheckSum(10) field, a line break or the end of the file. Fragments that are not well-formed FIX fields are dropped.
+ *
+ * A scanner is not thread-safe.
+ *
+ * @author vladyslav.yatsenko
+ */
+final class FixLogScanner {
+    private static final byte[] MESSAGE_START = {'8', '=', 'F', 'I', 'X'};
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Receives the messages found by the scanner.
+     */
+    interface Listener {
+        /**
+         * Called for each message.
+         *
+         * @param values       the values of the requested tags (only valid until the method returns)
+         * @param valueLengths the lengths of the values, -1 for the tags that are not present in the message
+         */
+        void onMessage(long offset, int length, byte[][] values, int[] valueLengths) throws IOException;
+    }
+
+    private final int[] tags;
+    private final byte[][] values;
+    private final int[] valueLengths;
+
+    // the scan state
+    private Listener listener;
+    private long offset;
+    private long messageStart;
+    private int matched;
+    private int previous;
+    private int tag;
+    private boolean inValue;
+    private int current;
+
+    /**
+     * @param tags           the tags, the values of which are reported for each message
+     * @param maxValueLength the maximum length of a reported value (longer values are truncated)
+     */
+    FixLogScanner(int[] tags, int maxValueLength) {
+        this.tags = tags.clone();
+        this.values = new byte[tags.length][maxValueLength];
+        this.valueLengths = new int[tags.length];
+    }
+
+    /**
+     * Scans the given file passing each message found to the given listener.
+     */
+    void scan(Path logFile, Listener listener) throws IOException {
+        this.listener = listener;
+        this.offset = 0;
+        this.messageStart = -1;
+        this.matched = 0;
+        this.previous = -1;
+        try (InputStream in = Files.newInputStream(logFile)) {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                for (int i = 0; i < n; i++) {
+                    next(buffer[i] & 0xFF);
+                }
+            }
+        }
+        if (messageStart >= 0 && tag == CHECKSUM_TAG && inValue) {
+            listener.onMessage(messageStart, (int) (offset - messageStart), values, valueLengths);
+        }
+    }
+
+    private void next(int b) throws IOException {
+        if (messageStart < 0) {
+            seekMessageStart(b);
+        } else if (b == '\n' || b == '\r') {
+            if (tag == CHECKSUM_TAG && inValue) {
+                listener.onMessage(messageStart, (int) (offset - messageStart), values, valueLengths);
+            }
+            messageStart = -1;
+        } else if (inValue) {
+            if (b == SOH) {
+                if (tag == CHECKSUM_TAG) {
+                    listener.onMessage(messageStart, (int) (offset + 1 - messageStart), values, valueLengths);
+                    messageStart = -1;
+                }
+                inValue = false;
+                tag = 0;
+                current = -1;
+            } else if (current >= 0 && valueLengths[current] < values[current].length) {
+                values[current][valueLengths[current]++] = (byte) b;
+            }
+        } else if (b == '=') {
+            inValue = true;
+            current = indexOf(tag);
+            if (current >= 0 && valueLengths[current] < 0) {
+                valueLengths[current] = 0;
+            } else {
+                current = -1;
+            }
+        } else if (b >= '0' && b <= '9') {
+            tag = tag * 10 + (b - '0');
+        } else {
+            messageStart = -1;
+        }
+        previous = b;
+        offset++;
+    }
+
+    /**
+     * Matches "8=FIX" at the beginning of a field (i.e. not preceded by a digit).
+     */
+    private void seekMessageStart(int b) {
+        if (b == MESSAGE_START[matched] && (matched > 0 || previous < '0' || previous > '9')) {
+            if (++matched == MESSAGE_START.length) {
+                messageStart = offset - MESSAGE_START.length + 1;
+                matched = 0;
+                tag = BEGIN_STRING_TAG;
+                inValue = true;
+                current = -1;
+                Arrays.fill(valueLengths, -1);
+            }
+        } else {
+            matched = (b == MESSAGE_START[0] && (previous < '0' || previous > '9')) ? 1 : 0;
+        }
+    }
+
+    private int indexOf(int tag) {
+        for (int i = 0; i < tags.length; i++) {
+            if (tags[i] == tag) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -18,6 +18,8 @@ package org.fixb.meta;
 
 import com.google.common.base.Optional;
 import org.fixb.FixException;
+import org.fixb.UnknownFields;
+import org.fixb.annotations.FixUnknownFields;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
@@ -36,6 +38,8 @@ public class FixBlockMeta<T> {
     private final Class<T> type;
     private final Optional<Constructor<T>> constructor;
     private final List<FixFieldMeta> fields;
+    private final FixFieldMeta[] fieldArray;
+    private final Optional<Field> unknownFieldsField;
 
     /**
      * The same as FixBlockMeta, but with useConstructor default to false.
@@ -57,6 +61,8 @@ public class FixBlockMeta<T> {
         this.type = type;
         this.constructor = useConstructor ? Optional.of((Constructor<T>) type.getConstructors()[0]) : Optional.<Constructor<T>>absent();
         this.fields = unmodifiableList(fields);
+        this.fieldArray = fields.toArray(new FixFieldMeta[fields.size()]);
+        this.unknownFieldsField = findUnknownFieldsField(type);
     }
 
     /**
@@ -73,106 +79,260 @@ public class FixBlockMeta<T> {
         return fields;
     }
 
+    /**
+     * @return true if the given tag is bound by a field of this block, including the fields of its components but not
+     *         the fields of its repeating group entries.
+     */
+    public boolean hasTag(int tag) {
+        for (FixFieldMeta field : fieldArray) {
+            if (field.getTag() == tag) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * @param values constructor parameter values
      * @return a domain object created using given parameter values.
      */
     public T createModel(Map<FixFieldMeta, Object> values) {
+        return createModel(valuesOf(values));
+    }
+
+    /**
+     * The same as {@link #createModel(java.util.Map)}, but takes the values as an array, which is cheaper to fill
+     * while decoding a message.
+     *
+     * @param values field values indexed by the position of the corresponding field meta in {@link #getFields()}
+     *               (values of constant fields are ignored)
+     * @return a domain object created using given parameter values.
+     */
+    public T createModel(Object[] values) {
         try {
             return (constructor.isPresent()) ?
-                    createModel(constructor.get(), values, 0) :
-                    createModel(type, values, 0);
+                    createModel(constructor.get(), values, 0, fieldArray.length, 0) :
+                    createModel(type, values, 0, fieldArray.length, 0);
         } catch (Exception e) {
-            throw new FixException("Unable to create object from FIX parameters: " + values.values(), e);
+            throw new FixException("Unable to create object from FIX parameters: " + Arrays.asList(values), e);
         }
     }
 
-    private <T> T createModel(Constructor<T> constr, Map<FixFieldMeta, Object> values, int level) throws Exception {
-        final List<Object> params = new ArrayList<>(constr.getParameterTypes().length);
+    /**
+     * @return true if instances of the related type are created using a constructor, false if fields are injected.
+     */
+    public boolean isConstructorBased() {
+        return constructor.isPresent();
+    }
 
-        final FixFieldMeta[] keys = new FixFieldMeta[values.keySet().size()];
-        values.keySet().toArray(keys);
+    /**
+     * Creates a domain object with all FIX mapped fields set to their default values. It is used to pre-allocate
+     * instances that are later populated using {@link #populateModel(Object, java.util.Map)}.
+     *
+     * @return a new domain object with default field values.
+     * @throws FixException if the related type is bound by a constructor.
+     */
+    public T createEmptyModel() {
+        checkFieldInjection();
+        try {
+            return instantiate(type, Collections.<Field, Object>emptyMap());
+        } catch (Exception e) {
+            throw new FixException("Unable to create an instance of " + type.getName(), e);
+        }
+    }
 
-        for (int i = 0; i < keys.length; i++) {
-            FixFieldMeta meta = keys[i];
-            Object value = values.get(meta);
-            if (meta instanceof FixDynamicFieldMeta) {
-                FixDynamicFieldMeta df = (FixDynamicFieldMeta) meta;
-                if (df.getPath().length == 1 + level) {
-                    params.add(value);
-                } else {
-                    Field rootField = df.getPath()[level];
-                    Map<FixFieldMeta, Object> componentValues = new LinkedHashMap<>();
-                    while (df != null && df.getPath()[level] == rootField) {
-                        componentValues.put(df, value);
-                        if (i < keys.length) {
-                            i++;
-                            if (keys.length > i) {
-                                df = (FixDynamicFieldMeta) keys[i];
-                                value = values.get(df);
-                            } else {
-                                df = null;
-                            }
-                        } else {
-                            df = null;
-                        }
+    /**
+     * Sets the fields of an existing domain object to the given values, which allows to re-use the same instance for
+     * many FIX messages. Nested components are populated in place if they already exist.
+     *
+     * @param target an instance of the related type to populate
+     * @param values field values
+     * @return the given target object.
+     * @throws FixException if the related type is bound by a constructor.
+     */
+    public T populateModel(T target, Map<FixFieldMeta, Object> values) {
+        return populateModel(target, valuesOf(values));
+    }
 
-                    }
-                    params.add(createModel(rootField.getType().getConstructors()[0], componentValues, level + 1));
+    /**
+     * The same as {@link #populateModel(Object, java.util.Map)}, but takes the values as an array indexed by the
+     * position of the corresponding field meta in {@link #getFields()}.
+     */
+    public T populateModel(T target, Object[] values) {
+        checkFieldInjection();
+        try {
+            populateModel(target, values, 0, fieldArray.length, 0);
+            return target;
+        } catch (Exception e) {
+            throw new FixException("Unable to populate object from FIX parameters: " + Arrays.asList(values), e);
+        }
+    }
+
+    /**
+     * @return true if the related type has a field annotated with @FixUnknownFields.
+     */
+    public boolean hasUnknownFields() {
+        return unknownFieldsField.isPresent();
+    }
+
+    /**
+     * @param model an instance of the related type
+     * @return the unknown fields held by the given object or null if there are none or the related type does not
+     *         declare a @FixUnknownFields field.
+     */
+    public UnknownFields getUnknownFields(Object model) {
+        if (!unknownFieldsField.isPresent()) {
+            return null;
+        }
+        try {
+            return (UnknownFields) unknownFieldsField.get().get(model);
+        } catch (IllegalAccessException e) {
+            throw new FixException("Unable to read unknown fields of " + type.getName(), e);
+        }
+    }
 
-                    if (df != null) {
-                        i--;
+    /**
+     * Sets the @FixUnknownFields field of the given object.
+     *
+     * @throws FixException if the related type does not declare a @FixUnknownFields field.
+     */
+    public void setUnknownFields(T model, UnknownFields unknownFields) {
+        if (!unknownFieldsField.isPresent()) {
+            throw new FixException(type.getName() + " has no field annotated with @FixUnknownFields");
+        }
+        try {
+            unknownFieldsField.get().set(model, unknownFields);
+        } catch (IllegalAccessException e) {
+            throw new FixException("Unable to set unknown fields of " + type.getName(), e);
+        }
+    }
+
+    private static Optional<Field> findUnknownFieldsField(Class<?> type) {
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (field.isAnnotationPresent(FixUnknownFields.class)) {
+                    if (field.getType() != UnknownFields.class) {
+                        throw new FixException("A field annotated with @FixUnknownFields must be of type "
+                                + UnknownFields.class.getName() + ": " + field);
                     }
+                    field.setAccessible(true);
+                    return Optional.of(field);
                 }
             }
         }
+        return Optional.absent();
+    }
 
-        return constr.newInstance(params.toArray());
+    private Object[] valuesOf(Map<FixFieldMeta, Object> values) {
+        final Object[] result = new Object[fieldArray.length];
+        for (int i = 0; i < fieldArray.length; i++) {
+            result[i] = values.get(fieldArray[i]);
+        }
+        return result;
     }
 
-    private <T> T createModel(Class<T> clazz, Map<FixFieldMeta, Object> values, int level) throws Exception {
-        Map<Field, Object> params = new HashMap<>(clazz.getDeclaredFields().length);
+    private void populateModel(Object target, Object[] values, int from, int to, int level) throws Exception {
+        for (int i = from; i < to; i++) {
+            if (!(fieldArray[i] instanceof FixDynamicFieldMeta)) {
+                continue;
+            }
+            final Field rootField = ((FixDynamicFieldMeta) fieldArray[i]).getPath()[level];
+            if (isLeaf(i, level)) {
+                rootField.set(target, values[i]);
+            } else {
+                final int end = componentEnd(i, to, level);
+                final Object component = rootField.get(target);
+                if (component != null) {
+                    populateModel(component, values, i, end, level + 1);
+                } else {
+                    rootField.set(target, createComponent(rootField.getType(), values, i, end, level + 1));
+                }
+                i = end - 1;
+            }
+        }
+    }
 
-        FixFieldMeta[] keys = new FixFieldMeta[values.keySet().size()];
-        values.keySet().toArray(keys);
+    private void checkFieldInjection() {
+        if (constructor.isPresent()) {
+            throw new FixException("Instances of " + type.getName() + " are created using a constructor and can't be re-used.");
+        }
+    }
 
-        for (int i = 0; i < keys.length; i++) {
-            FixFieldMeta meta = keys[i];
-            Object value = values.get(meta);
-            if (meta instanceof FixDynamicFieldMeta) {
-                FixDynamicFieldMeta df = (FixDynamicFieldMeta) meta;
-                if (df.getPath().length == 1 + level) {
-                    params.put(df.getPath()[level], value);
-                } else {
-                    Field rootField = df.getPath()[level];
-                    Map<FixFieldMeta, Object> componentValues = new LinkedHashMap<>();
-                    while (df != null && df.getPath()[level] == rootField) {
-                        componentValues.put(df, value);
-                        if (i < keys.length) {
-                            i++;
-                            if (keys.length > i) {
-                                df = (FixDynamicFieldMeta) keys[i];
-                                value = values.get(df);
-                            } else {
-                                df = null;
-                            }
-                        } else {
-                            df = null;
-                        }
+    private <T> T createModel(Constructor<T> constr, Object[] values, int from, int to, int level) throws Exception {
+        final List<Object> params = new ArrayList<>(constr.getParameterTypes().length);
 
-                    }
-                    params.put(rootField, createModel(rootField.getType().getConstructors()[0], componentValues, level + 1));
+        for (int i = from; i < to; i++) {
+            if (!(fieldArray[i] instanceof FixDynamicFieldMeta)) {
+                continue;
+            }
+            if (isLeaf(i, level)) {
+                params.add(values[i]);
+            } else {
+                final Field rootField = ((FixDynamicFieldMeta) fieldArray[i]).getPath()[level];
+                final int end = componentEnd(i, to, level);
+                params.add(createComponent(rootField.getType(), values, i, end, level + 1));
+                i = end - 1;
+            }
+        }
 
-                    if (df != null) {
-                        i--;
-                    }
-                }
+        return constr.newInstance(params.toArray());
+    }
+
+    private <T> T createModel(Class<T> clazz, Object[] values, int from, int to, int level) throws Exception {
+        final Map<Field, Object> params = new HashMap<>(clazz.getDeclaredFields().length);
+
+        for (int i = from; i < to; i++) {
+            if (!(fieldArray[i] instanceof FixDynamicFieldMeta)) {
+                continue;
+            }
+            final Field rootField = ((FixDynamicFieldMeta) fieldArray[i]).getPath()[level];
+            if (isLeaf(i, level)) {
+                params.put(rootField, values[i]);
+            } else {
+                final int end = componentEnd(i, to, level);
+                params.put(rootField, createComponent(rootField.getType(), values, i, end, level + 1));
+                i = end - 1;
             }
         }
 
         return instantiate(clazz, params);
     }
 
+    /**
+     * Creates a nested component, either using its constructor or by field injection (the same way as FixMetaScanner
+     * decides it for the component class).
+     */
+    private Object createComponent(Class<?> componentType, Object[] values, int from, int to, int level) throws Exception {
+        final Constructor<?> constr = componentType.getConstructors()[0];
+        return (constr.getParameterTypes().length > 0) ?
+                createModel(constr, values, from, to, level) :
+                createModel(componentType, values, from, to, level);
+    }
+
+    private boolean isLeaf(int index, int level) {
+        return ((FixDynamicFieldMeta) fieldArray[index]).getPath().length == 1 + level;
+    }
+
+    /**
+     * @return the index after the last field of the component that the field at the given index belongs to (fields of
+     *         the same component are always adjacent).
+     */
+    private int componentEnd(int index, int to, int level) {
+        final Field rootField = ((FixDynamicFieldMeta) fieldArray[index]).getPath()[level];
+        int end = index + 1;
+        while (end < to) {
+            final FixFieldMeta meta = fieldArray[end];
+            if (meta instanceof FixDynamicFieldMeta) {
+                final Field[] path = ((FixDynamicFieldMeta) meta).getPath();
+                if (path.length <= level + 1 || path[level] != rootField) {
+                    break;
+                }
+            }
+            end++;
+        }
+        return end;
+    }
+
     @SuppressWarnings("unchecked")
     private <T> T instantiate(Class<T> cls, Map<Field, ?> args) throws Exception {
         // Create instance of the given class
@@ -28,6 +28,7 @@ import java.lang.reflect.Field;
 public class FixDynamicFieldMeta extends FixFieldMeta {
     private final Field[] path;
     private final Class<?> type;
+    private final boolean intern;
 
     /**
      * @param tag      the FIX tag
@@ -36,7 +37,19 @@ public class FixDynamicFieldMeta extends FixFieldMeta {
      * @param path     the POJO field path used to resolve this field's value
      */
     public FixDynamicFieldMeta(int tag, boolean header, boolean optional, Field... path) {
+        this(tag, header, optional, false, path);
+    }
+
+    /**
+     * @param tag      the FIX tag
+     * @param header   identifies whether the mapped FIX field is a part of the FIX message header
+     * @param optional identifies whether the field is nullable
+     * @param intern   identifies whether decoded values should be interned
+     * @param path     the POJO field path used to resolve this field's value
+     */
+    public FixDynamicFieldMeta(int tag, boolean header, boolean optional, boolean intern, Field... path) {
         super(tag, header, optional);
+        this.intern = intern;
         if (path.length < 1) {
             throw new IllegalArgumentException("Field path is empty");
         }
@@ -61,6 +74,11 @@ public class FixDynamicFieldMeta extends FixFieldMeta {
         return type;
     }
 
+    @Override
+    public boolean isIntern() {
+        return intern;
+    }
+
     /**
      * @return false.
      */
@@ -72,12 +90,15 @@ public class FixDynamicFieldMeta extends FixFieldMeta {
      * Resolves the field's value using the given object.
      *
      * @param o the object containing the field's value
-     * @return this field's value from the given object.
+     * @return this field's value from the given object, or null if any object on the field's path is null.
      */
     public Object getValue(Object o) {
         try {
             Object value = o;
             for (Field f : path) {
+                if (value == null) {
+                    return null;
+                }
                 value = f.get(value);
             }
             return value;
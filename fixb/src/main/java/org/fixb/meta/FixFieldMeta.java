@@ -42,6 +42,13 @@ public abstract class FixFieldMeta {
         return new FixDynamicFieldMeta(tag, header, optional, path);
     }
 
+    /**
+     * A factory method for dynamic FixFieldMeta with interned values.
+     */
+    public static FixFieldMeta fixFieldMeta(int tag, boolean header, boolean optional, boolean intern, Field... path) {
+        return new FixDynamicFieldMeta(tag, header, optional, intern, path);
+    }
+
     /**
      * A factory method for FixGroupMeta (simple type group).
      */
@@ -94,6 +101,13 @@ public abstract class FixFieldMeta {
         return optional;
     }
 
+    /**
+     * @return true if decoded values of this field should be canonical instances from an intern table, false otherwise.
+     */
+    public boolean isIntern() {
+        return false;
+    }
+
     /**
      * @param object the object to extract the tag from.
      * @return field tag from the given object
@@ -16,11 +16,15 @@
 
 package org.fixb.meta;
 
+import org.fixb.FixGroupSource;
+
 import java.lang.reflect.Field;
 import java.util.Collection;
+import java.util.List;
 
 /**
- * A FIX metadata that describes mapping between a FIX repeating group a class field of a collection type.
+ * A FIX metadata that describes mapping between a FIX repeating group a class field of a collection or an array type.
+ * Groups mapped to fields of type Iterable or FixGroupSource are decoded lazily by the native FIX serializer.
  *
  * @author vladyslav.yatsenko
  */
@@ -97,15 +101,71 @@ public class FixGroupMeta extends FixDynamicFieldMeta {
         return componentType;
     }
 
+    /**
+     * @return true if the group is mapped to an array (e.g. <tt>int[]</tt>), false if it's mapped to a collection.
+     */
+    public boolean isArray() {
+        return super.getType().isArray();
+    }
+
+    /**
+     * @return true if the group is mapped to an Iterable or a FixGroupSource, which are decoded lazily.
+     */
+    public boolean isLazy() {
+        return super.getType() == Iterable.class || super.getType() == FixGroupSource.class;
+    }
+
+    /**
+     * @return the type of the mapped field. Note that it is an array type if the group is mapped to an array (see
+     *         {@link #isArray()}).
+     */
     @Override
     @SuppressWarnings("unchecked")
     public Class<? extends Collection<?>> getType() {
         return (Class<? extends Collection<?>>) super.getType();
     }
 
+    /**
+     * @return the collection type to be used to collect the group elements, which is the field type for collections
+     *         and List for arrays.
+     * @see #toFieldValue(java.util.Collection)
+     */
+    @SuppressWarnings("unchecked")
+    public Class<? extends Collection<?>> getCollectionType() {
+        return isArray() ? (Class<? extends Collection<?>>) (Class<?>) List.class : getType();
+    }
+
+    /**
+     * Converts collected group elements to a value of the mapped field type.
+     *
+     * @param elements group elements collected into a collection of {@link #getCollectionType()}
+     * @return the given collection, or an array of the elements if this group is mapped to an array.
+     */
+    public Object toFieldValue(Collection<?> elements) {
+        return (isArray() && elements != null) ? FixGroupValues.toArray(elements, componentType) : elements;
+    }
+
+    /**
+     * @return the group elements from the given object as a collection (arrays and other iterables are represented as
+     *         views, the elements are not copied).
+     */
     @Override
     public Collection<?> getValue(Object o) {
-        return (Collection<?>) super.getValue(o);
+        final Object value = super.getValue(o);
+        if (value == null || value instanceof Collection) {
+            return (Collection<?>) value;
+        } else if (value instanceof Iterable) {
+            return FixGroupValues.asCollection((Iterable<?>) value);
+        } else {
+            return FixGroupValues.asList(value);
+        }
+    }
+
+    /**
+     * @return the field value from the given object (a collection or an array).
+     */
+    public Object getFieldValue(Object o) {
+        return super.getValue(o);
     }
 
     /**
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.meta;
+
+import org.fixb.FixGroupSource;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Modifier;
+import java.util.AbstractCollection;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Static conversions between the values of the fields mapped to repeating groups (collections, arrays and other
+ * iterables) and the collections of group elements used by the FIX builders and extractors.
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class FixGroupValues {
+    private FixGroupValues() {
+    }
+
+    /**
+     * @param type the type of a field mapped to a repeating group
+     * @return true if a new instance of the given type can be created to collect the group elements, i.e. if it is a
+     *         collection interface or abstract class, or a collection class with a public default constructor.
+     */
+    public static boolean isCollectionType(Class<?> type) {
+        if (!Collection.class.isAssignableFrom(type)) {
+            return false;
+        }
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            return true;
+        }
+        try {
+            type.getConstructor();
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates an array of the given component type containing the given elements (unboxed for primitive types).
+     *
+     * @param elements      the array elements
+     * @param componentType the type of the array elements
+     * @return a new array.
+     */
+    public static Object toArray(Collection<?> elements, Class<?> componentType) {
+        final Object array = Array.newInstance(componentType, elements.size());
+        int i = 0;
+        for (Object element : elements) {
+            Array.set(array, i++, element);
+        }
+        return array;
+    }
+
+    /**
+     * @param array an array of any type, including arrays of primitives
+     * @return a fixed-size list backed by the given array.
+     * @throws IllegalArgumentException if the given object is not an array.
+     */
+    public static List<?> asList(Object array) {
+        return new ArrayView(array);
+    }
+
+    /**
+     * @param iterable the entries of a repeating group
+     * @return a read-only collection view of the given iterable. The size of a {@link FixGroupSource} is taken from the
+     *         source, the size of any other iterable is counted by iterating it.
+     */
+    public static Collection<?> asCollection(final Iterable<?> iterable) {
+        return new AbstractCollection<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Iterator<Object> iterator() {
+                return (Iterator<Object>) iterable.iterator();
+            }
+
+            @Override
+            public int size() {
+                if (iterable instanceof FixGroupSource) {
+                    return ((FixGroupSource<?>) iterable).size();
+                }
+                int size = 0;
+                for (Iterator<?> i = iterable.iterator(); i.hasNext(); i.next()) {
+                    size++;
+                }
+                return size;
+            }
+        };
+    }
+
+    /**
+     * A fixed-size list view of an array of any type. It gives access to the underlying array, so that arrays of
+     * primitives can be processed without boxing.
+     */
+    public static final class ArrayView extends AbstractList<Object> implements RandomAccess {
+        private final Object array;
+        private final int length;
+
+        ArrayView(Object array) {
+            if (!array.getClass().isArray()) {
+                throw new IllegalArgumentException("Not an array: " + array.getClass());
+            }
+            this.array = array;
+            this.length = Array.getLength(array);
+        }
+
+        /**
+         * @return the underlying array.
+         */
+        public Object array() {
+            return array;
+        }
+
+        @Override
+        public Object get(int index) {
+            return Array.get(array, index);
+        }
+
+        @Override
+        public Object set(int index, Object element) {
+            final Object previous = Array.get(array, index);
+            Array.set(array, index, element);
+            return previous;
+        }
+
+        @Override
+        public int size() {
+            return length;
+        }
+    }
+}
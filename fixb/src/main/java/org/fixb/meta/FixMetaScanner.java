@@ -263,6 +263,33 @@ public class FixMetaScanner {
         return Optional.fromNullable(tag);
     }
 
+    /**
+     * @return a copy of the given field meta of a component, bound to the given path in the enclosing class.
+     */
+    private static FixFieldMeta withPath(FixFieldMeta fieldMeta, Field[] path) {
+        if (fieldMeta.isGroup()) {
+            final FixGroupMeta groupMeta = (FixGroupMeta) fieldMeta;
+            return groupMeta.isSimple() ?
+                    fixGroupMeta(groupMeta.getTag(),
+                            groupMeta.isHeader(),
+                            groupMeta.isOptional(),
+                            groupMeta.getComponentTag(),
+                            groupMeta.getComponentType(),
+                            path) :
+                    fixGroupMeta(groupMeta.getTag(),
+                            groupMeta.isHeader(),
+                            groupMeta.isOptional(),
+                            groupMeta.getComponentMeta(),
+                            path);
+        }
+        return new FixDynamicFieldMeta(
+                fieldMeta.getTag(),
+                fieldMeta.isHeader(),
+                fieldMeta.isOptional(),
+                fieldMeta.isIntern(),
+                path);
+    }
+
     private static <T> ImmutableMap<Integer, FixFieldMeta> scanFields(final Class<T> model,
                                                                       final MutableFixMetaDictionary dictionary,
                                                                       final Field... parentPath) {
@@ -279,7 +306,7 @@ public class FixMetaScanner {
                     if (fixFields.containsKey(tag)) {
                         throw new FixException("There are more than one fields mapped with FIX tag [" + tag + "].");
                     }
-                    fixFields.put(tag, fixFieldMeta(tag, fixField.header(), fixField.optional(), path));
+                    fixFields.put(tag, fixFieldMeta(tag, fixField.header(), fixField.optional(), fixField.intern(), path));
 
                 } else if (FixBlock.class == annotation.annotationType()) {
                     for (FixFieldMeta fixFieldMeta : scanClassAndAddToDictionary(type, dictionary).getFields()) {
@@ -288,18 +315,16 @@ public class FixMetaScanner {
                         for (int i = path.length; i < newFieldPath.length; i++) {
                             newFieldPath[i] = fieldPath[i - path.length];
                         }
-                        fixFields.put(fixFieldMeta.getTag(), new FixDynamicFieldMeta(
-                                fixFieldMeta.getTag(),
-                                fixFieldMeta.isHeader(),
-                                fixFieldMeta.isOptional(),
-                                newFieldPath));
+                        fixFields.put(fixFieldMeta.getTag(), withPath(fixFieldMeta, newFieldPath));
                     }
                 } else if (FixGroup.class == annotation.annotationType()) {
-                    if (Collection.class.isAssignableFrom(type)) {
+                    if (Iterable.class.isAssignableFrom(type) || type.isArray()) {
                         FixGroup fixGroup = (FixGroup) annotation;
                         if (!fixFields.containsKey(fixGroup.tag())) {
-                            Class<?> componentType = getComponentType(fixGroup, f.getGenericType());
-                            FixFieldMeta fieldMeta = isSimpleType(componentType) ?
+                            Class<?> componentType = type.isArray() ?
+                                    type.getComponentType() :
+                                    getComponentType(fixGroup, f.getGenericType());
+                            FixGroupMeta fieldMeta = isSimpleType(componentType) ?
                                     fixGroupMeta(fixGroup.tag(),
                                             fixGroup.header(),
                                             fixGroup.optional(),
@@ -311,10 +336,15 @@ public class FixMetaScanner {
                                             fixGroup.optional(),
                                             dictionary.getOrCreateComponentMeta(componentType),
                                             path);
+                            if (!fieldMeta.isArray() && !fieldMeta.isLazy() && !FixGroupValues.isCollectionType(type)) {
+                                throw new FixException("Unsupported FIX group type of [" + f.getName() + "] in class ["
+                                        + model.getName() + "]: a collection interface or a collection class with a "
+                                        + "public default constructor is expected.");
+                            }
                             fixFields.put(fixGroup.tag(), fieldMeta);
                         }
                     } else {
-                        throw new FixException("Only Collection can represent a FIX group: ["
+                        throw new FixException("Only Iterable, Collection or array can represent a FIX group: ["
                                 + f.getName() + "] in class [" + model.getName() + "].");
                     }
                 }
@@ -352,7 +382,7 @@ public class FixMetaScanner {
     }
 
     private static boolean isSimpleType(Class<?> type) {
-        return type.isPrimitive() || SIMPLE_CLASSES.contains(type);
+        return type.isPrimitive() || SIMPLE_CLASSES.contains(type) || CharSequence.class.isAssignableFrom(type);
     }
 
     @SuppressWarnings("unchecked")
@@ -366,6 +396,7 @@ public class FixMetaScanner {
             Float.class,
             Double.class,
             String.class,
+            CharSequence.class,
             BigDecimal.class,
             Instant.class,
             LocalDate.class,
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.sbe;
+
+import org.fixb.meta.FixBlockMeta;
+import org.fixb.meta.FixConstantFieldMeta;
+import org.fixb.meta.FixEnumDictionary;
+import org.fixb.meta.FixFieldMeta;
+import org.fixb.meta.FixGroupMeta;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The binary layout of a message or of a group entry. Following SBE, an encoded block consists of the root block of
+ * fixed-size fields at fixed offsets, followed by the repeating groups and then by the variable length (string)
+ * fields, each part in the order of the field metas of the block. Constant fields are not encoded.
+ *
+ * @author vladyslav.yatsenko
+ */
+final class SbeBlock {
+    final FixBlockMeta<?> meta;
+    final FixFieldMeta[] fields;
+    final int templateId;
+    final String messageType;
+
+    /**
+     * The encodings of the fixed-size fields (null for other fields) and their offsets in the root block.
+     */
+    final SbeType[] types;
+    final int[] offsets;
+    final int blockLength;
+
+    /**
+     * The slots of the fixed-size fields, of the repeating groups and of the variable length fields.
+     */
+    final int[] fixedSlots;
+    final int[] groupSlots;
+    final int[] varSlots;
+
+    /**
+     * The layouts of the components of complex groups and the encodings of the values of simple groups (null for
+     * strings) indexed by slot.
+     */
+    final SbeBlock[] components;
+    final SbeType[] elementTypes;
+
+    SbeBlock(FixBlockMeta<?> meta, int templateId, String messageType, FixEnumDictionary enumDictionary) {
+        this.meta = meta;
+        this.templateId = templateId;
+        this.messageType = messageType;
+        this.fields = meta.getFields().toArray(new FixFieldMeta[meta.getFields().size()]);
+        this.types = new SbeType[fields.length];
+        this.offsets = new int[fields.length];
+        this.components = new SbeBlock[fields.length];
+        this.elementTypes = new SbeType[fields.length];
+
+        final List<Integer> fixed = new ArrayList<>();
+        final List<Integer> groups = new ArrayList<>();
+        final List<Integer> vars = new ArrayList<>();
+        int offset = 0;
+        for (int i = 0; i < fields.length; i++) {
+            final FixFieldMeta f = fields[i];
+            if (f instanceof FixConstantFieldMeta) {
+                continue;
+            }
+            if (f.isGroup()) {
+                final FixGroupMeta groupMeta = (FixGroupMeta) f;
+                if (groupMeta.isSimple()) {
+                    elementTypes[i] = SbeType.forType(groupMeta.getComponentType(), enumDictionary);
+                } else {
+                    components[i] = new SbeBlock(groupMeta.getComponentMeta(), 0, null, enumDictionary);
+                }
+                groups.add(i);
+            } else if ((types[i] = SbeType.forType(f.getType(), enumDictionary)) != null) {
+                offsets[i] = offset;
+                offset += types[i].size();
+                fixed.add(i);
+            } else {
+                vars.add(i);
+            }
+        }
+        this.blockLength = offset;
+        this.fixedSlots = toArray(fixed);
+        this.groupSlots = toArray(groups);
+        this.varSlots = toArray(vars);
+    }
+
+    /**
+     * @return the length of the root block of an entry of the group in the given slot.
+     */
+    int entryBlockLength(int slot) {
+        if (components[slot] != null) {
+            return components[slot].blockLength;
+        }
+        return (elementTypes[slot] != null) ? elementTypes[slot].size() : 0;
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        final int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.sbe;
+
+import org.fixb.FixException;
+import org.fixb.impl.CollectionFactory;
+import org.fixb.meta.FixFieldMeta;
+import org.fixb.meta.FixGroupMeta;
+import org.fixb.meta.FixMetaDictionary;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+import static org.fixb.sbe.SbeSchema.GROUP_HEADER_LENGTH;
+import static org.fixb.sbe.SbeSchema.HEADER_LENGTH;
+import static org.fixb.sbe.SbeSchema.VAR_HEADER_LENGTH;
+
+/**
+ * A serializer of FIX annotated objects to a compact binary format laid out by an SbeSchema, meant for hops between
+ * internal services where FIX tag=value text would be wasteful. It sits beside NativeFixSerializer and uses the same
+ * FIX classes, but neither the encoded messages nor the values carry tags: fixed-size values are written as binary
+ * numbers at fixed offsets, so that encoding and decoding don't involve any formatting or parsing of numbers.
+ *
+ * An encoded message starts with the SBE message header (block length, template id, schema id and version) followed by
+ * the root block of fixed-size fields, the repeating groups and the variable length fields. Each group starts with the
+ * block length of its entries and their number, followed by the entries, each of them laid out as a message body. A
+ * null string is encoded by the length 0xFFFF; a null group is encoded as an empty one. Date and time values are
+ * encoded as UTC (days since the epoch, milliseconds of the day or milliseconds since the epoch), hence DateTime values
+ * are decoded in the UTC zone.
+ *
+ * The decoder uses the block length of the message header and of the group headers, so a message encoded with extra
+ * fixed-size fields appended to its blocks (a newer version of the FIX classes) can still be decoded.
+ *
+ * The serializer is stateless and thread-safe.
+ *
+ * @param <T> the type of the FIX objects
+ * @author vladyslav.yatsenko
+ */
+public class SbeFixSerializer<T> {
+    private final SbeSchema schema;
+
+    /**
+     * @param fixMetaDictionary a FIX bindings meta dictionary to derive the schema from
+     */
+    public SbeFixSerializer(FixMetaDictionary fixMetaDictionary) {
+        this(SbeSchema.of(fixMetaDictionary));
+    }
+
+    /**
+     * @param schema the schema of the encoded messages
+     */
+    public SbeFixSerializer(SbeSchema schema) {
+        this.schema = schema;
+    }
+
+    /**
+     * @return the schema of the encoded messages.
+     */
+    public SbeSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * @return the number of bytes the given object is encoded to.
+     * @throws FixException if the class of the object is not bound to a message type of the schema.
+     */
+    public int encodedLength(T message) {
+        return HEADER_LENGTH + blockLength(schema.blockFor(message.getClass()), message);
+    }
+
+    /**
+     * Serializes the given object into a new byte array.
+     *
+     * @param message an object to serialize
+     * @return the encoded message.
+     * @throws FixException if the class of the object is not bound to a message type of the schema, or a value can't
+     *                      be encoded (e.g. a string longer than 65534 bytes).
+     */
+    public byte[] serialize(T message) {
+        final byte[] result = new byte[encodedLength(message)];
+        serialize(message, ByteBuffer.wrap(result));
+        return result;
+    }
+
+    /**
+     * Serializes the given object into the given buffer, starting at its current position, which is advanced past
+     * the encoded message. The byte order of the buffer is not changed.
+     *
+     * @param message an object to serialize
+     * @param buffer  a buffer to write the encoded message to
+     * @return the number of bytes written.
+     * @throws java.nio.BufferOverflowException if the message does not fit in the remaining space of the buffer.
+     * @throws FixException                     if the class of the object is not bound to a message type of the schema
+     *                                          or a value can't be encoded.
+     */
+    public int serialize(T message, ByteBuffer buffer) {
+        final SbeBlock block = schema.blockFor(message.getClass());
+        final ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            final int start = buffer.position();
+            buffer.putShort((short) block.blockLength);
+            buffer.putShort((short) block.templateId);
+            buffer.putShort((short) schema.getSchemaId());
+            buffer.putShort((short) schema.getVersion());
+            encodeBlock(block, message, buffer);
+            return buffer.position() - start;
+        } finally {
+            buffer.order(order);
+        }
+    }
+
+    /**
+     * Deserializes the given encoded message.
+     *
+     * @return an object populated with the values of the encoded message.
+     * @throws FixException if the message was encoded with another schema or has an unknown template id.
+     */
+    public T deserialize(byte[] bytes) {
+        return deserialize(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Deserializes an encoded message read from the given region of a byte array.
+     *
+     * @return an object populated with the values of the encoded message.
+     * @throws FixException if the message was encoded with another schema or has an unknown template id.
+     */
+    public T deserialize(byte[] bytes, int offset, int length) {
+        return deserialize(ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    /**
+     * Deserializes an encoded message read from the given buffer, starting at its current position, which is advanced
+     * past the message. The byte order of the buffer is not changed.
+     *
+     * @return an object populated with the values of the encoded message.
+     * @throws java.nio.BufferUnderflowException if the buffer ends before the message.
+     * @throws FixException                      if the message was encoded with another schema or has an unknown
+     *                                           template id.
+     */
+    @SuppressWarnings("unchecked")
+    public T deserialize(ByteBuffer buffer) {
+        final ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            final int blockLength = buffer.getShort() & 0xFFFF;
+            final int templateId = buffer.getShort() & 0xFFFF;
+            final int schemaId = buffer.getShort() & 0xFFFF;
+            buffer.getShort();
+            if (schemaId != schema.getSchemaId()) {
+                throw new FixException("Message encoded with schema " + schemaId + ", expected " + schema.getSchemaId());
+            }
+            return (T) decodeBlock(schema.blockFor(templateId), blockLength, buffer);
+        } finally {
+            buffer.order(order);
+        }
+    }
+
+    private int blockLength(SbeBlock block, Object object) {
+        int length = block.blockLength;
+        for (int slot : block.groupSlots) {
+            final Collection<?> elements = ((FixGroupMeta) block.fields[slot]).getValue(object);
+            length += GROUP_HEADER_LENGTH;
+            if (elements == null) {
+                continue;
+            }
+            for (Object element : elements) {
+                if (block.components[slot] != null) {
+                    length += blockLength(block.components[slot], element);
+                } else {
+                    length += (block.elementTypes[slot] != null) ?
+                            block.elementTypes[slot].size() :
+                            VAR_HEADER_LENGTH + encodedLength((CharSequence) element);
+                }
+            }
+        }
+        for (int slot : block.varSlots) {
+            length += VAR_HEADER_LENGTH + encodedLength((CharSequence) block.fields[slot].getValue(object));
+        }
+        return length;
+    }
+
+    private static void encodeBlock(SbeBlock block, Object object, ByteBuffer buffer) {
+        final int start = buffer.position();
+        if (buffer.remaining() < block.blockLength) {
+            throw new BufferOverflowException();
+        }
+        for (int slot : block.fixedSlots) {
+            block.types[slot].put(buffer, start + block.offsets[slot], block.fields[slot].getValue(object));
+        }
+        buffer.position(start + block.blockLength);
+
+        for (int slot : block.groupSlots) {
+            final Collection<?> elements = ((FixGroupMeta) block.fields[slot]).getValue(object);
+            final int size = (elements == null) ? 0 : elements.size();
+            if (size >= SbeType.UINT16_NULL) {
+                throw new FixException("Too many entries of group " + block.fields[slot].getTag() + ": " + size);
+            }
+            buffer.putShort((short) block.entryBlockLength(slot));
+            buffer.putShort((short) size);
+            if (size == 0) {
+                continue;
+            }
+            for (Object element : elements) {
+                if (block.components[slot] != null) {
+                    encodeBlock(block.components[slot], element, buffer);
+                } else if (block.elementTypes[slot] != null) {
+                    final SbeType type = block.elementTypes[slot];
+                    final int position = buffer.position();
+                    if (buffer.remaining() < type.size()) {
+                        throw new BufferOverflowException();
+                    }
+                    type.put(buffer, position, element);
+                    buffer.position(position + type.size());
+                } else {
+                    putString(buffer, (CharSequence) element);
+                }
+            }
+        }
+
+        for (int slot : block.varSlots) {
+            putString(buffer, (CharSequence) block.fields[slot].getValue(object));
+        }
+    }
+
+    private static Object decodeBlock(SbeBlock block, int blockLength, ByteBuffer buffer) {
+        final FixFieldMeta[] fields = block.fields;
+        final Object[] values = new Object[fields.length];
+        final int start = buffer.position();
+        if (buffer.remaining() < blockLength) {
+            throw new BufferUnderflowException();
+        }
+        for (int slot : block.fixedSlots) {
+            final SbeType type = block.types[slot];
+            if (block.offsets[slot] + type.size() <= blockLength) {
+                values[slot] = type.get(buffer, start + block.offsets[slot], fields[slot].getType());
+            }
+        }
+        buffer.position(start + blockLength);
+
+        for (int slot : block.groupSlots) {
+            final FixGroupMeta groupMeta = (FixGroupMeta) fields[slot];
+            final int entryBlockLength = buffer.getShort() & 0xFFFF;
+            final int size = buffer.getShort() & 0xFFFF;
+            final Collection<Object> elements = newCollection(groupMeta, size);
+            for (int i = 0; i < size; i++) {
+                if (block.components[slot] != null) {
+                    elements.add(decodeBlock(block.components[slot], entryBlockLength, buffer));
+                } else if (block.elementTypes[slot] != null) {
+                    final int position = buffer.position();
+                    if (buffer.remaining() < entryBlockLength) {
+                        throw new BufferUnderflowException();
+                    }
+                    elements.add(block.elementTypes[slot].get(buffer, position, groupMeta.getComponentType()));
+                    buffer.position(position + entryBlockLength);
+                } else {
+                    elements.add(getString(buffer));
+                }
+            }
+            values[slot] = groupMeta.toFieldValue(elements);
+        }
+
+        for (int slot : block.varSlots) {
+            values[slot] = getString(buffer);
+        }
+        return block.meta.createModel(values);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Collection<Object> newCollection(FixGroupMeta groupMeta, int size) {
+        return (Collection<Object>) CollectionFactory.createCollection(groupMeta.getCollectionType(), size);
+    }
+
+    private static int encodedLength(CharSequence value) {
+        if (value == null) {
+            return 0;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                return value.toString().getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+        return value.length();
+    }
+
+    private static void putString(ByteBuffer buffer, CharSequence value) {
+        if (value == null) {
+            buffer.putShort((short) SbeType.UINT16_NULL);
+            return;
+        }
+        final int length = encodedLength(value);
+        if (length >= SbeType.UINT16_NULL) {
+            throw new FixException("String value is too long to be encoded: " + length + " bytes");
+        }
+        buffer.putShort((short) length);
+        if (length == value.length()) {
+            for (int i = 0; i < length; i++) {
+                buffer.put((byte) value.charAt(i));
+            }
+        } else {
+            buffer.put(value.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        final int length = buffer.getShort() & 0xFFFF;
+        if (length == SbeType.UINT16_NULL) {
+            return null;
+        }
+        if (buffer.remaining() < length) {
+            throw new BufferUnderflowException();
+        }
+        final String result;
+        if (buffer.hasArray()) {
+            result = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            final byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            result = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.sbe;
+
+import org.fixb.FixException;
+import org.fixb.meta.FixDynamicFieldMeta;
+import org.fixb.meta.FixFieldMeta;
+import org.fixb.meta.FixGroupMeta;
+import org.fixb.meta.FixMessageMeta;
+import org.fixb.meta.FixMetaDictionary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * A Simple Binary Encoding (SBE) style schema of the messages of a FixMetaDictionary, used by SbeFixSerializer. Each
+ * message class gets a template id, fixed-size fields are laid out at fixed offsets of the root block, enum values are
+ * encoded as their @FixValue codes, strings are encoded as length-prefixed variable length fields and repeating groups
+ * are preceded by the block length and the number of their entries. All values are little-endian.
+ *
+ * The template ids are either given explicitly by message type or derived from the dictionary as the 1-based position
+ * of the message type in the sorted list of its message types. Derived ids change whenever a message type that sorts
+ * before others is added to or removed from the dictionary, so schemas shared by services that are not released
+ * together should use explicit ids.
+ *
+ * Since the offsets are derived from the bindings, both sides of a connection must use the same FIX classes (or
+ * classes that only differ by fixed-size fields appended to the end of a block). The schema can be exported in the SBE
+ * XML format by {@link #toXml()}, e.g. for peers that use a generated SBE codec.
+ *
+ * @author vladyslav.yatsenko
+ */
+public final class SbeSchema {
+    /**
+     * The length of the message header: blockLength, templateId, schemaId and version, each of them uint16.
+     */
+    public static final int HEADER_LENGTH = 8;
+
+    /**
+     * The length of the header of a repeating group: blockLength and numInGroup, each of them uint16.
+     */
+    public static final int GROUP_HEADER_LENGTH = 4;
+
+    /**
+     * The length of the header of a variable length field: length as uint16.
+     */
+    public static final int VAR_HEADER_LENGTH = 2;
+
+    private final int schemaId;
+    private final int version;
+    private final Map<Class<?>, SbeBlock> blocksByClass = new HashMap<>();
+    private final SbeBlock[] blocksByTemplateId;
+
+    /**
+     * The same as {@link #of(FixMetaDictionary, int, int)} with schema id 1 and version 0.
+     */
+    public static SbeSchema of(FixMetaDictionary dictionary) {
+        return of(dictionary, 1, 0);
+    }
+
+    /**
+     * The same as {@link #of(FixMetaDictionary, int, int, Map)} with the template ids derived from the sorted list of
+     * the message types of the dictionary.
+     */
+    public static SbeSchema of(FixMetaDictionary dictionary, int schemaId, int version) {
+        final List<String> messageTypes = new ArrayList<>();
+        for (FixMessageMeta<?> meta : dictionary.getAllMessageMetas()) {
+            messageTypes.add(meta.getMessageType());
+        }
+        Collections.sort(messageTypes);
+        final Map<String, Integer> templateIds = new HashMap<>();
+        for (int i = 0; i < messageTypes.size(); i++) {
+            templateIds.put(messageTypes.get(i), i + 1);
+        }
+        return of(dictionary, schemaId, version, templateIds);
+    }
+
+    /**
+     * @param dictionary  the dictionary of the messages to encode
+     * @param schemaId    the id of the schema written to the header of each message
+     * @param version     the version of the schema written to the header of each message
+     * @param templateIds the template ids of the message types of the dictionary, between 1 and 65534 (the ids of
+     *                    other message types are ignored)
+     * @return a schema of all messages of the given dictionary.
+     * @throws FixException if a message has a field of a type that can't be encoded, or a message type has no valid
+     *                      template id or the same id as another one.
+     */
+    public static SbeSchema of(FixMetaDictionary dictionary, int schemaId, int version, Map<String, Integer> templateIds) {
+        return new SbeSchema(dictionary, schemaId, version, templateIds);
+    }
+
+    /**
+     * @return the id of this schema.
+     */
+    public int getSchemaId() {
+        return schemaId;
+    }
+
+    /**
+     * @return the version of this schema.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the template id of the given message class.
+     * @throws FixException if the class is not bound to a message type of this schema.
+     */
+    public int getTemplateId(Class<?> type) {
+        return blockFor(type).templateId;
+    }
+
+    /**
+     * @return the length of the root block of the given message class.
+     * @throws FixException if the class is not bound to a message type of this schema.
+     */
+    public int getBlockLength(Class<?> type) {
+        return blockFor(type).blockLength;
+    }
+
+    /**
+     * @return this schema as an SBE message schema XML document.
+     */
+    public String toXml() {
+        final StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        xml.append("<sbe:messageSchema xmlns:sbe=\"http://fixprotocol.io/2016/sbe\" package=\"fixb\" id=\"")
+                .append(schemaId).append("\" version=\"").append(version).append("\" byteOrder=\"littleEndian\">\n");
+        xml.append("    <types>\n");
+        xml.append("        <composite name=\"messageHeader\">\n");
+        xml.append("            <type name=\"blockLength\" primitiveType=\"uint16\"/>\n");
+        xml.append("            <type name=\"templateId\" primitiveType=\"uint16\"/>\n");
+        xml.append("            <type name=\"schemaId\" primitiveType=\"uint16\"/>\n");
+        xml.append("            <type name=\"version\" primitiveType=\"uint16\"/>\n");
+        xml.append("        </composite>\n");
+        xml.append("        <composite name=\"groupSizeEncoding\">\n");
+        xml.append("            <type name=\"blockLength\" primitiveType=\"uint16\"/>\n");
+        xml.append("            <type name=\"numInGroup\" primitiveType=\"uint16\"/>\n");
+        xml.append("        </composite>\n");
+        xml.append("        <composite name=\"varStringEncoding\">\n");
+        xml.append("            <type name=\"length\" primitiveType=\"uint16\"/>\n");
+        xml.append("            <type name=\"varData\" primitiveType=\"uint8\" length=\"0\" characterEncoding=\"UTF-8\"/>\n");
+        xml.append("        </composite>\n");
+        xml.append("        <composite name=\"decimal64\">\n");
+        xml.append("            <type name=\"mantissa\" primitiveType=\"int64\"/>\n");
+        xml.append("            <type name=\"exponent\" primitiveType=\"int8\"/>\n");
+        xml.append("        </composite>\n");
+        final Map<String, SbeType.EnumType> enumTypes = new TreeMap<>();
+        for (SbeBlock block : blocksByTemplateId) {
+            if (block != null) {
+                collectEnumTypes(block, enumTypes);
+            }
+        }
+        for (SbeType.EnumType enumType : enumTypes.values()) {
+            appendEnumType(xml, enumType);
+        }
+        xml.append("    </types>\n");
+        for (SbeBlock block : blocksByTemplateId) {
+            if (block == null) {
+                continue;
+            }
+            xml.append("    <sbe:message name=\"").append(block.meta.getType().getSimpleName())
+                    .append("\" id=\"").append(block.templateId)
+                    .append("\" semanticType=\"").append(block.messageType)
+                    .append("\" blockLength=\"").append(block.blockLength).append("\">\n");
+            appendFields(xml, block, "        ");
+            xml.append("    </sbe:message>\n");
+        }
+        xml.append("</sbe:messageSchema>\n");
+        return xml.toString();
+    }
+
+    SbeBlock blockFor(Class<?> type) {
+        final SbeBlock block = blocksByClass.get(type);
+        if (block == null) {
+            throw new FixException("No binary schema for " + type.getName());
+        }
+        return block;
+    }
+
+    SbeBlock blockFor(int templateId) {
+        if (templateId <= 0 || templateId >= blocksByTemplateId.length || blocksByTemplateId[templateId] == null) {
+            throw new FixException("Unknown template id: " + templateId);
+        }
+        return blocksByTemplateId[templateId];
+    }
+
+    private SbeSchema(FixMetaDictionary dictionary, int schemaId, int version, Map<String, Integer> templateIds) {
+        if (schemaId < 0 || schemaId > SbeType.UINT16_NULL || version < 0 || version > SbeType.UINT16_NULL) {
+            throw new IllegalArgumentException("Schema id and version must be unsigned 16-bit integers");
+        }
+        this.schemaId = schemaId;
+        this.version = version;
+
+        final SortedMap<Integer, SbeBlock> blocksById = new TreeMap<>();
+        for (FixMessageMeta<?> meta : dictionary.getAllMessageMetas()) {
+            final Integer templateId = templateIds.get(meta.getMessageType());
+            if (templateId == null || templateId <= 0 || templateId >= SbeType.UINT16_NULL) {
+                throw new FixException("Message type " + meta.getMessageType() + " has no valid template id: " + templateId);
+            }
+            final SbeBlock block = new SbeBlock(meta, templateId, meta.getMessageType(), dictionary);
+            final SbeBlock previous = blocksById.put(templateId, block);
+            if (previous != null) {
+                throw new FixException("Message types " + previous.messageType + " and " + meta.getMessageType()
+                        + " have the same template id " + templateId);
+            }
+            blocksByClass.put(meta.getType(), block);
+        }
+        this.blocksByTemplateId = new SbeBlock[blocksById.isEmpty() ? 1 : blocksById.lastKey() + 1];
+        for (SbeBlock block : blocksById.values()) {
+            blocksByTemplateId[block.templateId] = block;
+        }
+    }
+
+    private static void collectEnumTypes(SbeBlock block, Map<String, SbeType.EnumType> enumTypes) {
+        for (int slot = 0; slot < block.fields.length; slot++) {
+            for (SbeType type : new SbeType[]{block.types[slot], block.elementTypes[slot]}) {
+                if (type instanceof SbeType.EnumType) {
+                    enumTypes.put(((SbeType.EnumType) type).typeName(), (SbeType.EnumType) type);
+                }
+            }
+            if (block.components[slot] != null) {
+                collectEnumTypes(block.components[slot], enumTypes);
+            }
+        }
+    }
+
+    private static void appendEnumType(StringBuilder xml, SbeType.EnumType enumType) {
+        if (enumType.size() > 1) {
+            xml.append("        <type name=\"").append(enumType.typeName())
+                    .append("\" primitiveType=\"char\" length=\"").append(enumType.size()).append("\"/>\n");
+            return;
+        }
+        xml.append("        <enum name=\"").append(enumType.typeName()).append("\" encodingType=\"char\">\n");
+        for (Object constant : enumType.enumMeta.getType().getEnumConstants()) {
+            xml.append("            <validValue name=\"").append(((Enum<?>) constant).name()).append("\">")
+                    .append(enumType.enumMeta.fixValueForEnum((Enum<?>) constant)).append("</validValue>\n");
+        }
+        xml.append("        </enum>\n");
+    }
+
+    private static String typeName(SbeType type) {
+        return (type instanceof SbeType.EnumType) ? ((SbeType.EnumType) type).typeName() : type.primitiveType();
+    }
+
+    private static void appendFields(StringBuilder xml, SbeBlock block, String indent) {
+        for (int slot : block.fixedSlots) {
+            xml.append(indent).append("<field name=\"").append(nameOf(block.fields[slot]))
+                    .append("\" id=\"").append(block.fields[slot].getTag())
+                    .append("\" type=\"").append(typeName(block.types[slot]))
+                    .append("\" offset=\"").append(block.offsets[slot]).append("\"/>\n");
+        }
+        for (int slot : block.groupSlots) {
+            final FixGroupMeta groupMeta = (FixGroupMeta) block.fields[slot];
+            xml.append(indent).append("<group name=\"").append(nameOf(groupMeta))
+                    .append("\" id=\"").append(groupMeta.getTag())
+                    .append("\" dimensionType=\"groupSizeEncoding\" blockLength=\"").append(block.entryBlockLength(slot))
+                    .append("\">\n");
+            if (block.components[slot] != null) {
+                appendFields(xml, block.components[slot], indent + "    ");
+            } else if (block.elementTypes[slot] != null) {
+                xml.append(indent).append("    <field name=\"value\" id=\"").append(groupMeta.getComponentTag())
+                        .append("\" type=\"").append(typeName(block.elementTypes[slot]))
+                        .append("\" offset=\"0\"/>\n");
+            } else {
+                xml.append(indent).append("    <data name=\"value\" id=\"").append(groupMeta.getComponentTag())
+                        .append("\" type=\"varStringEncoding\"/>\n");
+            }
+            xml.append(indent).append("</group>\n");
+        }
+        for (int slot : block.varSlots) {
+            xml.append(indent).append("<data name=\"").append(nameOf(block.fields[slot]))
+                    .append("\" id=\"").append(block.fields[slot].getTag())
+                    .append("\" type=\"varStringEncoding\"/>\n");
+        }
+    }
+
+    private static String nameOf(FixFieldMeta f) {
+        return (f instanceof FixDynamicFieldMeta) ? ((FixDynamicFieldMeta) f).getName() : "field" + f.getTag();
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.sbe;
+
+import org.fixb.FixException;
+import org.fixb.impl.AsciiEncoding;
+import org.fixb.meta.FixEnumDictionary;
+import org.fixb.meta.FixEnumMeta;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+import org.joda.time.LocalTime;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+/**
+ * The binary encodings of fixed-size field values. Each encoding reserves a null value (the minimum value of integers,
+ * NaN of floating point numbers, 0 of characters and enum codes and the maximum value of unsigned integers), which is
+ * decoded as null for fields of reference types. Fields of primitive types can't be null, so the null value is decoded
+ * as the value it represents (e.g. Integer.MIN_VALUE).
+ *
+ * Values are read and written at absolute indexes of a little-endian buffer.
+ *
+ * @author vladyslav.yatsenko
+ */
+abstract class SbeType {
+    static final SbeType INT8 = new SbeType(1, "int8") {
+        @Override
+        void put(ByteBuffer buffer, int index, Object value) {
+            buffer.put(index, (value == null) ? Byte.MIN_VALUE : ((Number) value).byteValue());
+        }
+
+        @Override
+        Object get(ByteBuffer buffer, int index, Class<?> type) {
+            final byte value = buffer.get(index);
+            return (value == Byte.MIN_VALUE && !type.isPrimitive()) ? null : value;
+        }
+    };
+
+    static final SbeType INT16 = new SbeType(2, "int16") {
+        @Override
+        void put(ByteBuffer buffer, int index, Object value) {
+            buffer.putShort(index, (value == null) ? Short.MIN_VALUE : ((Number) value).shortValue());
+        }
+
+        @Override
+        Object get(ByteBuffer buffer, int index, Class<?> type) {
+            final short value = buffer.getShort(index);
+            return (value == Short.MIN_VALUE && !type.isPrimitive()) ? null : value;
+        }
+    };
+
+    static final SbeType INT32 = new SbeType(4, "int32") {
+        @Override
+        void put(ByteBuffer buffer, int index, Object value) {
+            buffer.putInt(index, (value == null) ? Integer.MIN_VALUE : ((Number) value).intValue());
+        }
+
+        @Override
+        Object get(ByteBuffer buffer, int index, Class<?> type) {
+            final int value = buffer.getInt(index);
+            return (value == Integer.MIN_VALUE && !type.isPrimitive()) ? null : value;
+        }
+    };
+
+    static final SbeType INT64 = new SbeType(8, "int64") {
+        @Override
+        void put(ByteBuffer buffer, int index, Object value) {
+            buffer.putLong(index, (value == null) ? Long.MIN_VALUE : ((Number) value).longValue());
+        }
+
+        @Override
+        Object get(ByteBuffer buffer, int index, Class<?> type) {
+            final long value = buffer.getLong(index);
+            return (value == Long.MIN_VALUE && !type.isPrimitive()) ? null : value;
+        }
+    };
+
+    static final SbeType FLOAT = new SbeType(4, "float") {
+        @Override
+        void put(ByteBuffer buffer, int index, Object value) {
+            buffer.putFloat(index, (value == null) ? Float.NaN : ((Number) value).floatValue());
+        }
+
+        @Override
+        Object get(ByteBuffer buffer, int index, Class<?> type) {
+            final float value = buffer.getFloat(index);
+            return (Float.isNaN(value) && !type.isPrimitive()) ? null : value;
+        }
+    };
+
+    static final SbeType DOUBLE = new SbeType(8, "double") {
+        @Override
+        void put(ByteBuffer buffer, int index, Object value) {
+            buffer.putDouble(index, (value == null) ? Double.NaN : ((Number) value).doubleValue());
+        }
+
+        @Override
+        Object get(ByteBuffer buffer, int index, Class<?> type) {
+            final double value = buffer.getDouble(index);
+            return (Double.isNaN(value) && !type.isPrimitive()) ? null : value;
+        }
+    };
+
+    static final SbeType CHAR = new SbeType(1, "char") {
+        @Override
+        void put(ByteBuffer buffer, int index, Object value) {
+            buffer.put(index, (value == null) ? 0 : (byte) ((Character) value).charValue());
+        }
+
+        @Override
+        Object get(ByteBuffer buffer, int index, Class<?> type) {
+            final char value = (char) (buffer.get(index) & 0xFF);
+            return (value == 0 && !type.isPrimitive()) ? null : value;
+        }
+    };
+
+    static final SbeType BOOLEAN = new SbeType(1, "uint8") {
+        @Override
+        void put(ByteBuffer buffer, int index, Object value) {
+            buffer.put(index, (byte) ((value == null) ? UINT8_NULL : ((Boolean) value) ? 1 : 0));
+        }
+
+        @Override
+        Object get(ByteBuffer buffer, int index, Class<?> type) {
+            final int value = buffer.get(index) & 0xFF;
+            return (value == UINT8_NULL) ? null : value == 1;
+        }
+    };
+
+    static final SbeType DECIMAL = new SbeType(9, "decimal64") {
+        @Override
+        void put(ByteBuffer buffer, int index, Object value) {
+            if (value == null) {
+                buffer.putLong(index, Long.MIN_VALUE);
+                buffer.put(index + 8, (byte) 0);
+                return;
+            }
+            BigDecimal decimal = (BigDecimal) value;
+            if (decimal.unscaledValue().bitLength() > 63) {
+                decimal = decimal.stripTrailingZeros();
+            }
+            if (decimal.unscaledValue().bitLength() > 63 || decimal.scale() > Byte.MAX_VALUE || -decimal.scale() > Byte.MAX_VALUE) {
+                throw new FixException("Decimal value does not fit in 64-bit mantissa and 8-bit exponent: " + value);
+            }
+            buffer.putLong(index, decimal.unscaledValue().longValue());
+            buffer.put(index + 8, (byte) -decimal.scale());
+        }
+
+        @Override
+        Object get(ByteBuffer buffer, int index, Class<?> type) {
+            final long mantissa = buffer.getLong(index);
+            return (mantissa == Long.MIN_VALUE) ? null : BigDecimal.valueOf(mantissa, -buffer.get(index + 8));
+        }
+    };
+
+    static final SbeType LOCAL_DATE = new SbeType(4, "int32") {
+        @Override
+        void put(ByteBuffer buffer, int index, Object value) {
+            buffer.putInt(index, (value == null) ?
+                    Integer.MIN_VALUE :
+                    (int) (((LocalDate) value).toDateTimeAtStartOfDay(DateTimeZone.UTC).getMillis() / MILLIS_PER_DAY));
+        }
+
+        @Override
+        Object get(ByteBuffer buffer, int index, Class<?> type) {
+            final int days = buffer.getInt(index);
+            return (days == Integer.MIN_VALUE) ? null : new LocalDate(days * MILLIS_PER_DAY, DateTimeZone.UTC);
+        }
+    };
+
+    static final SbeType LOCAL_TIME = new SbeType(4, "int32") {
+        @Override
+        void put(ByteBuffer buffer, int index, Object value) {
+            buffer.putInt(index, (value == null) ? Integer.MIN_VALUE : ((LocalTime) value).getMillisOfDay());
+        }
+
+        @Override
+        Object get(ByteBuffer buffer, int index, Class<?> type) {
+            final int millis = buffer.getInt(index);
+            return (millis == Integer.MIN_VALUE) ? null : LocalTime.fromMillisOfDay(millis);
+        }
+    };
+
+    static final SbeType LOCAL_DATE_TIME = new SbeType(8, "int64") {
+        @Override
+        void put(ByteBuffer buffer, int index, Object value) {
+            buffer.putLong(index, (value == null) ?
+                    Long.MIN_VALUE :
+                    ((LocalDateTime) value).toDateTime(DateTimeZone.UTC).getMillis());
+        }
+
+        @Override
+        Object get(ByteBuffer buffer, int index, Class<?> type) {
+            final long millis = buffer.getLong(index);
+            return (millis == Long.MIN_VALUE) ? null : new LocalDateTime(millis, DateTimeZone.UTC);
+        }
+    };
+
+    static final SbeType TIMESTAMP = new SbeType(8, "int64") {
+        @Override
+        void put(ByteBuffer buffer, int index, Object value) {
+            buffer.putLong(index, (value == null) ?
+                    Long.MIN_VALUE :
+                    (value instanceof Date) ? ((Date) value).getTime() : ((DateTime) value).getMillis());
+        }
+
+        @Override
+        Object get(ByteBuffer buffer, int index, Class<?> type) {
+            final long millis = buffer.getLong(index);
+            if (millis == Long.MIN_VALUE) {
+                return null;
+            }
+            return (type == Date.class) ? new Date(millis) : new DateTime(millis, DateTimeZone.UTC);
+        }
+    };
+
+    static final int UINT8_NULL = 0xFF;
+    static final int UINT16_NULL = 0xFFFF;
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private final int size;
+    private final String primitiveType;
+
+    SbeType(int size, String primitiveType) {
+        this.size = size;
+        this.primitiveType = primitiveType;
+    }
+
+    /**
+     * @param enumDictionary the dictionary used to map the values of enum fields
+     * @return the encoding of values of the given type or null if they are encoded as variable length strings.
+     * @throws FixException if values of the given type can't be encoded.
+     */
+    @SuppressWarnings("unchecked")
+    static SbeType forType(Class<?> type, FixEnumDictionary enumDictionary) {
+        if (type == byte.class || type == Byte.class) return INT8;
+        if (type == short.class || type == Short.class) return INT16;
+        if (type == int.class || type == Integer.class) return INT32;
+        if (type == long.class || type == Long.class) return INT64;
+        if (type == float.class || type == Float.class) return FLOAT;
+        if (type == double.class || type == Double.class) return DOUBLE;
+        if (type == char.class || type == Character.class) return CHAR;
+        if (type == boolean.class || type == Boolean.class) return BOOLEAN;
+        if (type == BigDecimal.class) return DECIMAL;
+        if (type == LocalDate.class) return LOCAL_DATE;
+        if (type == LocalTime.class) return LOCAL_TIME;
+        if (type == LocalDateTime.class) return LOCAL_DATE_TIME;
+        if (type == DateTime.class || type == Date.class) return TIMESTAMP;
+        if (type.isEnum()) return forEnum(enumDictionary.getFixEnumMeta((Class) type), type);
+        if (type == String.class || type == CharSequence.class) return null;
+        throw new FixException("Unsupported type of binary encoded field: " + type.getName());
+    }
+
+    private static SbeType forEnum(FixEnumMeta<?> enumMeta, Class<?> type) {
+        if (enumMeta == null) {
+            throw new FixException("No FIX values are mapped for enum " + type.getName());
+        }
+        int length = 1;
+        for (Object constant : type.getEnumConstants()) {
+            length = Math.max(length, enumMeta.fixValueForEnum((Enum<?>) constant).length());
+        }
+        return new EnumType(enumMeta, length);
+    }
+
+    /**
+     * @return the number of bytes of an encoded value.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the name of the SBE primitive type (or of the composite type for decimals) of encoded values.
+     */
+    String primitiveType() {
+        return primitiveType;
+    }
+
+    /**
+     * Writes the given value (possibly null) at the given index.
+     */
+    abstract void put(ByteBuffer buffer, int index, Object value);
+
+    /**
+     * Reads a value of the given field type at the given index.
+     */
+    abstract Object get(ByteBuffer buffer, int index, Class<?> type);
+
+    /**
+     * The encoding of the @FixValue codes of an enum type: a char if all the codes are single characters, otherwise a
+     * char array as long as the longest code, in which shorter codes are padded with zeros. A value that is not one of
+     * the codes of the enum type can't be decoded.
+     */
+    static final class EnumType extends SbeType {
+        final FixEnumMeta<?> enumMeta;
+
+        private EnumType(FixEnumMeta<?> enumMeta, int length) {
+            super(length, "char");
+            this.enumMeta = enumMeta;
+        }
+
+        /**
+         * @return the name of the SBE type of the encoded values (the simple name of the enum type).
+         */
+        String typeName() {
+            return enumMeta.getType().getSimpleName();
+        }
+
+        @Override
+        void put(ByteBuffer buffer, int index, Object value) {
+            final String code = (value == null) ? "" : enumMeta.fixValueForEnum((Enum<?>) value);
+            for (int i = 0; i < size(); i++) {
+                buffer.put(index + i, (byte) ((i < code.length()) ? AsciiEncoding.checkAscii(code.charAt(i)) : 0));
+            }
+        }
+
+        @Override
+        Object get(ByteBuffer buffer, int index, Class<?> type) {
+            final StringBuilder code = new StringBuilder(size());
+            for (int i = 0; i < size(); i++) {
+                final char c = (char) (buffer.get(index + i) & 0xFF);
+                if (c == 0) {
+                    break;
+                }
+                code.append(c);
+            }
+            if (code.length() == 0) {
+                return null;
+            }
+            final Object value = enumMeta.enumForFixValue(code.toString());
+            if (value == null) {
+                throw new FixException("Unknown code [" + code + "] of enum " + type.getName());
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fixb.audit;
+
+import org.fixb.FixException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static org.fixb.test.TestHelper.fix;
+import static org.junit.Assert.*;
+
+public class AuditLogTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReadRangesByDecompressingOverlappingBlocksOnly() throws IOException {
+        // Given
+        final Path file = new File(folder.getRoot(), "audit.log").toPath();
+        final AuditLogWriter writer = new AuditLogWriter(file, 8, 256, 512, 1000, Executors.defaultThreadFactory());
+        writer.start();
+
+        // When
+        for (int i = 0; i < 200; i++) {
+            final Direction direction = (i % 2 == 0) ? Direction.INBOUND : Direction.OUTBOUND;
+            final String message = message(i / 2 + 1, "ORD-" + i);
+            if (i % 3 == 0) {
+                writer.record(direction, message, 1000 + i);
+            } else if (i % 3 == 1) {
+                writer.record(direction, message.getBytes(StandardCharsets.US_ASCII), 0, message.length(), 1000 + i);
+            } else {
+                writer.record(direction, ByteBuffer.wrap(message.getBytes(StandardCharsets.US_ASCII)), 1000 + i);
+            }
+        }
+        writer.close();
+
+        // Then
+        try (AuditLogReader reader = AuditLogReader.open(file)) {
+            assertEquals(200, reader.getMessageCount());
+            assertTrue(reader.getBlockCount() > 10);
+
+            final List<AuditRecord> bySeqNum = reader.readSeqNums(Direction.OUTBOUND, 50, 52);
+            assertEquals(3, bySeqNum.size());
+            for (int i = 0; i < 3; i++) {
+                assertEquals(Direction.OUTBOUND, bySeqNum.get(i).getDirection());
+                assertEquals(50 + i, bySeqNum.get(i).getSeqNum());
+                assertEquals(1000 + 99 + 2 * i, bySeqNum.get(i).getTimestamp());
+                assertEquals(message(50 + i, "ORD-" + (99 + 2 * i)), bySeqNum.get(i).getMessage());
+            }
+            assertTrue(reader.getInflatedBlocks() <= 2);
+
+            final List<AuditRecord> byTime = reader.readBetween(1150, 1159);
+            assertEquals(10, byTime.size());
+            for (int i = 0; i < 10; i++) {
+                assertEquals(1150 + i, byTime.get(i).getTimestamp());
+            }
+            assertTrue(reader.getInflatedBlocks() <= 4);
+        }
+    }
+
+    @Test
+    public void testRecordConcurrentlyWithoutLosingMessages() throws Exception {
+        // Given
+        final Path file = new File(folder.getRoot(), "audit.log").toPath();
+        final AuditLogWriter writer = new AuditLogWriter(file, 16, 256, Executors.defaultThreadFactory());
+        writer.start();
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int thread = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 1; i <= 1000; i++) {
+                        writer.record(Direction.INBOUND, message(i, "T" + thread), thread);
+                    }
+                }
+            });
+        }
+
+        // When
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        writer.close();
+
+        // Then
+        try (AuditLogReader reader = AuditLogReader.open(file)) {
+            final int[] lastSeqNums = new int[threads.length];
+            final List<AuditRecord> records = reader.readAll();
+            assertEquals(4000, records.size());
+            for (AuditRecord record : records) {
+                final int thread = (int) record.getTimestamp();
+                assertEquals(lastSeqNums[thread] + 1, record.getSeqNum());
+                assertEquals(message(record.getSeqNum(), "T" + thread), record.getMessage());
+                lastSeqNums[thread] = record.getSeqNum();
+            }
+        }
+    }
+
+    @Test
+    public void testRejectMessagesAfterClose() throws IOException {
+        // Given
+        final Path file = new File(folder.getRoot(), "audit.log").toPath();
+        final AuditLogWriter writer = new AuditLogWriter(file, 4, 256, Executors.defaultThreadFactory());
+        writer.record(Direction.OUTBOUND, message(1, "ORD-1"), 0);
+
+        // When
+        writer.close();
+
+        // Then
+        try {
+            writer.record(Direction.OUTBOUND, message(2, "ORD-2"), 0);
+            fail("Expected FixException");
+        } catch (FixException e) {
+            // expected
+        }
+        try (AuditLogReader reader = AuditLogReader.open(file)) {
+            assertEquals(1, reader.readAll().size());
+        }
+    }
+
+    @Test
+    public void testSurviveInvalidArgumentsAndMalformedMessages() throws IOException {
+        // Given
+        final Path file = new File(folder.getRoot(), "audit.log").toPath();
+        final AuditLogWriter writer = new AuditLogWriter(file, 4, 256, Executors.defaultThreadFactory());
+        writer.start();
+        final byte[] bytes = message(1, "ORD-1").getBytes(StandardCharsets.US_ASCII);
+        final CharSequence failing = new CharSequence() {
+            @Override
+            public int length() {
+                return 10;
+            }
+
+            @Override
+            public char charAt(int index) {
+                throw new IllegalStateException("broken source");
+            }
+
+            @Override
+            public CharSequence subSequence(int start, int end) {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        // When
+        try {
+            writer.record(Direction.INBOUND, bytes, 10, bytes.length, 0);
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+        try {
+            writer.record(Direction.INBOUND, failing, 0);
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        writer.record(Direction.INBOUND, fix("8=FIX.4.4", "9=20", "35=D", "34=99999999999", "11=X", "10=000", ""), 1);
+        writer.record(Direction.INBOUND, fix("8=FIX.4.4", "9=20", "35=D", "34=1x", "11=Y", "10=000", ""), 2);
+        writer.record(Direction.INBOUND, bytes, 0, bytes.length, 3);
+        writer.close();
+
+        // Then
+        try (AuditLogReader reader = AuditLogReader.open(file)) {
+            final List<AuditRecord> records = reader.readAll();
+            assertEquals(3, records.size());
+            assertEquals(0, records.get(0).getSeqNum());
+            assertEquals(0, records.get(1).getSeqNum());
+            assertEquals(1, records.get(2).getSeqNum());
+            assertEquals(message(1, "ORD-1"), records.get(2).getMessage());
+        }
+    }
+
+    private static String message(int seqNum, String clOrdId) {
+        return fix("8=FIX.4.4", "9=40", "35=D", "34=" + seqNum, "11=" + clOrdId, "10=000", "");
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.columnar;
+
+import org.fixb.impl.NativeFixSerializer;
+import org.fixb.meta.FixMetaDictionary;
+import org.fixb.meta.FixMetaScanner;
+import org.fixb.test.data.SampleQuote;
+import org.fixb.test.data.TestModels.BookSnapshot;
+import org.fixb.test.data.TestModels.MutableQuote;
+import org.fixb.test.data.TestModels.Params;
+import org.fixb.test.data.TestModels.Trade;
+import org.joda.time.LocalDate;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.fixb.test.TestHelper.fix;
+import static org.junit.Assert.*;
+
+public class ColumnarArchiveTest {
+    private final FixMetaDictionary dictionary = FixMetaScanner.scanClassesIn("org.fixb.test.data");
+    private final NativeFixSerializer<Object> serializer = new NativeFixSerializer<>("FIX.5.0", dictionary);
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRestoreArchivedMessages() throws IOException {
+        // Given
+        final Path file = folder.newFile("quotes.fixc").toPath();
+        final List<String> quotes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            quotes.add(serializer.serialize(quote("Q" + i, (i % 3 == 0) ? "GBP/USD" : "EUR/USD", (i % 2 == 0) ? "n" + i : null)));
+        }
+
+        // When
+        try (ColumnarArchiveWriter writer = new ColumnarArchiveWriter(file, "FIX.5.0", dictionary, 4)) {
+            for (String quote : quotes) {
+                assertTrue(writer.append(quote));
+            }
+            assertFalse(writer.append(fix("8=FIX.5.0", "9=5", "35=ZZ", "10=000")));
+        }
+
+        // Then
+        try (ColumnarArchiveReader reader = ColumnarArchiveReader.open(file, dictionary)) {
+            assertEquals("FIX.5.0", reader.getProtocolVersion());
+            assertEquals(10, reader.getMessageCount(MutableQuote.class));
+            assertEquals(3, reader.scan(MutableQuote.class).countBlocks());
+            assertEquals(quotes, reader.scan(MutableQuote.class).toMessages());
+        }
+    }
+
+    @Test
+    public void testKeepUnmappedFieldsAndMessageTypes() throws IOException {
+        // Given
+        final Path file = folder.newFile("books.fixc").toPath();
+        final String book = fix("8=FIX.4.4", "9=10", "35=W", "55=EUR/USD", "9998=a", "268=1", "269=0", "270=1.3051",
+                "9999=x", "10=000");
+        final String news = fix("8=FIX.4.4", "9=10", "35=B", "148=Headline", "10=000");
+
+        // When
+        try (ColumnarArchiveWriter writer = new ColumnarArchiveWriter(file, "FIX.4.4", dictionary)) {
+            assertTrue(writer.append(book));
+            assertFalse(writer.append(news));
+            assertEquals(2, writer.getMessageCount());
+        }
+
+        // Then
+        try (ColumnarArchiveReader reader = ColumnarArchiveReader.open(file, dictionary)) {
+            final String restored = reader.scan(BookSnapshot.class).toMessages().get(0);
+            assertTrue(restored, restored.contains("\u000155=EUR/USD\u00019998=a\u0001268=1\u0001"));
+            assertTrue(restored, restored.contains("\u0001270=1.3051\u00019999=x\u0001"));
+            assertTrue(reader.scan(BookSnapshot.class).project(55).iterator().next().getUnknownFields().isNull(0));
+            assertEquals(Collections.singleton("B"), reader.getUnmappedMessageTypes());
+            assertEquals(asList(news), reader.readUnmappedMessages("B"));
+            assertEquals(0, reader.readUnmappedMessages("ZZ").size());
+        }
+    }
+
+    @Test
+    public void testRestoreValuesOfAllColumnTypes() throws IOException {
+        // Given
+        final Path file = folder.newFile("trades.fixc").toPath();
+        final Trade trade = trade("E1", SampleQuote.Side.SELL, 1.30515, 1000000, Boolean.TRUE);
+
+        // When
+        try (ColumnarArchiveWriter writer = new ColumnarArchiveWriter(file, "FIX.5.0", dictionary)) {
+            writer.append(serializer.serialize(trade));
+            writer.append(serializer.serialize(trade("E2", SampleQuote.Side.BUY, -0.5, 7, null)));
+        }
+
+        // Then
+        try (ColumnarArchiveReader reader = ColumnarArchiveReader.open(file, dictionary)) {
+            final List<Trade> trades = reader.scan(Trade.class).toObjects();
+            assertEquals(2, trades.size());
+            assertEquals("E1", trades.get(0).execId);
+            assertEquals(SampleQuote.Side.SELL, trades.get(0).side);
+            assertEquals(1.30515, trades.get(0).price, 0);
+            assertEquals(1000000, trades.get(0).quantity);
+            assertEquals(new LocalDate(2013, 6, 28), trades.get(0).tradeDate);
+            assertEquals(Boolean.TRUE, trades.get(0).aggressor);
+            assertEquals(SampleQuote.Side.BUY, trades.get(1).side);
+            assertEquals(-0.5, trades.get(1).price, 0);
+            assertNull(trades.get(1).aggressor);
+        }
+    }
+
+    @Test
+    public void testSkipBlocksAndProjectColumns() throws IOException {
+        // Given
+        final Path file = folder.newFile("trades.fixc").toPath();
+        try (ColumnarArchiveWriter writer = new ColumnarArchiveWriter(file, "FIX.5.0", dictionary, 2)) {
+            for (int i = 0; i < 6; i++) {
+                writer.append(serializer.serialize(trade("E" + i, SampleQuote.Side.BUY, 1.3 + i / 100.0, (i + 1) * 100, null)));
+            }
+        }
+
+        try (ColumnarArchiveReader reader = ColumnarArchiveReader.open(file, dictionary)) {
+            // When
+            final ColumnarArchiveReader.Scan<Trade> scan = reader.scan(Trade.class)
+                    .whereBetween(32, 150, 350)
+                    .whereBetween(31, 1.3, 1.5)
+                    .project(17, 32);
+
+            // Then
+            assertEquals(2, scan.countBlocks());
+            assertEquals(0, reader.scan(Trade.class).whereEquals(17, "X").countBlocks());
+            assertEquals(1, reader.scan(Trade.class).whereEquals(17, "E5").countBlocks());
+            assertEquals(0, reader.scan(Trade.class).whereBetween(31, 2.0, 3.0).countBlocks());
+
+            final List<Long> quantities = new ArrayList<>();
+            for (ColumnarBatch batch : scan) {
+                final LongColumn column = batch.column(32);
+                for (int row = 0; row < batch.size(); row++) {
+                    quantities.add(column.get(row));
+                    assertTrue(((DoubleColumn) batch.column(31)).isNull(row));
+                }
+            }
+            assertEquals(asList(100L, 200L, 300L, 400L), quantities);
+        }
+    }
+
+    private static MutableQuote quote(String quoteId, String symbol, String note) {
+        final MutableQuote quote = new MutableQuote();
+        quote.quoteId = quoteId;
+        quote.symbol = symbol;
+        quote.amounts = asList(1, 2);
+        quote.paramsList = asList(new Params("p1", "p2"), new Params("p3", "p4"));
+        quote.note = note;
+        return quote;
+    }
+
+    private static Trade trade(String execId, SampleQuote.Side side, double price, long quantity, Boolean aggressor) {
+        final Trade trade = new Trade();
+        trade.execId = execId;
+        trade.side = side;
+        trade.price = price;
+        trade.quantity = quantity;
+        trade.tradeDate = new LocalDate(2013, 6, 28);
+        trade.aggressor = aggressor;
+        return trade;
+    }
+}
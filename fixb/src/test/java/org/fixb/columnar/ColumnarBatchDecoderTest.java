@@ -0,0 +1,206 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.columnar;
+
+import org.fixb.FixException;
+import org.fixb.impl.NativeFixSerializer;
+import org.fixb.meta.FixMetaDictionary;
+import org.fixb.meta.FixMetaScanner;
+import org.fixb.test.data.SampleQuote;
+import org.fixb.test.data.TestModels.Allocation;
+import org.fixb.test.data.TestModels.BookSnapshot;
+import org.fixb.test.data.TestModels.Params;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.fixb.test.TestHelper.fix;
+import static org.junit.Assert.*;
+
+public class ColumnarBatchDecoderTest {
+    private final FixMetaDictionary dictionary = FixMetaScanner.scanClassesIn("org.fixb.test.data");
+
+    @Test
+    public void testDecodeFieldsIntoColumns() {
+        // Given
+        final ColumnarBatchDecoder<BookSnapshot> decoder = new ColumnarBatchDecoder<>(dictionary, BookSnapshot.class);
+
+        // When
+        final ColumnarBatch batch = decoder.decode(asList(
+                fix("8=FIX.4.4", "9=10", "35=W", "55=EUR/USD", "268=2", "269=0", "270=1.3051", "271=1000000", "269=1", "270=1.3053", "10=000"),
+                fix("8=FIX.4.4", "9=10", "35=W", "55=GBP/USD", "268=1", "269=1", "270=-1.6", "1021=2", "1022=1", "1022=2", "58=stale", "10=000"),
+                fix("8=FIX.4.4", "9=10", "35=W", "55=EUR/USD", "268=0", "10=000")));
+
+        // Then
+        assertEquals(3, batch.size());
+        final StringColumn symbols = batch.column(55);
+        assertEquals("symbol", symbols.getName());
+        assertEquals(asList("EUR/USD", "GBP/USD", "EUR/USD"), asList(symbols.get(0), symbols.get(1), symbols.get(2)));
+        assertEquals(2, symbols.dictionarySize());
+        assertEquals(symbols.getCode(0), symbols.getCode(2));
+        final StringColumn texts = batch.column(58);
+        assertTrue(texts.isNull(0));
+        assertEquals("stale", texts.get(1));
+
+        final ColumnarBatch entries = batch.group(268);
+        assertEquals(3, entries.size());
+        assertEquals(0, entries.firstEntry(0));
+        assertEquals(2, entries.entryCount(0));
+        assertEquals(2, entries.firstEntry(1));
+        assertEquals(1, entries.entryCount(1));
+        assertEquals(0, entries.entryCount(2));
+        assertEquals(1, entries.parentRow(2));
+        final LongColumn types = entries.column(269);
+        assertEquals('1', types.get(1));
+        final DoubleColumn prices = entries.column(270);
+        assertEquals(1.3051, prices.get(0), 0);
+        assertEquals(1.3053, prices.get(1), 0);
+        assertEquals(-1.6, prices.get(2), 0);
+        final LongColumn sizes = entries.column(271);
+        assertFalse(sizes.isNull(0));
+        assertEquals(1000000, sizes.get(0));
+        assertTrue(sizes.isNull(1));
+
+        final ColumnarBatch depths = batch.group(1021);
+        assertEquals(0, depths.entryCount(0));
+        assertEquals(2, depths.entryCount(1));
+        assertEquals(2, ((LongColumn) depths.column(1022)).get(depths.firstEntry(1) + 1));
+    }
+
+    @Test
+    public void testFlattenNestedGroups() {
+        // Given
+        final ColumnarBatchDecoder<Allocation> decoder = new ColumnarBatchDecoder<>(dictionary, Allocation.class);
+        final ColumnarBatch batch = decoder.newBatch();
+
+        // When
+        decoder.append(batch, fix("8=FIX.4.4", "9=10", "35=AL", "70=A1", "55=VOD.L", "454=1", "455=GB00BH4HKS39",
+                "78=2", "79=ACC1", "80=100", "539=2", "448=P1", "452=1", "448=P2", "79=ACC2", "10=000"));
+        decoder.append(batch, fix("8=FIX.4.4", "9=10", "35=AL", "70=A2", "55=BP.L", "78=1", "79=ACC3", "539=1", "448=P3", "10=000"));
+
+        // Then
+        final ColumnarBatch accounts = batch.group(78);
+        final ColumnarBatch parties = accounts.group(539);
+        assertEquals(3, accounts.size());
+        assertEquals(3, parties.size());
+        assertEquals("ACC2", ((StringColumn) accounts.column(79)).get(1));
+        assertTrue(((LongColumn) accounts.column(80)).isNull(1));
+        assertEquals(2, parties.entryCount(0));
+        assertEquals(0, parties.entryCount(1));
+        assertEquals(2, parties.parentRow(2));
+        assertEquals(1, accounts.parentRow(parties.parentRow(2)));
+        assertEquals("P3", ((StringColumn) parties.column(448)).get(2));
+        assertTrue(((LongColumn) parties.column(452)).isNull(2));
+        assertEquals("GB00BH4HKS39", ((StringColumn) batch.group(454).column(455)).get(0));
+    }
+
+    @Test
+    public void testDecodeEnumsAndSkipOtherMessageTypes() {
+        // Given
+        final NativeFixSerializer<Object> serializer = new NativeFixSerializer<>("FIX.5.0", dictionary);
+        final ColumnarBatchDecoder<SampleQuote> decoder = new ColumnarBatchDecoder<>(dictionary, SampleQuote.class);
+        final ColumnarBatch batch = decoder.newBatch();
+        final String sell = serializer.serialize(new SampleQuote("Q1", SampleQuote.Side.SELL, "EUR/USD",
+                asList(1, 2), asList(new Params("a", "b")), new Params("c", "d")));
+        final String buy = serializer.serialize(new SampleQuote("Q2", SampleQuote.Side.BUY, "EUR/USD",
+                asList(3), asList(new Params("e", "f")), new Params("g", "h")));
+
+        // When
+        final boolean sellAdded = decoder.append(batch, sell);
+        final boolean otherAdded = decoder.append(batch, fix("8=FIX.4.4", "9=10", "35=W", "55=EUR/USD", "268=0", "10=000"));
+        final boolean buyAdded = decoder.append(batch, buy);
+
+        // Then
+        assertTrue(sellAdded);
+        assertFalse(otherAdded);
+        assertTrue(buyAdded);
+        assertEquals(2, batch.size());
+        final EnumColumn sides = batch.column(40);
+        assertEquals(SampleQuote.Side.SELL, sides.get(0));
+        assertEquals(SampleQuote.Side.BUY.ordinal(), sides.getOrdinal(1));
+        assertEquals(3, batch.group(13).size());
+        assertEquals(1, batch.group(13).entryCount(1));
+    }
+
+    @Test
+    public void testScopeGroupEntriesLikeTheObjectDecoder() {
+        // Given
+        final ColumnarBatchDecoder<BookSnapshot> decoder = new ColumnarBatchDecoder<>(dictionary, BookSnapshot.class);
+        final ColumnarBatch batch = decoder.newBatch();
+
+        // When
+        decoder.append(batch, fix("8=FIX.4.4", "9=10", "35=W", "55=EUR/USD", "268=2", "269=0", "9999=x", "270=1.3051",
+                "269=1", "270=1.3053", "10=000"));
+        try {
+            decoder.append(batch, fix("8=FIX.4.4", "9=10", "35=W", "55=EUR/USD", "268=2", "269=0", "270=1.3051", "10=000"));
+            fail("Expected a FixException");
+        } catch (FixException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("2 declared, 1 found"));
+        }
+
+        // Then
+        assertEquals(1, batch.size());
+        final ColumnarBatch entries = batch.group(268);
+        assertEquals(2, entries.size());
+        assertEquals(1.3051, ((DoubleColumn) entries.column(270)).get(0), 0);
+        assertEquals("9999=x\u0001", entries.getUnknownFields().get(0));
+    }
+
+    @Test
+    public void testKeepUnknownFieldsOfMessagesAndEntries() {
+        // Given
+        final ColumnarBatchDecoder<BookSnapshot> decoder = new ColumnarBatchDecoder<>(dictionary, BookSnapshot.class);
+        final ColumnarBatch batch = decoder.newBatch();
+
+        // When
+        decoder.append(batch, fix("8=FIX.4.4", "9=10", "35=W", "49=SNDR", "55=EUR/USD", "9998=a", "268=2", "269=0",
+                "270=1.3051", "9999=x", "269=1", "270=1.3053", "10=000"));
+        final String restored = decoder.toFixMessage(batch, 0, "FIX.4.4");
+        decoder.append(batch, restored);
+
+        // Then
+        assertTrue(restored, restored.contains("\u000135=W\u000149=SNDR\u0001"));
+        final ColumnarBatch entries = batch.group(268);
+        for (int row = 0; row < 2; row++) {
+            assertEquals("49=SNDR\u00019998=a\u0001", batch.getUnknownFields().get(row));
+            assertEquals("9999=x\u0001", entries.getUnknownFields().get(entries.firstEntry(row)));
+            assertTrue(entries.getUnknownFields().isNull(entries.firstEntry(row) + 1));
+        }
+    }
+
+    @Test
+    public void testLeaveBatchUnchangedIfRequiredFieldIsMissing() {
+        // Given
+        final ColumnarBatchDecoder<Allocation> decoder = new ColumnarBatchDecoder<>(dictionary, Allocation.class);
+        final ColumnarBatch batch = decoder.newBatch();
+        decoder.append(batch, fix("8=FIX.4.4", "9=10", "35=AL", "70=A1", "55=VOD.L", "78=1", "79=ACC1", "10=000"));
+
+        // When
+        try {
+            decoder.append(batch, fix("8=FIX.4.4", "9=10", "35=AL", "70=A2", "78=1", "79=ACC2", "10=000"));
+            fail("Expected a FixException");
+        } catch (FixException e) {
+            // expected
+        }
+
+        // Then
+        assertEquals(1, batch.size());
+        assertEquals(1, batch.group(78).size());
+
+        batch.clear();
+        assertEquals(0, batch.size());
+        assertEquals(0, batch.group(78).size());
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fixb.concurrent;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.fixb.FixSerializer;
+import org.fixb.impl.NativeFixSerializer;
+import org.fixb.meta.FixMetaScanner;
+import org.fixb.test.data.TestModels.MutableQuote;
+import org.fixb.test.data.TestModels.Params;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+public class AsyncFixSerializerTest {
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testDeserializeAsynchronously() throws Exception {
+        // Given
+        final NativeFixSerializer<Object> serializer =
+                new NativeFixSerializer<>("FIX.5.0", FixMetaScanner.scanClassesIn("org.fixb.test.data"));
+        final AsyncFixSerializer<Object> async = new AsyncFixSerializer<>(serializer, executor, 16);
+        final MutableQuote message = new MutableQuote();
+        message.quoteId = "Q1";
+        message.symbol = "EUR/USD";
+        message.amounts = asList(1, 2);
+        message.paramsList = asList(new Params("p1", "p2"));
+        final String fix = serializer.serialize(message);
+
+        // When
+        final ListenableFuture<String> encoded = async.serialize(message);
+        final ListenableFuture<Object> decoded = async.deserialize(fix);
+
+        // Then
+        assertEquals(fix, encoded.get(5, TimeUnit.SECONDS));
+        assertEquals("Q1", ((MutableQuote) decoded.get(5, TimeUnit.SECONDS)).quoteId);
+    }
+
+    @Test
+    public void testPreserveOrderOfMessagesWithEqualKeys() throws Exception {
+        // Given
+        final List<String> decoded = Collections.synchronizedList(new ArrayList<String>());
+        final AsyncFixSerializer<String> async = new AsyncFixSerializer<>(new RecordingSerializer(decoded), executor, 1000, 2);
+
+        // When
+        final List<ListenableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            futures.add(async.deserialize(i % 3 == 0 ? "A" : "B", (i % 3 == 0 ? "A" : "B") + i));
+        }
+        for (ListenableFuture<String> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        // Then
+        int lastA = -1;
+        int lastB = -1;
+        for (String s : decoded) {
+            final int i = Integer.parseInt(s.substring(1));
+            if (s.charAt(0) == 'A') {
+                assertTrue(i > lastA);
+                lastA = i;
+            } else {
+                assertTrue(i > lastB);
+                lastB = i;
+            }
+        }
+        assertEquals(500, decoded.size());
+    }
+
+    @Test
+    public void testBlockSubmissionWhenMaxPendingIsReached() throws Exception {
+        // Given
+        final CountDownLatch release = new CountDownLatch(1);
+        final AsyncFixSerializer<String> async = new AsyncFixSerializer<>(new BlockingSerializer(release), executor, 2);
+        async.deserialize("1");
+        async.deserialize("2");
+        final CountDownLatch submitted = new CountDownLatch(1);
+
+        // When
+        final Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                async.deserialize("3");
+                submitted.countDown();
+            }
+        });
+        producer.start();
+
+        // Then
+        assertFalse(submitted.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(2, async.pending());
+        release.countDown();
+        assertTrue(submitted.await(5, TimeUnit.SECONDS));
+        producer.join();
+    }
+
+    @Test
+    public void testCompleteFutureExceptionallyOnFailure() throws Exception {
+        // Given
+        final AsyncFixSerializer<String> async = new AsyncFixSerializer<>(new RecordingSerializer(null), executor, 2);
+
+        // When
+        final ListenableFuture<String> future = async.deserialize("fail");
+
+        // Then
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("ExecutionException expected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(0, async.pending());
+    }
+
+    @Test
+    public void testFailQueuedTasksRejectedByTheExecutor() throws Exception {
+        // Given
+        final ExecutorService single = Executors.newSingleThreadExecutor();
+        final CountDownLatch release = new CountDownLatch(1);
+        final AsyncFixSerializer<String> async = new AsyncFixSerializer<>(new BlockingSerializer(release), single, 4, 1);
+        final ListenableFuture<String> running = async.deserialize("A", "1");
+        final ListenableFuture<String> queued = async.deserialize("A", "2");
+
+        // When
+        single.shutdown();
+        release.countDown();
+
+        // Then
+        assertEquals("1", running.get(5, TimeUnit.SECONDS));
+        try {
+            queued.get(5, TimeUnit.SECONDS);
+            fail("ExecutionException expected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        assertEquals(0, async.pending());
+        try {
+            async.deserialize("A", "3");
+            fail("RejectedExecutionException expected");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        assertEquals(0, async.pending());
+    }
+
+    private static class RecordingSerializer implements FixSerializer<String> {
+        private final List<String> decoded;
+
+        RecordingSerializer(List<String> decoded) {
+            this.decoded = decoded;
+        }
+
+        @Override
+        public String serialize(String message) {
+            return message;
+        }
+
+        @Override
+        public String deserialize(String fixMessage) {
+            if (decoded == null) {
+                throw new IllegalStateException(fixMessage);
+            }
+            decoded.add(fixMessage);
+            return fixMessage;
+        }
+    }
+
+    private static class BlockingSerializer implements FixSerializer<String> {
+        private final CountDownLatch release;
+
+        BlockingSerializer(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public String serialize(String message) {
+            return message;
+        }
+
+        @Override
+        public String deserialize(String fixMessage) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return fixMessage;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.concurrent;
+
+import org.fixb.impl.NativeFixSerializer;
+import org.fixb.meta.FixMetaScanner;
+import org.fixb.test.data.TestModels.MutableQuote;
+import org.fixb.test.data.TestModels.Params;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+public class PipelineStageTest {
+    private final NativeFixSerializer<Object> serializer =
+            new NativeFixSerializer<>("FIX.5.0", FixMetaScanner.scanClassesIn("org.fixb.test.data"));
+
+    @Test
+    public void testEncodeAndDecodeFramesReusingDecodedObjects() throws Exception {
+        // Given
+        final int count = 100;
+        final RingBuffer<FixFrame<Object>> outbound = new RingBuffer<>(8, FixFrame.factory(1024), WaitStrategy.YIELDING);
+        final RingBuffer<FixFrame<Object>> inbound = new RingBuffer<>(8, FixFrame.factory(1024), WaitStrategy.YIELDING);
+        final List<String> quoteIds = Collections.synchronizedList(new ArrayList<String>());
+        final List<Object> instances = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch done = new CountDownLatch(count);
+
+        final DecodeStage<Object> decoder = new DecodeStage<>(inbound, serializer, new TestHandler() {
+            @Override
+            public void onFrame(FixFrame<Object> frame) {
+                quoteIds.add(((MutableQuote) frame.getMessage()).quoteId);
+                instances.add(frame.getMessage());
+                done.countDown();
+            }
+        });
+        final EncodeStage<Object> encoder = new EncodeStage<>(outbound, serializer, new TestHandler() {
+            @Override
+            public void onFrame(FixFrame<Object> frame) {
+                final FixFrame<Object> target = inbound.claim();
+                target.getBuffer().clear();
+                target.getBuffer().put(frame.getBuffer()).flip();
+                inbound.publish();
+            }
+        });
+        final Thread decoderThread = new Thread(decoder);
+        final Thread encoderThread = new Thread(encoder);
+        decoderThread.start();
+        encoderThread.start();
+
+        // When
+        for (int i = 0; i < count; i++) {
+            final FixFrame<Object> frame = outbound.claim();
+            frame.setMessage(quote("Q" + i));
+            outbound.publish();
+        }
+
+        // Then
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        encoder.halt();
+        decoder.halt();
+        encoderThread.join();
+        decoderThread.join();
+        for (int i = 0; i < count; i++) {
+            assertEquals("Q" + i, quoteIds.get(i));
+        }
+        final Set<Object> distinct = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        distinct.addAll(instances);
+        assertTrue(distinct.size() <= inbound.capacity());
+    }
+
+    @Test
+    public void testReportFailedFramesAndContinue() throws Exception {
+        // Given
+        final RingBuffer<FixFrame<Object>> inbound = new RingBuffer<>(4, FixFrame.factory(1024), WaitStrategy.PARKING);
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch done = new CountDownLatch(2);
+        final DecodeStage<Object> decoder = new DecodeStage<>(inbound, serializer, new FixFrameHandler<Object>() {
+            @Override
+            public void onFrame(FixFrame<Object> frame) {
+                events.add(((MutableQuote) frame.getMessage()).quoteId);
+                done.countDown();
+            }
+
+            @Override
+            public void onError(FixFrame<Object> frame, RuntimeException e) {
+                events.add("error");
+                done.countDown();
+            }
+        });
+        final Thread decoderThread = new Thread(decoder);
+        decoderThread.start();
+
+        // When
+        publish(inbound, "garbage");
+        publish(inbound, serializer.serialize(quote("Q1")));
+
+        // Then
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        decoder.halt();
+        decoderThread.join();
+        assertEquals(asList("error", "Q1"), events);
+    }
+
+    @Test
+    public void testSurviveFailingErrorHandler() throws Exception {
+        // Given
+        final RingBuffer<FixFrame<Object>> inbound = new RingBuffer<>(4, FixFrame.factory(1024), WaitStrategy.PARKING);
+        final CountDownLatch done = new CountDownLatch(1);
+        final DecodeStage<Object> decoder = new DecodeStage<>(inbound, serializer, new FixFrameHandler<Object>() {
+            @Override
+            public void onFrame(FixFrame<Object> frame) {
+                done.countDown();
+            }
+
+            @Override
+            public void onError(FixFrame<Object> frame, RuntimeException e) {
+                throw new IllegalStateException("handler failure");
+            }
+        });
+        final Thread decoderThread = new Thread(decoder);
+        decoderThread.start();
+
+        // When
+        publish(inbound, "garbage");
+        publish(inbound, serializer.serialize(quote("Q1")));
+
+        // Then
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertFalse(decoder.isTerminated());
+        decoder.halt();
+        decoderThread.join();
+        assertTrue(decoder.isTerminated());
+    }
+
+    private static void publish(RingBuffer<FixFrame<Object>> ring, String fix) {
+        final FixFrame<Object> frame = ring.claim();
+        final ByteBuffer buffer = frame.getBuffer();
+        buffer.clear();
+        buffer.put(fix.getBytes(StandardCharsets.US_ASCII)).flip();
+        ring.publish();
+    }
+
+    private static MutableQuote quote(String quoteId) {
+        final MutableQuote quote = new MutableQuote();
+        quote.quoteId = quoteId;
+        quote.symbol = "EUR/USD";
+        quote.amounts = asList(1, 2);
+        quote.paramsList = asList(new Params("p1", "p2"));
+        return quote;
+    }
+
+    private abstract static class TestHandler implements FixFrameHandler<Object> {
+        @Override
+        public void onError(FixFrame<Object> frame, RuntimeException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
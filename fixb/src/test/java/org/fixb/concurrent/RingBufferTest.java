@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.concurrent;
+
+import com.google.common.base.Supplier;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RingBufferTest {
+    private static final Supplier<long[]> SLOT = new Supplier<long[]>() {
+        @Override
+        public long[] get() {
+            return new long[1];
+        }
+    };
+
+    @Test
+    public void testReturnNullWhenFullOrEmpty() {
+        // Given
+        final RingBuffer<long[]> ring = new RingBuffer<>(2, SLOT, WaitStrategy.BUSY_SPIN);
+
+        // When
+        assertNull(ring.poll());
+        ring.tryClaim()[0] = 1;
+        ring.publish();
+        ring.tryClaim()[0] = 2;
+        ring.publish();
+
+        // Then
+        assertNull(ring.tryClaim());
+        assertEquals(2, ring.size());
+        assertEquals(1, ring.poll()[0]);
+        ring.release();
+        assertNotNull(ring.tryClaim());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectCapacityThatIsNotPowerOfTwo() {
+        new RingBuffer<>(3, SLOT, WaitStrategy.YIELDING);
+    }
+
+    @Test
+    public void testHandOverSlotsInOrderBetweenThreads() throws Exception {
+        // Given
+        final int count = 1000000;
+        final RingBuffer<long[]> ring = new RingBuffer<>(64, SLOT, WaitStrategy.YIELDING);
+        final Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    ring.claim()[0] = i;
+                    ring.publish();
+                }
+            }
+        });
+
+        // When
+        producer.start();
+        long expected = 0;
+        for (int i = 0; i < count; i++) {
+            final long value = ring.take()[0];
+            ring.release();
+            if (value != expected++) {
+                fail("Expected " + (expected - 1) + " but received " + value);
+            }
+        }
+        producer.join();
+
+        // Then
+        assertEquals(0, ring.size());
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.concurrent;
+
+import org.fixb.FixException;
+import org.fixb.annotations.FixField;
+import org.fixb.annotations.FixMessage;
+import org.fixb.impl.NativeFixSerializer;
+import org.fixb.meta.FixMetaScanner;
+import org.fixb.test.data.TestModels.MutableQuote;
+import org.fixb.test.data.TestModels.Params;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+public class SequencedEncoderTest {
+    private final NativeFixSerializer<Object> serializer =
+            new NativeFixSerializer<>("FIX.5.0", FixMetaScanner.scanClassesIn("org.fixb.test.data"));
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testWriteMessagesInSubmissionOrderWithConsecutiveSeqNums() throws Exception {
+        // Given
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final SequencedEncoder<Object> encoder =
+                new SequencedEncoder<>(serializer, executor, 16, 1024, out, 100, Executors.defaultThreadFactory());
+
+        // When
+        encoder.start();
+        for (int i = 0; i < 500; i++) {
+            encoder.submit(quote("Q" + i));
+        }
+        encoder.stop();
+
+        // Then
+        assertEquals(600, encoder.getNextSeqNum());
+        final String[] messages = out.toString("US-ASCII").split("(?<=\u000110=\\d{3})");
+        assertEquals(500, messages.length);
+        for (int i = 0; i < messages.length; i++) {
+            final String message = messages[i];
+            final String plain = serializer.serialize(quote("Q" + i));
+            final String expectedBody = plain.substring(plain.indexOf("35="), plain.lastIndexOf("10="))
+                    .replaceFirst("\u0001", "\u000134=" + (100 + i) + "\u0001");
+            assertEquals("8=FIX.5.0\u00019=" + expectedBody.length() + "\u0001" + expectedBody,
+                    message.substring(0, message.lastIndexOf("10=")));
+            assertEquals(checkSum(message.substring(0, message.lastIndexOf("10="))),
+                    Integer.parseInt(message.substring(message.lastIndexOf("10=") + 3)));
+            assertEquals("Q" + i, ((MutableQuote) serializer.deserialize(message)).quoteId);
+        }
+    }
+
+    @Test
+    public void testSkipMessagesThatFailToEncode() throws Exception {
+        // Given
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final SequencedEncoder<Object> encoder =
+                new SequencedEncoder<>(serializer, executor, 4, 1024, out, 1, Executors.defaultThreadFactory());
+        final MutableQuote invalid = quote("Q1");
+        invalid.symbol = null;
+
+        // When
+        encoder.start();
+        encoder.submit(quote("Q0"));
+        encoder.submit(invalid);
+        encoder.submit(quote("Q2"));
+        try {
+            encoder.stop();
+            fail("Encoding failure expected");
+        } catch (RuntimeException e) {
+            // expected
+        }
+
+        // Then
+        assertEquals(3, encoder.getNextSeqNum());
+        final String output = out.toString("US-ASCII");
+        assertTrue(output.contains("11=Q0"));
+        assertTrue(output.contains("34=2\u0001"));
+        assertTrue(output.contains("11=Q2"));
+        assertFalse(output.contains("11=Q1"));
+    }
+
+    @Test
+    public void testNotWaitForMessagesRejectedByTheExecutor() throws Exception {
+        // Given
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ExecutorService stopped = Executors.newSingleThreadExecutor();
+        stopped.shutdown();
+        final SequencedEncoder<Object> encoder =
+                new SequencedEncoder<>(serializer, stopped, 4, 1024, out, 1, Executors.defaultThreadFactory());
+
+        // When
+        encoder.start();
+        try {
+            encoder.submit(quote("Q0"));
+            fail("Rejection expected");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        // Then
+        try {
+            encoder.stop();
+            fail("Rejection expected");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        assertEquals(1, encoder.getNextSeqNum());
+        assertEquals(0, out.size());
+    }
+
+    @Test(timeout = 10000)
+    public void testKeepDrainingSubmittedMessagesAfterInterrupt() throws Exception {
+        // Given
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final AtomicReference<Thread> writer = new AtomicReference<>();
+        final SequencedEncoder<Object> encoder = new SequencedEncoder<>(serializer, executor, 4, 1024, out, 1,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        writer.set(new Thread(r));
+                        return writer.get();
+                    }
+                });
+
+        // When
+        encoder.start();
+        writer.get().interrupt();
+        for (int i = 0; i < 100; i++) {
+            encoder.submit(quote("Q" + i));
+        }
+
+        // Then
+        try {
+            encoder.stop();
+            fail("Interruption failure expected");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause() instanceof InterruptedException);
+        }
+        assertEquals(1, encoder.getNextSeqNum());
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    public void testWrapEncodingFailuresThatAreNotRuntimeExceptions() throws Exception {
+        // Given
+        final SequencedEncoder<Object> encoder = new SequencedEncoder<>(serializer, executor, 4, 1024,
+                new ByteArrayOutputStream(), 1, Executors.defaultThreadFactory());
+        final MutableQuote failing = quote("Q0");
+        failing.amounts = new AbstractList<Integer>() {
+            @Override
+            public Integer get(int index) {
+                throw new AssertionError("Failed to read amounts");
+            }
+
+            @Override
+            public int size() {
+                return 1;
+            }
+        };
+
+        // When
+        encoder.start();
+        encoder.submit(failing);
+
+        // Then
+        try {
+            encoder.stop();
+            fail("Encoding failure expected");
+        } catch (FixException e) {
+            assertTrue(e.getCause() instanceof AssertionError);
+        }
+    }
+
+    @Test
+    public void testRejectClassesBindingMsgSeqNum() throws Exception {
+        // Given
+        final SequencedEncoder<Object> encoder = new SequencedEncoder<>(serializer, executor, 4, 1024,
+                new ByteArrayOutputStream(), 1, Executors.defaultThreadFactory());
+
+        // When
+        encoder.start();
+        try {
+            encoder.submit(new NumberedQuote());
+            fail("FixException expected");
+        } catch (FixException e) {
+            // Then
+            assertTrue(e.getMessage().contains("Tag 34 is bound by " + NumberedQuote.class.getName()));
+        }
+        encoder.stop();
+        assertEquals(1, encoder.getNextSeqNum());
+    }
+
+    private static int checkSum(String s) {
+        int sum = 0;
+        for (byte b : s.getBytes(StandardCharsets.US_ASCII)) {
+            sum += b;
+        }
+        return sum % 256;
+    }
+
+    private static MutableQuote quote(String quoteId) {
+        final MutableQuote quote = new MutableQuote();
+        quote.quoteId = quoteId;
+        quote.symbol = "EUR/USD";
+        quote.amounts = asList(1, 2);
+        quote.paramsList = asList(new Params("p1", "p2"));
+        return quote;
+    }
+
+    @FixMessage(type = "NQ")
+    public static class NumberedQuote {
+        @FixField(tag = 11)
+        public String quoteId = "Q1";
+        @FixField(tag = 34, header = true)
+        public int seqNum = 1;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.concurrent;
+
+import org.fixb.impl.NativeFixSerializer;
+import org.fixb.meta.FixMetaScanner;
+import org.fixb.test.data.TestModels.MutableQuote;
+import org.fixb.test.data.TestModels.Params;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.fixb.test.data.TestModels.QuoteFixFields.QUOTE_ID;
+import static org.fixb.test.data.TestModels.QuoteFixFields.SYMBOL;
+import static org.junit.Assert.*;
+
+public class ShardedDecoderTest {
+    private final NativeFixSerializer<Object> serializer =
+            new NativeFixSerializer<>("FIX.5.0", FixMetaScanner.scanClassesIn("org.fixb.test.data"));
+
+    @Test
+    public void testDecodeInParallelPreservingOrderPerKey() throws Exception {
+        // Given
+        final ConcurrentMap<String, List<Integer>> received = new ConcurrentHashMap<>();
+        final AtomicInteger errors = new AtomicInteger();
+        final ShardedDecoder<Object> decoder = new ShardedDecoder<>(serializer, 4, 16, 1024, WaitStrategy.YIELDING,
+                new FixFrameHandler<Object>() {
+                    @Override
+                    public void onFrame(FixFrame<Object> frame) {
+                        final MutableQuote quote = (MutableQuote) frame.getMessage();
+                        final String symbol = quote.symbol.toString();
+                        received.putIfAbsent(symbol, Collections.synchronizedList(new ArrayList<Integer>()));
+                        received.get(symbol).add(Integer.parseInt(quote.quoteId));
+                    }
+
+                    @Override
+                    public void onError(FixFrame<Object> frame, RuntimeException e) {
+                        errors.incrementAndGet();
+                    }
+                }, Executors.defaultThreadFactory(), SYMBOL);
+
+        // When
+        decoder.start();
+        for (int i = 0; i < 2000; i++) {
+            final byte[] bytes = serializer.serialize(quote(String.valueOf(i), "S" + (i % 10))).getBytes(StandardCharsets.US_ASCII);
+            decoder.dispatch(bytes, 0, bytes.length);
+        }
+        decoder.stop();
+
+        // Then
+        assertEquals(0, errors.get());
+        assertEquals(10, received.size());
+        for (List<Integer> ids : received.values()) {
+            assertEquals(200, ids.size());
+            for (int i = 1; i < ids.size(); i++) {
+                assertTrue(ids.get(i - 1) < ids.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testRouteByFirstPresentRoutingTag() {
+        // Given
+        final ShardedDecoder<Object> decoder = new ShardedDecoder<>(serializer, 8, 2, 256, WaitStrategy.BUSY_SPIN,
+                null, Executors.defaultThreadFactory(), 55, QUOTE_ID);
+        final byte[] a = serializer.serialize(quote("ID1", "S1")).getBytes(StandardCharsets.US_ASCII);
+        final byte[] b = serializer.serialize(quote("ID1", "S2")).getBytes(StandardCharsets.US_ASCII);
+        final byte[] c = "8=FIX.5.0\u00019=5\u000135=0\u000110=000".getBytes(StandardCharsets.US_ASCII);
+
+        // When
+        final int shardA = decoder.shardOf(a, 0, a.length);
+        final int shardB = decoder.shardOf(b, 0, b.length);
+        final int shardC = decoder.shardOf(c, 0, c.length);
+
+        // Then
+        assertEquals(shardA, shardB);
+        assertEquals(0, shardC);
+    }
+
+    private static MutableQuote quote(String quoteId, String symbol) {
+        final MutableQuote quote = new MutableQuote();
+        quote.quoteId = quoteId;
+        quote.symbol = symbol;
+        quote.amounts = asList(1, 2);
+        quote.paramsList = asList(new Params("p1", "p2"));
+        return quote;
+    }
+}
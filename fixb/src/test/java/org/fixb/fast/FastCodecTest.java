@@ -0,0 +1,302 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fixb.fast;
+
+import org.fixb.FixException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+public class FastCodecTest {
+    private static final String TEMPLATES =
+            "<templates xmlns=\"http://www.fixprotocol.org/ns/fast/td/1.1\">" +
+            "  <template name=\"Plain\" id=\"1\">" +
+            "    <uInt32 name=\"A\" id=\"1\"/>" +
+            "    <string name=\"B\" id=\"2\"/>" +
+            "  </template>" +
+            "  <template name=\"Signed\" id=\"2\">" +
+            "    <int32 name=\"N\" id=\"3\"/>" +
+            "  </template>" +
+            "  <template name=\"Stream\" id=\"3\">" +
+            "    <uInt32 name=\"MsgSeqNum\" id=\"34\"><increment/></uInt32>" +
+            "    <string name=\"Symbol\" id=\"55\"><copy/></string>" +
+            "    <decimal name=\"Price\" id=\"270\" presence=\"optional\"><delta/></decimal>" +
+            "    <string name=\"ExecID\" id=\"17\"><tail/></string>" +
+            "    <string name=\"Text\" id=\"58\" presence=\"optional\"><delta/></string>" +
+            "  </template>" +
+            "  <template name=\"Book\" id=\"4\">" +
+            "    <string name=\"MessageType\" id=\"35\"><constant value=\"W\"/></string>" +
+            "    <sequence name=\"Entries\" presence=\"optional\">" +
+            "      <length name=\"NoMDEntries\" id=\"268\"/>" +
+            "      <uInt32 name=\"MDEntryType\" id=\"269\"><copy/></uInt32>" +
+            "      <int64 name=\"MDEntrySize\" id=\"271\" presence=\"optional\"><default value=\"100\"/></int64>" +
+            "      <group name=\"Price\" presence=\"optional\">" +
+            "        <decimal name=\"MDEntryPx\" id=\"270\"/>" +
+            "      </group>" +
+            "    </sequence>" +
+            "  </template>" +
+            "</templates>";
+
+    private final FastTemplates templates = FastTemplates.load(
+            new ByteArrayInputStream(TEMPLATES.getBytes(StandardCharsets.US_ASCII)));
+    private final FastEncoder encoder = new FastEncoder(templates);
+    private final FastDecoder decoder = new FastDecoder(templates);
+
+    @Test
+    public void testEncodeStopBitFieldsAfterPresenceMap() {
+        // Given
+        final Map<Integer, Object> values = values(1, 1L, 2, "AB");
+
+        // When
+        final byte[] first = encoder.encode(1, new MapSource(values));
+        final byte[] second = encoder.encode(1, new MapSource(values));
+
+        // Then
+        assertBytes(first, 0xC0, 0x81, 0x81, 0x41, 0xC2);
+        assertBytes(second, 0x80, 0x81, 0x41, 0xC2);
+        assertEquals("1=1|2=AB|", decode(first));
+        assertEquals("1=1|2=AB|", decode(second));
+    }
+
+    @Test
+    public void testEncodeSignedIntegers() {
+        // When
+        final byte[] positive = encoder.encode(2, new MapSource(values(3, 942755L)));
+        final byte[] negative = encoder.encode(2, new MapSource(values(3, -942755L)));
+
+        // Then
+        assertBytes(positive, 0xC0, 0x82, 0x39, 0x45, 0xA3);
+        assertBytes(negative, 0x80, 0x46, 0x3A, 0xDD);
+        assertEquals("3=942755|", decode(positive));
+        assertEquals("3=-942755|", decode(negative));
+    }
+
+    @Test
+    public void testElideValuesKnownFromDictionary() {
+        // Given
+        final List<Map<Integer, Object>> messages = asList(
+                values(34, 1L, 55, "VOD.L", 270, new BigDecimal("101.25"), 17, "EX0001", 58, "ABCD"),
+                values(34, 2L, 55, "VOD.L", 270, new BigDecimal("101.5"), 17, "EX0002", 58, "XABC"),
+                values(34, 3L, 55, "VOD.L", 17, "EX0002", 58, "XABC"));
+
+        // When
+        final byte[][] encoded = new byte[3][];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = encoder.encode(3, new MapSource(messages.get(i)));
+        }
+
+        // Then
+        assertEquals("34=1|55=VOD.L|270=101.25|17=EX0001|58=ABCD|", decode(encoded[0]));
+        assertEquals("34=2|55=VOD.L|270=101.5|17=EX0002|58=XABC|", decode(encoded[1]));
+        assertEquals("34=3|55=VOD.L|17=EX0002|58=XABC|", decode(encoded[2]));
+        assertTrue(encoded[1].length < encoded[0].length);
+        assertBytes(encoded[2], 0x80, 0x80, 0x81, 0x80);
+    }
+
+    @Test
+    public void testRoundTripSequencesAndOptionalGroups() {
+        // Given
+        final Map<Integer, Object> book = values(268, asList(
+                values(269, 0L, 271, 100L, 270, new BigDecimal("1.3051")),
+                values(269, 0L, 271, 250L),
+                values(269, 1L, 270, new BigDecimal("-0.5"))));
+        final ByteBuffer buffer = ByteBuffer.allocate(256);
+
+        // When
+        encoder.encode(4, new MapSource(book), buffer);
+        encoder.encode(4, new MapSource(values()), buffer);
+        buffer.flip();
+
+        // Then
+        final Recorder recorder = new Recorder();
+        decoder.decode(buffer, recorder);
+        assertEquals("35=W|268[3|#0|269=0|271=100|270=1.3051|#1|269=0|271=250|#2|269=1|270=-0.5|]|", recorder.toString());
+        assertEquals("35=W|", decode(buffer));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testStartOverAfterReset() {
+        // Given
+        final Map<Integer, Object> message = values(34, 7L, 55, "VOD.L", 17, "EX1");
+        final byte[] first = encoder.encode(3, new MapSource(message));
+
+        // When
+        encoder.reset();
+        final byte[] second = encoder.encode(3, new MapSource(message));
+
+        // Then
+        assertTrue(Arrays.equals(first, second));
+        assertEquals("34=7|55=VOD.L|17=EX1|", decode(first));
+        decoder.reset();
+        assertEquals("34=7|55=VOD.L|17=EX1|", decode(second));
+    }
+
+    @Test(expected = FixException.class)
+    public void testFailOnTruncatedMessage() {
+        // Given
+        final byte[] encoded = encoder.encode(3, new MapSource(values(34, 1L, 55, "VOD.L", 17, "EX1")));
+
+        // When
+        decoder.decode(encoded, 0, encoded.length - 1, new Recorder());
+    }
+
+    @Test(expected = FixException.class)
+    public void testFailOnMissingMandatoryField() {
+        encoder.encode(1, new MapSource(values(1, 1L)));
+    }
+
+    private String decode(byte[] encoded) {
+        final Recorder recorder = new Recorder();
+        assertEquals(encoded.length, decoder.decode(encoded, 0, encoded.length, recorder));
+        return recorder.toString();
+    }
+
+    private String decode(ByteBuffer buffer) {
+        final Recorder recorder = new Recorder();
+        decoder.decode(buffer, recorder);
+        return recorder.toString();
+    }
+
+    private static void assertBytes(byte[] actual, int... expected) {
+        final byte[] bytes = new byte[expected.length];
+        for (int i = 0; i < expected.length; i++) {
+            bytes[i] = (byte) expected[i];
+        }
+        assertEquals(Arrays.toString(bytes), Arrays.toString(actual));
+    }
+
+    private static Map<Integer, Object> values(Object... tagsAndValues) {
+        final Map<Integer, Object> values = new HashMap<>();
+        for (int i = 0; i < tagsAndValues.length; i += 2) {
+            values.put((Integer) tagsAndValues[i], tagsAndValues[i + 1]);
+        }
+        return values;
+    }
+
+    private static class MapSource implements FastSource {
+        private final Deque<Map<Integer, Object>> values = new ArrayDeque<>();
+
+        MapSource(Map<Integer, Object> values) {
+            this.values.push(values);
+        }
+
+        @Override
+        public boolean has(int tag) {
+            return values.peek().containsKey(tag);
+        }
+
+        @Override
+        public long getInt(int tag) {
+            return (Long) values.peek().get(tag);
+        }
+
+        @Override
+        public long getMantissa(int tag) {
+            return ((BigDecimal) values.peek().get(tag)).unscaledValue().longValue();
+        }
+
+        @Override
+        public int getExponent(int tag) {
+            return -((BigDecimal) values.peek().get(tag)).scale();
+        }
+
+        @Override
+        public CharSequence getString(int tag) {
+            return (String) values.peek().get(tag);
+        }
+
+        @Override
+        public int getSequenceLength(int tag) {
+            return has(tag) ? entries(tag).size() : -1;
+        }
+
+        @Override
+        public void enterEntry(int tag, int index) {
+            values.push(entries(tag).get(index));
+        }
+
+        @Override
+        public void exitEntry(int tag) {
+            values.pop();
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<Map<Integer, Object>> entries(int tag) {
+            return (List<Map<Integer, Object>>) values.peek().get(tag);
+        }
+    }
+
+    private static class Recorder implements FastHandler {
+        private final StringBuilder events = new StringBuilder();
+
+        @Override
+        public void onMessageStart(FastTemplate template) {
+        }
+
+        @Override
+        public void onInt(int tag, long value) {
+            events.append(tag).append('=').append(value).append('|');
+        }
+
+        @Override
+        public void onDecimal(int tag, long mantissa, int exponent) {
+            events.append(tag).append('=').append(BigDecimal.valueOf(mantissa, -exponent).toPlainString()).append('|');
+        }
+
+        @Override
+        public void onString(int tag, CharSequence value) {
+            events.append(tag).append('=').append(value).append('|');
+        }
+
+        @Override
+        public void onSequenceStart(int tag, int length) {
+            events.append(tag).append('[').append(length).append('|');
+        }
+
+        @Override
+        public void onSequenceEntry(int tag, int index) {
+            events.append('#').append(index).append('|');
+        }
+
+        @Override
+        public void onSequenceEnd(int tag) {
+            events.append("]|");
+        }
+
+        @Override
+        public void onMessageEnd(FastTemplate template) {
+        }
+
+        @Override
+        public String toString() {
+            return events.toString();
+        }
+    }
+}
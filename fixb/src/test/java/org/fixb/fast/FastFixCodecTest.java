@@ -0,0 +1,250 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fixb.fast;
+
+import org.fixb.FixException;
+import org.fixb.meta.FixMetaDictionary;
+import org.fixb.meta.FixMetaScanner;
+import org.fixb.test.data.SampleQuote;
+import org.fixb.test.data.TestModels.AllocAccount;
+import org.fixb.test.data.TestModels.Allocation;
+import org.fixb.test.data.TestModels.BookEntry;
+import org.fixb.test.data.TestModels.BookSnapshot;
+import org.fixb.test.data.TestModels.Instrument;
+import org.fixb.test.data.TestModels.Party;
+import org.fixb.test.data.TestModels.Trade;
+import org.joda.time.LocalDate;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+public class FastFixCodecTest {
+    private static final String TEMPLATES =
+            "<templates xmlns=\"http://www.fixprotocol.org/ns/fast/td/1.1\">" +
+            "  <template name=\"MDSnapshot\" id=\"10\">" +
+            "    <string name=\"MessageType\" id=\"35\"><constant value=\"W\"/></string>" +
+            "    <string name=\"Symbol\" id=\"55\"><copy/></string>" +
+            "    <sequence name=\"MDEntries\">" +
+            "      <length name=\"NoMDEntries\" id=\"268\"/>" +
+            "      <string name=\"MDEntryType\" id=\"269\"><copy/></string>" +
+            "      <decimal name=\"MDEntryPx\" id=\"270\"><delta/></decimal>" +
+            "      <uInt32 name=\"MDEntrySize\" id=\"271\" presence=\"optional\"><copy/></uInt32>" +
+            "    </sequence>" +
+            "    <sequence name=\"Depths\" presence=\"optional\">" +
+            "      <length name=\"NoDepths\" id=\"1021\"/>" +
+            "      <uInt32 name=\"Depth\" id=\"1022\"><increment/></uInt32>" +
+            "    </sequence>" +
+            "    <string name=\"Text\" id=\"58\" presence=\"optional\"/>" +
+            "  </template>" +
+            "  <template name=\"Trade\" id=\"11\">" +
+            "    <string name=\"ExecID\" id=\"17\"><tail/></string>" +
+            "    <uInt32 name=\"Side\" id=\"54\"><copy/></uInt32>" +
+            "    <decimal name=\"Price\" id=\"31\"><delta/></decimal>" +
+            "    <int64 name=\"Quantity\" id=\"32\"><delta/></int64>" +
+            "    <uInt32 name=\"TradeDate\" id=\"75\"><copy/></uInt32>" +
+            "    <uInt32 name=\"AggressorIndicator\" id=\"1057\" presence=\"optional\"/>" +
+            "  </template>" +
+            "  <template name=\"Allocation\" id=\"12\">" +
+            "    <string name=\"MessageType\" id=\"35\"><constant value=\"AL\"/></string>" +
+            "    <string name=\"AllocID\" id=\"70\"/>" +
+            "    <group name=\"Instrument\">" +
+            "      <string name=\"Symbol\" id=\"55\"><copy/></string>" +
+            "      <sequence name=\"SecurityAltIDs\" presence=\"optional\">" +
+            "        <length name=\"NoSecurityAltID\" id=\"454\"/>" +
+            "        <string name=\"SecurityAltID\" id=\"455\"/>" +
+            "      </sequence>" +
+            "    </group>" +
+            "    <sequence name=\"Allocs\">" +
+            "      <length name=\"NoAllocs\" id=\"78\"/>" +
+            "      <string name=\"AllocAccount\" id=\"79\"/>" +
+            "      <uInt32 name=\"AllocQty\" id=\"80\" presence=\"optional\"/>" +
+            "      <sequence name=\"Parties\" presence=\"optional\">" +
+            "        <length name=\"NoPartyIDs\" id=\"539\"/>" +
+            "        <string name=\"PartyID\" id=\"448\"/>" +
+            "        <uInt32 name=\"PartyRole\" id=\"452\" presence=\"optional\"><default/></uInt32>" +
+            "      </sequence>" +
+            "    </sequence>" +
+            "    <string name=\"Text\" id=\"58\" presence=\"optional\"/>" +
+            "  </template>" +
+            "</templates>";
+
+    private final FixMetaDictionary dictionary = FixMetaScanner.scanClassesIn("org.fixb.test.data");
+    private final FastTemplates templates = FastTemplates.load(
+            new ByteArrayInputStream(TEMPLATES.getBytes(StandardCharsets.US_ASCII)));
+
+    @Test
+    public void testRoundTripMarketDataThroughOneStream() {
+        // Given
+        final FastFixCodec<Object> encoder = new FastFixCodec<>(templates, dictionary);
+        final FastFixCodec<Object> decoder = new FastFixCodec<>(templates, dictionary);
+        final BookSnapshot first = book("EUR/USD", entry('0', 1.3051, 1000000), entry('1', 1.3053, 1000000));
+        first.depths = asList(1, 2);
+        final BookSnapshot second = book("EUR/USD", entry('0', 1.3052, 1000000), entry('1', 1.3053, null));
+        second.text = "Indicative";
+
+        // When
+        final byte[] firstEncoded = encoder.encode(first);
+        final byte[] secondEncoded = encoder.encode(second);
+
+        // Then
+        assertTrue(secondEncoded.length < firstEncoded.length);
+        final BookSnapshot firstDecoded = (BookSnapshot) decoder.decode(firstEncoded, 0, firstEncoded.length);
+        final BookSnapshot secondDecoded = (BookSnapshot) decoder.decode(secondEncoded, 0, secondEncoded.length);
+        assertEquals("EUR/USD", firstDecoded.symbol);
+        assertEquals(asList(1, 2), firstDecoded.depths);
+        assertNull(firstDecoded.text);
+        final Iterator<BookEntry> entries = secondDecoded.entries.iterator();
+        final BookEntry bid = entries.next();
+        final BookEntry offer = entries.next();
+        assertFalse(entries.hasNext());
+        assertEquals('0', bid.type);
+        assertEquals(1.3052, bid.price, 0);
+        assertEquals(Integer.valueOf(1000000), bid.size);
+        assertEquals('1', offer.type);
+        assertEquals(1.3053, offer.price, 0);
+        assertNull(offer.size);
+        assertFalse(secondDecoded.depths.iterator().hasNext());
+        assertEquals("Indicative", secondDecoded.text);
+    }
+
+    @Test
+    public void testRoundTripExplicitlyBoundMessagesThroughBuffers() {
+        // Given
+        final FastFixCodec<Object> codec = new FastFixCodec<>(templates, dictionary).bind(11, Trade.class);
+        final Trade trade = trade("EX0001", 101.25, 500);
+        final Trade next = trade("EX0002", 101.5, 400);
+        next.aggressor = true;
+        final ByteBuffer buffer = ByteBuffer.allocate(256);
+
+        // When
+        codec.encode(trade, buffer);
+        final int nextLength = codec.encode(next, buffer);
+        buffer.flip();
+        codec.reset();
+
+        // Then
+        assertTrue(nextLength < buffer.limit() - nextLength);
+        final Trade decoded = (Trade) codec.decode(buffer);
+        final Trade nextDecoded = (Trade) codec.decode(buffer);
+        assertFalse(buffer.hasRemaining());
+        assertEquals("EX0001", decoded.execId);
+        assertEquals(SampleQuote.Side.SELL, decoded.side);
+        assertEquals(101.25, decoded.price, 0);
+        assertEquals(500, decoded.quantity);
+        assertEquals(new LocalDate(2013, 10, 21), decoded.tradeDate);
+        assertNull(decoded.aggressor);
+        assertEquals("EX0002", nextDecoded.execId);
+        assertEquals(101.5, nextDecoded.price, 0);
+        assertEquals(400, nextDecoded.quantity);
+        assertEquals(Boolean.TRUE, nextDecoded.aggressor);
+    }
+
+    @Test
+    public void testRoundTripNestedGroupsAndBlocks() {
+        // Given
+        final FastFixCodec<Object> codec = new FastFixCodec<>(templates, dictionary);
+        final Allocation allocation = new Allocation();
+        allocation.allocId = "A1";
+        allocation.instrument = new Instrument();
+        allocation.instrument.symbol = "VOD.L";
+        allocation.instrument.altIds = asList("GB00BH4HKS39", "VOD LN");
+        allocation.accounts = asList(account("ACC1", 100, party("P1", 1), party("P2", null)), account("ACC2", null));
+
+        // When
+        final byte[] encoded = codec.encode(allocation);
+        final Allocation decoded = (Allocation) codec.decode(encoded, 0, encoded.length);
+
+        // Then
+        assertEquals("A1", decoded.allocId);
+        assertNull(decoded.text);
+        assertEquals("VOD.L", decoded.instrument.symbol);
+        assertEquals(asList("GB00BH4HKS39", "VOD LN"), decoded.instrument.altIds);
+        assertEquals(2, decoded.accounts.size());
+        assertEquals("ACC1", decoded.accounts.get(0).account);
+        assertEquals(Integer.valueOf(100), decoded.accounts.get(0).qty);
+        assertEquals("P1", decoded.accounts.get(0).parties.get(0).id);
+        assertEquals(Integer.valueOf(1), decoded.accounts.get(0).parties.get(0).role);
+        assertNull(decoded.accounts.get(0).parties.get(1).role);
+        assertNull(decoded.accounts.get(1).qty);
+        assertTrue(decoded.accounts.get(1).parties.isEmpty());
+    }
+
+    @Test(expected = FixException.class)
+    public void testRejectTemplateWithoutMandatoryFieldOfClass() {
+        // Given
+        final FastTemplates incomplete = FastTemplates.load(new ByteArrayInputStream((
+                "<templates xmlns=\"http://www.fixprotocol.org/ns/fast/td/1.1\">" +
+                "  <template name=\"Trade\" id=\"1\">" +
+                "    <string name=\"ExecID\" id=\"17\"/>" +
+                "  </template>" +
+                "</templates>").getBytes(StandardCharsets.US_ASCII)));
+
+        // When
+        new FastFixCodec<>(incomplete, dictionary).bind(1, Trade.class);
+    }
+
+    @Test(expected = FixException.class)
+    public void testRejectUnboundClass() {
+        new FastFixCodec<>(templates, dictionary).encode(new Object());
+    }
+
+    private static BookSnapshot book(String symbol, BookEntry... entries) {
+        final BookSnapshot book = new BookSnapshot();
+        book.symbol = symbol;
+        book.entries = asList(entries);
+        return book;
+    }
+
+    private static BookEntry entry(char type, double price, Integer size) {
+        final BookEntry result = new BookEntry();
+        result.type = type;
+        result.price = price;
+        result.size = size;
+        return result;
+    }
+
+    private static Trade trade(String execId, double price, long quantity) {
+        final Trade trade = new Trade();
+        trade.execId = execId;
+        trade.side = SampleQuote.Side.SELL;
+        trade.price = price;
+        trade.quantity = quantity;
+        trade.tradeDate = new LocalDate(2013, 10, 21);
+        return trade;
+    }
+
+    private static AllocAccount account(String account, Integer qty, Party... parties) {
+        final AllocAccount result = new AllocAccount();
+        result.account = account;
+        result.qty = qty;
+        result.parties = (parties.length == 0) ? null : asList(parties);
+        return result;
+    }
+
+    private static Party party(String id, Integer role) {
+        final Party result = new Party();
+        result.id = id;
+        result.role = role;
+        return result;
+    }
+}
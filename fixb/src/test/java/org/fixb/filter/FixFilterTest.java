@@ -0,0 +1,122 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.filter;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.fixb.filter.FixPredicates.*;
+import static org.fixb.test.TestHelper.fix;
+import static org.junit.Assert.*;
+
+public class FixFilterTest {
+    private static final String EXEC_REPORT =
+            fix("8=FIX.4.4", "9=60", "35=8", "55=EUR/USD", "54=1", "150=F", "31=1.3512", "32=100", "10=000");
+
+    @Test
+    public void testMatchEqualityAndSets() {
+        assertTrue(FixFilter.compile(eq(150, "F")).matches(EXEC_REPORT));
+        assertFalse(FixFilter.compile(eq(150, "0")).matches(EXEC_REPORT));
+        assertTrue(FixFilter.compile(in(55, "GBP/USD", "EUR/USD")).matches(EXEC_REPORT));
+        assertFalse(FixFilter.compile(in(55, "GBP/USD", "EUR/US")).matches(EXEC_REPORT));
+        assertFalse(FixFilter.compile(eq(11, "X")).matches(EXEC_REPORT));
+    }
+
+    @Test
+    public void testMatchNumericRangesAndPresence() {
+        assertTrue(FixFilter.compile(between(31, 1.35, 1.36)).matches(EXEC_REPORT));
+        assertFalse(FixFilter.compile(ge(32, 100.5)).matches(EXEC_REPORT));
+        assertTrue(FixFilter.compile(le(32, 100)).matches(EXEC_REPORT));
+        assertFalse(FixFilter.compile(between(55, 0, 1)).matches(EXEC_REPORT));
+        assertTrue(FixFilter.compile(present(54)).matches(EXEC_REPORT));
+        assertFalse(FixFilter.compile(present(58)).matches(EXEC_REPORT));
+    }
+
+    @Test
+    public void testParseDecimalsExactly() {
+        // Given
+        final String[] prices = {"0.0003", "0.1", "1.3512", "-2.675", "123456.789012", "0.000000000000000001",
+                "12345678901234567890.5", "99999999999999999999"};
+
+        for (String price : prices) {
+            // When
+            final double value = Double.parseDouble(price);
+            final String message = fix("8=FIX.4.4", "9=0", "35=8", "44=" + price, "10=000");
+
+            // Then
+            assertTrue(price, FixFilter.compile(le(44, value)).matches(message));
+            assertTrue(price, FixFilter.compile(ge(44, value)).matches(message));
+        }
+    }
+
+    @Test
+    public void testCombinePredicates() {
+        // Given
+        final FixFilter filter = FixFilter.compile(
+                and(eq(35, "8"), or(eq(150, "F"), eq(150, "2")), not(eq(54, "2")), in(55, "EUR/USD")));
+
+        // When
+        final boolean matching = filter.matches(EXEC_REPORT);
+        final boolean nonMatching = filter.matches(EXEC_REPORT.replace("54=1", "54=2"));
+        final byte[] bytes = ("xx" + EXEC_REPORT).getBytes(StandardCharsets.US_ASCII);
+        final boolean matchingBytes = filter.matches(bytes, 2, bytes.length - 2);
+
+        // Then
+        assertTrue(matching);
+        assertFalse(nonMatching);
+        assertTrue(matchingBytes);
+    }
+
+    @Test
+    public void testStopScanningOnceResultIsKnown() {
+        // Given
+        final TrackingSequence message = new TrackingSequence(EXEC_REPORT);
+        final FixFilter filter = FixFilter.compile(and(eq(35, "D"), eq(150, "F")));
+
+        // When
+        final boolean result = filter.matches(message);
+
+        // Then
+        assertFalse(result);
+        assertTrue(message.maxIndex < EXEC_REPORT.indexOf("55="));
+    }
+
+    private static class TrackingSequence implements CharSequence {
+        private final String s;
+        int maxIndex;
+
+        TrackingSequence(String s) {
+            this.s = s;
+        }
+
+        @Override
+        public int length() {
+            return s.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            maxIndex = Math.max(maxIndex, index);
+            return s.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
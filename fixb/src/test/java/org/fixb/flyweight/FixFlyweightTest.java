@@ -0,0 +1,204 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.flyweight;
+
+import org.fixb.test.data.SampleQuote;
+import org.fixb.test.data.TestModels.Allocation;
+import org.fixb.test.data.TestModels.BookSnapshot;
+import org.fixb.test.data.TestModels.Trade;
+import org.fixb.test.data.flyweight.AllocationFlyweight;
+import org.fixb.test.data.flyweight.BookSnapshotFlyweight;
+import org.fixb.test.data.flyweight.TradeFlyweight;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.fixb.test.TestHelper.fix;
+import static org.junit.Assert.*;
+
+public class FixFlyweightTest {
+    @Test
+    public void testReadFieldsInPlace() {
+        // Given
+        final byte[] buffer = bytes(withCheckSum(fix("8=FIX.4.4", "9=63", "35=TR", "17=E1", "54=1", "31=101.25", "32=500",
+                "75=20131021", "")));
+        final TradeFlyweight trade = new TradeFlyweight();
+
+        // When
+        trade.wrap(buffer);
+
+        // Then
+        assertEquals("E1", trade.execId().toString());
+        assertEquals(SampleQuote.Side.SELL, trade.side());
+        assertEquals(101.25, trade.price(), 0);
+        assertEquals(500, trade.quantity());
+        assertEquals("20131021", trade.tradeDate().toString());
+        assertTrue(trade.hasPrice());
+        assertFalse(trade.hasAggressor());
+        assertFalse(trade.aggressor());
+        assertSame(trade.execId(), trade.execId());
+        assertEquals(buffer.length, trade.length());
+    }
+
+    @Test
+    public void testIterateGroupsWithoutCopying() {
+        // Given
+        final BookSnapshotFlyweight book = new BookSnapshotFlyweight();
+        book.wrap(bytes(fix("8=FIX.4.4", "9=10", "35=W", "55=EUR/USD", "268=3", "269=0", "270=1.3051", "271=1000000",
+                "269=1", "270=1.3053", "269=1", "270=1.3055", "271=500", "1021=2", "1022=1", "1022=2", "58=stale", "10=000")));
+
+        // When
+        double total = 0;
+        int count = 0;
+        BookSnapshotFlyweight.BookEntryFlyweight first = null;
+        for (BookSnapshotFlyweight.BookEntryFlyweight entry : book.entries()) {
+            first = (first == null) ? entry : first;
+            assertSame(first, entry);
+            total += entry.hasSize() ? entry.price() * entry.size() : 0;
+            count++;
+        }
+        long depthSum = 0;
+        for (FixFlyweightValues depth = book.depths(); depth.next(); ) {
+            depthSum += depth.longValue();
+        }
+
+        // Then
+        assertEquals(3, count);
+        assertEquals(3, book.entries().size());
+        assertEquals(1.3051 * 1000000 + 1.3055 * 500, total, 1e-6);
+        assertEquals(3, depthSum);
+        assertEquals("EUR/USD", book.symbol().toString());
+        assertEquals("stale", book.text().toString());
+    }
+
+    @Test
+    public void testScopeNestedGroups() {
+        // Given
+        final AllocationFlyweight allocation = new AllocationFlyweight();
+        allocation.wrap(bytes(fix("8=FIX.4.4", "9=10", "35=AL", "70=A1", "55=VOD.L", "454=1", "455=GB00BH4HKS39",
+                "78=2", "79=ACC1", "80=100", "539=2", "448=P1", "452=1", "448=P2", "79=ACC2", "58=done", "10=000")));
+
+        // When
+        final StringBuilder parties = new StringBuilder();
+        final StringBuilder accounts = new StringBuilder();
+        for (AllocationFlyweight.AllocAccountFlyweight account : allocation.accounts()) {
+            accounts.append(account.account()).append(account.hasQty() ? ":" + account.qty() : "").append(';');
+            for (AllocationFlyweight.PartyFlyweight party : account.parties()) {
+                parties.append(party.id()).append(party.hasRole() ? ":" + party.role() : "").append(';');
+            }
+        }
+
+        // Then
+        assertEquals("ACC1:100;ACC2;", accounts.toString());
+        assertEquals("P1:1;P2;", parties.toString());
+        assertEquals("done", allocation.text().toString());
+        assertEquals("VOD.L", allocation.symbol().toString());
+    }
+
+    @Test
+    public void testPatchFieldsAndCheckSumInPlace() {
+        // Given
+        final byte[] buffer = bytes(withCheckSum(fix("8=FIX.4.4", "9=63", "35=TR", "17=E1", "54=1", "31=101.25",
+                "32=00500", "75=20131021", "1057=N", "")));
+        final TradeFlyweight trade = new TradeFlyweight();
+        trade.wrap(buffer);
+
+        // When
+        assertTrue(trade.price(99.5));
+        assertTrue(trade.quantity(12345));
+        assertTrue(trade.side(SampleQuote.Side.BUY));
+        assertTrue(trade.aggressor(true));
+        assertTrue(trade.execId("E2"));
+
+        // Then
+        final String patched = new String(buffer, StandardCharsets.US_ASCII);
+        assertEquals(withCheckSum(fix("8=FIX.4.4", "9=63", "35=TR", "17=E2", "54=0", "31=099.50", "32=12345",
+                "75=20131021", "1057=Y", "")), patched);
+        assertEquals(99.5, trade.price(), 0);
+        assertEquals(12345, trade.quantity());
+    }
+
+    @Test
+    public void testRejectValuesThatDoNotFit() {
+        // Given
+        final String original = withCheckSum(fix("8=FIX.4.4", "9=63", "35=TR", "17=E1", "54=1", "31=101.25", "32=500",
+                "75=20131021", ""));
+        final byte[] buffer = bytes(original);
+        final TradeFlyweight trade = new TradeFlyweight();
+        trade.wrap(buffer);
+
+        // When
+        final boolean patched = trade.price(1000.5) || trade.price(1.125) || trade.quantity(1000)
+                || trade.execId("E10") || trade.aggressor(true);
+
+        // Then
+        assertFalse(patched);
+        assertEquals(original, new String(buffer, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testGenerateAccessorSource() {
+        // When
+        final String source = new FixFlyweightGenerator("com.acme.fix").generate(Trade.class);
+
+        // Then
+        assertTrue(source.startsWith("package com.acme.fix;"));
+        assertTrue(source.contains("public final class TradeFlyweight extends FixFlyweight {"));
+        assertTrue(source.contains("FixFlyweightLayout.forClass(org.fixb.test.data.TestModels.Trade.class)"));
+        assertTrue(source.contains("public double price() {"));
+        assertTrue(source.contains("public boolean price(double value) {"));
+        assertTrue(source.contains("public CharSequence execId() {"));
+        assertTrue(source.contains("public org.fixb.test.data.SampleQuote.Side side() {"));
+        assertTrue(source.contains("public boolean hasAggressor() {"));
+    }
+
+    @Test
+    public void testMatchCheckedInFlyweights() throws IOException {
+        // Given
+        final FixFlyweightGenerator generator = new FixFlyweightGenerator("org.fixb.test.data.flyweight");
+
+        for (Class<?> type : new Class<?>[]{Allocation.class, BookSnapshot.class, Trade.class}) {
+            // When
+            final String source = generator.generate(type);
+
+            // Then
+            final Path file = Paths.get("src/test/java/org/fixb/test/data/flyweight", type.getSimpleName() + "Flyweight.java");
+            final String checkedIn = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            assertEquals("Regenerate " + file, source, checkedIn.substring(checkedIn.indexOf("*/\n\n") + 4));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectClassesWithoutFixMessage() {
+        new FixFlyweightGenerator("com.acme.fix").generate(SampleQuote.Side.class);
+    }
+
+    private static byte[] bytes(String message) {
+        return message.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static String withCheckSum(String messageWithoutCheckSum) {
+        int sum = 0;
+        for (int i = 0; i < messageWithoutCheckSum.length(); i++) {
+            sum += messageWithoutCheckSum.charAt(i);
+        }
+        return messageWithoutCheckSum + "10=" + String.format("%03d", sum % 256) + "\u0001";
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fixb.impl;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class AsciiStringTest {
+
+    @Test
+    public void testPointIntoByteBuffer() {
+        // Given
+        final byte[] buffer = "55=EUR/USD".getBytes(StandardCharsets.US_ASCII);
+
+        // When
+        final AsciiString value = new AsciiString().wrap(buffer, 3, 7);
+
+        // Then
+        assertEquals(7, value.length());
+        assertEquals('E', value.charAt(0));
+        assertEquals("EUR/USD", value.toString());
+        assertEquals("EUR/USD".hashCode(), value.hashCode());
+        assertTrue(value.contentEquals("EUR/USD"));
+    }
+
+    @Test
+    public void testCompareContentOfDifferentBuffers() {
+        // Given
+        final AsciiString fromString = new AsciiString().wrap("11=ORDER1", 3, 9);
+        final AsciiString fromBytes = new AsciiString().wrap("ORDER1".getBytes(StandardCharsets.US_ASCII));
+
+        // Then
+        assertEquals(fromString, fromBytes);
+        assertEquals(fromString.hashCode(), fromBytes.hashCode());
+        assertEquals(0, fromString.compareTo(fromBytes));
+        assertFalse(AsciiString.of("ORDER2").equals(fromBytes));
+        assertTrue(AsciiString.of("ORDER0").compareTo(fromBytes) < 0);
+    }
+
+    @Test
+    public void testSupportSubSequencesAndRewrapping() {
+        // Given
+        final AsciiString value = AsciiString.of("EUR/USD");
+
+        // When
+        final AsciiString currency = value.subSequence(4, 7);
+        final AsciiString rewrapped = new AsciiString().wrap(value, 0, 3);
+
+        // Then
+        assertEquals("USD", currency.toString());
+        assertEquals("EUR", rewrapped.toString());
+        assertEquals(AsciiString.of("EUR"), rewrapped.wrap("EUR", 0, 3));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testNotReadOutsideOfTheRegion() {
+        new AsciiString().wrap("35=D", 3, 4).charAt(1);
+    }
+}
@@ -21,6 +21,7 @@ import org.junit.Test;
 import java.util.*;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
 
 public class CollectionFactoryTest {
 
@@ -38,6 +39,16 @@ public class CollectionFactoryTest {
         assertEquals(new ArrayList(), CollectionFactory.createCollection(Collection.class));
     }
 
+    @Test
+    public void canCreatePresizedCollections() {
+        assertEquals(new ArrayList(), CollectionFactory.createCollection(List.class, 100));
+        assertEquals(new HashSet(), CollectionFactory.createCollection(Set.class, 100));
+        assertEquals(new ArrayDeque().getClass(), CollectionFactory.createCollection(Deque.class, 100).getClass());
+        assertEquals(new Vector(), CollectionFactory.createCollection(Vector.class, 100));
+        assertEquals(new TreeSet(), CollectionFactory.createCollection(TreeSet.class, 100));
+        assertSame(CollectionFactory.createCollection(List.class, 0).getClass(), ArrayList.class);
+    }
+
     @Test(expected = ClassCastException.class)
     @SuppressWarnings("unchecked")
     public void cannotCreateCollectionOfNonCollectionType() throws InstantiationException, IllegalAccessException {
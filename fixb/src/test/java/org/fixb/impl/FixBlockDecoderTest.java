@@ -0,0 +1,183 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fixb.impl;
+
+import org.fixb.FixException;
+import org.fixb.meta.FixMetaDictionary;
+import org.fixb.meta.FixMetaScanner;
+import org.fixb.test.data.TestModels.AllocAccount;
+import org.fixb.test.data.TestModels.Allocation;
+import org.fixb.test.data.TestModels.BookEntry;
+import org.fixb.test.data.TestModels.BookSnapshot;
+import org.fixb.test.data.TestModels.MutableQuote;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+
+import static java.util.Arrays.asList;
+import static org.fixb.test.TestHelper.fix;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FixBlockDecoderTest {
+    private final FixMetaDictionary fixMetaDictionary = FixMetaScanner.scanClassesIn("org.fixb.test.data");
+    private final NativeFixFieldExtractor extractor = new NativeFixFieldExtractor(fixMetaDictionary);
+    private final FixBlockDecoder<MutableQuote> decoder = extractor.decoderFor(fixMetaDictionary.getMetaForClass(MutableQuote.class));
+
+    @Test
+    public void testDecodeFieldsInAnyOrder() {
+        // When
+        final MutableQuote quote = decoder.decode(FieldCursor.create(fix(
+                "8=FIX.5.0", "35=MQ", "20001=N1", "20=2", "21=a", "22=b", "21=c", "22=d",
+                "13=2", "14=1", "14=2", "12=EUR/USD", "11=Q1", "10=000")));
+
+        // Then
+        assertEquals("Q1", quote.quoteId);
+        assertEquals("EUR/USD", quote.symbol.toString());
+        assertEquals(asList(1, 2), quote.amounts);
+        assertEquals("N1", quote.note);
+        assertEquals(2, quote.paramsList.size());
+        assertEquals("b", quote.paramsList.get(0).getParam2());
+        assertEquals("c", quote.paramsList.get(1).getParam1());
+    }
+
+    @Test
+    public void testSkipUnknownFieldsAndKeepFirstOccurrence() {
+        // When
+        final MutableQuote quote = decoder.decode(FieldCursor.create(fix(
+                "11=Q1", "999=X", "11=Q2", "12=S", "13=0", "20=1", "21=a", "22=b", "10=000")));
+
+        // Then
+        assertEquals("Q1", quote.quoteId);
+        assertEquals(0, quote.amounts.size());
+        assertNull(quote.note);
+    }
+
+    @Test
+    public void testScopeNestedGroupEntries() {
+        // Given
+        final FixBlockDecoder<Allocation> allocationDecoder =
+                extractor.decoderFor(fixMetaDictionary.getMetaForClass(Allocation.class));
+
+        // When
+        final Allocation allocation = allocationDecoder.decode(FieldCursor.create(fix(
+                "35=AL", "70=AL1", "55=EUR/USD", "454=1", "455=EURUSD=", "78=2",
+                "79=A1", "539=2", "448=P1", "452=1", "448=P2",
+                "79=A2", "80=5",
+                "58=done", "10=000")));
+
+        // Then
+        assertEquals("AL1", allocation.allocId);
+        assertEquals("EUR/USD", allocation.instrument.symbol);
+        assertEquals(asList("EURUSD="), allocation.instrument.altIds);
+        assertEquals(2, allocation.accounts.size());
+        assertEquals("done", allocation.text);
+
+        final AllocAccount first = allocation.accounts.get(0);
+        assertEquals("A1", first.account);
+        assertNull(first.qty);
+        assertEquals(2, first.parties.size());
+        assertEquals(Integer.valueOf(1), first.parties.get(0).role);
+        assertEquals("P2", first.parties.get(1).id);
+        assertNull(first.parties.get(1).role);
+
+        final AllocAccount second = allocation.accounts.get(1);
+        assertEquals("A2", second.account);
+        assertEquals(Integer.valueOf(5), second.qty);
+        assertTrue(second.parties.isEmpty());
+    }
+
+    @Test
+    public void testNotReadMoreEntriesThanDeclared() {
+        // When
+        final MutableQuote quote = decoder.decode(FieldCursor.create(fix(
+                "11=Q1", "12=S", "13=1", "14=1", "14=2", "20=1", "21=a", "22=b", "21=c", "22=d")));
+
+        // Then
+        assertEquals(asList(1), quote.amounts);
+        assertEquals(1, quote.paramsList.size());
+
+        // fewer entries than declared are rejected
+        for (String groups : asList("13=2|14=1|20=0", "13=0|20=2|21=a|22=b")) {
+            try {
+                decoder.decode(FieldCursor.create(fix(("11=Q1|12=S|" + groups).split("\\|"))));
+                fail("FixException expected for " + groups);
+            } catch (FixException expected) {
+                assertTrue(expected.getMessage().contains("2 declared, 1 found"));
+            }
+        }
+    }
+
+    @Test
+    public void testSkipUnknownFieldsInsideGroupEntries() {
+        // When
+        final MutableQuote quote = decoder.decode(FieldCursor.create(fix(
+                "11=Q1", "12=S", "13=0", "20=2", "21=a", "999=x", "22=b", "21=c", "22=d", "20001=N1", "10=000")));
+
+        // Then
+        assertEquals(2, quote.paramsList.size());
+        assertEquals("b", quote.paramsList.get(0).getParam2());
+        assertEquals("c", quote.paramsList.get(1).getParam1());
+        assertEquals("d", quote.paramsList.get(1).getParam2());
+        assertEquals("N1", quote.note);
+    }
+
+    @Test
+    public void testDecodeIterableGroupsLazily() {
+        // Given
+        final FixBlockDecoder<BookSnapshot> snapshotDecoder =
+                extractor.decoderFor(fixMetaDictionary.getMetaForClass(BookSnapshot.class));
+
+        // When
+        final BookSnapshot snapshot = snapshotDecoder.decode(FieldCursor.create(fix(
+                "35=W", "55=EUR/USD", "268=3", "269=0", "270=1.1", "271=100", "269=1", "270=1.2", "269=1", "270=1.3",
+                "1021=2", "1022=1", "1022=2", "58=done", "10=000")));
+
+        // Then
+        assertTrue(snapshot.entries instanceof LazyGroup);
+        assertEquals("done", snapshot.text);
+        assertEquals(asList(1, 2), new ArrayList<>((Collection<?>) snapshot.depths));
+
+        final Iterator<BookEntry> entries = snapshot.entries.iterator();
+        final BookEntry first = entries.next();
+        assertEquals('0', first.type);
+        assertEquals(Integer.valueOf(100), first.size);
+        assertNull(entries.next().size);
+        assertEquals(1.3, entries.next().price, 0);
+        assertFalse(entries.hasNext());
+
+        // iterating again decodes the entries again
+        assertEquals(1.1, snapshot.entries.iterator().next().price, 0);
+        assertEquals(3, ((Collection<?>) snapshot.entries).size());
+    }
+
+    @Test(expected = FixException.class)
+    public void testFailIfRequiredFieldOfLazyGroupEntryIsMissing() {
+        extractor.decoderFor(fixMetaDictionary.getMetaForClass(BookSnapshot.class)).decode(FieldCursor.create(fix(
+                "35=W", "55=EUR/USD", "268=2", "269=0", "270=1.1", "269=1", "271=100", "10=000")));
+    }
+
+    @Test(expected = FixException.class)
+    public void testFailIfRequiredFieldIsMissing() {
+        decoder.decode(FieldCursor.create(fix("11=Q1", "13=0", "20=1", "21=a", "22=b")));
+    }
+}
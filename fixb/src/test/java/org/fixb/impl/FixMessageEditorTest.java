@@ -0,0 +1,166 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.impl;
+
+import org.fixb.FixException;
+import org.fixb.meta.FixMetaScanner;
+import org.fixb.test.data.TestModels.MutableQuote;
+import org.fixb.test.data.TestModels.Params;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static java.util.Arrays.asList;
+import static org.fixb.test.TestHelper.fix;
+import static org.junit.Assert.*;
+
+public class FixMessageEditorTest {
+    private final NativeFixSerializer<Object> serializer =
+            new NativeFixSerializer<>("FIX.5.0", FixMetaScanner.scanClassesIn("org.fixb.test.data"));
+    private final FixMessageEditor editor = new FixMessageEditor();
+
+    @Test
+    public void testReplaceFieldValues() {
+        // Given
+        final String original = serializer.serialize(quote("Q1", "EUR/USD"));
+
+        // When
+        final String edited = editor.wrap(original).set(11, "QUOTE-0001").set(12, "GBP/USD").toString();
+
+        // Then
+        assertEquals(serializer.serialize(quote("QUOTE-0001", "GBP/USD")), edited);
+    }
+
+    @Test
+    public void testInsertAndRemoveFields() {
+        // Given
+        final String original = fix("8=FIX.4.4", "9=24", "35=D", "49=A", "56=B", "11=X", "10=000");
+
+        // When
+        final String edited = editor.wrap(original)
+                .set(49, "ROUTER")
+                .remove(56)
+                .setOrInsertAfter(35, 115, "CLIENT")
+                .set(100, "XLON")
+                .toString();
+
+        // Then
+        assertEquals(withCheckSum(fix("8=FIX.4.4", "9=40", "35=D", "115=CLIENT", "49=ROUTER", "11=X", "100=XLON", "")), edited);
+    }
+
+    @Test
+    public void testInsertMissingHeaderFieldsAfterMsgType() {
+        // Given
+        final String original = fix("8=FIX.4.4", "9=15", "35=D", "11=X", "55=Y", "10=000");
+
+        // When
+        final String edited = editor.wrap(original).set(100, "XLON").set(49, "ROUTER").toString();
+
+        // Then
+        assertEquals(withCheckSum(fix("8=FIX.4.4", "9=34", "35=D", "49=ROUTER", "11=X", "55=Y", "100=XLON", "")), edited);
+    }
+
+    @Test
+    public void testReplaceInsertedFieldsInsteadOfDuplicatingThem() {
+        // Given
+        final String original = fix("8=FIX.4.4", "9=10", "35=D", "11=X", "10=000");
+
+        // When
+        final String edited = editor.wrap(original)
+                .set(100, "XLON")
+                .set(100, "XPAR")
+                .setOrInsertAfter(35, 115, "A")
+                .setOrInsertAfter(35, 115, "CLIENT")
+                .set(115, "BROKER")
+                .set(128, "DEST")
+                .remove(128)
+                .toString();
+
+        // Then
+        assertEquals(withCheckSum(fix("8=FIX.4.4", "9=30", "35=D", "115=BROKER", "11=X", "100=XPAR", "")), edited);
+    }
+
+    @Test
+    public void testRestoreRemovedFieldsInPlace() {
+        // Given
+        final String original = fix("8=FIX.4.4", "9=20", "35=D", "49=A", "56=B", "11=X", "10=000");
+
+        // When
+        final String edited = editor.wrap(original)
+                .remove(49)
+                .set(49, "ROUTER")
+                .remove(56)
+                .setOrInsertAfter(35, 56, "DEST")
+                .toString();
+
+        // Then
+        assertEquals(withCheckSum(fix("8=FIX.4.4", "9=28", "35=D", "49=ROUTER", "56=DEST", "11=X", "")), edited);
+    }
+
+    @Test
+    public void testWriteToByteBufferAndPreserveTrailer() {
+        // Given
+        final String original = fix("8=FIX.4.4", "9=5", "35=0", "10=000", "");
+        final ByteBuffer buffer = ByteBuffer.allocate(64);
+
+        // When
+        final int length = editor.wrap(original).set(56, "B").writeTo(buffer);
+
+        // Then
+        final String edited = new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII);
+        assertEquals(withCheckSum(fix("8=FIX.4.4", "9=10", "35=0", "56=B", "")) + "\u0001", edited);
+        assertEquals(edited.length(), length);
+        assertEquals(length, editor.length());
+    }
+
+    @Test
+    public void testDiscardEditsOnWrap() {
+        // Given
+        final String original = serializer.serialize(quote("Q1", "EUR/USD"));
+        editor.wrap(original).set(11, "Q2");
+
+        // When
+        final String edited = editor.wrap(original).toString();
+
+        // Then
+        assertEquals(original, edited);
+        assertEquals("Q1", editor.get(11).toString());
+        assertNull(editor.get(999));
+    }
+
+    @Test(expected = FixException.class)
+    public void testRejectMessageWithoutCheckSum() {
+        editor.wrap(fix("8=FIX.4.4", "9=5", "35=0", ""));
+    }
+
+    private static String withCheckSum(String messageWithoutCheckSum) {
+        int sum = 0;
+        for (int i = 0; i < messageWithoutCheckSum.length(); i++) {
+            sum += messageWithoutCheckSum.charAt(i);
+        }
+        return messageWithoutCheckSum + "10=" + NativeFixMessageBuilder.formatCheckSum(sum % 256);
+    }
+
+    private static MutableQuote quote(String quoteId, String symbol) {
+        final MutableQuote quote = new MutableQuote();
+        quote.quoteId = quoteId;
+        quote.symbol = symbol;
+        quote.amounts = asList(1, 2);
+        quote.paramsList = asList(new Params("p1", "p2"));
+        return quote;
+    }
+}
@@ -30,6 +30,9 @@ import java.util.List;
 import static java.util.Arrays.asList;
 import static org.fixb.test.data.SampleQuote.Side;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
 
@@ -59,6 +62,18 @@ public class NativeFixFieldExtractorTest {
         assertEquals(Side.BUY, extractor.getFieldValue(fix, Side.class, 104, false));
     }
 
+    @Test
+    public void testGetCharSequenceFieldValue() throws Exception {
+        final String fix = TestHelper.fix("55=EUR/USD", "11=ORDER1");
+
+        final CharSequence symbol = extractor.getFieldValue(fix, CharSequence.class, 55, false);
+        final AsciiString orderId = extractor.getFieldValue(fix, AsciiString.class, 11, false);
+
+        assertTrue(symbol instanceof AsciiString);
+        assertEquals(AsciiString.of("EUR/USD"), symbol);
+        assertEquals("ORDER1", orderId.toString());
+    }
+
     @Test
     public void testGetSimpleGroups() throws Exception {
         final String fix = TestHelper.fix("100=3", "101=one", "101=II", "101=3", "101=four");
@@ -98,6 +113,60 @@ public class NativeFixFieldExtractorTest {
         assertEquals(new Sample("two", 20, 2.2), groups.get(1));
     }
 
+    @Test
+    public void testInternedFieldValues() throws Exception {
+        FixBlockMeta<Sample> componentMeta = new FixBlockMeta<>(Sample.class, asList(
+                new FixDynamicFieldMeta(101, false, false, true, Sample.class.getDeclaredField("f1")),
+                new FixDynamicFieldMeta(102, false, false, Sample.class.getDeclaredField("f2")),
+                new FixDynamicFieldMeta(103, false, false, Sample.class.getDeclaredField("f3"))));
+
+        Sample first = extractor.extractFixBlock(FieldCursor.create(TestHelper.fix("101=EUR", "102=1", "103=1.0")), componentMeta);
+        Sample second = extractor.extractFixBlock(FieldCursor.create(TestHelper.fix("101=EUR", "102=2", "103=2.0")), componentMeta);
+
+        assertEquals("EUR", first.f1);
+        assertSame(first.f1, second.f1);
+    }
+
+    @Test
+    public void testLongValueBounds() throws Exception {
+        FieldCursor cursor = FieldCursor.create(TestHelper.fix("1=9223372036854775807", "2=-9223372036854775808",
+                "3=+0000000000000000000042", "4=9223372036854775808", "5=-9223372036854775809"));
+
+        assertTrue(cursor.nextField(1));
+        assertEquals(Long.MAX_VALUE, cursor.lastValueAsLong());
+        assertTrue(cursor.nextField(2));
+        assertEquals(Long.MIN_VALUE, cursor.lastValueAsLong());
+        assertTrue(cursor.nextField(3));
+        assertEquals(42L, cursor.lastValueAsLong());
+        for (int tag = 4; tag <= 5; tag++) {
+            assertTrue(cursor.nextField(tag));
+            try {
+                cursor.lastValueAsLong();
+                fail("NumberFormatException expected for " + cursor.lastValue());
+            } catch (NumberFormatException expected) {
+                // out of range
+            }
+        }
+    }
+
+    @Test
+    public void testTagLengthIsLimited() throws Exception {
+        // Given
+        FieldCursor cursor = FieldCursor.create(TestHelper.fix("999999999=a", "4294967351=b"));
+
+        // When
+        assertTrue(cursor.nextField());
+        assertEquals(999999999, cursor.lastTag());
+
+        // Then (the tag must not overflow to 55)
+        try {
+            cursor.nextField();
+            fail("NumberFormatException expected for a 10-digit tag");
+        } catch (NumberFormatException expected) {
+            // too long
+        }
+    }
+
     @Test
     public void shouldSupportJodaTime() throws Exception {
         final String fix = TestHelper.fix(
@@ -90,6 +90,14 @@ public class NativeFixMessageBuilderTest {
                 "10=[0-9]+")));
     }
 
+    @Test
+    public void testCheckSumIsCalculatedOverAllPrecedingFields() throws Exception {
+        builder.setField(BEGIN_STRING_TAG, "FIX.4.4");
+        builder.setField(11, "a");
+
+        assertEquals(fix("8=FIX.4.4", "9=5", "11=a", "10=206"), builder.build());
+    }
+
     @Test(expected = FixException.class)
     public void testThrowsExceptionWhenBeginStringIsNotSet() throws Exception {
         builder.setField(123, "any value");
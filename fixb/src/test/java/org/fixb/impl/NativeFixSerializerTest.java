@@ -0,0 +1,517 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fixb.impl;
+
+import com.google.common.collect.Iterables;
+import org.fixb.FixException;
+import org.fixb.FixGroupSource;
+import org.fixb.UnknownFields;
+import org.fixb.meta.FixMetaDictionary;
+import org.fixb.meta.FixMetaScanner;
+import org.fixb.test.TestHelper;
+import org.fixb.test.data.TestModels.AllocAccount;
+import org.fixb.test.data.TestModels.Allocation;
+import org.fixb.test.data.TestModels.ArrayQuote;
+import org.fixb.test.data.TestModels.BookSnapshot;
+import org.fixb.test.data.TestModels.Component;
+import org.fixb.test.data.TestModels.Message1;
+import org.fixb.test.data.TestModels.MutableQuote;
+import org.fixb.test.data.TestModels.Instrument;
+import org.fixb.test.data.TestModels.Params;
+import org.fixb.test.data.TestModels.Party;
+import org.fixb.test.data.TestModels.ProxiedQuote;
+import org.fixb.test.data.TestModels.SecurityList;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+public class NativeFixSerializerTest {
+    private final FixMetaDictionary fixMetaDictionary = FixMetaScanner.scanClassesIn("org.fixb.test.data");
+    private final NativeFixSerializer<Object> serializer = new NativeFixSerializer<>("FIX.5.0", fixMetaDictionary);
+
+    @Test
+    public void testDeserializeFromBytes() {
+        // Given
+        final byte[] buffer = ("xx" + serializer.serialize(quote("Q1", "EUR/USD", 1, 2))).getBytes(StandardCharsets.US_ASCII);
+
+        // When
+        final MutableQuote quote = (MutableQuote) serializer.deserialize(buffer, 2, buffer.length - 2);
+
+        // Then
+        assertEquals("Q1", quote.quoteId);
+        assertEquals(AsciiString.of("EUR/USD"), quote.symbol);
+        assertEquals(asList(1, 2), quote.amounts);
+    }
+
+    @Test
+    public void testSerializeToByteBufferAsString() {
+        // Given
+        final MutableQuote quote = quote("Q3", "EUR/USD", 1, 2);
+        final ByteBuffer buffer = ByteBuffer.allocate(512);
+        buffer.put((byte) 'x');
+
+        // When
+        final int length = serializer.serialize(quote, buffer);
+        serializer.serialize(quote, buffer);
+
+        // Then
+        final String expected = serializer.serialize(quote);
+        assertEquals(expected.length(), length);
+        assertEquals("x" + expected + expected, new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testLeaveByteBufferUnchangedWhenMessageDoesNotFit() {
+        // Given
+        final MutableQuote quote = quote("Q3", "EUR/USD", 1, 2);
+        final int length = serializer.serialize(quote).length();
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.put((byte) 'x');
+
+        // When
+        try {
+            serializer.serialize(quote, buffer);
+            fail("BufferOverflowException expected");
+        } catch (BufferOverflowException expected) {
+            // Then
+            assertEquals(1, buffer.position());
+        }
+        buffer.position(length - 1);
+        try {
+            serializer.serializeBody(quote, buffer);
+            fail("BufferOverflowException expected");
+        } catch (BufferOverflowException expected) {
+            assertEquals(length - 1, buffer.position());
+        }
+    }
+
+    @Test
+    public void testDeserializeReusingPreviousInstanceOfSameType() {
+        // Given
+        final MutableQuote previous = serializer.deserializeInto(serializer.serialize(quote("Q4", "EUR/USD", 1)), new MutableQuote());
+
+        // When
+        final Object same = serializer.deserialize(serializer.serialize(quote("Q5", "GBP/USD", 2)), previous);
+        final Object other = serializer.deserialize(serializer.serialize(quote("Q6", "GBP/USD", 3)), new Params("p1", "p2"));
+
+        // Then
+        assertSame(previous, same);
+        assertEquals("Q5", previous.quoteId);
+        assertEquals("Q6", ((MutableQuote) other).quoteId);
+    }
+
+    @Test
+    public void testPassUnknownFieldsThroughVerbatim() {
+        // Given
+        final String original = TestHelper.fix("8=FIX.5.0", "9=0", "35=UQ", "49=SENDER", "11=Q1", "13=2", "14=1", "14=2",
+                "9001=custom", "5000=A=B", "10=000");
+
+        // When
+        final ProxiedQuote quote = (ProxiedQuote) serializer.deserialize(original);
+        final String encoded = serializer.serialize(quote);
+
+        // Then
+        assertEquals(3, quote.unknownFields.size());
+        assertEquals("SENDER", quote.unknownFields.get(49).toString());
+        assertEquals(9001, quote.unknownFields.getTag(1));
+        assertEquals("A=B", quote.unknownFields.getValue(2).toString());
+        assertTrue(quote.unknownFields.isHeader(0));
+        assertFalse(quote.unknownFields.isHeader(1));
+        assertTrue(encoded, encoded.contains(TestHelper.fix("35=UQ", "49=SENDER", "11=Q1", "13=2", "14=1", "14=2", "9001=custom", "5000=A=B", "10=")));
+        final ProxiedQuote decoded = (ProxiedQuote) serializer.deserialize(encoded);
+        assertEquals(quote.unknownFields.toString(), decoded.unknownFields.toString());
+    }
+
+    @Test
+    public void testPassUnknownFieldsOfGroupEntriesThrough() throws IOException {
+        // Given
+        final String original = TestHelper.fix("8=FIX.5.0", "9=0", "35=UQ", "49=SENDER", "11=Q1", "9001=custom",
+                "453=2", "448=A", "9100=x", "452=1", "448=B", "9101=y", "10=000");
+
+        // When
+        final ProxiedQuote quote = (ProxiedQuote) serializer.deserialize(original);
+        final String encoded = serializer.serialize(quote);
+        final ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        serializer.serialize(quote, streamed);
+
+        // Then
+        assertEquals(TestHelper.fix("49=SENDER", "9001=custom", ""), quote.unknownFields.toString());
+        assertEquals(2, quote.parties.size());
+        assertEquals("x", quote.parties.get(0).unknownFields.get(9100).toString());
+        assertEquals(1, quote.parties.get(0).unknownFields.size());
+        assertEquals("y", quote.parties.get(1).unknownFields.get(9101).toString());
+        assertTrue(encoded, encoded.contains(TestHelper.fix("35=UQ", "49=SENDER", "11=Q1", "9001=custom",
+                "453=2", "448=A", "452=1", "9100=x", "448=B", "9101=y", "10=")));
+        assertEquals(encoded, streamed.toString("US-ASCII"));
+        final ProxiedQuote decoded = (ProxiedQuote) serializer.deserialize(encoded);
+        assertEquals("x", decoded.parties.get(0).unknownFields.get(9100).toString());
+        assertEquals("y", decoded.parties.get(1).unknownFields.get(9101).toString());
+        assertEquals(quote.unknownFields.toString(), decoded.unknownFields.toString());
+    }
+
+    @Test
+    public void testReuseUnknownFieldsHolderWhenDeserializingInto() {
+        // Given
+        final ProxiedQuote target = new ProxiedQuote();
+        serializer.deserializeInto(TestHelper.fix("8=FIX.5.0", "9=0", "35=UQ", "11=Q1", "7000=x", "7001=y", "10=000"), target);
+        final UnknownFields holder = target.unknownFields;
+
+        // When
+        serializer.deserializeInto(TestHelper.fix("8=FIX.5.0", "9=0", "35=UQ", "11=Q2", "7002=z", "10=000"), target);
+
+        // Then
+        assertSame(holder, target.unknownFields);
+        assertEquals(1, holder.size());
+        assertEquals("z", holder.get(7002).toString());
+        assertNull(holder.get(7000));
+    }
+
+    @Test
+    public void testDeserializeIntoExistingInstanceReusingGroupCollections() {
+        // Given
+        final MutableQuote target = new MutableQuote();
+        final List<Integer> amounts = new ArrayList<>(asList(7, 8, 9));
+        target.amounts = amounts;
+
+        // When
+        final MutableQuote result = serializer.deserializeInto(serializer.serialize(quote("Q2", "GBP/USD", 3)), target);
+
+        // Then
+        assertSame(target, result);
+        assertSame(amounts, result.amounts);
+        assertEquals(asList(3), result.amounts);
+        assertEquals("Q2", result.quoteId);
+        assertEquals("p1", result.paramsList.get(0).getParam1());
+    }
+
+    @Test(expected = FixException.class)
+    public void testNotDeserializeIntoInstanceOfDifferentType() {
+        serializer.deserializeInto(serializer.serialize(new Message1(new Component("V"))), new MutableQuote());
+    }
+
+    @Test(expected = FixException.class)
+    public void testNotPoolConstructorBasedTypes() {
+        serializer.enableObjectPool(Message1.class, 1);
+    }
+
+    @Test
+    public void testRecycleReleasedInstances() {
+        // Given
+        serializer.enableObjectPool(MutableQuote.class, 1);
+        final String fix = serializer.serialize(quote("Q3", "EUR/JPY", 5));
+        final Object first = serializer.deserialize(fix);
+
+        // When
+        assertTrue(serializer.release(first));
+        final Object second = serializer.deserialize(fix);
+        final Object third = serializer.deserialize(fix);
+
+        // Then
+        assertSame(first, second);
+        assertNotSame(second, third);
+        assertEquals("Q3", ((MutableQuote) third).quoteId);
+    }
+
+    @Test
+    public void testEncodeAndDecodeArrayGroups() {
+        // Given
+        final ArrayQuote quote = new ArrayQuote();
+        quote.amounts = new int[]{1, 2, 3};
+        quote.sizes = new long[]{10000000000L};
+        quote.prices = new double[]{1.5, 2.25};
+        quote.paramsList = new Params[]{new Params("a", "b"), new Params("c", "d")};
+
+        // When
+        final String fix = serializer.serialize(quote);
+        final ArrayQuote result = (ArrayQuote) serializer.deserialize(fix);
+
+        // Then
+        assertTrue(fix.contains(TestHelper.fix("13=3", "14=1", "14=2", "14=3", "")));
+        assertArrayEquals(new int[]{1, 2, 3}, result.amounts);
+        assertArrayEquals(new long[]{10000000000L}, result.sizes);
+        assertEquals(2.25, result.prices[1], 0);
+        assertEquals("c", result.paramsList[1].getParam1());
+    }
+
+    @Test
+    public void testReuseArraysOfTheSameLength() {
+        // Given
+        final ArrayQuote quote = new ArrayQuote();
+        quote.amounts = new int[]{1, 2};
+        quote.sizes = new long[]{3};
+        quote.prices = new double[0];
+        quote.paramsList = new Params[]{new Params("a", "b")};
+        final String fix = serializer.serialize(quote);
+
+        final ArrayQuote target = new ArrayQuote();
+        final int[] amounts = new int[2];
+        target.amounts = amounts;
+
+        // When
+        serializer.deserializeInto(fix, target);
+
+        // Then
+        assertSame(amounts, target.amounts);
+        assertArrayEquals(new int[]{1, 2}, amounts);
+        assertEquals(0, target.prices.length);
+    }
+
+    @Test
+    public void testEncodeAndDecodeNestedGroups() {
+        // Given
+        final Allocation allocation = new Allocation();
+        allocation.allocId = "AL1";
+        allocation.instrument = new Instrument();
+        allocation.instrument.symbol = "EUR/USD";
+        allocation.instrument.altIds = asList("EURUSD=", "EUR=");
+        allocation.accounts = asList(account("A1", null, party("P1", 1), party("P2", null)), account("A2", 5));
+
+        // When
+        final Allocation result = (Allocation) serializer.deserialize(serializer.serialize(allocation));
+
+        // Then
+        assertEquals("AL1", result.allocId);
+        assertEquals(asList("EURUSD=", "EUR="), result.instrument.altIds);
+        assertEquals(2, result.accounts.size());
+        assertEquals(2, result.accounts.get(0).parties.size());
+        assertEquals("P2", result.accounts.get(0).parties.get(1).id);
+        assertNull(result.accounts.get(0).qty);
+        assertEquals(Integer.valueOf(5), result.accounts.get(1).qty);
+        assertTrue(result.accounts.get(1).parties.isEmpty());
+        assertNull(result.text);
+    }
+
+    @Test
+    public void testReuseComponentGroupEntries() {
+        // Given
+        final Allocation allocation = new Allocation();
+        allocation.allocId = "AL1";
+        allocation.instrument = new Instrument();
+        allocation.instrument.symbol = "EUR/USD";
+        allocation.accounts = asList(account("A1", 1, party("P1", 1), party("P2", 2)), account("A2", 2));
+        final Allocation target = (Allocation) serializer.deserialize(serializer.serialize(allocation));
+        final List<AllocAccount> accounts = target.accounts;
+        final AllocAccount firstAccount = accounts.get(0);
+        final List<Party> parties = firstAccount.parties;
+        final Party firstParty = parties.get(0);
+
+        // When
+        allocation.accounts = asList(account("A3", null, party("P3", null)));
+        serializer.deserializeInto(serializer.serialize(allocation), target);
+
+        // Then
+        assertSame(accounts, target.accounts);
+        assertEquals(1, accounts.size());
+        assertSame(firstAccount, accounts.get(0));
+        assertEquals("A3", firstAccount.account);
+        assertNull(firstAccount.qty);
+        assertSame(parties, firstAccount.parties);
+        assertEquals(1, parties.size());
+        assertSame(firstParty, parties.get(0));
+        assertEquals("P3", firstParty.id);
+        assertNull(firstParty.role);
+    }
+
+    @Test
+    public void testIgnoreReleaseOfObjectsWithoutPool() {
+        // Given
+        serializer.enableObjectPool(MutableQuote.class, 1);
+
+        // When / Then
+        assertFalse(serializer.release(new Allocation()));
+        assertFalse(serializer.release("not a FIX message"));
+        assertFalse(serializer.release(null));
+        assertTrue(serializer.release(new MutableQuote()));
+    }
+
+    @Test
+    public void testReEncodeLazilyDecodedGroups() {
+        // Given
+        final String fix = TestHelper.fix("8=FIX.5.0", "9=0", "35=W", "55=EUR/USD", "268=2", "269=0", "270=1.1", "271=100",
+                "269=1", "270=1.2", "");
+
+        // When
+        final BookSnapshot snapshot = (BookSnapshot) serializer.deserialize(fix);
+        final String result = serializer.serialize(snapshot);
+
+        // Then
+        assertTrue(result.contains(TestHelper.fix("268=2", "269=0", "270=1.1", "271=100", "269=1", "270=1.2", "")));
+    }
+
+    @Test
+    public void testSerializeToStream() throws IOException {
+        // Given
+        final MutableQuote quote = quote("Q1", "EUR/USD", 1, 2, 3);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        serializer.serialize(quote, out);
+
+        // Then
+        assertEquals(serializer.serialize(quote), new String(out.toByteArray(), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testStreamGeneratedGroups() throws IOException {
+        // Given
+        final int[] iterations = new int[1];
+        final MutableQuote quote = quote("Q1", "EUR/USD");
+        quote.amounts = new AbstractList<Integer>() {
+            @Override
+            public Integer get(int index) {
+                return index;
+            }
+
+            @Override
+            public int size() {
+                return 20000;
+            }
+
+            @Override
+            public Iterator<Integer> iterator() {
+                iterations[0]++;
+                return super.iterator();
+            }
+        };
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        serializer.serialize(quote, out);
+
+        // Then
+        assertEquals(2, iterations[0]);
+        final String fix = new String(out.toByteArray(), StandardCharsets.US_ASCII);
+        assertEquals(serializer.serialize(quote), fix);
+        assertEquals(20000, ((MutableQuote) serializer.deserialize(fix)).amounts.size());
+    }
+
+    @Test
+    public void testStreamGroupSourcesWithoutCountingTheirEntries() throws IOException {
+        // Given
+        final int[] iterations = new int[1];
+        final SecurityList securityList = new SecurityList();
+        securityList.requestId = "R1";
+        securityList.symbols = new FixGroupSource<String>() {
+            @Override
+            public int size() {
+                return 20000;
+            }
+
+            @Override
+            public Iterator<String> iterator() {
+                iterations[0]++;
+                return new Iterator<String>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size();
+                    }
+
+                    @Override
+                    public String next() {
+                        return "S" + next++;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        serializer.serialize(securityList, out);
+
+        // Then
+        assertEquals(2, iterations[0]);
+        final String fix = new String(out.toByteArray(), StandardCharsets.US_ASCII);
+        assertEquals(serializer.serialize(securityList), fix);
+        final FixGroupSource<String> symbols = ((SecurityList) serializer.deserialize(fix)).symbols;
+        assertEquals(20000, symbols.size());
+        assertEquals("S19999", Iterables.getLast(symbols));
+    }
+
+    @Test
+    public void testRejectNonAsciiCharactersOnEveryPath() {
+        // Given
+        final MutableQuote quote = quote("Q1", "EUR/\u20ac", 1);
+
+        // When
+        final List<String> failures = new ArrayList<>();
+        try {
+            serializer.serialize(quote);
+        } catch (FixException e) {
+            failures.add(e.getMessage());
+        }
+        try {
+            serializer.serialize(quote, ByteBuffer.allocate(1024));
+        } catch (FixException e) {
+            failures.add(e.getMessage());
+        }
+        try {
+            serializer.serialize(quote, new ByteArrayOutputStream());
+        } catch (FixException e) {
+            failures.add(e.getMessage());
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+
+        // Then
+        assertEquals(3, failures.size());
+        for (String failure : failures) {
+            assertTrue(failure, failure.contains("Non-ASCII character [\\u20ac]"));
+        }
+    }
+
+    private static AllocAccount account(String account, Integer qty, Party... parties) {
+        final AllocAccount result = new AllocAccount();
+        result.account = account;
+        result.qty = qty;
+        result.parties = asList(parties);
+        return result;
+    }
+
+    private static Party party(String id, Integer role) {
+        final Party result = new Party();
+        result.id = id;
+        result.role = role;
+        return result;
+    }
+
+    private static MutableQuote quote(String quoteId, String symbol, Integer... amounts) {
+        final MutableQuote quote = new MutableQuote();
+        quote.quoteId = quoteId;
+        quote.symbol = symbol;
+        quote.amounts = asList(amounts);
+        quote.paramsList = asList(new Params("p1", "p2"));
+        return quote;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.impl;
+
+import org.fixb.FixException;
+import org.fixb.annotations.FixField;
+import org.fixb.annotations.FixMessage;
+import org.fixb.meta.FixMetaScanner;
+import org.fixb.test.data.TestModels.MutableQuote;
+import org.fixb.test.data.TestModels.Params;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+public class PatchableFixMessageTest {
+    private final NativeFixSerializer<Object> serializer =
+            new NativeFixSerializer<>("FIX.5.0", FixMetaScanner.scanClassesIn("org.fixb.test.data"));
+
+    @Test
+    public void testInsertZeroFilledSlotsAfterMsgType() {
+        // When
+        final PatchableFixMessage message = serializer.serializePatchable(quote());
+
+        // Then
+        final String plain = serializer.serialize(quote());
+        assertEquals(expected(plain, "0000000000", "00000000-00:00:00.000"), message.toString());
+    }
+
+    @Test
+    public void testPatchSeqNumAndSendingTimeUpdatingCheckSum() throws Exception {
+        // Given
+        final PatchableFixMessage message = serializer.serializePatchable(quote());
+
+        // When
+        message.setMsgSeqNum(999).setSendingTime(1234567890123L);
+        message.setMsgSeqNum(42).setSendingTime(951782400007L);
+
+        // Then
+        final String plain = serializer.serialize(quote());
+        final String expected = expected(plain, "0000000042", "20000229-00:00:00.007");
+        assertEquals(expected, message.toString());
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        message.writeTo(out);
+        assertEquals(expected, out.toString("US-ASCII"));
+        assertEquals(expected.length(), message.length());
+        assertEquals("Q1", ((MutableQuote) serializer.deserialize(message.toString())).quoteId);
+    }
+
+    @Test
+    public void testFormatSendingTimeInUtc() {
+        // When
+        final String message = serializer.serializePatchable(quote()).setSendingTime(1234567890123L).toString();
+
+        // Then
+        assertTrue(message.contains("\u000152=20090213-23:31:30.123\u0001"));
+        assertTrue(serializer.serializePatchable(quote()).setSendingTime(-1L).toString()
+                .contains("\u000152=19691231-23:59:59.999\u0001"));
+        assertTrue(serializer.serializePatchable(quote()).setSendingTime(-62167219200000L).toString()
+                .contains("\u000152=00000101-00:00:00.000\u0001"));
+    }
+
+    @Test
+    public void testRejectClassesBindingPatchedTags() {
+        try {
+            // When
+            serializer.serializePatchable(new TimedQuote());
+            fail("FixException expected");
+        } catch (FixException e) {
+            // Then
+            assertTrue(e.getMessage().contains("Tag 52 is bound by " + TimedQuote.class.getName()));
+        }
+    }
+
+    private static String expected(String plain, String seqNum, String sendingTime) {
+        final int bodyStart = plain.indexOf("35=");
+        final int msgTypeEnd = plain.indexOf('\u0001', bodyStart) + 1;
+        final String body = plain.substring(bodyStart, msgTypeEnd)
+                + "34=" + seqNum + "\u0001" + "52=" + sendingTime + "\u0001"
+                + plain.substring(msgTypeEnd, plain.lastIndexOf("10="));
+        final String message = "8=FIX.5.0\u00019=" + body.length() + "\u0001" + body;
+        int sum = 0;
+        for (int i = 0; i < message.length(); i++) {
+            sum += message.charAt(i);
+        }
+        return message + "10=" + NativeFixMessageBuilder.formatCheckSum(sum % 256);
+    }
+
+    private static MutableQuote quote() {
+        final MutableQuote quote = new MutableQuote();
+        quote.quoteId = "Q1";
+        quote.symbol = "EUR/USD";
+        quote.amounts = asList(1, 2);
+        quote.paramsList = asList(new Params("p1", "p2"));
+        return quote;
+    }
+
+    @FixMessage(type = "TQ")
+    public static class TimedQuote {
+        @FixField(tag = 11)
+        public String quoteId = "Q1";
+        @FixField(tag = 52, header = true)
+        public String sendingTime = "20130514-12:34:56.789";
+    }
+}
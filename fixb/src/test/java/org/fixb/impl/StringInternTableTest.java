@@ -0,0 +1,56 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fixb.impl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StringInternTableTest {
+    private final StringInternTable table = new StringInternTable(16);
+
+    @Test
+    public void testReturnCanonicalInstancesForEqualRegions() {
+        // Given
+        final String first = table.intern("55=EUR/USD", 3, 10);
+
+        // When
+        final String second = table.intern(AsciiString.of("xxEUR/USDxx"), 2, 9);
+
+        // Then
+        assertEquals("EUR/USD", first);
+        assertSame(first, second);
+        assertSame(first, table.intern(new String("EUR/USD")));
+    }
+
+    @Test
+    public void testStayBounded() {
+        // When
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("V" + i, table.intern("V" + i));
+        }
+
+        // Then
+        assertEquals(16, table.capacity());
+    }
+
+    @Test
+    public void testRoundCapacityUpToPowerOfTwo() {
+        assertEquals(8, new StringInternTable(5).capacity());
+        assertEquals(StringInternTable.DEFAULT_CAPACITY, new StringInternTable().capacity());
+    }
+}
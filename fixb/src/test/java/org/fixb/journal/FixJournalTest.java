@@ -0,0 +1,143 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fixb.journal;
+
+import org.fixb.FixException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.fixb.test.TestHelper.fix;
+import static org.junit.Assert.*;
+
+public class FixJournalTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReadJournaledMessagesBySeqNum() throws IOException {
+        // Given
+        final Path directory = folder.newFolder("journal").toPath();
+
+        try (FixJournal journal = FixJournal.open(directory)) {
+            // When
+            assertEquals(1, journal.append(message(1)));
+            journal.append(2, message(2).getBytes(StandardCharsets.US_ASCII), 0, message(2).length());
+            journal.append(5, ByteBuffer.wrap(message(5).getBytes(StandardCharsets.US_ASCII)));
+
+            // Then
+            assertEquals(5, journal.getLastSeqNum());
+            assertEquals(message(1), journal.read(1));
+            assertEquals(message(2), journal.read(2));
+            assertNull(journal.read(3));
+            assertEquals(message(5), journal.read(5));
+            assertNull(journal.read(6));
+        }
+    }
+
+    @Test
+    public void testTransferRangesAcrossSegments() throws IOException {
+        // Given
+        final Path directory = folder.newFolder("journal").toPath();
+        final int segmentSize = 2 * FixJournal.AVERAGE_MESSAGE_SIZE;
+
+        try (FixJournal journal = FixJournal.open(directory, segmentSize, FixJournal.ForcePolicy.always())) {
+            for (int seqNum = 1; seqNum <= 10; seqNum++) {
+                journal.append(message(seqNum));
+            }
+
+            // When
+            final ByteArrayOutputStream range = new ByteArrayOutputStream();
+            final long rangeLength = journal.transferTo(2, 7, Channels.newChannel(range));
+            final ByteArrayOutputStream tail = new ByteArrayOutputStream();
+            journal.transferTo(9, 0, Channels.newChannel(tail));
+
+            // Then
+            assertEquals(messages(2, 7), range.toString("US-ASCII"));
+            assertEquals(rangeLength, range.size());
+            assertEquals(messages(9, 10), tail.toString("US-ASCII"));
+            assertEquals(5, countFiles(directory, "*.data"));
+        }
+    }
+
+    @Test
+    public void testContinueAfterLastJournaledMessageWhenReopened() throws IOException {
+        // Given
+        final Path directory = folder.newFolder("journal").toPath();
+        final int segmentSize = 2 * FixJournal.AVERAGE_MESSAGE_SIZE;
+        final FixJournal.ForcePolicy policy = FixJournal.ForcePolicy.batched(2, 1, TimeUnit.SECONDS);
+        try (FixJournal journal = FixJournal.open(directory, segmentSize, policy)) {
+            for (int seqNum = 1; seqNum <= 3; seqNum++) {
+                journal.append(message(seqNum));
+            }
+        }
+
+        // When
+        try (FixJournal journal = FixJournal.open(directory, segmentSize, policy)) {
+            final int lastSeqNum = journal.getLastSeqNum();
+            journal.append(message(4));
+            journal.append(message(5));
+
+            // Then
+            assertEquals(3, lastSeqNum);
+            assertEquals(message(3), journal.read(3));
+            final ByteArrayOutputStream all = new ByteArrayOutputStream();
+            journal.transferTo(1, 0, Channels.newChannel(all));
+            assertEquals(messages(1, 5), all.toString("US-ASCII"));
+        }
+    }
+
+    @Test(expected = FixException.class)
+    public void testRejectSeqNumsOutOfOrder() throws IOException {
+        try (FixJournal journal = FixJournal.open(folder.newFolder("journal").toPath())) {
+            journal.append(message(2));
+            journal.append(message(1));
+        }
+    }
+
+    private static String message(int seqNum) {
+        return fix("8=FIX.4.4", "9=24", "35=0", "34=" + seqNum, "52=20130101-12:00:00", "10=000", "");
+    }
+
+    private static String messages(int from, int to) {
+        final StringBuilder result = new StringBuilder();
+        for (int seqNum = from; seqNum <= to; seqNum++) {
+            result.append(message(seqNum));
+        }
+        return result.toString();
+    }
+
+    private static int countFiles(Path directory, String glob) throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, glob)) {
+            for (Path ignored : files) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.log;
+
+import org.fixb.FixException;
+import org.fixb.impl.NativeFixSerializer;
+import org.fixb.meta.FixMetaScanner;
+import org.fixb.test.data.TestModels.MutableQuote;
+import org.fixb.test.data.TestModels.Params;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.fixb.test.TestHelper.fix;
+import static org.junit.Assert.*;
+
+public class FixLogIndexTest {
+    private static final String ORDER_1 = fix("8=FIX.4.4", "9=5", "35=D", "11=ORD-1", "52=20130101-12:00:00.000", "55=EUR/USD", "10=000", "");
+    private static final String ORDER_2 = fix("8=FIX.4.4", "9=5", "35=D", "11=ORD-2", "52=20130101-12:00:01.500", "55=GBP/USD", "10=000", "");
+    private static final String CANCEL_1 = fix("8=FIX.4.4", "9=5", "35=F", "11=ORD-1", "52=20130101-12:00:02", "55=EUR/USD", "10=000", "");
+    private static final String HEARTBEAT = fix("8=FIX.4.4", "9=5", "35=0", "52=20130101-12:00:03.000", "10=000", "");
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private int logs;
+
+    @Test
+    public void testFindMessagesByKey() throws IOException {
+        // Given
+        final Path log = writeLog(
+                "12:00:00.001 IN  " + ORDER_1 + "\n",
+                "12:00:01.501 IN  " + ORDER_2 + "\n",
+                "12:00:02.001 OUT " + HEARTBEAT + "\n",
+                "12:00:02.002 IN  " + CANCEL_1 + "\n");
+        final Path indexDir = folder.newFolder("idx").toPath();
+
+        // When
+        final long count = new FixLogIndexer(log).byKey(11).byKey(55).writeIndexes(indexDir);
+
+        // Then
+        assertEquals(4, count);
+        try (FixLogIndex byClOrdId = FixLogIndex.open(log, FixLogIndexer.indexFile(indexDir, log, 11));
+             FixLogIndex bySymbol = FixLogIndex.open(log, FixLogIndexer.indexFile(indexDir, log, 55))) {
+            assertEquals(11, byClOrdId.getTag());
+            assertFalse(byClOrdId.isTimestampIndex());
+            assertEquals(3, byClOrdId.size());
+            assertEquals(asList(ORDER_1, CANCEL_1), byClOrdId.find("ORD-1"));
+            assertEquals(asList(ORDER_2), byClOrdId.find("ORD-2"));
+            assertEquals(asList(ORDER_2), bySymbol.find("GBP/USD"));
+            assertTrue(byClOrdId.find("ORD-3").isEmpty());
+        }
+    }
+
+    @Test
+    public void testFindMessagesByTimestampRange() throws IOException {
+        // Given
+        final Path log = writeLog(CANCEL_1, ORDER_2, HEARTBEAT, ORDER_1);
+        final Path indexDir = folder.newFolder("idx").toPath();
+        new FixLogIndexer(log).byTimestamp(52).writeIndexes(indexDir);
+
+        // When
+        try (FixLogIndex index = FixLogIndex.open(log, FixLogIndexer.indexFile(indexDir, log, 52))) {
+            // Then
+            assertTrue(index.isTimestampIndex());
+            assertEquals(asList(ORDER_1, ORDER_2, CANCEL_1), index.findBetween("20130101-12:00:00", "20130101-12:00:02.000"));
+            assertEquals(asList(ORDER_2), index.findBetween("20130101-12:00:01", "20130101-12:00:01.999"));
+            assertEquals(asList(HEARTBEAT), index.find("20130101-12:00:03"));
+        }
+    }
+
+    @Test
+    public void testFindMessagesAcrossSegments() throws IOException {
+        // Given
+        final Path log = writeLog(CANCEL_1, ORDER_2, HEARTBEAT, ORDER_1, ORDER_2);
+        final Path indexDir = folder.newFolder("idx").toPath();
+        new FixLogIndexer(log).byTimestamp(52).byKey(11).writeIndexes(indexDir);
+
+        // When
+        try (FixLogIndex byTime = FixLogIndex.open(log, FixLogIndexer.indexFile(indexDir, log, 52), 2);
+             FixLogIndex byClOrdId = FixLogIndex.open(log, FixLogIndexer.indexFile(indexDir, log, 11), 1)) {
+            // Then
+            assertEquals(5, byTime.size());
+            assertEquals(asList(ORDER_1, ORDER_2, ORDER_2, CANCEL_1, HEARTBEAT),
+                    byTime.findBetween("20130101-12:00:00", "20130101-12:00:03"));
+            assertEquals(asList(ORDER_2, ORDER_2), byClOrdId.find("ORD-2"));
+            assertEquals(asList(CANCEL_1, ORDER_1), byClOrdId.find("ORD-1"));
+        }
+    }
+
+    @Test(expected = FixException.class)
+    public void testRejectPartialTimestamps() throws IOException {
+        // Given
+        final Path log = writeLog(ORDER_1);
+        final Path indexDir = folder.newFolder("idx").toPath();
+        new FixLogIndexer(log).byTimestamp(52).writeIndexes(indexDir);
+
+        // When
+        try (FixLogIndex index = FixLogIndex.open(log, FixLogIndexer.indexFile(indexDir, log, 52))) {
+            index.findBetween("20130101-12", "20130101-13:00:00");
+        }
+    }
+
+    @Test
+    public void testDecodeFoundMessages() throws IOException {
+        // Given
+        final NativeFixSerializer<Object> serializer =
+                new NativeFixSerializer<>("FIX.5.0", FixMetaScanner.scanClassesIn("org.fixb.test.data"));
+        final MutableQuote quote = new MutableQuote();
+        quote.quoteId = "Q1";
+        quote.symbol = "EUR/USD";
+        quote.amounts = asList(1, 2);
+        quote.paramsList = asList(new Params("p1", "p2"));
+        final String message = serializer.serialize(quote);
+        final Path log = writeLog(ORDER_2 + "\n", message + "\n");
+        final Path indexDir = folder.newFolder("idx").toPath();
+        new FixLogIndexer(log).byKey(11).writeIndexes(indexDir);
+
+        // When
+        try (FixLogIndex index = FixLogIndex.open(log, FixLogIndexer.indexFile(indexDir, log, 11))) {
+            final List<Object> found = index.find("Q1", serializer);
+
+            // Then
+            assertEquals(1, found.size());
+            assertEquals("EUR/USD", ((MutableQuote) found.get(0)).symbol.toString());
+        }
+    }
+
+    @Test(expected = FixException.class)
+    public void testRejectRangeLookupsOfKeyIndexes() throws IOException {
+        // Given
+        final Path log = writeLog(ORDER_1);
+        final Path indexDir = folder.newFolder("idx").toPath();
+        new FixLogIndexer(log).byKey(11).writeIndexes(indexDir);
+
+        // When
+        try (FixLogIndex index = FixLogIndex.open(log, FixLogIndexer.indexFile(indexDir, log, 11))) {
+            index.findBetween("A", "B");
+        }
+    }
+
+    @Test(expected = FixException.class)
+    public void testRejectInvalidIndexFiles() throws IOException {
+        // Given
+        final Path log = writeLog(ORDER_1);
+        final Path notAnIndex = writeLog(ORDER_2);
+
+        // When
+        FixLogIndex.open(log, notAnIndex);
+    }
+
+    private Path writeLog(String... entries) throws IOException {
+        final StringBuilder content = new StringBuilder();
+        for (String entry : entries) {
+            content.append(entry);
+        }
+        final Path log = folder.newFile("fix" + (++logs) + ".log").toPath();
+        Files.write(log, content.toString().getBytes(StandardCharsets.US_ASCII));
+        return log;
+    }
+}
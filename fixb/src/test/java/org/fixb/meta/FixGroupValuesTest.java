@@ -0,0 +1,48 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fixb.meta;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FixGroupValuesTest {
+
+    @Test
+    public void canConvertArrays() {
+        final List<?> view = FixGroupValues.asList(new int[]{1, 2});
+        assertEquals(Arrays.asList(1, 2), view);
+
+        final int[] array = (int[]) FixGroupValues.toArray(Arrays.asList(3, 4), int.class);
+        assertEquals(2, array.length);
+        assertEquals(4, array[1]);
+    }
+
+    @Test
+    public void testCollectionTypes() {
+        assertTrue(FixGroupValues.isCollectionType(List.class));
+        assertTrue(FixGroupValues.isCollectionType(Deque.class));
+        assertTrue(FixGroupValues.isCollectionType(TreeSet.class));
+        assertFalse(FixGroupValues.isCollectionType(Iterable.class));
+        assertFalse(FixGroupValues.isCollectionType(String.class));
+        assertFalse(FixGroupValues.isCollectionType(Collections.unmodifiableList(new ArrayList<>()).getClass()));
+    }
+}
@@ -16,6 +16,9 @@
 
 package org.fixb.meta;
 
+import org.fixb.FixException;
+import org.fixb.annotations.FixGroup;
+import org.fixb.annotations.FixMessage;
 import org.fixb.test.data.SampleQuote;
 import org.fixb.test.data.TestModels;
 import org.junit.Test;
@@ -68,4 +71,18 @@ public class FixMetaScannerTest {
         assertSame(meta, fixMetaDictionary.getMetaForClass(SampleQuote.class));
     }
 
+    @Test(expected = FixException.class)
+    public void testRejectGroupTypeThatCannotBeInstantiated() {
+        FixMetaScanner.scanClassAndAddToDictionary(CustomGroupMessage.class, new MutableFixMetaDictionary());
+    }
+
+    public interface Symbols extends Iterable<String> {
+    }
+
+    @FixMessage(type = "CG")
+    public static class CustomGroupMessage {
+        @FixGroup(tag = 146, componentTag = 55, component = String.class)
+        public Symbols symbols;
+    }
+
 }
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fixb.sbe;
+
+import org.fixb.FixException;
+import org.fixb.impl.NativeFixSerializer;
+import org.fixb.meta.FixMessageMeta;
+import org.fixb.meta.FixMetaDictionary;
+import org.fixb.meta.FixMetaScanner;
+import org.fixb.test.data.SampleQuote;
+import org.fixb.test.data.TestModels.Allocation;
+import org.fixb.test.data.TestModels.AllocAccount;
+import org.fixb.test.data.TestModels.BookEntry;
+import org.fixb.test.data.TestModels.BookSnapshot;
+import org.fixb.test.data.TestModels.Instrument;
+import org.fixb.test.data.TestModels.Params;
+import org.fixb.test.data.TestModels.Party;
+import org.fixb.test.data.TestModels.Trade;
+import org.joda.time.LocalDate;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+public class SbeFixSerializerTest {
+    private final FixMetaDictionary dictionary = FixMetaScanner.scanClassesIn("org.fixb.test.data");
+    private final SbeFixSerializer<Object> serializer = new SbeFixSerializer<>(dictionary);
+
+    @Test
+    public void testEncodeFixedFieldsAtFixedOffsets() {
+        // Given
+        final Trade trade = trade("E1", 101.25, 500);
+        final SbeSchema schema = serializer.getSchema();
+
+        // When
+        final byte[] encoded = serializer.serialize(trade);
+
+        // Then
+        final ByteBuffer buffer = ByteBuffer.wrap(encoded).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(schema.getBlockLength(Trade.class), buffer.getShort(0));
+        assertEquals(schema.getTemplateId(Trade.class), buffer.getShort(2));
+        assertEquals(1, buffer.getShort(4));
+        assertEquals('1', buffer.get(SbeSchema.HEADER_LENGTH));
+        assertEquals(101.25, buffer.getDouble(SbeSchema.HEADER_LENGTH + 1), 0);
+        assertEquals(500, buffer.getLong(SbeSchema.HEADER_LENGTH + 9));
+        assertEquals(encoded.length, serializer.encodedLength(trade));
+        assertTrue(encoded.length < new NativeFixSerializer<>("FIX.4.4", dictionary).serialize(trade).length());
+    }
+
+    @Test
+    public void testRoundTripFieldsOfAllTypes() {
+        // Given
+        final Trade trade = trade("E1", -0.5, Long.MAX_VALUE);
+        trade.aggressor = true;
+
+        // When
+        final Trade decoded = (Trade) serializer.deserialize(serializer.serialize(trade));
+
+        // Then
+        assertEquals("E1", decoded.execId);
+        assertEquals(SampleQuote.Side.SELL, decoded.side);
+        assertEquals(-0.5, decoded.price, 0);
+        assertEquals(Long.MAX_VALUE, decoded.quantity);
+        assertEquals(new LocalDate(2013, 10, 21), decoded.tradeDate);
+        assertEquals(Boolean.TRUE, decoded.aggressor);
+
+        trade.aggressor = null;
+        trade.tradeDate = new LocalDate(1969, 7, 20);
+        final Trade decodedWithNulls = (Trade) serializer.deserialize(serializer.serialize(trade));
+        assertNull(decodedWithNulls.aggressor);
+        assertEquals(new LocalDate(1969, 7, 20), decodedWithNulls.tradeDate);
+    }
+
+    @Test
+    public void testRoundTripNestedGroupsAndBlocks() {
+        // Given
+        final Allocation allocation = new Allocation();
+        allocation.allocId = "A1";
+        allocation.instrument = new Instrument();
+        allocation.instrument.symbol = "VOD.L";
+        allocation.instrument.altIds = asList("GB00BH4HKS39", "VOD LN");
+        allocation.accounts = asList(account("ACC1", 100, party("P1", 1), party("P2", null)), account("ACC2", null));
+
+        // When
+        final Allocation decoded = (Allocation) serializer.deserialize(serializer.serialize(allocation));
+
+        // Then
+        assertEquals("A1", decoded.allocId);
+        assertNull(decoded.text);
+        assertEquals("VOD.L", decoded.instrument.symbol);
+        assertEquals(asList("GB00BH4HKS39", "VOD LN"), decoded.instrument.altIds);
+        assertEquals(2, decoded.accounts.size());
+        assertEquals("ACC1", decoded.accounts.get(0).account);
+        assertEquals(Integer.valueOf(100), decoded.accounts.get(0).qty);
+        assertEquals("P2", decoded.accounts.get(0).parties.get(1).id);
+        assertNull(decoded.accounts.get(0).parties.get(1).role);
+        assertNull(decoded.accounts.get(1).qty);
+        assertTrue(decoded.accounts.get(1).parties.isEmpty());
+    }
+
+    @Test
+    public void testRoundTripConstructorBoundMessagesThroughBuffers() {
+        // Given
+        final SampleQuote quote = new SampleQuote("Q1", SampleQuote.Side.BUY, "EUR/USD", asList(1, 2, 3),
+                asList(new Params("a", "b"), new Params("c", null)), new Params("x", "y"));
+        final BookSnapshot book = new BookSnapshot();
+        book.symbol = "EUR/USD";
+        book.entries = asList(entry('0', 1.3051, 1000000), entry('1', 1.3053, null));
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(1024);
+
+        // When
+        final int quoteLength = serializer.serialize(quote, buffer);
+        serializer.serialize(book, buffer);
+        buffer.flip();
+        final SampleQuote decodedQuote = (SampleQuote) serializer.deserialize(buffer);
+        final BookSnapshot decodedBook = (BookSnapshot) serializer.deserialize(buffer);
+
+        // Then
+        assertEquals(quoteLength, buffer.position() - serializer.encodedLength(book));
+        assertFalse(buffer.hasRemaining());
+        assertEquals(ByteOrder.BIG_ENDIAN, buffer.order());
+        assertEquals("Q1", decodedQuote.getQuoteId());
+        assertEquals(SampleQuote.Side.BUY, decodedQuote.getSide());
+        assertEquals(asList(1, 2, 3), decodedQuote.getAmounts());
+        assertEquals("c", decodedQuote.getParamsList().get(1).getParam1());
+        assertNull(decodedQuote.getParamsList().get(1).getParam2());
+        assertEquals("y", decodedQuote.getParams().getParam2());
+
+        final Iterator<BookEntry> entries = decodedBook.entries.iterator();
+        assertEquals(1.3051, entries.next().price, 0);
+        final BookEntry second = entries.next();
+        assertEquals('1', second.type);
+        assertNull(second.size);
+        assertFalse(entries.hasNext());
+        assertFalse(decodedBook.depths.iterator().hasNext());
+    }
+
+    @Test
+    public void testDescribeSchemaAsXml() {
+        // When
+        final String xml = serializer.getSchema().toXml();
+
+        // Then
+        assertTrue(xml.contains("byteOrder=\"littleEndian\""));
+        assertTrue(xml.contains("<sbe:message name=\"Trade\" id=\"" + serializer.getSchema().getTemplateId(Trade.class)
+                + "\" semanticType=\"TR\" blockLength=\"22\">"));
+        assertTrue(xml.contains("<field name=\"price\" id=\"31\" type=\"double\" offset=\"1\"/>"));
+        assertTrue(xml.contains("<data name=\"execId\" id=\"17\" type=\"varStringEncoding\"/>"));
+        assertTrue(xml.contains("<group name=\"parties\" id=\"539\" dimensionType=\"groupSizeEncoding\" blockLength=\"4\">"));
+        assertTrue(xml.contains("<enum name=\"Side\" encodingType=\"char\">"));
+        assertTrue(xml.contains("<validValue name=\"SELL\">1</validValue>"));
+        assertTrue(xml.contains("<field name=\"side\" id=\"40\" type=\"Side\" offset=\"0\"/>"));
+    }
+
+    @Test
+    public void testRejectUnknownEnumCodes() {
+        // Given
+        final byte[] encoded = serializer.serialize(trade("E1", 1, 1));
+        encoded[SbeSchema.HEADER_LENGTH] = '7';
+
+        // When
+        try {
+            serializer.deserialize(encoded);
+            fail("Expected a FixException");
+        } catch (FixException e) {
+            // Then
+            assertTrue(e.getMessage(), e.getMessage().contains("Unknown code [7]"));
+        }
+    }
+
+    @Test
+    public void testAssignExplicitTemplateIds() {
+        // Given
+        final Map<String, Integer> templateIds = new HashMap<>();
+        int templateId = 100;
+        for (FixMessageMeta<?> meta : dictionary.getAllMessageMetas()) {
+            templateIds.put(meta.getMessageType(), templateId++);
+        }
+        templateIds.put("TR", 7);
+
+        // When
+        final SbeFixSerializer<Object> explicit = new SbeFixSerializer<>(SbeSchema.of(dictionary, 1, 0, templateIds));
+        final byte[] encoded = explicit.serialize(trade("E1", 1, 1));
+
+        // Then
+        assertEquals(7, explicit.getSchema().getTemplateId(Trade.class));
+        assertEquals(7, ByteBuffer.wrap(encoded).order(ByteOrder.LITTLE_ENDIAN).getShort(2));
+        assertEquals("E1", ((Trade) explicit.deserialize(encoded)).execId);
+        assertTrue(explicit.getSchema().toXml().contains("<sbe:message name=\"Trade\" id=\"7\""));
+
+        templateIds.remove("TR");
+        try {
+            SbeSchema.of(dictionary, 1, 0, templateIds);
+            fail("Expected a FixException");
+        } catch (FixException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Message type TR has no valid template id"));
+        }
+    }
+
+    @Test(expected = FixException.class)
+    public void testRejectMessagesOfOtherSchemas() {
+        final byte[] encoded = serializer.serialize(trade("E1", 1, 1));
+        new SbeFixSerializer<>(SbeSchema.of(dictionary, 2, 0)).deserialize(encoded);
+    }
+
+    private static Trade trade(String execId, double price, long quantity) {
+        final Trade trade = new Trade();
+        trade.execId = execId;
+        trade.side = SampleQuote.Side.SELL;
+        trade.price = price;
+        trade.quantity = quantity;
+        trade.tradeDate = new LocalDate(2013, 10, 21);
+        return trade;
+    }
+
+    private static AllocAccount account(String account, Integer qty, Party... parties) {
+        final AllocAccount result = new AllocAccount();
+        result.account = account;
+        result.qty = qty;
+        result.parties = (parties.length == 0) ? null : asList(parties);
+        return result;
+    }
+
+    private static Party party(String id, Integer role) {
+        final Party result = new Party();
+        result.id = id;
+        result.role = role;
+        return result;
+    }
+
+    private static BookEntry entry(char type, double price, Integer size) {
+        final BookEntry result = new BookEntry();
+        result.type = type;
+        result.price = price;
+        result.size = size;
+        return result;
+    }
+}
@@ -16,9 +16,16 @@
 
 package org.fixb.test.data;
 
+import org.fixb.FixGroupSource;
+import org.fixb.UnknownFields;
 import org.fixb.annotations.FixBlock;
 import org.fixb.annotations.FixField;
+import org.fixb.annotations.FixGroup;
 import org.fixb.annotations.FixMessage;
+import org.fixb.annotations.FixUnknownFields;
+import org.joda.time.LocalDate;
+
+import java.util.List;
 
 import static org.fixb.test.data.TestModels.QuoteFixFields.*;
 
@@ -76,6 +83,168 @@ public final class TestModels {
         }
     }
 
+    @FixMessage(type = "MQ")
+    public static class MutableQuote {
+        @FixField(tag = QUOTE_ID)
+        public String quoteId;
+
+        @FixField(tag = SYMBOL)
+        public CharSequence symbol;
+
+        @FixGroup(tag = AMOUNT_GR, componentTag = AMOUNT)
+        public List<Integer> amounts;
+
+        @FixGroup(tag = PARAM_GR)
+        public List<Params> paramsList;
+
+        @FixField(tag = NOTE, optional = true)
+        public String note;
+    }
+
+    @FixMessage(type = "AQ")
+    public static class ArrayQuote {
+        @FixGroup(tag = AMOUNT_GR, componentTag = AMOUNT)
+        public int[] amounts;
+
+        @FixGroup(tag = 15, componentTag = 16)
+        public long[] sizes;
+
+        @FixGroup(tag = 17, componentTag = 18, optional = true)
+        public double[] prices;
+
+        @FixGroup(tag = PARAM_GR)
+        public Params[] paramsList;
+    }
+
+    @FixMessage(type = "AL")
+    public static class Allocation {
+        @FixField(tag = 70)
+        public String allocId;
+
+        @FixBlock
+        public Instrument instrument;
+
+        @FixGroup(tag = 78)
+        public List<AllocAccount> accounts;
+
+        @FixField(tag = 58, optional = true)
+        public String text;
+    }
+
+    @FixBlock
+    public static class Instrument {
+        @FixField(tag = 55)
+        public String symbol;
+
+        @FixGroup(tag = 454, componentTag = 455, optional = true)
+        public List<String> altIds;
+    }
+
+    @FixBlock
+    public static class AllocAccount {
+        @FixField(tag = 79)
+        public String account;
+
+        @FixField(tag = 80, optional = true)
+        public Integer qty;
+
+        @FixGroup(tag = 539, optional = true)
+        public List<Party> parties;
+    }
+
+    @FixBlock
+    public static class Party {
+        @FixField(tag = 448)
+        public String id;
+
+        @FixField(tag = 452, optional = true)
+        public Integer role;
+    }
+
+    @FixMessage(type = "W")
+    public static class BookSnapshot {
+        @FixField(tag = 55)
+        public String symbol;
+
+        @FixGroup(tag = 268)
+        public Iterable<BookEntry> entries;
+
+        @FixGroup(tag = 1021, componentTag = 1022, optional = true)
+        public Iterable<Integer> depths;
+
+        @FixField(tag = 58, optional = true)
+        public String text;
+    }
+
+    @FixMessage(type = "y")
+    public static class SecurityList {
+        @FixField(tag = 320)
+        public String requestId;
+
+        @FixGroup(tag = 146, componentTag = 55)
+        public FixGroupSource<String> symbols;
+    }
+
+    @FixMessage(type = "UQ")
+    public static class ProxiedQuote {
+        @FixField(tag = QUOTE_ID)
+        public String quoteId;
+
+        @FixGroup(tag = AMOUNT_GR, componentTag = AMOUNT, optional = true)
+        public List<Integer> amounts;
+
+        @FixGroup(tag = 453, optional = true)
+        public List<ProxiedParty> parties;
+
+        @FixUnknownFields
+        public UnknownFields unknownFields;
+    }
+
+    @FixBlock
+    public static class ProxiedParty {
+        @FixField(tag = 448)
+        public String id;
+
+        @FixField(tag = 452, optional = true)
+        public Integer role;
+
+        @FixUnknownFields
+        public UnknownFields unknownFields;
+    }
+
+    @FixMessage(type = "TR")
+    public static class Trade {
+        @FixField(tag = 17)
+        public String execId;
+
+        @FixField(tag = 54)
+        public SampleQuote.Side side;
+
+        @FixField(tag = 31)
+        public double price;
+
+        @FixField(tag = 32)
+        public long quantity;
+
+        @FixField(tag = 75)
+        public LocalDate tradeDate;
+
+        @FixField(tag = 1057, optional = true)
+        public Boolean aggressor;
+    }
+
+    @FixBlock
+    public static class BookEntry {
+        @FixField(tag = 269)
+        public char type;
+
+        @FixField(tag = 270)
+        public double price;
+
+        @FixField(tag = 271, optional = true)
+        public Integer size;
+    }
+
     //////////////////////
     // Quote
 
@@ -89,6 +258,7 @@ public final class TestModels {
         public static final int P2 = 22;
         public static final int HDR = 33;
         public static final int SIDE = 40;
+        public static final int NOTE = 20001;
     }
 
     public abstract static class BasicQuote {
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fixb.test.data.flyweight;
+
+import org.fixb.flyweight.FixFlyweight;
+import org.fixb.flyweight.FixFlyweightGroup;
+import org.fixb.flyweight.FixFlyweightLayout;
+import org.fixb.flyweight.FixFlyweightValues;
+
+/**
+ * A flyweight accessor of Allocation messages generated by FixFlyweightGenerator.
+ */
+public final class AllocationFlyweight extends FixFlyweight {
+    public static final FixFlyweightLayout LAYOUT = FixFlyweightLayout.forClass(org.fixb.test.data.TestModels.Allocation.class);
+
+    private final FixFlyweightValues altIds = new FixFlyweightValues();
+    private final FixFlyweightGroup<AllocAccountFlyweight> accounts;
+
+    public AllocationFlyweight() {
+        super(LAYOUT);
+        this.accounts = new FixFlyweightGroup<>(new AllocAccountFlyweight(LAYOUT.group(78)));
+    }
+
+    public CharSequence allocId() {
+        return charsValue(70);
+    }
+
+    public boolean hasAllocId() {
+        return has(70);
+    }
+
+    public boolean allocId(CharSequence value) {
+        return setChars(70, value);
+    }
+
+    public CharSequence symbol() {
+        return charsValue(55);
+    }
+
+    public boolean hasSymbol() {
+        return has(55);
+    }
+
+    public boolean symbol(CharSequence value) {
+        return setChars(55, value);
+    }
+
+    public FixFlyweightValues altIds() {
+        return values(454, altIds);
+    }
+
+    public boolean hasAltIds() {
+        return has(454);
+    }
+
+    public FixFlyweightGroup<AllocAccountFlyweight> accounts() {
+        return group(78, accounts);
+    }
+
+    public boolean hasAccounts() {
+        return has(78);
+    }
+
+    public CharSequence text() {
+        return charsValue(58);
+    }
+
+    public boolean hasText() {
+        return has(58);
+    }
+
+    public boolean text(CharSequence value) {
+        return setChars(58, value);
+    }
+
+    /**
+     * A flyweight accessor of AllocAccount entries of AllocationFlyweight.accounts().
+     */
+    public static final class AllocAccountFlyweight extends FixFlyweight {
+        private final FixFlyweightGroup<PartyFlyweight> parties;
+
+        AllocAccountFlyweight(FixFlyweightLayout layout) {
+            super(layout);
+            this.parties = new FixFlyweightGroup<>(new PartyFlyweight(layout.group(539)));
+        }
+
+        public CharSequence account() {
+            return charsValue(79);
+        }
+
+        public boolean hasAccount() {
+            return has(79);
+        }
+
+        public boolean account(CharSequence value) {
+            return setChars(79, value);
+        }
+
+        public int qty() {
+            return intValue(80);
+        }
+
+        public boolean hasQty() {
+            return has(80);
+        }
+
+        public boolean qty(int value) {
+            return setLong(80, value);
+        }
+
+        public FixFlyweightGroup<PartyFlyweight> parties() {
+            return group(539, parties);
+        }
+
+        public boolean hasParties() {
+            return has(539);
+        }
+    }
+
+    /**
+     * A flyweight accessor of Party entries of AllocAccountFlyweight.parties().
+     */
+    public static final class PartyFlyweight extends FixFlyweight {
+        PartyFlyweight(FixFlyweightLayout layout) {
+            super(layout);
+        }
+
+        public CharSequence id() {
+            return charsValue(448);
+        }
+
+        public boolean hasId() {
+            return has(448);
+        }
+
+        public boolean id(CharSequence value) {
+            return setChars(448, value);
+        }
+
+        public int role() {
+            return intValue(452);
+        }
+
+        public boolean hasRole() {
+            return has(452);
+        }
+
+        public boolean role(int value) {
+            return setLong(452, value);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fixb.test.data.flyweight;
+
+import org.fixb.flyweight.FixFlyweight;
+import org.fixb.flyweight.FixFlyweightGroup;
+import org.fixb.flyweight.FixFlyweightLayout;
+import org.fixb.flyweight.FixFlyweightValues;
+
+/**
+ * A flyweight accessor of BookSnapshot messages generated by FixFlyweightGenerator.
+ */
+public final class BookSnapshotFlyweight extends FixFlyweight {
+    public static final FixFlyweightLayout LAYOUT = FixFlyweightLayout.forClass(org.fixb.test.data.TestModels.BookSnapshot.class);
+
+    private final FixFlyweightGroup<BookEntryFlyweight> entries;
+    private final FixFlyweightValues depths = new FixFlyweightValues();
+
+    public BookSnapshotFlyweight() {
+        super(LAYOUT);
+        this.entries = new FixFlyweightGroup<>(new BookEntryFlyweight(LAYOUT.group(268)));
+    }
+
+    public CharSequence symbol() {
+        return charsValue(55);
+    }
+
+    public boolean hasSymbol() {
+        return has(55);
+    }
+
+    public boolean symbol(CharSequence value) {
+        return setChars(55, value);
+    }
+
+    public FixFlyweightGroup<BookEntryFlyweight> entries() {
+        return group(268, entries);
+    }
+
+    public boolean hasEntries() {
+        return has(268);
+    }
+
+    public FixFlyweightValues depths() {
+        return values(1021, depths);
+    }
+
+    public boolean hasDepths() {
+        return has(1021);
+    }
+
+    public CharSequence text() {
+        return charsValue(58);
+    }
+
+    public boolean hasText() {
+        return has(58);
+    }
+
+    public boolean text(CharSequence value) {
+        return setChars(58, value);
+    }
+
+    /**
+     * A flyweight accessor of BookEntry entries of BookSnapshotFlyweight.entries().
+     */
+    public static final class BookEntryFlyweight extends FixFlyweight {
+        BookEntryFlyweight(FixFlyweightLayout layout) {
+            super(layout);
+        }
+
+        public char type() {
+            return charValue(269);
+        }
+
+        public boolean hasType() {
+            return has(269);
+        }
+
+        public boolean type(char value) {
+            return setChar(269, value);
+        }
+
+        public double price() {
+            return doubleValue(270);
+        }
+
+        public boolean hasPrice() {
+            return has(270);
+        }
+
+        public boolean price(double value) {
+            return setDouble(270, value);
+        }
+
+        public int size() {
+            return intValue(271);
+        }
+
+        public boolean hasSize() {
+            return has(271);
+        }
+
+        public boolean size(int value) {
+            return setLong(271, value);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2013 YTEQ Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fixb.test.data.flyweight;
+
+import org.fixb.flyweight.FixFlyweight;
+import org.fixb.flyweight.FixFlyweightGroup;
+import org.fixb.flyweight.FixFlyweightLayout;
+import org.fixb.flyweight.FixFlyweightValues;
+
+/**
+ * A flyweight accessor of Trade messages generated by FixFlyweightGenerator.
+ */
+public final class TradeFlyweight extends FixFlyweight {
+    public static final FixFlyweightLayout LAYOUT = FixFlyweightLayout.forClass(org.fixb.test.data.TestModels.Trade.class);
+
+    public TradeFlyweight() {
+        super(LAYOUT);
+    }
+
+    public CharSequence execId() {
+        return charsValue(17);
+    }
+
+    public boolean hasExecId() {
+        return has(17);
+    }
+
+    public boolean execId(CharSequence value) {
+        return setChars(17, value);
+    }
+
+    public org.fixb.test.data.SampleQuote.Side side() {
+        return this.<org.fixb.test.data.SampleQuote.Side>enumValue(54);
+    }
+
+    public boolean hasSide() {
+        return has(54);
+    }
+
+    public boolean side(org.fixb.test.data.SampleQuote.Side value) {
+        return setEnum(54, value);
+    }
+
+    public double price() {
+        return doubleValue(31);
+    }
+
+    public boolean hasPrice() {
+        return has(31);
+    }
+
+    public boolean price(double value) {
+        return setDouble(31, value);
+    }
+
+    public long quantity() {
+        return longValue(32);
+    }
+
+    public boolean hasQuantity() {
+        return has(32);
+    }
+
+    public boolean quantity(long value) {
+        return setLong(32, value);
+    }
+
+    public CharSequence tradeDate() {
+        return charsValue(75);
+    }
+
+    public boolean hasTradeDate() {
+        return has(75);
+    }
+
+    public boolean tradeDate(CharSequence value) {
+        return setChars(75, value);
+    }
+
+    public boolean aggressor() {
+        return booleanValue(1057);
+    }
+
+    public boolean hasAggressor() {
+        return has(1057);
+    }
+
+    public boolean aggressor(boolean value) {
+        return setBoolean(1057, value);
+    }
+}